@@ -84,3 +84,19 @@ class IborRepository:
         r = await self._http.get(f"{self._base}/prices/{instrument_code}", params=params)
         r.raise_for_status()
         return r.json()
+
+    async def get_context_bundle(
+        self,
+        portfolio_code: str,
+        as_of: str,
+        top_n: int = 10,
+        price_days: int = 30,
+        source: Optional[str] = None,
+    ) -> Dict[str, Any]:
+        """Positions, top-N drill-downs and recent prices in one round trip."""
+        params: Dict[str, Any] = {"asOf": as_of, "topN": top_n, "priceDays": price_days}
+        if source:
+            params["source"] = source
+        r = await self._http.get(f"{self._base}/context/{portfolio_code}", params=params)
+        r.raise_for_status()
+        return r.json()
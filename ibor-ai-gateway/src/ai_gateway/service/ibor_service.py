@@ -157,6 +157,59 @@ class IborService:
         self._store(cache_key, answer)
         return answer
 
+    async def context(
+        self,
+        portfolio_code: str,
+        as_of: date,
+        top_n: int = 10,
+        price_days: int = 30,
+        source: Optional[str] = None,
+    ) -> IborAnswer:
+        """Positions, trades for the largest positions and their recent prices in one call."""
+        cache_key = ("context", portfolio_code, as_of.isoformat(), top_n, price_days, source)
+        if cached := self._cached(cache_key):
+            return cached
+
+        raw = await self._client.get_context_bundle(
+            portfolio_code=portfolio_code,
+            as_of=as_of.isoformat(),
+            top_n=top_n,
+            price_days=price_days,
+            source=source,
+        )
+        positions = [_remap_position(p) for p in _to_list(raw.get("positions"))]
+        top = [
+            {
+                "instrument": d.get("instrumentCode"),
+                "marketValue": d.get("marketValue"),
+                "transactions": [_remap_transaction(t) for t in _to_list(d.get("transactions"))],
+            }
+            for d in _to_list(raw.get("topPositions"))
+        ]
+        prices = {
+            code: [_remap_price(p) for p in _to_list(series)]
+            for code, series in (raw.get("priceHistory") or {}).items()
+        }
+        # the middleware totals the whole book; positions may be cut at its max-positions
+        total_mv = _as_decimal(raw.get("totalMktValue"))
+
+        answer = IborAnswer(
+            question=f"context({portfolio_code}, {as_of})",
+            as_of=as_of,
+            data={
+                "positions": positions,
+                "totalMarketValue": float(total_mv) if total_mv is not None else None,
+                "count": raw.get("totalPositions", len(positions)),
+                "truncated": bool(raw.get("truncated")),
+                "topPositions": top,
+                "prices": prices,
+                "priceFrom": raw.get("priceFrom"),
+            },
+            source=f"{self._client.base}/context/{portfolio_code}?asOf={as_of.isoformat()}&topN={top_n}",
+        )
+        self._store(cache_key, answer)
+        return answer
+
     async def pnl(
         self,
         portfolio_code: str,
@@ -0,0 +1,98 @@
+-- =============================================================================
+-- SCD2 point-in-time lookup benchmark: B-tree bounds vs GiST range containment
+--
+-- PURPOSE:
+--   Compares the two ways a dimension can answer "which version was valid on
+--   date D?":
+--     A) valid_from <= D AND valid_to >= D   (composite B-tree on the bounds)
+--     B) validity @> D                        (GiST on a DATERANGE column)
+--   for both a single-entity lookup (code + asOf, the fn_*_vid_at shape) and a
+--   whole-dimension slice (every version valid on D, the positions `i` CTE shape).
+--
+-- HOW TO RUN:
+--   psql -U ibor -d ibordb -f ibor-db/bench/scd2_point_in_time.sql
+--   Everything lives in a throwaway schema `bench_scd2` that is dropped at the end.
+--   Requires btree_gist (created by 01_main_schema.sql).
+--
+-- SHAPE:
+--   20,000 codes x 50 contiguous versions each = 1,000,000 versions spanning
+--   ~10 years, so a single date matches exactly one version per code.
+-- =============================================================================
+
+DROP SCHEMA IF EXISTS bench_scd2 CASCADE;
+CREATE SCHEMA bench_scd2;
+
+CREATE TABLE bench_scd2.dim_btree (
+  vid        BIGSERIAL PRIMARY KEY,
+  code       TEXT NOT NULL,
+  valid_from DATE NOT NULL,
+  valid_to   DATE NOT NULL
+);
+
+INSERT INTO bench_scd2.dim_btree (code, valid_from, valid_to)
+SELECT 'C-' || c,
+       DATE '2016-01-01' + (v * 73) + (c % 7),
+       DATE '2016-01-01' + (v * 73) + (c % 7) + 72
+  FROM generate_series(1, 20000) AS c,
+       generate_series(0, 49)    AS v;
+
+CREATE INDEX ON bench_scd2.dim_btree (code, valid_from, valid_to);
+CREATE INDEX ON bench_scd2.dim_btree (valid_from, valid_to);
+
+CREATE TABLE bench_scd2.dim_range (
+  vid        BIGINT PRIMARY KEY,
+  code       TEXT NOT NULL,
+  valid_from DATE NOT NULL,
+  valid_to   DATE NOT NULL,
+  validity   DATERANGE GENERATED ALWAYS AS (daterange(valid_from, valid_to, '[]')) STORED,
+  EXCLUDE USING gist (code WITH =, validity WITH &&)
+);
+
+INSERT INTO bench_scd2.dim_range (vid, code, valid_from, valid_to)
+SELECT vid, code, valid_from, valid_to FROM bench_scd2.dim_btree;
+
+CREATE INDEX ON bench_scd2.dim_range USING gist (validity);
+
+ANALYZE bench_scd2.dim_btree;
+ANALYZE bench_scd2.dim_range;
+
+-- -----------------------------------------------------------------------------
+-- 1) Single entity: code + asOf (fn_instrument_vid_at shape)
+-- -----------------------------------------------------------------------------
+EXPLAIN (ANALYZE, BUFFERS, TIMING OFF, SUMMARY ON)
+SELECT vid FROM bench_scd2.dim_btree
+ WHERE code = 'C-12345'
+   AND valid_from <= DATE '2021-06-30' AND valid_to >= DATE '2021-06-30'
+ ORDER BY valid_from DESC LIMIT 1;
+
+EXPLAIN (ANALYZE, BUFFERS, TIMING OFF, SUMMARY ON)
+SELECT vid FROM bench_scd2.dim_range
+ WHERE code = 'C-12345'
+   AND validity @> DATE '2021-06-30';
+
+-- Repeated lookups across many codes, which is what loaders and lineage do.
+EXPLAIN (ANALYZE, BUFFERS, TIMING OFF, SUMMARY ON)
+SELECT (SELECT vid FROM bench_scd2.dim_btree d
+         WHERE d.code = 'C-' || g
+           AND d.valid_from <= DATE '2021-06-30' AND d.valid_to >= DATE '2021-06-30'
+         ORDER BY d.valid_from DESC LIMIT 1)
+  FROM generate_series(1, 5000) g;
+
+EXPLAIN (ANALYZE, BUFFERS, TIMING OFF, SUMMARY ON)
+SELECT (SELECT vid FROM bench_scd2.dim_range d
+         WHERE d.code = 'C-' || g
+           AND d.validity @> DATE '2021-06-30')
+  FROM generate_series(1, 5000) g;
+
+-- -----------------------------------------------------------------------------
+-- 2) Whole dimension as of a date (JodiPositionsRepository `i` CTE shape)
+-- -----------------------------------------------------------------------------
+EXPLAIN (ANALYZE, BUFFERS, TIMING OFF, SUMMARY ON)
+SELECT count(*) FROM bench_scd2.dim_btree
+ WHERE valid_from <= DATE '2021-06-30' AND valid_to >= DATE '2021-06-30';
+
+EXPLAIN (ANALYZE, BUFFERS, TIMING OFF, SUMMARY ON)
+SELECT count(*) FROM bench_scd2.dim_range
+ WHERE validity @> DATE '2021-06-30';
+
+DROP SCHEMA bench_scd2 CASCADE;
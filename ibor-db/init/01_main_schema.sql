@@ -6,6 +6,10 @@
 DROP SCHEMA IF EXISTS ibor CASCADE;
 CREATE SCHEMA ibor;
 
+-- btree_gist lets the SCD2 exclusion constraints mix business-code equality
+-- with daterange overlap in a single GiST index.
+CREATE EXTENSION IF NOT EXISTS btree_gist;
+
 -- ---------------------------
 -- Reference (non-SCD) dims
 -- ---------------------------
@@ -46,6 +50,10 @@ CREATE TABLE ibor.dim_strategy (
 
 -- ---------------------------
 -- Core SCD2 dims
+-- valid_from/valid_to are both inclusive; `validity` mirrors them as a
+-- daterange so point-in-time lookups are a single containment test
+-- (validity @> as_of) served by GiST, and the exclusion constraint
+-- guarantees at most one version per business key on any date.
 -- ---------------------------
 CREATE TABLE ibor.dim_instrument (
   instrument_vid   BIGSERIAL PRIMARY KEY,
@@ -57,14 +65,17 @@ CREATE TABLE ibor.dim_instrument (
   status           TEXT DEFAULT 'ACTIVE',
   valid_from       DATE NOT NULL,
   valid_to         DATE NOT NULL,
+  validity         DATERANGE GENERATED ALWAYS AS (daterange(valid_from, valid_to, '[]')) STORED,
   is_current       BOOLEAN NOT NULL DEFAULT TRUE,
   created_at       TIMESTAMP NOT NULL DEFAULT now(),
   updated_at       TIMESTAMP NOT NULL DEFAULT now(),
-  UNIQUE (instrument_code, valid_from)
+  UNIQUE (instrument_code, valid_from),
+  CONSTRAINT ex_instr_validity EXCLUDE USING gist (instrument_code WITH =, validity WITH &&)
 );
 
 CREATE INDEX IF NOT EXISTS idx_instr_code ON ibor.dim_instrument (instrument_code);
-CREATE INDEX IF NOT EXISTS idx_instr_pit  ON ibor.dim_instrument (valid_from, valid_to);
+-- Point-in-time over the whole dimension (no code filter), e.g. the position query's instrument CTE
+CREATE INDEX IF NOT EXISTS idx_instr_pit  ON ibor.dim_instrument USING gist (validity);
 
 -- Equity subtype (rich)
 CREATE TABLE ibor.dim_instrument_equity (
@@ -156,10 +167,12 @@ CREATE TABLE ibor.dim_portfolio (
   status            TEXT DEFAULT 'ACTIVE',
   valid_from        DATE NOT NULL,
   valid_to          DATE NOT NULL,
+  validity          DATERANGE GENERATED ALWAYS AS (daterange(valid_from, valid_to, '[]')) STORED,
   is_current        BOOLEAN NOT NULL DEFAULT TRUE,
   created_at        TIMESTAMP NOT NULL DEFAULT now(),
   updated_at        TIMESTAMP NOT NULL DEFAULT now(),
-  UNIQUE (portfolio_code, valid_from)
+  UNIQUE (portfolio_code, valid_from),
+  CONSTRAINT ex_portfolio_validity EXCLUDE USING gist (portfolio_code WITH =, validity WITH &&)
 );
 CREATE INDEX idx_portfolio_current ON ibor.dim_portfolio (portfolio_code) WHERE is_current;
 
@@ -172,10 +185,12 @@ CREATE TABLE ibor.dim_account (
   status            TEXT DEFAULT 'ACTIVE',
   valid_from        DATE NOT NULL,
   valid_to          DATE NOT NULL,
+  validity          DATERANGE GENERATED ALWAYS AS (daterange(valid_from, valid_to, '[]')) STORED,
   is_current        BOOLEAN NOT NULL DEFAULT TRUE,
   created_at        TIMESTAMP NOT NULL DEFAULT now(),
   updated_at        TIMESTAMP NOT NULL DEFAULT now(),
-  UNIQUE (account_code, valid_from)
+  UNIQUE (account_code, valid_from),
+  CONSTRAINT ex_account_validity EXCLUDE USING gist (account_code WITH =, validity WITH &&)
 );
 CREATE INDEX idx_account_current ON ibor.dim_account (account_code) WHERE is_current;
 
@@ -201,10 +216,12 @@ CREATE TABLE ibor.dim_account_portfolio (
   portfolio_vid         BIGINT NOT NULL REFERENCES ibor.dim_portfolio(portfolio_vid),
   valid_from            DATE NOT NULL,
   valid_to              DATE NOT NULL,
+  validity              DATERANGE GENERATED ALWAYS AS (daterange(valid_from, valid_to, '[]')) STORED,
   is_current            BOOLEAN NOT NULL DEFAULT TRUE,
   created_at            TIMESTAMP NOT NULL DEFAULT now(),
   updated_at            TIMESTAMP NOT NULL DEFAULT now(),
-  UNIQUE (account_vid, valid_from)
+  UNIQUE (account_vid, valid_from),
+  CONSTRAINT ex_ap_validity EXCLUDE USING gist (account_vid WITH =, validity WITH &&)
 );
 CREATE INDEX idx_ap_current ON ibor.dim_account_portfolio (account_vid) WHERE is_current;
 
@@ -362,3 +379,20 @@ CREATE TABLE IF NOT EXISTS ibor.fact_corporate_action_applied (
   updated_at      TIMESTAMP NOT NULL DEFAULT now()
 );
 CREATE INDEX IF NOT EXISTS idx_ca_applied_exdate ON ibor.fact_corporate_action_applied (ex_date);
+CREATE UNIQUE INDEX IF NOT EXISTS uq_ca_applied_natural
+  ON ibor.fact_corporate_action_applied (instrument_vid, action_code, ex_date);
+
+-- ---------------------------
+-- Data-version watermarks
+-- ---------------------------
+-- One monotonically increasing version per (scope, scope_key), bumped by the loaders in
+-- 04_loaders.sql. scope_key '' is the scope-wide version; facts that are naturally keyed also
+-- bump one row per key (portfolio_code for positions/cash, instrument_code for prices).
+-- The middleware polls this table and derives HTTP ETags from it.
+CREATE TABLE IF NOT EXISTS ibor.data_version (
+  scope       TEXT   NOT NULL,      -- 'position','cash','price','fx_rate','trade','corporate_action','instrument','portfolio','reference','analytics'
+  scope_key   TEXT   NOT NULL DEFAULT '',
+  version     BIGINT NOT NULL DEFAULT 1,
+  bumped_at   TIMESTAMP NOT NULL DEFAULT now(),
+  PRIMARY KEY (scope, scope_key)
+);
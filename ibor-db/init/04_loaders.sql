@@ -11,8 +11,29 @@ SET search_path=ibor, public;
 -- 04_loaders.sql
 -- Loaders from stg.* -> ibor.* (reference, SCD2 dims, bridges, facts)
 -- Idempotent where possible; staging rows deleted after load.
+-- SCD2 loaders close the current slice and insert the new one inside one
+-- BEGIN ... EXCEPTION block per staged row. A duplicate or overlapping slice
+-- raises unique_violation/exclusion_violation, which rolls back to the block's
+-- savepoint (undoing the close too) and skips that row.
 -- =====================================================================
 
+-- =========================
+-- Data-version watermarks
+-- =========================
+-- Bumps the scope-wide version and, when given, one version per business key.
+-- Loaders call this (before clearing staging) whenever they changed rows.
+CREATE OR REPLACE FUNCTION ibor.bump_data_version(p_scope TEXT, p_keys TEXT[] DEFAULT '{}')
+RETURNS VOID LANGUAGE plpgsql AS $$
+BEGIN
+  INSERT INTO ibor.data_version(scope, scope_key)
+  SELECT p_scope, k
+  FROM (SELECT '' AS k UNION SELECT unnest(p_keys)) keys
+  WHERE k IS NOT NULL
+  ON CONFLICT (scope, scope_key) DO UPDATE
+    SET version   = ibor.data_version.version + 1,
+        bumped_at = now();
+END $$;
+
 -- =========================
 -- Reference (non-SCD) dims
 -- =========================
@@ -30,6 +51,7 @@ BEGIN
           updated_at    = now()
     RETURNING 1
   ) SELECT COUNT(*) INTO c FROM up;
+  IF COALESCE(c,0) > 0 THEN PERFORM ibor.bump_data_version('reference'); END IF;
   DELETE FROM stg.currency;
   RETURN COALESCE(c,0);
 END $$;
@@ -47,6 +69,7 @@ BEGIN
           updated_at    = now()
     RETURNING 1
   ) SELECT COUNT(*) INTO c FROM up;
+  IF COALESCE(c,0) > 0 THEN PERFORM ibor.bump_data_version('reference'); END IF;
   DELETE FROM stg.exchange;
   RETURN COALESCE(c,0);
 END $$;
@@ -64,6 +87,7 @@ BEGIN
           updated_at        = now()
     RETURNING 1
   ) SELECT COUNT(*) INTO c FROM up;
+  IF COALESCE(c,0) > 0 THEN PERFORM ibor.bump_data_version('reference'); END IF;
   DELETE FROM stg.price_source;
   RETURN COALESCE(c,0);
 END $$;
@@ -82,6 +106,7 @@ BEGIN
           updated_at        = now()
     RETURNING 1
   ) SELECT COUNT(*) INTO c FROM up;
+  IF COALESCE(c,0) > 0 THEN PERFORM ibor.bump_data_version('reference'); END IF;
   DELETE FROM stg.strategy;
   RETURN COALESCE(c,0);
 END $$;
@@ -99,28 +124,31 @@ BEGIN
            COALESCE(valid_to, DATE '9999-12-31') vt,
            COALESCE(status,'ACTIVE') status
     FROM stg.portfolio
+    ORDER BY portfolio_code, vf
   LOOP
-    -- Close any current slice strictly before new vf
-    UPDATE ibor.dim_portfolio
-      SET valid_to = r.vf - 1, is_current = FALSE, updated_at = now()
-      WHERE portfolio_code = r.portfolio_code
-        AND is_current = TRUE
-        AND valid_from < r.vf;
-
-    -- Insert new slice
-    INSERT INTO ibor.dim_portfolio(
-      portfolio_code, portfolio_name, region, entitlement_group,
-      status, valid_from, valid_to, is_current
-    )
-    VALUES (
-      r.portfolio_code, r.portfolio_name, r.region, r.entitlement_group,
-      r.status, r.vf, r.vt, (r.vt = DATE '9999-12-31')
-    )
-    ON CONFLICT (portfolio_code, valid_from) DO NOTHING;
-
-    c := c + 1;
+    BEGIN
+      UPDATE ibor.dim_portfolio
+        SET valid_to = r.vf - 1, is_current = FALSE, updated_at = now()
+        WHERE portfolio_code = r.portfolio_code
+          AND is_current = TRUE
+          AND valid_from < r.vf;
+
+      -- Insert new slice
+      INSERT INTO ibor.dim_portfolio(
+        portfolio_code, portfolio_name, region, entitlement_group,
+        status, valid_from, valid_to, is_current
+      )
+      VALUES (
+        r.portfolio_code, r.portfolio_name, r.region, r.entitlement_group,
+        r.status, r.vf, r.vt, (r.vt = DATE '9999-12-31')
+      );
+      c := c + 1;
+    EXCEPTION WHEN unique_violation OR exclusion_violation THEN
+      NULL;
+    END;
   END LOOP;
 
+  IF COALESCE(c,0) > 0 THEN PERFORM ibor.bump_data_version('portfolio'); END IF;
   DELETE FROM stg.portfolio;
   RETURN c;
 END $$;
@@ -135,26 +163,30 @@ BEGIN
            COALESCE(valid_to, DATE '9999-12-31') vt,
            COALESCE(status,'ACTIVE') status
     FROM stg.account
+    ORDER BY account_code, vf
   LOOP
-    UPDATE ibor.dim_account
-      SET valid_to = r.vf - 1, is_current = FALSE, updated_at = now()
-      WHERE account_code = r.account_code
-        AND is_current = TRUE
-        AND valid_from < r.vf;
-
-    INSERT INTO ibor.dim_account(
-      account_code, account_name, region, entitlement_group,
-      status, valid_from, valid_to, is_current
-    )
-    VALUES (
-      r.account_code, r.account_name, r.region, r.entitlement_group,
-      r.status, r.vf, r.vt, (r.vt = DATE '9999-12-31')
-    )
-    ON CONFLICT (account_code, valid_from) DO NOTHING;
-
-    c := c + 1;
+    BEGIN
+      UPDATE ibor.dim_account
+        SET valid_to = r.vf - 1, is_current = FALSE, updated_at = now()
+        WHERE account_code = r.account_code
+          AND is_current = TRUE
+          AND valid_from < r.vf;
+
+      INSERT INTO ibor.dim_account(
+        account_code, account_name, region, entitlement_group,
+        status, valid_from, valid_to, is_current
+      )
+      VALUES (
+        r.account_code, r.account_name, r.region, r.entitlement_group,
+        r.status, r.vf, r.vt, (r.vt = DATE '9999-12-31')
+      );
+      c := c + 1;
+    EXCEPTION WHEN unique_violation OR exclusion_violation THEN
+      NULL;
+    END;
   END LOOP;
 
+  IF COALESCE(c,0) > 0 THEN PERFORM ibor.bump_data_version('portfolio'); END IF;
   DELETE FROM stg.account;
   RETURN c;
 END $$;
@@ -173,26 +205,30 @@ BEGIN
            COALESCE(valid_from, CURRENT_DATE) vf,
            COALESCE(valid_to, DATE '9999-12-31') vt
     FROM stg.instrument
+    ORDER BY instrument_code, vf
   LOOP
-    UPDATE ibor.dim_instrument
-      SET valid_to = r.vf - 1, is_current = FALSE, updated_at = now()
-      WHERE instrument_code = r.instrument_code
-        AND is_current = TRUE
-        AND valid_from < r.vf;
-
-    INSERT INTO ibor.dim_instrument(
-      instrument_code, instrument_type, instrument_name, exchange_code, currency_code,
-      status, valid_from, valid_to, is_current
-    )
-    VALUES (
-      r.instrument_code, r.instrument_type, r.instrument_name, r.exchange_code, r.currency_code,
-      r.status, r.vf, r.vt, (r.vt = DATE '9999-12-31')
-    )
-    ON CONFLICT (instrument_code, valid_from) DO NOTHING;
-
-    c := c + 1;
+    BEGIN
+      UPDATE ibor.dim_instrument
+        SET valid_to = r.vf - 1, is_current = FALSE, updated_at = now()
+        WHERE instrument_code = r.instrument_code
+          AND is_current = TRUE
+          AND valid_from < r.vf;
+
+      INSERT INTO ibor.dim_instrument(
+        instrument_code, instrument_type, instrument_name, exchange_code, currency_code,
+        status, valid_from, valid_to, is_current
+      )
+      VALUES (
+        r.instrument_code, r.instrument_type, r.instrument_name, r.exchange_code, r.currency_code,
+        r.status, r.vf, r.vt, (r.vt = DATE '9999-12-31')
+      );
+      c := c + 1;
+    EXCEPTION WHEN unique_violation OR exclusion_violation THEN
+      NULL;
+    END;
   END LOOP;
 
+  IF COALESCE(c,0) > 0 THEN PERFORM ibor.bump_data_version('instrument'); END IF;
   DELETE FROM stg.instrument;
   RETURN c;
 END $$;
@@ -242,6 +278,7 @@ BEGIN
     END IF;
   END LOOP;
 
+  IF COALESCE(c,0) > 0 THEN PERFORM ibor.bump_data_version('instrument'); END IF;
   DELETE FROM stg.instrument_equity;
   RETURN c;
 END $$;
@@ -291,6 +328,7 @@ BEGIN
     END IF;
   END LOOP;
 
+  IF COALESCE(c,0) > 0 THEN PERFORM ibor.bump_data_version('instrument'); END IF;
   DELETE FROM stg.instrument_bond;
   RETURN c;
 END $$;
@@ -335,6 +373,7 @@ BEGIN
     END IF;
   END LOOP;
 
+  IF COALESCE(c,0) > 0 THEN PERFORM ibor.bump_data_version('instrument'); END IF;
   DELETE FROM stg.instrument_futures;
   RETURN c;
 END $$;
@@ -375,6 +414,7 @@ BEGIN
     END IF;
   END LOOP;
 
+  IF COALESCE(c,0) > 0 THEN PERFORM ibor.bump_data_version('instrument'); END IF;
   DELETE FROM stg.instrument_options;
   RETURN c;
 END $$;
@@ -391,12 +431,12 @@ BEGIN
            COALESCE(valid_from, CURRENT_DATE) vf,
            COALESCE(valid_to, DATE '9999-12-31') vt
     FROM stg.portfolio_strategy
+    ORDER BY portfolio_code, vf
   LOOP
     SELECT portfolio_vid INTO v_port
       FROM ibor.dim_portfolio
       WHERE portfolio_code = r.portfolio_code
-        AND valid_from <= r.vf AND valid_to >= r.vf
-      ORDER BY valid_from DESC LIMIT 1;
+        AND validity @> r.vf;
 
     SELECT strategy_vid INTO v_strat
       FROM ibor.dim_strategy
@@ -404,17 +444,20 @@ BEGIN
 
     IF v_port IS NULL OR v_strat IS NULL THEN CONTINUE; END IF;
 
-    UPDATE ibor.dim_portfolio_strategy
-      SET valid_to = r.vf - 1, is_current = FALSE, updated_at = now()
-      WHERE portfolio_vid = v_port AND is_current = TRUE AND valid_from < r.vf;
+    BEGIN
+      UPDATE ibor.dim_portfolio_strategy
+        SET valid_to = r.vf - 1, is_current = FALSE, updated_at = now()
+        WHERE portfolio_vid = v_port AND is_current = TRUE AND valid_from < r.vf;
 
-    INSERT INTO ibor.dim_portfolio_strategy(portfolio_vid, strategy_vid, valid_from, valid_to, is_current)
-    VALUES (v_port, v_strat, r.vf, r.vt, (r.vt = DATE '9999-12-31'))
-    ON CONFLICT (portfolio_vid, valid_from) DO NOTHING;
-
-    c := c + 1;
+      INSERT INTO ibor.dim_portfolio_strategy(portfolio_vid, strategy_vid, valid_from, valid_to, is_current)
+      VALUES (v_port, v_strat, r.vf, r.vt, (r.vt = DATE '9999-12-31'));
+      c := c + 1;
+    EXCEPTION WHEN unique_violation OR exclusion_violation THEN
+      NULL;
+    END;
   END LOOP;
 
+  IF COALESCE(c,0) > 0 THEN PERFORM ibor.bump_data_version('portfolio'); END IF;
   DELETE FROM stg.portfolio_strategy;
   RETURN c;
 END $$;
@@ -428,32 +471,34 @@ BEGIN
            COALESCE(valid_from, CURRENT_DATE) vf,
            COALESCE(valid_to, DATE '9999-12-31') vt
     FROM stg.account_portfolio
+    ORDER BY account_code, vf
   LOOP
     SELECT account_vid INTO v_acct
       FROM ibor.dim_account
       WHERE account_code = r.account_code
-        AND valid_from <= r.vf AND valid_to >= r.vf
-      ORDER BY valid_from DESC LIMIT 1;
+        AND validity @> r.vf;
 
     SELECT portfolio_vid INTO v_port
       FROM ibor.dim_portfolio
       WHERE portfolio_code = r.portfolio_code
-        AND valid_from <= r.vf AND valid_to >= r.vf
-      ORDER BY valid_from DESC LIMIT 1;
+        AND validity @> r.vf;
 
     IF v_port IS NULL OR v_acct IS NULL THEN CONTINUE; END IF;
 
-    UPDATE ibor.dim_account_portfolio
-      SET valid_to = r.vf - 1, is_current = FALSE, updated_at = now()
-      WHERE account_vid = v_acct AND is_current = TRUE AND valid_from < r.vf;
-
-    INSERT INTO ibor.dim_account_portfolio(account_vid, portfolio_vid, valid_from, valid_to, is_current)
-    VALUES (v_acct, v_port, r.vf, r.vt, (r.vt = DATE '9999-12-31'))
-    ON CONFLICT (account_vid, valid_from) DO NOTHING;
+    BEGIN
+      UPDATE ibor.dim_account_portfolio
+        SET valid_to = r.vf - 1, is_current = FALSE, updated_at = now()
+        WHERE account_vid = v_acct AND is_current = TRUE AND valid_from < r.vf;
 
-    c := c + 1;
+      INSERT INTO ibor.dim_account_portfolio(account_vid, portfolio_vid, valid_from, valid_to, is_current)
+      VALUES (v_acct, v_port, r.vf, r.vt, (r.vt = DATE '9999-12-31'));
+      c := c + 1;
+    EXCEPTION WHEN unique_violation OR exclusion_violation THEN
+      NULL;
+    END;
   END LOOP;
 
+  IF COALESCE(c,0) > 0 THEN PERFORM ibor.bump_data_version('portfolio'); END IF;
   DELETE FROM stg.account_portfolio;
   RETURN c;
 END $$;
@@ -481,6 +526,7 @@ BEGIN
             updated_at = now();
 
     GET DIAGNOSTICS cnt = ROW_COUNT;
+    IF cnt > 0 THEN PERFORM ibor.bump_data_version('fx_rate'); END IF;
     DELETE FROM stg.fx_rate;
     RETURN cnt;
 END;
@@ -515,6 +561,7 @@ BEGIN
     RETURNING 1
   ) SELECT COUNT(*) INTO c FROM up;
 
+  IF COALESCE(c,0) > 0 THEN PERFORM ibor.bump_data_version('price', ARRAY(SELECT DISTINCT instrument_code FROM stg.price)); END IF;
   DELETE FROM stg.price;
   RETURN COALESCE(c,0);
 END $$;
@@ -546,6 +593,7 @@ BEGIN
     RETURNING 1
   ) SELECT COUNT(*) INTO c FROM up;
 
+  IF COALESCE(c,0) > 0 THEN PERFORM ibor.bump_data_version('trade'); END IF;
   DELETE FROM stg.trade_fill;
   RETURN COALESCE(c,0);
 END $$;
@@ -572,6 +620,7 @@ BEGIN
     RETURNING 1
   ) SELECT COUNT(*) INTO c FROM up;
 
+  IF COALESCE(c,0) > 0 THEN PERFORM ibor.bump_data_version('position', ARRAY(SELECT DISTINCT portfolio_code FROM stg.position_snapshot)); END IF;
   DELETE FROM stg.position_snapshot;
   RETURN COALESCE(c,0);
 END $$;
@@ -599,6 +648,7 @@ BEGIN
     RETURNING 1
   ) SELECT COUNT(*) INTO c FROM up;
 
+  IF COALESCE(c,0) > 0 THEN PERFORM ibor.bump_data_version('cash', ARRAY(SELECT DISTINCT portfolio_code FROM stg.cash_event)); END IF;
   DELETE FROM stg.cash_event;
   RETURN COALESCE(c,0);
 END $$;
@@ -625,10 +675,44 @@ BEGIN
     RETURNING 1
   ) SELECT COUNT(*) INTO c FROM up;
 
+  IF COALESCE(c,0) > 0 THEN PERFORM ibor.bump_data_version('position', ARRAY(SELECT DISTINCT portfolio_code FROM stg.position_adjustment)); END IF;
   DELETE FROM stg.position_adjustment;
   RETURN COALESCE(c,0);
 END $$;
 
+CREATE OR REPLACE FUNCTION ibor.load_corporate_action_applied_append()
+RETURNS BIGINT LANGUAGE plpgsql AS $$
+DECLARE c BIGINT;
+BEGIN
+  WITH src AS (
+    SELECT
+      ibor.fn_instrument_vid_at(s.instrument_code, s.ex_date) AS instrument_vid,
+      s.action_code, s.ex_date, s.record_date, s.pay_date, s.factor, s.amount, s.currency_code, s.notes
+    FROM stg.corporate_action_applied s
+  ),
+  up AS (
+    INSERT INTO ibor.fact_corporate_action_applied(
+      instrument_vid, action_code, ex_date, record_date, pay_date, factor, amount, currency_code, notes
+    )
+    SELECT instrument_vid, action_code, ex_date, record_date, pay_date, factor, amount, currency_code, notes
+    FROM src
+    WHERE instrument_vid IS NOT NULL AND action_code IS NOT NULL AND ex_date IS NOT NULL
+    ON CONFLICT (instrument_vid, action_code, ex_date) DO UPDATE
+      SET record_date   = EXCLUDED.record_date,
+          pay_date      = EXCLUDED.pay_date,
+          factor        = EXCLUDED.factor,
+          amount        = EXCLUDED.amount,
+          currency_code = EXCLUDED.currency_code,
+          notes         = EXCLUDED.notes,
+          updated_at    = now()
+    RETURNING 1
+  ) SELECT COUNT(*) INTO c FROM up;
+
+  IF COALESCE(c,0) > 0 THEN PERFORM ibor.bump_data_version('corporate_action', ARRAY(SELECT DISTINCT instrument_code FROM stg.corporate_action_applied)); END IF;
+  DELETE FROM stg.corporate_action_applied;
+  RETURN COALESCE(c,0);
+END $$;
+
 -- =========================
 -- Convenience runner
 -- =========================
@@ -658,4 +742,5 @@ BEGIN
   PERFORM ibor.load_position_snapshot_upsert();
   PERFORM ibor.load_cash_event_append();
   PERFORM ibor.load_position_adjustment_append();
+  PERFORM ibor.load_corporate_action_applied_append();
 END $$;
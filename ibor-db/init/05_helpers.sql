@@ -22,16 +22,15 @@ $$;
 
 -- =========================================================
 -- SCD2 point-in-time VID lookups by business code + as-of DATE
+-- Containment on the daterange `validity` column; the exclusion
+-- constraints on the dims guarantee at most one matching version.
 -- =========================================================
 CREATE OR REPLACE FUNCTION fn_instrument_vid_at(p_instrument_code TEXT, p_as_of DATE)
 RETURNS BIGINT LANGUAGE sql STABLE AS $$
   SELECT i.instrument_vid
   FROM ibor.dim_instrument i
   WHERE i.instrument_code = p_instrument_code
-    AND i.valid_from <= p_as_of
-    AND i.valid_to   >= p_as_of
-  ORDER BY i.valid_from DESC
-  LIMIT 1
+    AND i.validity @> p_as_of
 $$;
 
 CREATE OR REPLACE FUNCTION fn_portfolio_vid_at(p_portfolio_code TEXT, p_as_of DATE)
@@ -39,10 +38,7 @@ RETURNS BIGINT LANGUAGE sql STABLE AS $$
   SELECT p.portfolio_vid
   FROM ibor.dim_portfolio p
   WHERE p.portfolio_code = p_portfolio_code
-    AND p.valid_from <= p_as_of
-    AND p.valid_to   >= p_as_of
-  ORDER BY p.valid_from DESC
-  LIMIT 1
+    AND p.validity @> p_as_of
 $$;
 
 CREATE OR REPLACE FUNCTION fn_account_vid_at(p_account_code TEXT, p_as_of DATE)
@@ -50,10 +46,7 @@ RETURNS BIGINT LANGUAGE sql STABLE AS $$
   SELECT a.account_vid
   FROM ibor.dim_account a
   WHERE a.account_code = p_account_code
-    AND a.valid_from <= p_as_of
-    AND a.valid_to   >= p_as_of
-  ORDER BY a.valid_from DESC
-  LIMIT 1
+    AND a.validity @> p_as_of
 $$;
 
 -- =========================================================
@@ -11,7 +11,8 @@ WITH base AS (
         di.exchange_code,
         di.currency_code,
         di.valid_from,
-        di.valid_to
+        di.valid_to,
+        di.validity
     FROM ibor.dim_instrument di
 ),
 
@@ -62,7 +63,9 @@ SELECT
     op.strike_price,
     op.option_type,
     op.multiplier,
-    op.underlying_symbol
+    op.underlying_symbol,
+    -- SCD2 validity as a daterange (point-in-time filter: validity @> as_of)
+    b.validity
 FROM base b
          LEFT JOIN bd  ON bd.instrument_vid = b.instrument_vid
          LEFT JOIN fu  ON fu.instrument_vid = b.instrument_vid
@@ -120,3 +120,25 @@ CREATE TABLE analytics.attribution_brinson_daily (
     total_contrib         DOUBLE PRECISION NOT NULL DEFAULT 0,
     UNIQUE (portfolio_id, benchmark_id, attribution_as_of_date, segment_key)
 );
+
+-- ── Data-version watermark ────────────────────────────────────────────
+-- Analytics tables are populated outside the ibor loaders, so any write to
+-- them bumps the 'analytics' version (see ibor.data_version) per statement.
+CREATE OR REPLACE FUNCTION analytics.trg_bump_data_version()
+RETURNS TRIGGER LANGUAGE plpgsql AS $$
+BEGIN
+  PERFORM ibor.bump_data_version('analytics');
+  RETURN NULL;
+END $$;
+
+DO $$
+DECLARE t TEXT;
+BEGIN
+  FOREACH t IN ARRAY ARRAY['benchmarks','returns_portfolio_daily','holdings_daily','returns_security_daily',
+                           'benchmark_segments_daily','attribution_brinson_daily'] LOOP
+    EXECUTE format('CREATE TRIGGER trg_%s_data_version AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE
+                    ON analytics.%I FOR EACH STATEMENT EXECUTE FUNCTION analytics.trg_bump_data_version()', t, t);
+  END LOOP;
+END $$;
+
+SELECT ibor.bump_data_version('analytics');
@@ -0,0 +1,93 @@
+package com.kmakker.ibor.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH JSON result files (-rf json) and prints per-benchmark deltas for the primary
+ * score and for gc.alloc.rate.norm (bytes/op, present when run with -prof gc).
+ *
+ * <pre>
+ *   java -cp target/benchmarks.jar com.kmakker.ibor.bench.BaselineReport baseline.json current.json [thresholdPct]
+ * </pre>
+ *
+ * <p>Exits with status 1 when any benchmark got slower (or allocates more) than the threshold,
+ * default 10%, so it can gate a CI job.</p>
+ */
+public final class BaselineReport {
+    private static final String ALLOC = "gc.alloc.rate.norm";
+
+    private record Result(double score, String unit, boolean higherIsBetter, Double allocPerOp) {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: BaselineReport <baseline.json> <current.json> [thresholdPct]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+        Map<String, Result> baseline = read(new File(args[0]));
+        Map<String, Result> current = read(new File(args[1]));
+
+        boolean regressed = false;
+        System.out.printf("%-70s %14s %14s %9s %14s %14s %9s%n",
+                "benchmark [params]", "baseline", "current", "delta", "base B/op", "curr B/op", "delta");
+        for (Map.Entry<String, Result> e : current.entrySet()) {
+            Result now = e.getValue();
+            Result base = baseline.get(e.getKey());
+            if (base == null) {
+                System.out.printf("%-70s %14s %14.3f %9s%n", e.getKey(), "(new)", now.score(), "");
+                continue;
+            }
+            double delta = pct(base.score(), now.score());
+            boolean slower = now.higherIsBetter() ? delta < -threshold : delta > threshold;
+
+            String allocBase = "", allocNow = "", allocDelta = "";
+            boolean moreAlloc = false;
+            if (base.allocPerOp() != null && now.allocPerOp() != null) {
+                double ad = pct(base.allocPerOp(), now.allocPerOp());
+                allocBase = String.format("%.0f", base.allocPerOp());
+                allocNow = String.format("%.0f", now.allocPerOp());
+                allocDelta = String.format("%+.1f%%", ad);
+                // tiny absolute allocations are noise-dominated; only flag growth above 64 bytes/op
+                moreAlloc = ad > threshold && now.allocPerOp() - base.allocPerOp() > 64;
+            }
+            String flag = (slower || moreAlloc) ? "  <-- REGRESSION" : "";
+            regressed |= slower || moreAlloc;
+            System.out.printf("%-70s %14.3f %14.3f %+8.1f%% %14s %14s %9s%s%n",
+                    e.getKey(), base.score(), now.score(), delta, allocBase, allocNow, allocDelta, flag);
+        }
+        for (String missing : baseline.keySet()) {
+            if (!current.containsKey(missing)) System.out.printf("%-70s %14s%n", missing, "(removed)");
+        }
+        System.out.printf("%nthreshold %.1f%%: %s%n", threshold, regressed ? "REGRESSION" : "ok");
+        if (regressed) System.exit(1);
+    }
+
+    private static Map<String, Result> read(File file) throws IOException {
+        Map<String, Result> out = new LinkedHashMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(file)) {
+            String name = run.path("benchmark").asText().replace("com.kmakker.ibor.", "");
+            Map<String, String> params = new TreeMap<>();
+            for (Map.Entry<String, JsonNode> p : run.path("params").properties()) {
+                params.put(p.getKey(), p.getValue().asText());
+            }
+            JsonNode primary = run.path("primaryMetric");
+            String unit = primary.path("scoreUnit").asText();
+            JsonNode alloc = run.path("secondaryMetrics").path(ALLOC);
+            out.put(params.isEmpty() ? name : name + " " + params,
+                    new Result(primary.path("score").asDouble(), unit, unit.startsWith("ops/"),
+                            alloc.isMissingNode() ? null : alloc.path("score").asDouble()));
+        }
+        return out;
+    }
+
+    private static double pct(double before, double after) {
+        return before == 0 ? 0 : (after - before) / before * 100.0;
+    }
+}
@@ -0,0 +1,177 @@
+package com.kmakker.ibor.bench;
+
+import com.kmakker.ibor.dto.FxRateDTO;
+import com.kmakker.ibor.dto.PositionDTO;
+import com.kmakker.ibor.dto.PriceRowDTO;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic inputs shaped like the rows the repositories return.
+ * Seeded so every run (and the baseline it is compared to) sees the same data.
+ */
+public final class Fixtures {
+    public static final LocalDate START = LocalDate.parse("2024-01-01");
+
+    private static final DSLContext DSL_CTX = DSL.using(SQLDialect.POSTGRES);
+
+    private Fixtures() {}
+
+    /** One closing price per calendar day in {@code currency}, starting at {@link #START}. */
+    public static List<PriceRowDTO> prices(int days, String currency) {
+        Random rnd = new Random(42);
+        List<PriceRowDTO> out = new ArrayList<>(days);
+        double px = 100.0;
+        for (int d = 0; d < days; d++) {
+            px *= 1 + (rnd.nextGaussian() * 0.01);
+            out.add(new PriceRowDTO(
+                    START.plusDays(d).atTime(21, 0).toInstant(ZoneOffset.UTC),
+                    BigDecimal.valueOf(px).setScale(6, RoundingMode.HALF_UP),
+                    currency,
+                    "BBG"));
+        }
+        return out;
+    }
+
+    /** Daily from→to rates around {@code level}, starting at {@link #START}. */
+    public static List<FxRateDTO> fxRates(int days, String from, String to, double level) {
+        Random rnd = new Random(from.hashCode() * 31L + to.hashCode());
+        List<FxRateDTO> out = new ArrayList<>(days);
+        for (int d = 0; d < days; d++) {
+            double rate = level * (1 + rnd.nextGaussian() * 0.002);
+            out.add(new FxRateDTO(START.plusDays(d), from, to, BigDecimal.valueOf(rate).setScale(10, RoundingMode.HALF_UP)));
+        }
+        return out;
+    }
+
+    // ---- vw_instrument rows -------------------------------------------------------------------
+
+    private static final Field<String> INSTRUMENT_CODE = DSL.field("instrument_code", SQLDataType.VARCHAR);
+    private static final Field<String> INSTRUMENT_TYPE = DSL.field("instrument_type", SQLDataType.VARCHAR);
+    private static final Field<String> INSTRUMENT_NAME = DSL.field("instrument_name", SQLDataType.VARCHAR);
+    private static final Field<String> EXCHANGE_CODE = DSL.field("exchange_code", SQLDataType.VARCHAR);
+    private static final Field<String> CURRENCY_CODE = DSL.field("currency_code", SQLDataType.VARCHAR);
+    private static final Field<LocalDate> VALID_FROM = DSL.field("valid_from", SQLDataType.LOCALDATE);
+    private static final Field<LocalDate> VALID_TO = DSL.field("valid_to", SQLDataType.LOCALDATE);
+    private static final Field<LocalDate> MATURITY_DATE = DSL.field("maturity_date", SQLDataType.LOCALDATE);
+    private static final Field<BigDecimal> COUPON_RATE = DSL.field("coupon_rate", SQLDataType.NUMERIC);
+    private static final Field<LocalDate> FUTURES_EXPIRY = DSL.field("futures_expiry_date", SQLDataType.LOCALDATE);
+    private static final Field<Integer> CONTRACT_SIZE = DSL.field("contract_size", SQLDataType.INTEGER);
+    private static final Field<String> OPTION_TYPE = DSL.field("option_type", SQLDataType.VARCHAR);
+    private static final Field<Integer> STRIKE_PRICE = DSL.field("strike_price", SQLDataType.INTEGER);
+    private static final Field<String> UNDERLYING = DSL.field("underlying_symbol", SQLDataType.VARCHAR);
+    // InstrumentFactory's OPTIONS branch also reads these names, which vw_instrument does not expose
+    private static final Field<String> OPTION_SYMBOL = DSL.field("option_symbol", SQLDataType.VARCHAR);
+    private static final Field<LocalDate> OPTIONS_EXPIRY = DSL.field("options_expiry_date", SQLDataType.LOCALDATE);
+    private static final Field<Integer> OPTIONS_STRIKE = DSL.field("options_strike_price", SQLDataType.INTEGER);
+
+    /** vw_instrument-shaped records, all of {@code instrumentType} (EQUITY, BOND, FUTURES, OPTIONS). */
+    public static Record[] instrumentRecords(int n, String instrumentType) {
+        Record[] out = new Record[n];
+        for (int i = 0; i < n; i++) {
+            Record r = DSL_CTX.newRecord(INSTRUMENT_CODE, INSTRUMENT_TYPE, INSTRUMENT_NAME, EXCHANGE_CODE,
+                    CURRENCY_CODE, VALID_FROM, VALID_TO, MATURITY_DATE, COUPON_RATE, FUTURES_EXPIRY,
+                    CONTRACT_SIZE, OPTION_TYPE, STRIKE_PRICE, UNDERLYING, OPTION_SYMBOL, OPTIONS_EXPIRY,
+                    OPTIONS_STRIKE);
+            r.set(INSTRUMENT_CODE, instrumentType.substring(0, 3) + "-" + i);
+            r.set(INSTRUMENT_TYPE, instrumentType);
+            r.set(INSTRUMENT_NAME, "Synthetic " + instrumentType + " " + i);
+            r.set(EXCHANGE_CODE, "XNYS");
+            r.set(CURRENCY_CODE, "USD");
+            r.set(VALID_FROM, START);
+            r.set(VALID_TO, LocalDate.parse("9999-12-31"));
+            switch (instrumentType) {
+                case "BOND" -> {
+                    r.set(MATURITY_DATE, START.plusYears(5));
+                    r.set(COUPON_RATE, new BigDecimal("3.850000"));
+                }
+                case "FUTURES" -> {
+                    r.set(FUTURES_EXPIRY, START.plusMonths(3));
+                    r.set(CONTRACT_SIZE, 100);
+                }
+                case "OPTIONS" -> {
+                    r.set(OPTION_TYPE, "C");
+                    r.set(STRIKE_PRICE, 200);
+                    r.set(UNDERLYING, "AAPL");
+                    r.set(OPTION_SYMBOL, "AAPL250321C00200000");
+                    r.set(OPTIONS_EXPIRY, START.plusMonths(3));
+                    r.set(OPTIONS_STRIKE, 200);
+                }
+                default -> { }
+            }
+            out[i] = r;
+        }
+        return out;
+    }
+
+    // ---- positions query rows -----------------------------------------------------------------
+
+    /** Rows shaped like the final SELECT of JodiPositionsRepository.findPositions. */
+    public static Record[] positionRecords(int n) {
+        Field<LocalDate> asOf = DSL.field("as_of", SQLDataType.LOCALDATE);
+        Field<LocalDate> snapDate = DSL.field("snap_date", SQLDataType.LOCALDATE);
+        Field<String> portfolioId = DSL.field("portfolio_id", SQLDataType.VARCHAR);
+        Field<String> instrumentId = DSL.field("instrument_id", SQLDataType.VARCHAR);
+        Field<String> instrumentName = DSL.field("instrument_name", SQLDataType.VARCHAR);
+        Field<String> ticker = DSL.field("ticker", SQLDataType.VARCHAR);
+        Field<String> instrumentType = DSL.field("instrument_type", SQLDataType.VARCHAR);
+        Field<BigDecimal> netQty = DSL.field("net_qty", SQLDataType.NUMERIC);
+        Field<BigDecimal> price = DSL.field("price", SQLDataType.NUMERIC);
+        Field<String> priceSource = DSL.field("price_source", SQLDataType.VARCHAR);
+        Field<BigDecimal> mktValue = DSL.field("mkt_value", SQLDataType.NUMERIC);
+        Field<BigDecimal> cost = DSL.field("cost", SQLDataType.NUMERIC);
+        Field<BigDecimal> unrealizedPnl = DSL.field("unrealized_pnl", SQLDataType.NUMERIC);
+        Field<String> currency = DSL.field("currency", SQLDataType.VARCHAR);
+        Field<BigDecimal> multiplier = DSL.field("contract_multiplier", SQLDataType.NUMERIC);
+
+        Random rnd = new Random(7);
+        Record[] out = new Record[n];
+        for (int i = 0; i < n; i++) {
+            Record r = DSL_CTX.newRecord(asOf, snapDate, portfolioId, instrumentId, instrumentName, ticker,
+                    instrumentType, netQty, price, priceSource, mktValue, cost, unrealizedPnl, currency, multiplier);
+            BigDecimal qty = BigDecimal.valueOf(rnd.nextInt(10_000));
+            BigDecimal px = BigDecimal.valueOf(50 + rnd.nextDouble() * 200).setScale(10, RoundingMode.HALF_UP);
+            r.set(asOf, START.plusDays(60));
+            r.set(snapDate, START.plusDays(59));
+            r.set(portfolioId, "P-ALPHA");
+            r.set(instrumentId, "EQ-" + i);
+            r.set(instrumentName, "Synthetic Equity " + i);
+            r.set(ticker, "T" + i);
+            r.set(instrumentType, "EQUITY");
+            r.set(netQty, qty);
+            r.set(price, px);
+            r.set(priceSource, "BBG");
+            r.set(mktValue, qty.multiply(px));
+            r.set(currency, "USD");
+            r.set(multiplier, BigDecimal.ONE);
+            out[i] = r;
+        }
+        return out;
+    }
+
+    /** The same rows as {@link #positionRecords(int)}, already mapped to DTOs. */
+    public static List<PositionDTO> positions(int n) {
+        Random rnd = new Random(7);
+        List<PositionDTO> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            BigDecimal qty = BigDecimal.valueOf(rnd.nextInt(10_000));
+            BigDecimal px = BigDecimal.valueOf(50 + rnd.nextDouble() * 200).setScale(10, RoundingMode.HALF_UP);
+            out.add(new PositionDTO(START.plusDays(60), START.plusDays(59), "P-ALPHA", "EQ-" + i,
+                    "Synthetic Equity " + i, "T" + i, "EQUITY", qty, px, "BBG", qty.multiply(px),
+                    null, null, "USD", BigDecimal.ONE));
+        }
+        return out;
+    }
+}
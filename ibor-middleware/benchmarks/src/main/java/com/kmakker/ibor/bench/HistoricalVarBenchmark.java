@@ -0,0 +1,121 @@
+package com.kmakker.ibor.bench;
+
+import com.kmakker.ibor.dto.FxRateDTO;
+import com.kmakker.ibor.dto.PositionDTO;
+import com.kmakker.ibor.dto.analytics.VarResponse;
+import com.kmakker.ibor.intern.CodeDictionaries;
+import com.kmakker.ibor.jodi.JodiCorporateActionRepository;
+import com.kmakker.ibor.jodi.JodiFxRateRepository;
+import com.kmakker.ibor.jodi.JodiPositionsRepository;
+import com.kmakker.ibor.jodi.JodiReturnHistoryRepository;
+import com.kmakker.ibor.jodi.JodiReturnHistoryRepository.DailyPrice;
+import com.kmakker.ibor.service.DataVersionService;
+import com.kmakker.ibor.service.HistoricalVarService;
+import com.kmakker.ibor.service.PriceAdjustmentService;
+import com.kmakker.ibor.service.RequestCoalescer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HistoricalVarService.getVar with in-memory repositories and a fixed data version, so the
+ * 250-day x 5000-instrument return matrix is built once in setup and every call measures the
+ * per-request work: netting the book, one gathered dot product per historical scenario, the sort
+ * and the tail measures.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistoricalVarBenchmark {
+    private static final int SCENARIOS = 250;
+    private static final int WIDTH = 5000;
+
+    @Param({"100", "1000", "5000"})
+    int positions;
+
+    private HistoricalVarService service;
+    private final LocalDate asOf = Fixtures.START.plusDays(SCENARIOS);
+
+    @Setup
+    public void setup() {
+        List<LocalDate> days = new ArrayList<>(SCENARIOS + 1);
+        for (int d = 0; d <= SCENARIOS; d++) days.add(Fixtures.START.plusDays(d));
+        SplittableRandom rnd = new SplittableRandom(42);
+        List<DailyPrice> prices = new ArrayList<>(WIDTH * days.size());
+        for (int i = 0; i < WIDTH; i++) {
+            double price = 100;
+            for (LocalDate day : days) {
+                prices.add(new DailyPrice("EQ-" + i, day, price));
+                price *= 1 + rnd.nextDouble(-0.05, 0.05);
+            }
+        }
+        List<PositionDTO> book = Fixtures.positions(positions);
+
+        JodiReturnHistoryRepository history = new JodiReturnHistoryRepository(null) {
+            @Override
+            public List<LocalDate> findPriceDays(LocalDate day, int count) {
+                return days;
+            }
+
+            @Override
+            public List<DailyPrice> findDailyPrices(LocalDate from, LocalDate to) {
+                return prices;
+            }
+        };
+        JodiCorporateActionRepository corporateActions = new JodiCorporateActionRepository(null) {
+            @Override
+            public List<String> findInstrumentCodesWithActions(LocalDate from, LocalDate to) {
+                return List.of();
+            }
+        };
+        JodiPositionsRepository positionsRepository = new JodiPositionsRepository(null) {
+            @Override
+            public List<PositionDTO> findPositions(LocalDate day, String portfolioCode, String accountCode,
+                                                   Integer page, Integer size) {
+                return book;
+            }
+        };
+        JodiFxRateRepository fxRepository = new JodiFxRateRepository(null) {
+            @Override
+            public List<FxRateDTO> findFxRatesAtOrBefore(Collection<String> from, String to, LocalDate day) {
+                return List.of();
+            }
+
+            @Override
+            public boolean currencyExists(String currencyCode) {
+                return true;
+            }
+        };
+        DataVersionService dataVersions = new DataVersionService(null, false) {
+            @Override
+            public Optional<String> etag(String... scopes) {
+                return Optional.of("W/\"1\"");
+            }
+        };
+        service = new HistoricalVarService(history,
+                new PriceAdjustmentService(corporateActions, dataVersions, 1),
+                positionsRepository, fxRepository, new CodeDictionaries(), dataVersions,
+                new RequestCoalescer(new SimpleMeterRegistry()), WIDTH, 1, 0);
+        service.getVar("P-ALPHA", asOf, SCENARIOS, null, null);   // builds and caches the matrix
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.destroy();
+    }
+
+    @Benchmark
+    public VarResponse getVar() {
+        return service.getVar("P-ALPHA", asOf, SCENARIOS, null, null);
+    }
+}
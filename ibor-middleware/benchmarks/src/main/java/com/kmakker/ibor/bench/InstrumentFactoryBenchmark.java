@@ -0,0 +1,38 @@
+package com.kmakker.ibor.bench;
+
+import com.kmakker.ibor.model.instrument.InstrumentFactory;
+import org.jooq.Record;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/** InstrumentFactory.fromRecord over a batch of vw_instrument-shaped records of one type. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstrumentFactoryBenchmark {
+
+    @Param({"100", "10000"})
+    int rows;
+
+    @Param({"EQUITY", "BOND", "FUTURES", "OPTIONS"})
+    String instrumentType;
+
+    private Record[] records;
+
+    @Setup
+    public void setup() {
+        records = Fixtures.instrumentRecords(rows, instrumentType);
+    }
+
+    @Benchmark
+    public void fromRecord(Blackhole bh) {
+        for (Record r : records) {
+            bh.consume(InstrumentFactory.fromRecord(r));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.kmakker.ibor.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.kmakker.ibor.dto.PositionDTO;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encoding a page of positions the way the HTTP message converters do: JSON vs CBOR vs Smile,
+ * plus JSON behind gzip (server.compression). Mappers are configured like Spring Boot's
+ * (ISO dates, NON_NULL from the DTO). Encoded sizes are printed once per trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadEncodingBenchmark {
+
+    public enum Encoding { JSON, JSON_GZIP, CBOR, SMILE, SMILE_GZIP }
+
+    @Param({"10000"})
+    int rows;
+
+    @Param
+    Encoding encoding;
+
+    private List<PositionDTO> positions;
+    private ObjectMapper mapper;
+    private boolean gzip;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(4 << 20);
+
+    @Setup
+    public void setup() throws IOException {
+        positions = Fixtures.positions(rows);
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        mapper = switch (encoding) {
+            case JSON, JSON_GZIP -> builder.build();
+            case CBOR -> builder.factory(new CBORFactory()).build();
+            case SMILE, SMILE_GZIP -> builder.factory(SmileFactory.builder()
+                    .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES).build()).build();
+        };
+        gzip = encoding == Encoding.JSON_GZIP || encoding == Encoding.SMILE_GZIP;
+        System.out.printf("%n%s: %,d bytes for %,d positions%n", encoding, encode(), rows);
+    }
+
+    @Benchmark
+    public int encode() throws IOException {
+        out.reset();
+        if (gzip) {
+            try (OutputStream z = new GZIPOutputStream(out, 8192)) {
+                mapper.writeValue(z, positions);
+            }
+        } else {
+            mapper.writeValue(out, positions);
+        }
+        return out.size();
+    }
+}
@@ -0,0 +1,50 @@
+package com.kmakker.ibor.bench;
+
+import com.kmakker.ibor.dto.PositionDTO;
+import com.kmakker.ibor.jodi.JodiPositionsRepository;
+import org.jooq.Record;
+import org.jooq.Result;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.jooq.tools.jdbc.MockConnection;
+import org.jooq.tools.jdbc.MockResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JodiPositionsRepository.findPositions against a jOOQ mock connection that answers every query
+ * with a fixed page of rows, so the measured work is result handling and row mapping to
+ * PositionDTO rather than the database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PositionRowMappingBenchmark {
+
+    @Param({"50", "1000", "10000"})
+    int rows;
+
+    private JodiPositionsRepository repository;
+    private final LocalDate asOf = Fixtures.START.plusDays(60);
+
+    @Setup
+    public void setup() {
+        Record[] records = Fixtures.positionRecords(rows);
+        Result<Record> page = DSL.using(SQLDialect.POSTGRES).newResult(records[0].fields());
+        page.addAll(Arrays.asList(records));
+        MockConnection connection = new MockConnection(ctx -> new MockResult[]{new MockResult(page.size(), page)});
+        repository = new JodiPositionsRepository(DSL.using(connection, SQLDialect.POSTGRES));
+    }
+
+    @Benchmark
+    public List<PositionDTO> findPositions() {
+        return repository.findPositions(asOf, "P-ALPHA", null, 1, rows);
+    }
+}
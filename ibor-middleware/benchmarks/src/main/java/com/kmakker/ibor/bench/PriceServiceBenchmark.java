@@ -0,0 +1,81 @@
+package com.kmakker.ibor.bench;
+
+import com.kmakker.ibor.dto.FxRateDTO;
+import com.kmakker.ibor.dto.PriceRowDTO;
+import com.kmakker.ibor.intern.CodeDictionaries;
+import com.kmakker.ibor.jodi.JodiFxRateRepository;
+import com.kmakker.ibor.jodi.JodiPriceRepository;
+import com.kmakker.ibor.service.PriceAdjustmentService;
+import com.kmakker.ibor.service.PriceService;
+import com.kmakker.ibor.service.RequestCoalescer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PriceService.getPrices with in-memory repositories, so only the service's own work is measured:
+ * no conversion (USD), direct pair (EUR→USD rates, base EUR on USD prices) and USD triangulation
+ * (EUR prices into GBP). Split/dividend adjustment is off, so its service is never called.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PriceServiceBenchmark {
+
+    @Param({"30", "365", "3650"})
+    int days;
+
+    /** NONE = no base currency, DIRECT = one direct/inverse pair, TRIANGULATE = via USD. */
+    @Param({"NONE", "DIRECT", "TRIANGULATE"})
+    String conversion;
+
+    private PriceService service;
+    private LocalDate from;
+    private LocalDate to;
+    private String baseCurrency;
+
+    @Setup
+    public void setup() {
+        from = Fixtures.START;
+        to = Fixtures.START.plusDays(days - 1);
+        String priceCcy = conversion.equals("TRIANGULATE") ? "EUR" : "USD";
+        baseCurrency = switch (conversion) {
+            case "DIRECT" -> "EUR";
+            case "TRIANGULATE" -> "GBP";
+            default -> null;
+        };
+
+        List<PriceRowDTO> prices = Fixtures.prices(days, priceCcy);
+        List<FxRateDTO> eurUsd = Fixtures.fxRates(days, "EUR", "USD", 1.08);
+        List<FxRateDTO> gbpUsd = Fixtures.fxRates(days, "GBP", "USD", 1.27);
+
+        JodiPriceRepository priceRepository = new JodiPriceRepository(null) {
+            @Override
+            public List<PriceRowDTO> findPrices(String code, LocalDate f, LocalDate t, String source) {
+                return prices;
+            }
+        };
+        JodiFxRateRepository fxRepository = new JodiFxRateRepository(null) {
+            @Override
+            public List<FxRateDTO> findFxRatesBothDirections(String a, String b, LocalDate f, LocalDate t) {
+                String pair = a + b;
+                if (pair.contains("EUR") && pair.contains("USD")) return eurUsd;
+                if (pair.contains("GBP") && pair.contains("USD")) return gbpUsd;
+                return List.of();
+            }
+        };
+        service = new PriceService(priceRepository, fxRepository, new CodeDictionaries(),
+                new PriceAdjustmentService(null, null, 1), new RequestCoalescer(new SimpleMeterRegistry()));
+    }
+
+    @Benchmark
+    public List<PriceRowDTO> getPrices() {
+        return service.getPrices("EQ-SYN", from, to, null, baseCurrency, false);
+    }
+}
@@ -2,8 +2,10 @@ package com.kmakker.ibor;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class IborApplication {
     public static void main(String[] args) {
         SpringApplication.run(IborApplication.class, args);
@@ -0,0 +1,54 @@
+package com.kmakker.ibor.bulkhead;
+
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A named route group with a fixed number of concurrent requests. Requests that cannot get a
+ * permit within <code>maxWaitMs</code> are rejected instead of queueing behind the group's
+ * database work.
+ */
+public final class Bulkhead {
+    private final String name;
+    private final List<String> pathPrefixes;
+    private final int maxConcurrent;
+    private final long maxWaitMs;
+    private final Semaphore permits;
+
+    public Bulkhead(String name, List<String> pathPrefixes, int maxConcurrent, long maxWaitMs) {
+        if (maxConcurrent < 1) throw new IllegalArgumentException("bulkhead " + name + " needs at least one permit");
+        this.name = name;
+        this.pathPrefixes = List.copyOf(pathPrefixes);
+        this.maxConcurrent = maxConcurrent;
+        this.maxWaitMs = Math.max(0, maxWaitMs);
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int maxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int inFlight() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    boolean matches(String path) {
+        for (String prefix : pathPrefixes) {
+            if (path.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    boolean tryAcquire() throws InterruptedException {
+        return maxWaitMs == 0 ? permits.tryAcquire() : permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+    }
+
+    void release() {
+        permits.release();
+    }
+}
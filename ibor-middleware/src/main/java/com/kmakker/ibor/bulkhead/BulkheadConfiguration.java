@@ -0,0 +1,66 @@
+package com.kmakker.ibor.bulkhead;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.util.List;
+
+/**
+ * Route groups for {@link BulkheadFilter}, sized against the Hikari pool:
+ *
+ * <ul>
+ *   <li>One connection per permit for analytics, positions and default requests.</li>
+ *   <li>Two per permit for context bundles, which run their lineage and price queries side by side.</li>
+ *   <li>Connections taken outside any permit: the firm-exposure partition workers, the slow-query
+ *       EXPLAIN thread and the scheduler thread shared by the pollers.</li>
+ * </ul>
+ *
+ * <p>With the defaults this is 6 + 7 + 2 x 2 + 3 + 3 + 1 + 1 = 25, the pool size, so no group waits
+ * on another for a connection. A warning is logged at startup when the settings exceed the pool.</p>
+ */
+@Slf4j
+@Configuration(proxyBeanMethods = false)
+public class BulkheadConfiguration {
+    /** Slow-query EXPLAIN thread and the fixed-delay scheduler thread. */
+    static final int BACKGROUND_CONNECTIONS = 2;
+    static final int CONTEXT_CONNECTIONS_PER_REQUEST = 2;
+
+    @Bean
+    public FilterRegistrationBean<BulkheadFilter> bulkheadFilter(
+            MeterRegistry registry,
+            @Value("${ibor.bulkhead.max-wait-ms:50}") long maxWaitMs,
+            @Value("${ibor.bulkhead.analytics.max-concurrent:6}") int analytics,
+            @Value("${ibor.bulkhead.positions.max-concurrent:7}") int positions,
+            @Value("${ibor.bulkhead.context.max-concurrent:2}") int context,
+            @Value("${ibor.bulkhead.default.max-concurrent:3}") int other,
+            @Value("${ibor.firm-exposure.parallelism:3}") int firmExposureWorkers,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize) {
+        int budget = connectionBudget(analytics, positions, context, other, firmExposureWorkers);
+        if (budget > poolSize) {
+            log.warn("Bulkhead limits can take {} connections but the Hikari pool has {}; "
+                    + "requests may wait on the pool instead of being rejected", budget, poolSize);
+        }
+        List<Bulkhead> groups = List.of(
+                new Bulkhead("analytics", List.of("/api/analytics/", "/api/pnl"), analytics, maxWaitMs),
+                new Bulkhead("context", List.of("/api/context"), context, maxWaitMs),
+                new Bulkhead("positions", List.of("/api/positions"), positions, maxWaitMs));
+        Bulkhead fallback = new Bulkhead("default", List.of("/api/"), other, maxWaitMs);
+
+        FilterRegistrationBean<BulkheadFilter> registration =
+                new FilterRegistrationBean<>(new BulkheadFilter(groups, fallback, registry));
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+
+    /** Connections the request groups and the fixed background users can hold at once. */
+    static int connectionBudget(int analytics, int positions, int context, int other, int firmExposureWorkers) {
+        return analytics + positions + CONTEXT_CONNECTIONS_PER_REQUEST * context + other
+                + firmExposureWorkers + BACKGROUND_CONNECTIONS;
+    }
+}
@@ -0,0 +1,105 @@
+package com.kmakker.ibor.bulkhead;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BulkheadFilter
+ *
+ * <p>Caps concurrent <code>/api</code> requests per route group so that one saturated group
+ * (typically analytics) cannot take every Hikari connection from the others. With virtual-thread
+ * request handling there is no Tomcat pool to push back, so these permits are what bounds
+ * database concurrency.</p>
+ *
+ * <ul>
+ *   <li>A request belongs to the first {@link Bulkhead} whose path prefix matches; anything else
+ *       under <code>/api</code> goes to the fallback group.</li>
+ *   <li>Without a permit after the group's short wait, the request is rejected with
+ *       503 and <code>Retry-After</code> before it reaches a controller or the pool.</li>
+ *   <li><code>/api/batch</code> is not limited here; its sub-requests are, one by one.</li>
+ *   <li>In-flight and rejected counts are published as <code>ibor.bulkhead.inflight</code> and
+ *       <code>ibor.bulkhead.rejected</code>, tagged by group.</li>
+ * </ul>
+ */
+public class BulkheadFilter extends OncePerRequestFilter {
+    private final List<Bulkhead> groups;
+    private final Bulkhead fallback;
+    private final Map<String, Counter> rejected = new HashMap<>();
+
+    public BulkheadFilter(List<Bulkhead> groups, Bulkhead fallback, MeterRegistry registry) {
+        this.groups = List.copyOf(groups);
+        this.fallback = fallback;
+        for (Bulkhead b : this.groups) register(b, registry);
+        register(fallback, registry);
+    }
+
+    private void register(Bulkhead bulkhead, MeterRegistry registry) {
+        Gauge.builder("ibor.bulkhead.inflight", bulkhead, Bulkhead::inFlight)
+                .description("Requests currently holding a bulkhead permit")
+                .tag("group", bulkhead.name())
+                .register(registry);
+        rejected.put(bulkhead.name(), Counter.builder("ibor.bulkhead.rejected")
+                .description("Requests rejected because the route group was at capacity")
+                .tag("group", bulkhead.name())
+                .register(registry));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        // a batch holds no connection itself; each of its sub-requests passes through this filter
+        return !uri.startsWith("/api/") || uri.startsWith("/api/batch");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Bulkhead bulkhead = route(request.getRequestURI());
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            reject(bulkhead, response);
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    Bulkhead route(String path) {
+        for (Bulkhead b : groups) {
+            if (b.matches(path)) return b;
+        }
+        return fallback;
+    }
+
+    private void reject(Bulkhead bulkhead, HttpServletResponse response) throws IOException {
+        rejected.get(bulkhead.name()).increment();
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"status\":503,\"error\":\"" + bulkhead.name()
+                + " requests at capacity (" + bulkhead.maxConcurrent() + "), retry later\"}");
+    }
+}
@@ -6,8 +6,10 @@ import com.kmakker.ibor.dto.analytics.BrinsonAttributionDailyResponse;
 import com.kmakker.ibor.dto.analytics.BrinsonAttributionPeriodResponse;
 import com.kmakker.ibor.dto.analytics.PortfolioReturnResponse;
 import com.kmakker.ibor.service.AnalyticsService;
+import com.kmakker.ibor.service.DataVersionService;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 @Tag(name = "Analytics")
 @RestController
@@ -15,9 +17,17 @@ import org.springframework.web.bind.annotation.*;
 public class AnalyticsController {
 
     private final AnalyticsService svc;
+    private final DataVersionService dataVersions;
 
-    public AnalyticsController(AnalyticsService svc) {
+    public AnalyticsController(AnalyticsService svc, DataVersionService dataVersions) {
         this.svc = svc;
+        this.dataVersions = dataVersions;
+    }
+
+    /** True when the client's copy is current; the response is then already a 304. */
+    private boolean notModified(WebRequest request) {
+        var etag = dataVersions.etag("analytics", "portfolio", "instrument");
+        return etag.isPresent() && request.checkNotModified(etag.get());
     }
 
     // ---------- Portfolio Returns ----------
@@ -25,8 +35,10 @@ public class AnalyticsController {
     public PortfolioReturnResponse getPortfolioReturns(
             @RequestParam String portfolioCode,
             @RequestParam String startDate,
-            @RequestParam String endDate
+            @RequestParam String endDate,
+            WebRequest request
     ) {
+        if (notModified(request)) return null;
         return svc.getPortfolioReturns(portfolioCode, startDate, endDate);
     }
 
@@ -34,8 +46,10 @@ public class AnalyticsController {
     @GetMapping("/returns/securities")
     public SecurityReturnResponse getSecurityReturns(
             @RequestParam String portfolioCode,
-            @RequestParam String asOfDate
+            @RequestParam String asOfDate,
+            WebRequest request
     ) {
+        if (notModified(request)) return null;
         return svc.getSecurityReturns(portfolioCode, asOfDate);
     }
 
@@ -44,8 +58,10 @@ public class AnalyticsController {
     public BenchmarkSegmentResponse getBenchmarkSegments(
             @RequestParam String benchmarkCode,
             @RequestParam String startDate,
-            @RequestParam String endDate
+            @RequestParam String endDate,
+            WebRequest request
     ) {
+        if (notModified(request)) return null;
         return svc.getBenchmarkSegments(benchmarkCode, startDate, endDate);
     }
 
@@ -55,8 +71,10 @@ public class AnalyticsController {
             @RequestParam String portfolioCode,
             @RequestParam String benchmarkCode,
             @RequestParam String startDate,
-            @RequestParam String endDate
+            @RequestParam String endDate,
+            WebRequest request
     ) {
+        if (notModified(request)) return null;
         return svc.getDailyBrinsonAttribution(portfolioCode, benchmarkCode, startDate, endDate);
     }
 
@@ -66,8 +84,10 @@ public class AnalyticsController {
             @RequestParam String portfolioCode,
             @RequestParam String benchmarkCode,
             @RequestParam String startDate,
-            @RequestParam String endDate
+            @RequestParam String endDate,
+            WebRequest request
     ) {
+        if (notModified(request)) return null;
         return svc.getPeriodBrinsonAttribution(portfolioCode, benchmarkCode, startDate, endDate);
     }
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.kmakker.ibor.controller;
+
+import com.kmakker.ibor.dto.BatchRequest;
+import com.kmakker.ibor.dto.BatchResponse;
+import com.kmakker.ibor.service.BatchService;
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/batch")
+public class BatchController {
+    private final BatchService batchService;
+
+    public BatchController(BatchService batchService) {
+        this.batchService = batchService;
+    }
+
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Run several GET /api requests concurrently; results in request order, failures per item")
+    public ResponseEntity<BatchResponse> execute(@RequestBody BatchRequest request) {
+        return ResponseEntity.ok(batchService.execute(request));
+    }
+}
@@ -0,0 +1,51 @@
+package com.kmakker.ibor.controller;
+
+import com.kmakker.ibor.dto.CashProjectionResponse;
+import com.kmakker.ibor.service.CashProjectionService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.LocalDate;
+
+@Tag(name = "Cash")
+@RestController
+@RequestMapping("/api/cash/projection")
+public class CashProjectionController {
+    private static final String CONTRACT_VERSION = "1";
+    private final CashProjectionService cashProjectionService;
+
+    public CashProjectionController(CashProjectionService cashProjectionService) {
+        this.cashProjectionService = cashProjectionService;
+    }
+
+    @GetMapping
+    @Operation(summary = "Projected net cash per portfolio, currency and value date, with the drivers of each bucket")
+    public ResponseEntity<CashProjectionResponse> getProjection(
+            @Parameter(description = "Portfolio Code (e.g. 'P-ALPHA'); omit for all portfolios")
+            @RequestParam(value = "portfolioCode", required = false) String portfolioCode,
+            @Parameter(description = "Currency (e.g. 'USD'); omit for all currencies")
+            @RequestParam(value = "currency", required = false) String currency,
+            @Parameter(description = "First value date (YYYY-MM-DD, default today)")
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @Parameter(description = "Last value date (YYYY-MM-DD, default from + 90 days)")
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            WebRequest request) {
+        // the ladder revision moves only when a bucket changes, so pollers mostly get 304s
+        String etag = cashProjectionService.etag();
+        if (etag != null && request.checkNotModified(etag)) {
+            return null;   // 304, nothing read
+        }
+        var response = cashProjectionService.getProjection(portfolioCode, currency, from, to);
+        return ResponseEntity.ok()
+                .header("x-contract-version", CONTRACT_VERSION)
+                .body(response);
+    }
+}
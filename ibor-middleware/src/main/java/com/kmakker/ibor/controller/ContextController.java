@@ -0,0 +1,53 @@
+package com.kmakker.ibor.controller;
+
+import com.kmakker.ibor.dto.ContextBundleResponse;
+import com.kmakker.ibor.service.ContextBundleService;
+import com.kmakker.ibor.service.DataVersionService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api/context")
+public class ContextController {
+    private static final String CONTRACT_VERSION = "1";
+    private final ContextBundleService contextBundleService;
+    private final DataVersionService dataVersions;
+
+    public ContextController(ContextBundleService contextBundleService, DataVersionService dataVersions) {
+        this.contextBundleService = contextBundleService;
+        this.dataVersions = dataVersions;
+    }
+
+    @GetMapping("/{portfolioCode}")
+    @Operation(summary = "Positions, top-N drill-downs and recent prices for a portfolio in one call")
+    public ResponseEntity<ContextBundleResponse> getBundle(
+            @PathVariable String portfolioCode,
+            @Parameter(description = "As-of date (YYYY-MM-DD)", required = true)
+            @RequestParam("asOf") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf,
+            @Parameter(description = "Number of positions to drill into, by absolute market value (default 10, max 50)")
+            @RequestParam(value = "topN", required = false) Integer topN,
+            @Parameter(description = "Days of price history ending at asOf (default 30, max 366)")
+            @RequestParam(value = "priceDays", required = false) Integer priceDays,
+            @Parameter(description = "Price source filter (optional, e.g. 'BBG')")
+            @RequestParam(value = "source", required = false) String source,
+            WebRequest request) {
+        var etag = dataVersions.etag("position:" + portfolioCode, "portfolio", "instrument", "price", "trade");
+        if (etag.isPresent() && request.checkNotModified(etag.get())) {
+            return null;   // 304, nothing loaded
+        }
+        var bundle = contextBundleService.getBundle(portfolioCode, asOf, topN, priceDays, source);
+        return ResponseEntity.ok()
+                .header("x-contract-version", CONTRACT_VERSION)
+                .body(bundle);
+    }
+}
@@ -0,0 +1,50 @@
+package com.kmakker.ibor.controller;
+
+import com.kmakker.ibor.dto.analytics.CovarianceResponse;
+import com.kmakker.ibor.service.CovarianceService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.LocalDate;
+
+@Tag(name = "Analytics")
+@RestController
+@RequestMapping("/api/analytics/covariance")
+public class CovarianceController {
+    private static final String CONTRACT_VERSION = "1";
+    private final CovarianceService covarianceService;
+
+    public CovarianceController(CovarianceService covarianceService) {
+        this.covarianceService = covarianceService;
+    }
+
+    @GetMapping
+    @Operation(summary = "Daily return covariance (or correlation) of a portfolio's instruments, served from memory")
+    public ResponseEntity<CovarianceResponse> getCovariance(
+            @Parameter(description = "Portfolio Code (e.g. 'P-ALPHA')", required = true)
+            @RequestParam("portfolioCode") String portfolioCode,
+            @Parameter(description = "As-of date of the positions (YYYY-MM-DD)", required = true)
+            @RequestParam("asOf") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf,
+            @Parameter(description = "ewma (default) or equal (equal-weight window)")
+            @RequestParam(value = "method", required = false) String method,
+            @Parameter(description = "Return correlations instead of covariances")
+            @RequestParam(value = "correlation", defaultValue = "false") boolean correlation,
+            WebRequest request) {
+        String etag = covarianceService.etag(portfolioCode);
+        if (etag != null && request.checkNotModified(etag)) {
+            return null;   // 304, nothing loaded
+        }
+        var response = covarianceService.getCovariance(portfolioCode, asOf, method, correlation);
+        return ResponseEntity.ok()
+                .header("x-contract-version", CONTRACT_VERSION)
+                .body(response);
+    }
+}
@@ -0,0 +1,48 @@
+package com.kmakker.ibor.controller;
+
+import com.kmakker.ibor.dto.DerivativeExposureResponse;
+import com.kmakker.ibor.service.DataVersionService;
+import com.kmakker.ibor.service.DerivativeExposureService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api/positions")
+public class DerivativeExposureController {
+    private static final String CONTRACT_VERSION = "1";
+    private final DerivativeExposureService derivativeExposureService;
+    private final DataVersionService dataVersions;
+
+    public DerivativeExposureController(DerivativeExposureService derivativeExposureService,
+                                        DataVersionService dataVersions) {
+        this.derivativeExposureService = derivativeExposureService;
+        this.dataVersions = dataVersions;
+    }
+
+    @GetMapping("/derivatives")
+    @Operation(summary = "Delta-adjusted notional and Greeks for futures and option positions")
+    public ResponseEntity<DerivativeExposureResponse> getDerivativeExposure(
+            @Parameter(description = "Portfolio Code (e.g. 'P-ALPHA')", required = true)
+            @RequestParam("portfolioCode") String portfolioCode,
+            @Parameter(description = "As-of date (YYYY-MM-DD)", required = true)
+            @RequestParam("asOf") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf,
+            WebRequest request) {
+        var etag = dataVersions.etag("position:" + portfolioCode, "portfolio", "instrument", "price");
+        if (etag.isPresent() && request.checkNotModified(etag.get())) {
+            return null;   // 304, nothing loaded
+        }
+        var exposure = derivativeExposureService.getExposure(portfolioCode, asOf);
+        return ResponseEntity.ok()
+                .header("x-contract-version", CONTRACT_VERSION)
+                .body(exposure);
+    }
+}
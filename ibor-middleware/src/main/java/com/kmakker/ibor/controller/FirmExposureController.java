@@ -0,0 +1,51 @@
+package com.kmakker.ibor.controller;
+
+import com.kmakker.ibor.dto.FirmExposureResponse;
+import com.kmakker.ibor.service.DataVersionService;
+import com.kmakker.ibor.service.FirmExposureService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api/positions")
+public class FirmExposureController {
+    private static final String CONTRACT_VERSION = "1";
+    private final FirmExposureService firmExposureService;
+    private final DataVersionService dataVersions;
+
+    public FirmExposureController(FirmExposureService firmExposureService, DataVersionService dataVersions) {
+        this.firmExposureService = firmExposureService;
+        this.dataVersions = dataVersions;
+    }
+
+    @GetMapping("/firm-exposure")
+    @Operation(summary = "Firm-wide exposure per instrument across every portfolio, largest first")
+    public ResponseEntity<FirmExposureResponse> getFirmExposure(
+            @Parameter(description = "As-of date (YYYY-MM-DD)", required = true)
+            @RequestParam("asOf") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf,
+            @Parameter(description = "Currency market values are converted to (default 'USD')")
+            @RequestParam(value = "baseCurrency", required = false) String baseCurrency,
+            @Parameter(description = "Limit to one instrument (optional, e.g. 'EQ-IBM')")
+            @RequestParam(value = "instrumentCode", required = false) String instrumentCode,
+            @Parameter(description = "Number of instruments returned (default 20, max 500)")
+            @RequestParam(value = "topN", required = false) Integer topN,
+            WebRequest request) {
+        var etag = dataVersions.etag("portfolio", "instrument", "price", "position", "fx_rate", "reference");
+        if (etag.isPresent() && request.checkNotModified(etag.get())) {
+            return null;   // 304, nothing loaded
+        }
+        var exposure = firmExposureService.getFirmExposure(asOf, baseCurrency, instrumentCode, topN);
+        return ResponseEntity.ok()
+                .header("x-contract-version", CONTRACT_VERSION)
+                .body(exposure);
+    }
+}
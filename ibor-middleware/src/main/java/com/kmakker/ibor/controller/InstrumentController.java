@@ -1,6 +1,9 @@
 package com.kmakker.ibor.controller;
 
+import com.kmakker.ibor.dto.InstrumentBulkResponse;
+import com.kmakker.ibor.dto.InstrumentSearchHitDTO;
 import com.kmakker.ibor.model.instrument.Instrument;
+import com.kmakker.ibor.service.DataVersionService;
 import com.kmakker.ibor.service.InstrumentService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -10,9 +13,11 @@ import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/instruments")
@@ -20,9 +25,40 @@ import java.time.OffsetDateTime;
 
 public class InstrumentController {
     private final InstrumentService instrumentService;
+    private final DataVersionService dataVersions;
 
-    public InstrumentController(InstrumentService instrumentService) {
+    public InstrumentController(InstrumentService instrumentService, DataVersionService dataVersions) {
         this.instrumentService = instrumentService;
+        this.dataVersions = dataVersions;
+    }
+
+    /** True when the client's copy is current; the response is then already a 304. */
+    private boolean notModified(WebRequest request) {
+        var etag = dataVersions.etag("instrument");
+        return etag.isPresent() && request.checkNotModified(etag.get());
+    }
+
+    @GetMapping
+    @Operation(summary = "Bulk instrument lookup for many codes as of one date")
+    @ApiResponse(responseCode = "200", description = "Instruments found; unknown codes listed in notFound")
+    public ResponseEntity<InstrumentBulkResponse> getInstrumentsAsOf(
+            @RequestParam("codes") List<String> codes,
+            @RequestParam("asOf") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOfDate,
+            WebRequest request
+    ) {
+        if (notModified(request)) return null;
+        return ResponseEntity.ok(instrumentService.getInstrumentsAsOf(codes, asOfDate));
+    }
+
+    @GetMapping("/search")
+    @Operation(summary = "Search instruments by code, name or ticker (prefix/substring)")
+    public ResponseEntity<List<InstrumentSearchHitDTO>> search(
+            @RequestParam("q") String query,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            WebRequest request
+    ) {
+        if (notModified(request)) return null;
+        return ResponseEntity.ok(instrumentService.search(query, limit));
     }
 
     @GetMapping("/{instrumentCode}")
@@ -31,8 +67,10 @@ public class InstrumentController {
     @ApiResponse(responseCode = "404", description = "Instrument not found")
     public ResponseEntity<?> getInstrumentAsOf(
             @PathVariable @NotBlank String instrumentCode,
-            @RequestParam("asOf") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOfDate
+            @RequestParam("asOf") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOfDate,
+            WebRequest request
     ) {
+        if (notModified(request)) return null;
         return instrumentService.getInstrumentAsOf(instrumentCode, asOfDate)
                 .<ResponseEntity<?>>map(ResponseEntity::ok)
                 .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(
@@ -0,0 +1,56 @@
+package com.kmakker.ibor.controller;
+
+import com.kmakker.ibor.dto.analytics.MoversResponse;
+import com.kmakker.ibor.service.DataVersionService;
+import com.kmakker.ibor.service.MoversService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.LocalDate;
+
+@Tag(name = "Analytics")
+@RestController
+@RequestMapping("/api/analytics/movers")
+public class MoversController {
+    private static final String CONTRACT_VERSION = "1";
+    private final MoversService moversService;
+    private final DataVersionService dataVersions;
+
+    public MoversController(MoversService moversService, DataVersionService dataVersions) {
+        this.moversService = moversService;
+        this.dataVersions = dataVersions;
+    }
+
+    @GetMapping
+    @Operation(summary = "Top and bottom instruments by day-over-day P&L, contribution or price return")
+    public ResponseEntity<MoversResponse> getMovers(
+            @Parameter(description = "Portfolio Code (e.g. 'P-ALPHA'); omit for firm-wide")
+            @RequestParam(value = "portfolioCode", required = false) String portfolioCode,
+            @Parameter(description = "As-of date (YYYY-MM-DD)", required = true)
+            @RequestParam("asOf") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf,
+            @Parameter(description = "pnl (default), contribution or return")
+            @RequestParam(value = "rankBy", required = false) String rankBy,
+            @Parameter(description = "Instruments in each of top and bottom (default 10, max 500)")
+            @RequestParam(value = "n", required = false) Integer n,
+            @Parameter(description = "Base currency (default USD)")
+            @RequestParam(value = "baseCurrency", required = false) String baseCurrency,
+            WebRequest request) {
+        String positionScope = portfolioCode == null || portfolioCode.isBlank() ? "position" : "position:" + portfolioCode;
+        var etag = dataVersions.etag(positionScope, "portfolio", "instrument", "price", "fx_rate", "analytics");
+        if (etag.isPresent() && request.checkNotModified(etag.get())) {
+            return null;   // 304, nothing loaded
+        }
+        var response = moversService.getMovers(portfolioCode, asOf, rankBy, n, baseCurrency);
+        return ResponseEntity.ok()
+                .header("x-contract-version", CONTRACT_VERSION)
+                .body(response);
+    }
+}
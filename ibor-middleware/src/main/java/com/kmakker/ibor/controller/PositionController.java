@@ -1,6 +1,10 @@
 package com.kmakker.ibor.controller;
 
 import com.kmakker.ibor.dto.PositionDTO;
+import com.kmakker.ibor.dto.PositionDiffResponse;
+import com.kmakker.ibor.dto.PositionTimeSeriesResponse;
+import com.kmakker.ibor.service.DataVersionService;
+import com.kmakker.ibor.service.PositionHistoryService;
 import com.kmakker.ibor.service.PositionService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -11,6 +15,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -21,9 +26,15 @@ import java.util.List;
 public class PositionController {
     private static final String CONTRACT_VERSION = "1";
     private final PositionService positionService;
+    private final PositionHistoryService positionHistoryService;
+    private final DataVersionService dataVersions;
 
-    public PositionController(PositionService positionService) {
+    public PositionController(PositionService positionService,
+                              PositionHistoryService positionHistoryService,
+                              DataVersionService dataVersions) {
         this.positionService = positionService;
+        this.positionHistoryService = positionHistoryService;
+        this.dataVersions = dataVersions;
     }
 
     @GetMapping("/positions")
@@ -38,18 +49,70 @@ public class PositionController {
             @Parameter(description = "Page number (default 1)", required = false)
             @RequestParam(value = "page", required = false) Integer page,
             @Parameter(description = "Page size (default 100, max 500)", required = false)
-            @RequestParam(value = "size", required = false) Integer size) {
+            @RequestParam(value = "size", required = false) Integer size,
+            @Parameter(description = "Also value each row in this currency (optional, e.g. 'USD')", required = false)
+            @RequestParam(value = "baseCurrency", required = false) String baseCurrency,
+            WebRequest request) {
+        var etag = (baseCurrency == null || baseCurrency.isBlank())
+                ? dataVersions.etag("position:" + portfolioCode, "portfolio", "instrument", "price")
+                : dataVersions.etag("position:" + portfolioCode, "portfolio", "instrument", "price", "fx_rate");
+        if (etag.isPresent() && request.checkNotModified(etag.get())) {
+            return null;   // 304, nothing loaded
+        }
         if (page == null || page < 1) {
             page = 1;
         }
         if (size == null || size <= 0) {
             size = 100;
         }
-        List<PositionDTO> positions = positionService.getPositions(asOf, portfolioCode, accountCode, page, size);
+        List<PositionDTO> positions = positionService.getPositions(asOf, portfolioCode, accountCode, page, size, baseCurrency);
         return ResponseEntity
                 .ok()
                 .header("x-contract-version", CONTRACT_VERSION)
                 .body(positions);
     }
-}
 
+    @GetMapping("/positions/diff")
+    @Operation(summary = "Instruments whose quantity, price or market value changed between two as-of dates")
+    public ResponseEntity<PositionDiffResponse> getPositionDiff(
+            @Parameter(description = "Portfolio Code (e.g. 'P-ALPHA')", required = true)
+            @RequestParam("portfolioCode") String portfolioCode,
+            @Parameter(description = "Earlier as-of date (YYYY-MM-DD)", required = true)
+            @RequestParam("asOf1") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf1,
+            @Parameter(description = "Later as-of date (YYYY-MM-DD)", required = true)
+            @RequestParam("asOf2") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf2,
+            WebRequest request) {
+        var etag = dataVersions.etag("position:" + portfolioCode, "portfolio", "instrument", "price");
+        if (etag.isPresent() && request.checkNotModified(etag.get())) {
+            return null;   // 304, nothing loaded
+        }
+        var diff = positionService.getPositionDiff(portfolioCode, asOf1, asOf2);
+        return ResponseEntity
+                .ok()
+                .header("x-contract-version", CONTRACT_VERSION)
+                .body(diff);
+    }
+
+    @GetMapping("/positions/timeseries")
+    @Operation(summary = "Daily positions for a portfolio (optionally one instrument) over a date range")
+    public ResponseEntity<PositionTimeSeriesResponse> getTimeSeries(
+            @Parameter(description = "Portfolio Code (e.g. 'P-ALPHA')", required = true)
+            @RequestParam("portfolioCode") String portfolioCode,
+            @Parameter(description = "Instrument Code filter (optional, e.g. 'EQ-IBM')", required = false)
+            @RequestParam(value = "instrumentCode", required = false) String instrumentCode,
+            @Parameter(description = "First date (YYYY-MM-DD)", required = true)
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @Parameter(description = "Last date (YYYY-MM-DD), inclusive", required = true)
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            WebRequest request) {
+        var etag = dataVersions.etag("position:" + portfolioCode, "portfolio", "instrument", "price");
+        if (etag.isPresent() && request.checkNotModified(etag.get())) {
+            return null;   // 304, nothing loaded
+        }
+        var series = positionHistoryService.getTimeSeries(portfolioCode, instrumentCode, from, to);
+        return ResponseEntity
+                .ok()
+                .header("x-contract-version", CONTRACT_VERSION)
+                .body(series);
+    }
+}
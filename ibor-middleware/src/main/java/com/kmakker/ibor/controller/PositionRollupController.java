@@ -0,0 +1,52 @@
+package com.kmakker.ibor.controller;
+
+import com.kmakker.ibor.dto.ExposureRollupResponse;
+import com.kmakker.ibor.service.DataVersionService;
+import com.kmakker.ibor.service.PositionRollupService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/positions")
+public class PositionRollupController {
+    private static final String CONTRACT_VERSION = "1";
+    private final PositionRollupService rollupService;
+    private final DataVersionService dataVersions;
+
+    public PositionRollupController(PositionRollupService rollupService, DataVersionService dataVersions) {
+        this.rollupService = rollupService;
+        this.dataVersions = dataVersions;
+    }
+
+    @GetMapping("/rollup")
+    @Operation(summary = "Market value, quantity and weight grouped by strategy / portfolio / type / currency / instrument")
+    public ResponseEntity<ExposureRollupResponse> getRollup(
+            @Parameter(description = "As-of date (YYYY-MM-DD)", required = true)
+            @RequestParam("asOf") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf,
+            @Parameter(description = "One or more portfolio codes (e.g. 'P-ALPHA,P-BETA')", required = true)
+            @RequestParam("portfolioCodes") List<String> portfolioCodes,
+            @Parameter(description = "Rollup levels, outermost first (default 'type,currency,instrument')")
+            @RequestParam(value = "groupBy", required = false) List<String> groupBy,
+            @Parameter(description = "Convert market values to this currency (optional, e.g. 'USD'); without it, groups that mix currencies have no mktValue")
+            @RequestParam(value = "baseCurrency", required = false) String baseCurrency,
+            WebRequest request) {
+        var etag = dataVersions.etag("portfolio", "instrument", "price", "position", "fx_rate", "reference");
+        if (etag.isPresent() && request.checkNotModified(etag.get())) {
+            return null;   // 304, nothing loaded
+        }
+        var rollup = rollupService.getRollup(asOf, portfolioCodes, groupBy, baseCurrency);
+        return ResponseEntity.ok()
+                .header("x-contract-version", CONTRACT_VERSION)
+                .body(rollup);
+    }
+}
@@ -1,25 +1,30 @@
 package com.kmakker.ibor.controller;
 
 import com.kmakker.ibor.dto.PriceRowDTO;
+import com.kmakker.ibor.service.DataVersionService;
 import com.kmakker.ibor.service.PriceService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
 @RestController
-@RequestMapping(path = "/api/prices", produces = MediaType.APPLICATION_JSON_VALUE)
+@RequestMapping(path = "/api/prices", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+        BinaryFormatConfiguration.APPLICATION_SMILE_VALUE})
 @Tag(name = "Prices", description = "Price-related endpoints")
 public class PriceController {
     private final PriceService priceService;
+    private final DataVersionService dataVersions;
 
-    public PriceController(PriceService priceService) {
+    public PriceController(PriceService priceService, DataVersionService dataVersions) {
         this.priceService = priceService;
+        this.dataVersions = dataVersions;
     }
 
     /**
@@ -28,6 +33,7 @@ public class PriceController {
      *  GET /api/prices/EQ-IBM?from=2025-01-01&to=2025-01-10
      *  GET /api/prices/EQ-IBM?from=2025-01-01&to=2025-01-10&source=BBG
      *  GET /api/prices/EQ-IBM?from=2025-01-01&to=2025-01-10&baseCurrency=USD
+     *  GET /api/prices/EQ-IBM?from=2025-01-01&to=2025-01-10&adjusted=true   (split/dividend adjusted)
      */
 
     @GetMapping("/{instrumentCode}")
@@ -36,13 +42,22 @@ public class PriceController {
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
             @RequestParam(required = false) String source,
-            @RequestParam(required = false) String baseCurrency
+            @RequestParam(required = false) String baseCurrency,
+            @RequestParam(defaultValue = "false") boolean adjusted,
+            WebRequest request
     ) {
+        var etag = adjusted
+                ? dataVersions.etag("price:" + instrumentCode, "fx_rate", "instrument", "corporate_action:" + instrumentCode)
+                : dataVersions.etag("price:" + instrumentCode, "fx_rate", "instrument");
+        if (etag.isPresent() && request.checkNotModified(etag.get())) {
+            return null;   // 304, nothing loaded
+        }
         return priceService.getPrices(
                 instrumentCode,
                 from,
                 to,
                 source,
-                baseCurrency);
+                baseCurrency,
+                adjusted);
     }
 }
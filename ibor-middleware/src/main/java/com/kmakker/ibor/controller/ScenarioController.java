@@ -0,0 +1,33 @@
+package com.kmakker.ibor.controller;
+
+import com.kmakker.ibor.dto.analytics.ScenarioRequest;
+import com.kmakker.ibor.dto.analytics.ScenarioResponse;
+import com.kmakker.ibor.service.ScenarioService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@Tag(name = "Analytics")
+@RestController
+@RequestMapping("/api/analytics/scenarios")
+public class ScenarioController {
+    private static final String CONTRACT_VERSION = "1";
+    private final ScenarioService scenarioService;
+
+    public ScenarioController(ScenarioService scenarioService) {
+        this.scenarioService = scenarioService;
+    }
+
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Revalue a portfolio under price and FX shock scenarios; P&L per scenario in request order")
+    public ResponseEntity<ScenarioResponse> run(@RequestBody ScenarioRequest request) {
+        return ResponseEntity.ok()
+                .header("x-contract-version", CONTRACT_VERSION)
+                .body(scenarioService.run(request));
+    }
+}
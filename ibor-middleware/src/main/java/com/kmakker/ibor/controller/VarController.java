@@ -0,0 +1,56 @@
+package com.kmakker.ibor.controller;
+
+import com.kmakker.ibor.dto.analytics.VarResponse;
+import com.kmakker.ibor.service.DataVersionService;
+import com.kmakker.ibor.service.HistoricalVarService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Tag(name = "Analytics")
+@RestController
+@RequestMapping("/api/analytics/var")
+public class VarController {
+    private static final String CONTRACT_VERSION = "1";
+    private final HistoricalVarService varService;
+    private final DataVersionService dataVersions;
+
+    public VarController(HistoricalVarService varService, DataVersionService dataVersions) {
+        this.varService = varService;
+        this.dataVersions = dataVersions;
+    }
+
+    @GetMapping
+    @Operation(summary = "Historical-simulation VaR and expected shortfall over daily price returns")
+    public ResponseEntity<VarResponse> getVar(
+            @Parameter(description = "Portfolio Code (e.g. 'P-ALPHA')", required = true)
+            @RequestParam("portfolioCode") String portfolioCode,
+            @Parameter(description = "As-of date (YYYY-MM-DD)", required = true)
+            @RequestParam("asOf") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf,
+            @Parameter(description = "Price days of history (default 250)")
+            @RequestParam(value = "lookback", required = false) Integer lookback,
+            @Parameter(description = "Confidence levels (default 0.95,0.99)")
+            @RequestParam(value = "confidence", required = false) List<Double> confidence,
+            @Parameter(description = "Base currency (default USD)")
+            @RequestParam(value = "baseCurrency", required = false) String baseCurrency,
+            WebRequest request) {
+        var etag = dataVersions.etag("position:" + portfolioCode, "portfolio", "instrument", "price", "fx_rate");
+        if (etag.isPresent() && request.checkNotModified(etag.get())) {
+            return null;   // 304, nothing loaded
+        }
+        var response = varService.getVar(portfolioCode, asOf, lookback, confidence, baseCurrency);
+        return ResponseEntity.ok()
+                .header("x-contract-version", CONTRACT_VERSION)
+                .body(response);
+    }
+}
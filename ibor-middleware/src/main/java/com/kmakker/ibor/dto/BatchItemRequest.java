@@ -0,0 +1,9 @@
+package com.kmakker.ibor.dto;
+
+import java.util.Map;
+
+public record BatchItemRequest(
+        String id,                  // optional, echoed back on the result
+        String path,                // GET route under /api, e.g. /api/prices/EQ-AAPL
+        Map<String, Object> params  // query parameters; list values repeat the parameter
+) {}
@@ -0,0 +1,18 @@
+package com.kmakker.ibor.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchItemResult(
+        String id,
+        String path,
+        int status,                 // HTTP status of the sub-request; 503 not started, 504 past the deadline
+        JsonNode body,
+        String error,
+        long elapsedMs
+) {
+    public boolean succeeded() {
+        return status >= 200 && status < 300;
+    }
+}
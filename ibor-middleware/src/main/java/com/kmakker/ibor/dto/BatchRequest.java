@@ -0,0 +1,8 @@
+package com.kmakker.ibor.dto;
+
+import java.util.List;
+
+public record BatchRequest(
+        List<BatchItemRequest> requests,
+        Long timeoutMs              // optional, capped by ibor.batch.timeout-ms
+) {}
@@ -0,0 +1,10 @@
+package com.kmakker.ibor.dto;
+
+import java.util.List;
+
+public record BatchResponse(
+        List<BatchItemResult> results,   // same order as the request
+        int succeeded,
+        int failed,
+        long elapsedMs
+) {}
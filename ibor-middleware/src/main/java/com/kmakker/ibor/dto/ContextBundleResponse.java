@@ -0,0 +1,22 @@
+package com.kmakker.ibor.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything the AI gateway needs to answer a question about one portfolio as-of a date:
+ * the positions, drill-downs for the largest of them and their recent price history.
+ */
+public record ContextBundleResponse(
+        String portfolioCode,
+        LocalDate asOf,
+        LocalDate priceFrom,
+        List<PositionDTO> positions,                   // largest |mktValue| first, up to ibor.context.max-positions
+        boolean truncated,                             // the portfolio holds more positions than were returned
+        int totalPositions,                            // every position in the portfolio, returned or not
+        BigDecimal totalMktValue,                      // over every position; null when they span currencies
+        List<PositionDetailDTO> topPositions,          // largest |mktValue| first
+        Map<String, List<PriceRowDTO>> priceHistory    // keyed by instrument code, same order as topPositions
+) {}
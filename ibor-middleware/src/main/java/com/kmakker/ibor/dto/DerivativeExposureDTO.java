@@ -0,0 +1,38 @@
+package com.kmakker.ibor.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * One futures or option position. Greeks are per unit of the instrument (vega and rho per vol /
+ * rate point, theta per day); <code>deltaNotional</code>, <code>positionVega</code> and
+ * <code>positionTheta</code> are scaled by quantity and contract multiplier.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record DerivativeExposureDTO(
+        String instrumentCode,
+        String instrumentType,
+        String model,                 // BLACK_SCHOLES, BLACK_76, LINEAR (futures), or null when unpriceable
+        String optionType,
+        BigDecimal strike,
+        LocalDate expiry,
+        String underlyingCode,
+        BigDecimal quantity,
+        BigDecimal multiplier,
+        BigDecimal price,
+        BigDecimal underlyingPrice,
+        Double volatility,
+        String volatilitySource,      // IMPLIED from the option price, or DEFAULT
+        Double delta,
+        Double gamma,
+        Double vega,
+        Double theta,
+        Double rho,
+        BigDecimal marketValue,       // quantity x multiplier x price
+        BigDecimal deltaNotional,     // quantity x multiplier x delta x underlying price
+        BigDecimal positionVega,
+        BigDecimal positionTheta,
+        String currency
+) {}
@@ -0,0 +1,14 @@
+package com.kmakker.ibor.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+public record DerivativeExposureResponse(
+        String portfolioCode,
+        LocalDate asOf,
+        double riskFreeRate,
+        Map<String, BigDecimal> deltaNotionalByCurrency,
+        List<DerivativeExposureDTO> positions
+) {}
@@ -0,0 +1,12 @@
+package com.kmakker.ibor.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public record ExposureRollupResponse(
+        LocalDate asOf,
+        List<String> portfolioCodes,
+        List<String> groupBy,
+        String baseCurrency,
+        List<ExposureRowDTO> rows      // depth-first: total, then each group followed by its subgroups
+) {}
@@ -0,0 +1,25 @@
+package com.kmakker.ibor.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.math.BigDecimal;
+
+/**
+ * One rollup group. <code>level</code> 0 is the grand total; a level-n row has the first n
+ * requested dimensions set and the rest omitted.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ExposureRowDTO(
+        int level,
+        String strategy,
+        String portfolio,
+        String instrumentType,
+        String currency,
+        String instrument,
+        int positions,
+        BigDecimal quantity,
+        BigDecimal mktValue,           // null when the group mixes currencies (no base currency)
+        String mktValueCurrency,       // null when the group mixes currencies (no base currency)
+        BigDecimal weight,             // share of the grand total market value
+        Integer unconvertedPositions   // positions left out of mktValue for want of an FX rate
+) {}
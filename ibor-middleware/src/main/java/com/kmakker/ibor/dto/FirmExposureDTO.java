@@ -0,0 +1,12 @@
+package com.kmakker.ibor.dto;
+
+import java.math.BigDecimal;
+
+public record FirmExposureDTO(
+        String instrumentCode,
+        String instrumentType,
+        int portfolios,            // portfolios holding the instrument
+        BigDecimal quantity,
+        BigDecimal mktValue,       // in the response's base currency
+        BigDecimal weight          // mktValue / firm gross exposure
+) {}
@@ -0,0 +1,20 @@
+package com.kmakker.ibor.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record FirmExposureResponse(
+        LocalDate asOf,
+        String baseCurrency,
+        String instrumentCode,           // set when the request was filtered to one instrument
+        int portfolios,
+        int positions,
+        Integer unconvertedPositions,    // positions left out for lack of an FX rate; null when none
+        BigDecimal grossExposure,        // sum of |market value| over positions
+        BigDecimal netExposure,
+        List<FirmExposureDTO> exposures  // largest |market value| first
+) {}
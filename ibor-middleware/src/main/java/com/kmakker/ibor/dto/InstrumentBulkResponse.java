@@ -0,0 +1,12 @@
+package com.kmakker.ibor.dto;
+
+import com.kmakker.ibor.model.instrument.Instrument;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public record InstrumentBulkResponse(
+        LocalDate asOf,
+        List<Instrument> instruments,
+        List<String> notFound
+) {}
@@ -0,0 +1,8 @@
+package com.kmakker.ibor.dto;
+
+public record InstrumentSearchHitDTO(
+        String instrumentCode,
+        String instrumentName,
+        String ticker,
+        String instrumentType
+) {}
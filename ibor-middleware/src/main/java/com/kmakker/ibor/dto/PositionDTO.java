@@ -22,5 +22,22 @@ public record PositionDTO (
     @JsonProperty("cost") BigDecimal cost,
     @JsonProperty("unrealizedPnl") BigDecimal unrealizedPnl,
     @JsonProperty("currency") String currency,
-    @JsonProperty("contractMultiplier") BigDecimal contractMultiplier
-) {}
+    @JsonProperty("contractMultiplier") BigDecimal contractMultiplier,
+    @JsonProperty("mktValueBase") BigDecimal mktValueBase,     // mktValue in baseCurrency; null without a base or a rate
+    @JsonProperty("baseCurrency") String baseCurrency
+) {
+    public PositionDTO(LocalDate asOf, LocalDate snapDate, String portfolioId, String instrumentId,
+                       String instrumentName, String ticker, String instrumentType, BigDecimal netQty,
+                       BigDecimal price, String priceSource, BigDecimal mktValue, BigDecimal cost,
+                       BigDecimal unrealizedPnl, String currency, BigDecimal contractMultiplier) {
+        this(asOf, snapDate, portfolioId, instrumentId, instrumentName, ticker, instrumentType, netQty,
+                price, priceSource, mktValue, cost, unrealizedPnl, currency, contractMultiplier, null, null);
+    }
+
+    /** This row with its market value in a base currency added. */
+    public PositionDTO withBaseValue(BigDecimal mktValueBase, String baseCurrency) {
+        return new PositionDTO(asOf, snapDate, portfolioId, instrumentId, instrumentName, ticker, instrumentType,
+                netQty, price, priceSource, mktValue, cost, unrealizedPnl, currency, contractMultiplier,
+                mktValueBase, baseCurrency);
+    }
+}
@@ -0,0 +1,21 @@
+package com.kmakker.ibor.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.math.BigDecimal;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record PositionDiffDTO(
+        String instrumentId,
+        String instrumentName,
+        String instrumentType,
+        String change,              // ADDED / REMOVED / CHANGED
+        BigDecimal netQty1,
+        BigDecimal netQty2,
+        BigDecimal price1,
+        BigDecimal price2,
+        BigDecimal mktValue1,
+        BigDecimal mktValue2,
+        BigDecimal mktValueChange,  // mktValue2 - mktValue1, missing side counted as zero
+        String currency
+) {}
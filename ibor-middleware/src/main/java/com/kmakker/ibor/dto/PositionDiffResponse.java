@@ -0,0 +1,12 @@
+package com.kmakker.ibor.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public record PositionDiffResponse(
+        String portfolioCode,
+        LocalDate asOf1,
+        LocalDate asOf2,
+        int instrumentsCompared,     // held on either date
+        List<PositionDiffDTO> changes
+) {}
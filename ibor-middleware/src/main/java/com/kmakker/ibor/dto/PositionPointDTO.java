@@ -0,0 +1,17 @@
+package com.kmakker.ibor.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record PositionPointDTO(
+        LocalDate asOf,
+        LocalDate snapDate,
+        BigDecimal netQty,
+        BigDecimal price,
+        String priceSource,
+        BigDecimal mktValue,
+        String currency
+) {}
@@ -0,0 +1,10 @@
+package com.kmakker.ibor.dto;
+
+import java.util.List;
+
+public record PositionSeriesDTO(
+        String instrumentId,
+        String instrumentName,
+        String instrumentType,
+        List<PositionPointDTO> points     // one per day the instrument is held, ascending
+) {}
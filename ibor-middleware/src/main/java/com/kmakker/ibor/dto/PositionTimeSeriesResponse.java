@@ -0,0 +1,12 @@
+package com.kmakker.ibor.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public record PositionTimeSeriesResponse(
+        String portfolioCode,
+        String instrumentCode,            // null when the series covers the whole portfolio
+        LocalDate from,
+        LocalDate to,
+        List<PositionSeriesDTO> series    // ordered by instrument code
+) {}
@@ -0,0 +1,20 @@
+package com.kmakker.ibor.dto.analytics;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CovarianceResponse(
+        String portfolioCode,
+        LocalDate asOf,                  // positions date
+        String method,                   // ewma | equal
+        String measure,                  // covariance | correlation
+        LocalDate priceDay,              // newest price day in the matrix
+        int observations,                // daily returns behind the estimate
+        Double lambda,                   // EWMA decay; null for equal weight
+        List<String> instruments,        // row/column order of matrix
+        List<String> missingInstruments, // held but without price history; null when none
+        double[][] matrix                // daily, symmetric
+) {}
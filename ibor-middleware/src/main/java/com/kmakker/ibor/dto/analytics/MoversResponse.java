@@ -0,0 +1,35 @@
+package com.kmakker.ibor.dto.analytics;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record MoversResponse(
+        String portfolioCode,        // null for firm-wide
+        LocalDate asOf,
+        LocalDate priorDay,          // latest price day before asOf
+        String baseCurrency,
+        String rankBy,               // pnl | contribution | return
+        int instruments,             // instruments held in scope
+        Integer unpricedInstruments, // without a price on either day or an FX rate; null when none
+        double marketValue,
+        double priorMarketValue,     // asOf quantities at prior prices
+        double pnl,
+        List<Mover> top,             // largest first
+        List<Mover> bottom           // smallest first
+) {
+    public record Mover(
+            String instrumentCode,
+            String instrumentType,
+            String currency,
+            double netQty,
+            double price,
+            double priorPrice,
+            double priceReturn,
+            double marketValue,      // base currency
+            double pnl,              // base currency
+            Double contribution      // share of the scope's prior value; null when that is 0
+    ) {}
+}
@@ -0,0 +1,23 @@
+package com.kmakker.ibor.dto.analytics;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+public record ScenarioRequest(
+        String portfolioCode,
+        LocalDate asOf,
+        String baseCurrency,          // optional, default USD
+        List<Scenario> scenarios
+) {
+    /**
+     * Relative shocks, e.g. -0.10 for -10%. A price moves by its instrument's shock if one is
+     * given, else by its instrument type's; a currency shock moves that currency against the base.
+     */
+    public record Scenario(
+            String name,
+            Map<String, Double> instrumentTypes,
+            Map<String, Double> currencies,
+            Map<String, Double> instruments
+    ) {}
+}
@@ -0,0 +1,26 @@
+package com.kmakker.ibor.dto.analytics;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ScenarioResponse(
+        String portfolioCode,
+        LocalDate asOf,
+        String baseCurrency,
+        int lines,                    // positions revalued
+        Integer unconvertedLines,     // positions left out for lack of an FX rate; null when none
+        Boolean truncated,            // true when the book holds more than ibor.scenarios.max-lines positions; null otherwise
+        double baseValue,             // market value before shocks, in the base currency
+        List<ScenarioResult> results  // in request order
+) {
+    public record ScenarioResult(
+            String name,
+            double pnl,
+            double pnlPct,
+            Map<String, Double> pnlByInstrumentType
+    ) {}
+}
@@ -0,0 +1,33 @@
+package com.kmakker.ibor.dto.analytics;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record VarResponse(
+        String portfolioCode,
+        LocalDate asOf,
+        String baseCurrency,
+        int lookback,                  // price days requested
+        int observations,              // daily returns actually simulated; fewer when history is short
+        LocalDate firstScenario,       // end day of the oldest return
+        LocalDate lastScenario,        // end day of the newest return
+        double positionValue,          // market value in the base currency
+        int lines,                     // positions loaded
+        Integer unconvertedLines,      // positions left out for lack of an FX rate; null when none
+        Boolean truncated,             // true when the book holds more than ibor.var.max-lines positions; null otherwise
+        Integer unmodelledInstruments, // instruments with no price in the window, held flat; null when none
+        List<Measure> measures,        // in request order
+        double meanPnl,
+        double stdevPnl,
+        double minPnl,
+        double maxPnl,
+        List<ScenarioPnl> worstScenarios
+) {
+    /** VaR and expected shortfall as positive losses in the base currency. */
+    public record Measure(double confidence, double var, double expectedShortfall) {}
+
+    public record ScenarioPnl(LocalDate day, double pnl) {}
+}
@@ -0,0 +1,12 @@
+package com.kmakker.ibor.exception;
+
+/**
+ * A request parameter or body failed validation. Answered 400 with the message by
+ * {@link GlobalExceptionHandler}; other {@link IllegalArgumentException}s are programming errors
+ * and stay 500, so their messages never reach the client.
+ */
+public class InvalidRequestException extends IllegalArgumentException {
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+}
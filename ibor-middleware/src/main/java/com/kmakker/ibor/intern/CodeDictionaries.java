@@ -0,0 +1,31 @@
+package com.kmakker.ibor.intern;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Process-wide dictionaries, one per code family. Ids from different families are unrelated:
+ * instrument 3 and portfolio 3 are different things.
+ */
+@Component
+public class CodeDictionaries {
+    private final CodeDictionary instruments = new CodeDictionary("instrument");
+    private final CodeDictionary portfolios = new CodeDictionary("portfolio");
+    private final CodeDictionary accounts = new CodeDictionary("account");
+    private final CodeDictionary currencies = new CodeDictionary("currency");
+
+    public CodeDictionary instruments() {
+        return instruments;
+    }
+
+    public CodeDictionary portfolios() {
+        return portfolios;
+    }
+
+    public CodeDictionary accounts() {
+        return accounts;
+    }
+
+    public CodeDictionary currencies() {
+        return currencies;
+    }
+}
@@ -0,0 +1,84 @@
+package com.kmakker.ibor.intern;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CodeDictionary
+ *
+ * <p>Append-only mapping between a family of business codes (instrument, portfolio, account,
+ * currency) and dense ints 0..n-1, so in-memory engines can key arrays and primitive maps by
+ * id instead of by String.</p>
+ *
+ * <ul>
+ *   <li>Ids are assigned on first sight and never reused or removed for the life of the process.</li>
+ *   <li>Lookups are lock-free; only the first interning of a new code takes a lock.</li>
+ *   <li>Codes are trimmed and upper-cased, matching how the database stores them.</li>
+ * </ul>
+ */
+public final class CodeDictionary {
+    /** Returned by {@link #find(String)} for codes never interned. */
+    public static final int NO_ID = -1;
+
+    private final String name;
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] codes = new String[64];
+    private int size;
+
+    public CodeDictionary(String name) {
+        this.name = name;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /** Id for the code, assigning the next dense id if it has not been seen yet. */
+    public int id(String code) {
+        String key = normalize(code);
+        Integer existing = ids.get(key);
+        if (existing != null) return existing;
+        synchronized (this) {
+            existing = ids.get(key);
+            if (existing != null) return existing;
+            int id = size;
+            String[] current = codes;
+            if (id == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            current[id] = key;
+            codes = current;          // publish before the id becomes visible
+            size = id + 1;
+            ids.put(key, id);
+            return id;
+        }
+    }
+
+    /** Id for an already interned code, or {@link #NO_ID}. Never assigns. */
+    public int find(String code) {
+        if (code == null) return NO_ID;
+        Integer existing = ids.get(normalize(code));
+        return existing == null ? NO_ID : existing;
+    }
+
+    /** Code for an id handed out by this dictionary. */
+    public String code(int id) {
+        if (id < 0 || id >= ids.size()) {
+            throw new IllegalArgumentException(name + " id out of range: " + id);
+        }
+        return codes[id];
+    }
+
+    /** Number of ids handed out; valid ids are 0..size()-1, handy for sizing arrays. */
+    public int size() {
+        return ids.size();
+    }
+
+    private static String normalize(String code) {
+        if (code == null || code.isBlank()) {
+            throw new IllegalArgumentException("code must be provided");
+        }
+        return code.trim().toUpperCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,28 @@
+package com.kmakker.ibor.intern;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Dates as int epoch days (days since 1970-01-01). Business dates in this system are plain
+ * calendar days, so an int is exact, sorts correctly and indexes arrays directly:
+ * {@code series[day - firstDay]}.
+ */
+public final class EpochDays {
+    private static final int SECONDS_PER_DAY = 86_400;
+
+    private EpochDays() {}
+
+    public static int of(LocalDate date) {
+        return Math.toIntExact(date.toEpochDay());
+    }
+
+    /** UTC calendar day of an instant, without going through ZonedDateTime. */
+    public static int of(Instant instant) {
+        return Math.toIntExact(Math.floorDiv(instant.getEpochSecond(), SECONDS_PER_DAY));
+    }
+
+    public static LocalDate toDate(int epochDay) {
+        return LocalDate.ofEpochDay(epochDay);
+    }
+}
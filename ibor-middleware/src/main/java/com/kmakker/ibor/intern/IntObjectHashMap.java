@@ -0,0 +1,118 @@
+package com.kmakker.ibor.intern;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Open-addressing hash map from primitive int keys to values, with linear probing.
+ *
+ * <p>Keys and values live in two parallel arrays, so there is no entry object and no boxed
+ * key per mapping. Not thread-safe; intended for per-request or single-writer engine state.
+ * Removal is not supported.</p>
+ */
+public final class IntObjectHashMap<V> {
+    private static final int FREE = Integer.MIN_VALUE;
+
+    private int[] keys;
+    private Object[] values;
+    private int size;
+    private int mask;
+
+    public IntObjectHashMap() {
+        this(16);
+    }
+
+    public IntObjectHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        keys = new int[capacity];
+        Arrays.fill(keys, FREE);
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        checkKey(key);
+        int i = slot(key);
+        return keys[i] == key ? (V) values[i] : null;
+    }
+
+    public boolean containsKey(int key) {
+        checkKey(key);
+        return keys[slot(key)] == key;
+    }
+
+    /** Associates value with key and returns the previous value, if any. */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        checkKey(key);
+        int i = slot(key);
+        if (keys[i] == key) {
+            V previous = (V) values[i];
+            values[i] = value;
+            return previous;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size * 2 > keys.length) grow();
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V computeIfAbsent(int key, IntFunction<? extends V> factory) {
+        checkKey(key);
+        int i = slot(key);
+        if (keys[i] == key) return (V) values[i];
+        V value = factory.apply(key);
+        put(key, value);
+        return value;
+    }
+
+    /** Visits every mapping in unspecified order. */
+    @SuppressWarnings("unchecked")
+    public void forEach(IntObjectConsumer<? super V> action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE) action.accept(keys[i], (V) values[i]);
+        }
+    }
+
+    @FunctionalInterface
+    public interface IntObjectConsumer<V> {
+        void accept(int key, V value);
+    }
+
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        int i = (h ^ (h >>> 16)) & mask;
+        while (keys[i] != FREE && keys[i] != key) i = (i + 1) & mask;
+        return i;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        Arrays.fill(keys, FREE);
+        values = new Object[keys.length];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int j = slot(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    private static void checkKey(int key) {
+        if (key == FREE) throw new IllegalArgumentException("key " + key + " is reserved");
+    }
+}
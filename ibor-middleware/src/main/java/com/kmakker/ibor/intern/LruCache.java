@@ -0,0 +1,38 @@
+package com.kmakker.ibor.intern;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded cache that evicts the least recently used entry once it holds
+ * <code>maxSize</code> entries.
+ *
+ * <p>An access-ordered {@link LinkedHashMap} behind one lock: a hit moves the entry to the tail,
+ * so every call is synchronized. Meant for caches whose values are expensive to rebuild (factor
+ * arrays, return matrices, Greeks) and whose lookups are few per request.</p>
+ */
+public final class LruCache<K, V> {
+    private final LinkedHashMap<K, V> map;
+
+    public LruCache(int maxSize) {
+        if (maxSize < 1) throw new IllegalArgumentException("cache size must be at least 1");
+        this.map = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        return map.get(key);
+    }
+
+    public synchronized void put(K key, V value) {
+        map.put(key, value);
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+}
@@ -0,0 +1,193 @@
+package com.kmakker.ibor.jodi;
+
+import org.jooq.DSLContext;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cash flows feeding the cash ladder, each with the row's <code>updated_at</code> so callers can
+ * poll for changes: booked cash events, trade fills to be settled and corporate-action
+ * entitlements.
+ *
+ * <p>Portfolios are reported by code, so SCD2 versions of one portfolio land in the same
+ * bucket. <code>changedSince</code> (inclusive) limits a query to rows touched since a previous
+ * read; null reads everything from <code>from</code>.</p>
+ */
+@Repository
+public class JodiCashLadderRepository {
+
+    public record CashEvent(long portfolioVid, String portfolioCode, LocalDate eventDate, BigDecimal amount,
+                            String currency, String eventType, LocalDateTime updatedAt) {}
+
+    /** A fill with its cash amount signed from the portfolio's view: buys pay, sells receive. */
+    public record TradeFill(String executionId, String portfolioCode, String instrumentCode, String instrumentType,
+                            LocalDate tradeDate, BigDecimal cashAmount, String currency, LocalDateTime updatedAt) {}
+
+    /** Cash due to one portfolio from a corporate action: amount per unit times holding on the record date. */
+    public record Entitlement(long caAppliedId, String portfolioCode, String instrumentCode, String actionCode,
+                              LocalDate payDate, BigDecimal amount, String currency) {}
+
+    private final DSLContext dslContext;
+
+    public JodiCashLadderRepository(DSLContext dslContext) {
+        this.dslContext = dslContext;
+    }
+
+    /** Portfolio version valid on the date per portfolio code. */
+    public Map<String, Long> findPortfolioVids(LocalDate asOf) {
+        final String sql = """
+            SELECT DISTINCT ON (dp.portfolio_code) dp.portfolio_code, dp.portfolio_vid
+            FROM ibor.dim_portfolio dp
+            WHERE dp.validity @> ?::date
+            ORDER BY dp.portfolio_code, dp.valid_from DESC
+        """;
+        return dslContext.fetch(sql, asOf).intoMap(r -> r.get("portfolio_code", String.class),
+                r -> r.get("portfolio_vid", Long.class));
+    }
+
+    public List<CashEvent> findCashEvents(LocalDate from, LocalDateTime changedSince) {
+        final String sql = """
+            WITH args AS (
+              SELECT ?::date AS from_dt, ?::timestamp AS changed_since
+            )
+            SELECT ce.portfolio_vid, dp.portfolio_code, ce.event_date, ce.amount,
+                   ce.currency_code, ce.event_type, ce.updated_at
+            FROM ibor.fact_cash_event ce
+            JOIN args ON ce.event_date >= args.from_dt
+                     AND (args.changed_since IS NULL OR ce.updated_at >= args.changed_since)
+            JOIN ibor.dim_portfolio dp ON dp.portfolio_vid = ce.portfolio_vid
+        """;
+        return dslContext.fetch(sql, from, changedSince).map(r -> new CashEvent(
+                r.get("portfolio_vid", Long.class),
+                r.get("portfolio_code", String.class),
+                r.get("event_date", LocalDate.class),
+                r.get("amount", BigDecimal.class),
+                r.get("currency_code", String.class),
+                r.get("event_type", String.class),
+                r.get("updated_at", LocalDateTime.class)));
+    }
+
+    /**
+     * Fills traded on or after <code>from</code>, attributed to the portfolio the account was
+     * linked to on the trade date. The cash amount is the net amount (gross, else quantity x price
+     * when missing) in the instrument currency, negative for buys.
+     */
+    public List<TradeFill> findTradeFills(LocalDate from, LocalDateTime changedSince) {
+        final String sql = """
+            WITH args AS (
+              SELECT ?::date AS from_dt, ?::timestamp AS changed_since
+            )
+            SELECT t.execution_id, dp.portfolio_code, di.instrument_code, di.instrument_type, t.trade_date,
+                   -SIGN(t.quantity) * ABS(COALESCE(t.net_amount, t.gross_amount, t.quantity * t.price)) AS cash_amount,
+                   di.currency_code, t.updated_at
+            FROM ibor.fact_trade t
+            JOIN args ON t.trade_date >= args.from_dt
+                     AND (args.changed_since IS NULL OR t.updated_at >= args.changed_since)
+            JOIN ibor.dim_instrument di ON di.instrument_vid = t.instrument_vid
+            JOIN ibor.dim_account_portfolio dap
+              ON dap.account_vid = t.account_vid
+             AND dap.validity @> t.trade_date
+            JOIN ibor.dim_portfolio dp ON dp.portfolio_vid = dap.portfolio_vid
+        """;
+        return dslContext.fetch(sql, from, changedSince).map(r -> new TradeFill(
+                r.get("execution_id", String.class),
+                r.get("portfolio_code", String.class),
+                r.get("instrument_code", String.class),
+                r.get("instrument_type", String.class),
+                r.get("trade_date", LocalDate.class),
+                r.get("cash_amount", BigDecimal.class),
+                r.get("currency_code", String.class),
+                r.get("updated_at", LocalDateTime.class)));
+    }
+
+    /**
+     * Entitlements for corporate actions with a cash amount paying on or after <code>from</code>.
+     * The holding is the latest snapshot on or before the record date (ex date - 1 when missing)
+     * plus adjustments effective by then, per portfolio. An entitlement is left out when the
+     * portfolio has a cash event in its currency on its pay date: that event is its booking.
+     */
+    public List<Entitlement> findEntitlements(LocalDate from) {
+        final String sql = """
+            WITH args AS (
+              SELECT ?::date AS from_dt
+            ),
+            ca AS (
+              SELECT ca.ca_applied_id, ca.instrument_vid, ca.action_code, ca.pay_date, ca.amount,
+                     COALESCE(ca.currency_code, di.currency_code) AS currency_code, di.instrument_code,
+                     COALESCE(ca.record_date, ca.ex_date - 1) AS record_dt
+              FROM ibor.fact_corporate_action_applied ca
+              JOIN args ON ca.pay_date >= args.from_dt
+              JOIN ibor.dim_instrument di ON di.instrument_vid = ca.instrument_vid
+              WHERE ca.amount IS NOT NULL AND ca.amount <> 0
+            ),
+            snap AS (
+              SELECT ca.ca_applied_id, ps.portfolio_vid, SUM(ps.quantity) AS qty
+              FROM ca
+              JOIN ibor.fact_position_snapshot ps ON ps.instrument_vid = ca.instrument_vid
+              WHERE ps.position_date = (SELECT MAX(ps2.position_date)
+                                        FROM ibor.fact_position_snapshot ps2
+                                        WHERE ps2.portfolio_vid = ps.portfolio_vid
+                                          AND ps2.position_date <= ca.record_dt)
+              GROUP BY ca.ca_applied_id, ps.portfolio_vid
+            ),
+            adj AS (
+              SELECT ca.ca_applied_id, a.portfolio_vid, SUM(a.quantity_delta) AS qty
+              FROM ca
+              JOIN ibor.fact_position_adjustment a
+                ON a.instrument_vid = ca.instrument_vid
+               AND a.effective_date <= ca.record_dt
+              GROUP BY ca.ca_applied_id, a.portfolio_vid
+            ),
+            holding AS (
+              SELECT COALESCE(snap.ca_applied_id, adj.ca_applied_id) AS ca_applied_id,
+                     COALESCE(snap.portfolio_vid, adj.portfolio_vid) AS portfolio_vid,
+                     COALESCE(snap.qty, 0) + COALESCE(adj.qty, 0) AS qty
+              FROM snap
+              FULL OUTER JOIN adj
+                ON snap.ca_applied_id = adj.ca_applied_id
+               AND snap.portfolio_vid = adj.portfolio_vid
+            )
+            SELECT ca.ca_applied_id, dp.portfolio_code, ca.instrument_code, ca.action_code, ca.pay_date,
+                   ca.amount * h.qty AS amount, ca.currency_code
+            FROM holding h
+            JOIN ca ON ca.ca_applied_id = h.ca_applied_id
+            JOIN ibor.dim_portfolio dp ON dp.portfolio_vid = h.portfolio_vid
+            WHERE h.qty <> 0
+              AND NOT EXISTS (
+                SELECT 1
+                FROM ibor.fact_cash_event ce
+                JOIN ibor.dim_portfolio cp ON cp.portfolio_vid = ce.portfolio_vid
+                WHERE cp.portfolio_code = dp.portfolio_code
+                  AND ce.currency_code = ca.currency_code
+                  AND ce.event_date = ca.pay_date
+              )
+        """;
+        return dslContext.fetch(sql, from).map(r -> new Entitlement(
+                r.get("ca_applied_id", Long.class),
+                r.get("portfolio_code", String.class),
+                r.get("instrument_code", String.class),
+                r.get("action_code", String.class),
+                r.get("pay_date", LocalDate.class),
+                r.get("amount", BigDecimal.class),
+                r.get("currency_code", String.class)));
+    }
+
+    /** Row counts behind {@link #findCashEvents} and {@link #findTradeFills}, to detect deletes. */
+    public long[] countSources(LocalDate from) {
+        final String sql = """
+            SELECT (SELECT COUNT(*) FROM ibor.fact_cash_event WHERE event_date >= ?::date) AS cash_events,
+                   (SELECT COUNT(*) FROM ibor.fact_trade t
+                    JOIN ibor.dim_account_portfolio dap
+                      ON dap.account_vid = t.account_vid
+                     AND dap.validity @> t.trade_date
+                    WHERE t.trade_date >= ?::date) AS trades
+        """;
+        var r = dslContext.fetchOne(sql, from, from);
+        return new long[]{r.get("cash_events", Long.class), r.get("trades", Long.class)};
+    }
+}
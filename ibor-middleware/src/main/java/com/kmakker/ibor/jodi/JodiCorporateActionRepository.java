@@ -0,0 +1,91 @@
+package com.kmakker.ibor.jodi;
+
+import org.jooq.DSLContext;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Corporate actions as price-adjustment inputs, read from
+ * <code>ibor.fact_corporate_action_applied</code> across every version of an instrument.
+ */
+@Repository
+public class JodiCorporateActionRepository {
+
+    /**
+     * One action. <code>priorClose</code> is the last price before the ex date (BBG preferred on
+     * that day), null when the instrument has none.
+     */
+    public record PriceAdjustment(LocalDate exDate, String actionCode, BigDecimal factor, BigDecimal amount,
+                                  BigDecimal priorClose) {}
+
+    private final DSLContext dslContext;
+
+    public JodiCorporateActionRepository(DSLContext dslContext) {
+        this.dslContext = dslContext;
+    }
+
+    /** Actions of one instrument code, in ex-date order. */
+    public List<PriceAdjustment> findPriceAdjustments(String instrumentCode) {
+        return findPriceAdjustmentsByCode(List.of(instrumentCode)).getOrDefault(instrumentCode, List.of());
+    }
+
+    /** Actions of many instrument codes in one round trip, keyed by code, each in ex-date order. */
+    public Map<String, List<PriceAdjustment>> findPriceAdjustmentsByCode(Collection<String> instrumentCodes) {
+        final String sql = """
+            WITH args AS (
+              SELECT ?::text[] AS instrument_codes
+            ),
+            i AS (
+              SELECT di.instrument_code, di.instrument_vid
+              FROM ibor.dim_instrument di, args
+              WHERE di.instrument_code = ANY(args.instrument_codes)
+            )
+            SELECT i.instrument_code, ca.ex_date, ca.action_code, ca.factor, ca.amount, prior.price AS prior_close
+            FROM ibor.fact_corporate_action_applied ca
+            JOIN i ON i.instrument_vid = ca.instrument_vid
+            LEFT JOIN LATERAL (
+              SELECT fp.price
+              FROM ibor.fact_price fp
+              JOIN i pi ON pi.instrument_vid = fp.instrument_vid
+              JOIN ibor.dim_price_source dps ON dps.price_source_vid = fp.price_source_vid
+              WHERE pi.instrument_code = i.instrument_code
+                AND fp.price_ts < ca.ex_date
+              ORDER BY fp.price_ts::date DESC,
+                       (dps.price_source_code = 'BBG') DESC,
+                       fp.price_ts DESC
+              LIMIT 1
+            ) prior ON TRUE
+            ORDER BY i.instrument_code, ca.ex_date, ca.ca_applied_id
+        """;
+        Map<String, List<PriceAdjustment>> byCode = new LinkedHashMap<>();
+        dslContext.fetch(sql, (Object) instrumentCodes.toArray(String[]::new)).forEach(r ->
+                byCode.computeIfAbsent(r.get("instrument_code", String.class), k -> new ArrayList<>())
+                        .add(new PriceAdjustment(
+                                r.get("ex_date", LocalDate.class),
+                                r.get("action_code", String.class),
+                                r.get("factor", BigDecimal.class),
+                                r.get("amount", BigDecimal.class),
+                                r.get("prior_close", BigDecimal.class))));
+        return byCode;
+    }
+
+    /** Codes of instruments with an action whose ex date falls in (from, to], in code order. */
+    public List<String> findInstrumentCodesWithActions(LocalDate from, LocalDate to) {
+        final String sql = """
+            SELECT DISTINCT di.instrument_code
+            FROM ibor.fact_corporate_action_applied ca
+            JOIN ibor.dim_instrument di ON di.instrument_vid = ca.instrument_vid
+            WHERE ca.ex_date > ?::date
+              AND ca.ex_date <= ?::date
+            ORDER BY di.instrument_code
+        """;
+        return dslContext.fetch(sql, from, to).map(r -> r.get("instrument_code", String.class));
+    }
+}
@@ -0,0 +1,33 @@
+package com.kmakker.ibor.jodi;
+
+import org.jooq.DSLContext;
+import org.springframework.stereotype.Repository;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Repository
+public class JodiDataVersionRepository {
+    private final DSLContext dslContext;
+
+    public JodiDataVersionRepository(DSLContext dslContext) {
+        this.dslContext = dslContext;
+    }
+
+    /**
+     * All data-version watermarks keyed by <code>scope</code> (scope-wide row) or
+     * <code>scope:scope_key</code>. The value is a stamp over version and bump time, so it also
+     * changes when the database is rebuilt and versions restart at 1.
+     */
+    public Map<String, Long> findAll() {
+        final String sql = """
+            SELECT CASE WHEN scope_key = '' THEN scope ELSE scope || ':' || scope_key END AS version_key,
+                   hashtextextended(version::text || '@' || bumped_at::text, 0)           AS stamp
+            FROM ibor.data_version
+        """;
+        Map<String, Long> out = new HashMap<>();
+        dslContext.resultQuery(sql).fetch()
+                .forEach(r -> out.put(r.get("version_key", String.class), r.get("stamp", Long.class)));
+        return out;
+    }
+}
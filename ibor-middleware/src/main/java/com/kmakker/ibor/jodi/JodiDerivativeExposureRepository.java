@@ -0,0 +1,146 @@
+package com.kmakker.ibor.jodi;
+
+import org.jooq.DSLContext;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Futures and option positions of one portfolio as-of a date, with the contract terms and
+ * market inputs needed to compute exposure and Greeks.
+ *
+ * <p>Quantities follow {@link JodiPositionsRepository#findPositions}: latest snapshot on or before
+ * the date plus adjustments. Prices are the latest on or before the date, BBG first. An option's
+ * underlying is the equity whose ticker is the option's <code>underlying_symbol</code>, else the
+ * future whose <code>contract_code</code> is; the underlying's price comes from the same pick.</p>
+ */
+@Repository
+public class JodiDerivativeExposureRepository {
+
+    public record DerivativeInput(String instrumentCode, String instrumentType, String currency,
+                                  BigDecimal quantity, BigDecimal multiplier, BigDecimal price,
+                                  String optionType, BigDecimal strike, LocalDate expiry,
+                                  String underlyingCode, String underlyingType, BigDecimal underlyingPrice,
+                                  BigDecimal dividendYield) {}
+
+    private final DSLContext dslContext;
+
+    public JodiDerivativeExposureRepository(DSLContext dslContext) {
+        this.dslContext = dslContext;
+    }
+
+    public List<DerivativeInput> findDerivativePositions(String portfolioCode, LocalDate asOf) {
+        String sql = """
+            WITH args AS (
+              SELECT ?::text AS portfolio_code, ?::date AS as_of
+            ),
+            p AS (
+              SELECT dp.portfolio_vid
+              FROM ibor.dim_portfolio dp, args
+              WHERE dp.portfolio_code = args.portfolio_code
+                AND dp.validity @> args.as_of
+            ),
+            latest_snap AS (
+              SELECT ps.portfolio_vid, MAX(ps.position_date) AS snap_date
+              FROM p
+              JOIN ibor.fact_position_snapshot ps ON ps.portfolio_vid = p.portfolio_vid
+              JOIN args ON ps.position_date <= args.as_of
+              GROUP BY ps.portfolio_vid
+            ),
+            pos AS (
+              SELECT ps.instrument_vid, SUM(ps.quantity) AS qty
+              FROM latest_snap ls
+              JOIN ibor.fact_position_snapshot ps
+                ON ps.portfolio_vid = ls.portfolio_vid
+               AND ps.position_date = ls.snap_date
+              GROUP BY ps.instrument_vid
+            ),
+            adj AS (
+              SELECT a.instrument_vid, SUM(a.quantity_delta) AS qty_adj
+              FROM p
+              JOIN ibor.fact_position_adjustment a ON a.portfolio_vid = p.portfolio_vid
+              JOIN args ON a.effective_date <= args.as_of
+              GROUP BY a.instrument_vid
+            ),
+            cur AS (
+              SELECT COALESCE(pos.instrument_vid, adj.instrument_vid) AS instrument_vid,
+                     COALESCE(pos.qty, 0)::numeric + COALESCE(adj.qty_adj, 0)::numeric AS net_qty
+              FROM pos
+              FULL OUTER JOIN adj ON pos.instrument_vid = adj.instrument_vid
+            ),
+            deriv AS (
+              SELECT di.instrument_vid, di.instrument_code, di.instrument_type, di.currency_code, cur.net_qty,
+                     COALESCE(fut.contract_size, opt.multiplier, 1)::numeric AS multiplier,
+                     opt.option_type, opt.strike_price, COALESCE(opt.expiry_date, fut.expiry_date) AS expiry_date,
+                     opt.underlying_symbol
+              FROM cur
+              JOIN args ON TRUE
+              JOIN ibor.dim_instrument di
+                ON di.instrument_vid = cur.instrument_vid
+               AND di.validity @> args.as_of
+              LEFT JOIN ibor.dim_instrument_futures fut ON fut.instrument_vid = di.instrument_vid
+              LEFT JOIN ibor.dim_instrument_options  opt ON opt.instrument_vid = di.instrument_vid
+              WHERE fut.instrument_vid IS NOT NULL OR opt.instrument_vid IS NOT NULL
+            )
+            SELECT d.instrument_code, d.instrument_type, COALESCE(px.currency_code, d.currency_code) AS currency,
+                   d.net_qty, d.multiplier, px.price,
+                   d.option_type, d.strike_price, d.expiry_date,
+                   und.instrument_code AS underlying_code, und.instrument_type AS underlying_type,
+                   und_px.price AS underlying_price, und.dividend_yield
+            FROM deriv d
+            JOIN args ON TRUE
+            LEFT JOIN LATERAL (
+              SELECT fp.price, fp.currency_code
+              FROM ibor.fact_price fp
+              JOIN ibor.dim_price_source dps ON dps.price_source_vid = fp.price_source_vid
+              WHERE fp.instrument_vid = d.instrument_vid
+                AND fp.price_ts <= (args.as_of + time '23:59:59')
+              ORDER BY (dps.price_source_code = 'BBG') DESC, fp.price_ts DESC
+              LIMIT 1
+            ) px ON TRUE
+            LEFT JOIN LATERAL (
+              SELECT u.instrument_vid, u.instrument_code, u.instrument_type, u.dividend_yield
+              FROM (
+                SELECT ui.instrument_vid, ui.instrument_code, ui.instrument_type, eq.dividend_yield, 0 AS rank
+                FROM ibor.dim_instrument_equity eq
+                JOIN ibor.dim_instrument ui ON ui.instrument_vid = eq.instrument_vid
+                WHERE eq.ticker = d.underlying_symbol AND ui.validity @> args.as_of
+                UNION ALL
+                SELECT ui.instrument_vid, ui.instrument_code, ui.instrument_type, NULL, 1
+                FROM ibor.dim_instrument_futures uf
+                JOIN ibor.dim_instrument ui ON ui.instrument_vid = uf.instrument_vid
+                WHERE uf.contract_code = d.underlying_symbol AND ui.validity @> args.as_of
+              ) u
+              WHERE d.underlying_symbol IS NOT NULL
+              ORDER BY u.rank
+              LIMIT 1
+            ) und ON TRUE
+            LEFT JOIN LATERAL (
+              SELECT fp.price
+              FROM ibor.fact_price fp
+              JOIN ibor.dim_price_source dps ON dps.price_source_vid = fp.price_source_vid
+              WHERE fp.instrument_vid = und.instrument_vid
+                AND fp.price_ts <= (args.as_of + time '23:59:59')
+              ORDER BY (dps.price_source_code = 'BBG') DESC, fp.price_ts DESC
+              LIMIT 1
+            ) und_px ON TRUE
+            ORDER BY d.instrument_code
+        """;
+        return dslContext.fetch(sql, portfolioCode, asOf).map(r -> new DerivativeInput(
+                r.get("instrument_code", String.class),
+                r.get("instrument_type", String.class),
+                r.get("currency", String.class),
+                r.get("net_qty", BigDecimal.class),
+                r.get("multiplier", BigDecimal.class),
+                r.get("price", BigDecimal.class),
+                r.get("option_type", String.class),
+                r.get("strike_price", BigDecimal.class),
+                r.get("expiry_date", LocalDate.class),
+                r.get("underlying_code", String.class),
+                r.get("underlying_type", String.class),
+                r.get("underlying_price", BigDecimal.class),
+                r.get("dividend_yield", BigDecimal.class)));
+    }
+}
@@ -0,0 +1,166 @@
+package com.kmakker.ibor.jodi;
+
+import org.jooq.DSLContext;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Inputs for firm-wide exposure: the portfolios live on a date, one shared valuation snapshot
+ * and net quantities for a partition of portfolios.
+ *
+ * <p>Prices and FX are read once per request in {@link #fetchValuationSnapshot} instead of once
+ * per portfolio; {@link #fetchQuantities} returns quantities only, so partitions can be read in
+ * parallel on separate connections and valued in memory.</p>
+ */
+@Repository
+public class JodiFirmExposureRepository {
+
+    /**
+     * Instrument valid on the date with its BBG-preferred latest price (zero when unpriced) and
+     * rate to the base currency (zero when there is none, with <code>converted</code> false).
+     */
+    public record Valuation(long instrumentVid, String instrumentCode, String instrumentType,
+                            BigDecimal price, BigDecimal multiplier, BigDecimal fxRate, boolean converted) {}
+
+    public record Quantity(long portfolioVid, long instrumentVid, BigDecimal netQty) {}
+
+    private final DSLContext dslContext;
+
+    public JodiFirmExposureRepository(DSLContext dslContext) {
+        this.dslContext = dslContext;
+    }
+
+    /** Portfolio versions valid on the date, one per portfolio code. */
+    public List<Long> findPortfolioVids(LocalDate asOf) {
+        String sql = """
+            SELECT dp.portfolio_vid
+            FROM ibor.dim_portfolio dp
+            WHERE dp.validity @> ?::date
+            ORDER BY dp.portfolio_vid
+        """;
+        return dslContext.fetch(sql, asOf).map(r -> r.get("portfolio_vid", Long.class));
+    }
+
+    /**
+     * Every instrument valid on the date (or just <code>instrumentCode</code>), priced with the same
+     * BBG-preferred pick as {@link JodiPositionsRepository#findPositions} and converted with
+     * <code>ibor.fn_pick_fx_at_or_before</code>, evaluated once per distinct currency.
+     */
+    public List<Valuation> fetchValuationSnapshot(LocalDate asOf, String baseCurrency, String instrumentCode) {
+        String sql = """
+            WITH args AS (
+              SELECT ?::date AS as_of, ?::text AS base_ccy, ?::text AS instrument_code
+            ),
+            i AS (
+              SELECT di.instrument_vid, di.instrument_code, di.instrument_type, di.currency_code,
+                     COALESCE(fut.contract_size, opt.multiplier, 1)::numeric AS multiplier
+              FROM ibor.dim_instrument di
+              JOIN args ON di.validity @> args.as_of
+              LEFT JOIN ibor.dim_instrument_futures fut ON fut.instrument_vid = di.instrument_vid
+              LEFT JOIN ibor.dim_instrument_options  opt ON opt.instrument_vid = di.instrument_vid
+              WHERE args.instrument_code IS NULL OR di.instrument_code = args.instrument_code
+            ),
+            price_pick AS (
+              SELECT DISTINCT ON (fp.instrument_vid)
+                     fp.instrument_vid, fp.price, fp.currency_code AS price_currency
+              FROM ibor.fact_price fp
+              JOIN i ON i.instrument_vid = fp.instrument_vid
+              JOIN ibor.dim_price_source dps ON dps.price_source_vid = fp.price_source_vid
+              JOIN args ON fp.price_ts <= (args.as_of + time '23:59:59')
+              ORDER BY fp.instrument_vid,
+                       (dps.price_source_code = 'BBG') DESC,
+                       fp.price_ts DESC
+            ),
+            valued AS (
+              SELECT i.*, pp.price, COALESCE(pp.price_currency, i.currency_code)::text AS value_ccy
+              FROM i
+              LEFT JOIN price_pick pp ON pp.instrument_vid = i.instrument_vid
+            ),
+            fx AS (
+              SELECT c.value_ccy,
+                     CASE WHEN c.value_ccy = args.base_ccy THEN 1::numeric
+                          ELSE ibor.fn_pick_fx_at_or_before(c.value_ccy::char(3), args.base_ccy::char(3), args.as_of)
+                     END AS rate
+              FROM (SELECT DISTINCT value_ccy FROM valued) c, args
+            )
+            SELECT valued.instrument_vid, valued.instrument_code, valued.instrument_type,
+                   valued.price, valued.multiplier, fx.rate
+            FROM valued
+            LEFT JOIN fx ON fx.value_ccy = valued.value_ccy
+        """;
+        return dslContext.fetch(sql, asOf, baseCurrency, instrumentCode).map(r -> {
+            BigDecimal price = r.get("price", BigDecimal.class);
+            BigDecimal rate = r.get("rate", BigDecimal.class);
+            return new Valuation(
+                    r.get("instrument_vid", Long.class),
+                    r.get("instrument_code", String.class),
+                    r.get("instrument_type", String.class),
+                    price == null ? BigDecimal.ZERO : price,
+                    r.get("multiplier", BigDecimal.class),
+                    rate == null ? BigDecimal.ZERO : rate,
+                    rate != null);
+        });
+    }
+
+    /**
+     * Net quantity per (portfolio, instrument) for a partition of portfolio versions: latest
+     * snapshot on or before the date plus adjustments up to it.
+     */
+    public List<Quantity> fetchQuantities(LocalDate asOf, long[] portfolioVids, String instrumentCode) {
+        String sql = """
+            WITH args AS (
+              SELECT ?::date AS as_of, ?::bigint[] AS portfolio_vids, ?::text AS instrument_code
+            ),
+            p AS (
+              SELECT unnest(args.portfolio_vids) AS portfolio_vid FROM args
+            ),
+            inst AS (
+              SELECT di.instrument_vid
+              FROM ibor.dim_instrument di, args
+              WHERE args.instrument_code IS NOT NULL AND di.instrument_code = args.instrument_code
+            ),
+            latest_snap AS (
+              SELECT p.portfolio_vid,
+                     (SELECT MAX(ps.position_date)
+                      FROM ibor.fact_position_snapshot ps, args
+                      WHERE ps.portfolio_vid = p.portfolio_vid
+                        AND ps.position_date <= args.as_of) AS snap_date
+              FROM p
+            ),
+            pos AS (
+              SELECT ps.portfolio_vid, ps.instrument_vid, SUM(ps.quantity) AS qty
+              FROM latest_snap ls
+              JOIN ibor.fact_position_snapshot ps
+                ON ps.portfolio_vid = ls.portfolio_vid
+               AND ps.position_date = ls.snap_date
+              JOIN args ON TRUE
+              WHERE args.instrument_code IS NULL OR ps.instrument_vid IN (SELECT instrument_vid FROM inst)
+              GROUP BY ps.portfolio_vid, ps.instrument_vid
+            ),
+            adj AS (
+              SELECT a.portfolio_vid, a.instrument_vid, SUM(a.quantity_delta) AS qty_adj
+              FROM p
+              JOIN ibor.fact_position_adjustment a ON a.portfolio_vid = p.portfolio_vid
+              JOIN args ON a.effective_date <= args.as_of
+              WHERE args.instrument_code IS NULL OR a.instrument_vid IN (SELECT instrument_vid FROM inst)
+              GROUP BY a.portfolio_vid, a.instrument_vid
+            )
+            SELECT COALESCE(pos.portfolio_vid, adj.portfolio_vid) AS portfolio_vid,
+                   COALESCE(pos.instrument_vid, adj.instrument_vid) AS instrument_vid,
+                   COALESCE(pos.qty, 0)::numeric + COALESCE(adj.qty_adj, 0)::numeric AS net_qty
+            FROM pos
+            FULL OUTER JOIN adj
+              ON pos.portfolio_vid = adj.portfolio_vid
+             AND pos.instrument_vid = adj.instrument_vid
+        """;
+        Long[] vids = new Long[portfolioVids.length];
+        for (int k = 0; k < vids.length; k++) vids[k] = portfolioVids[k];
+        return dslContext.fetch(sql, asOf, vids, instrumentCode).map(r -> new Quantity(
+                r.get("portfolio_vid", Long.class),
+                r.get("instrument_vid", Long.class),
+                r.get("net_qty", BigDecimal.class)));
+    }
+}
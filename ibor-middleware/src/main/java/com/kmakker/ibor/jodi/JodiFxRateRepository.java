@@ -6,6 +6,7 @@ import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -87,6 +88,51 @@ public class JodiFxRateRepository {
                         record.get("rate", BigDecimal.class)
                 ));
     }
+
+    /** Whether the code is a currency of <code>ibor.dim_currency</code>. */
+    public boolean currencyExists(String currencyCode) {
+        return Boolean.TRUE.equals(dslContext.fetchValue(
+                "SELECT EXISTS (SELECT 1 FROM ibor.dim_currency WHERE currency_code = ?::text)", currencyCode));
+    }
+
+    /**
+     * Rate(currency→base) for each currency as of one date, in one round trip: the latest direct
+     * or inverse rate on or before the date, else triangulated via USD
+     * (<code>ibor.fn_pick_fx_at_or_before</code>). Currencies without a rate are omitted;
+     * <code>fxDate</code> is the as-of date the rate was picked for.
+     */
+    public List<FxRateDTO> findFxRatesAtOrBefore(Collection<String> currencies,
+                                                 String baseCurrency,
+                                                 LocalDate asOf) {
+        if (currencies.isEmpty()) {
+            return List.of();
+        }
+
+        final String sql = """
+                WITH args AS (
+                    SELECT ?::text[] AS ccys,
+                           ?::text   AS base_ccy,
+                           ?::date   AS as_of
+                ),
+                picked AS (
+                    SELECT c.ccy,
+                           ibor.fn_pick_fx_at_or_before(c.ccy::char(3), args.base_ccy::char(3), args.as_of) AS rate
+                      FROM args, unnest(args.ccys) AS c(ccy)
+                )
+                SELECT args.as_of AS rate_date,
+                       picked.rate,
+                       picked.ccy      AS from_currency_code,
+                       args.base_ccy   AS to_currency_code
+                  FROM picked, args
+                 WHERE picked.rate IS NOT NULL
+                """;
+
+        return dslContext.resultQuery(sql, currencies.toArray(new String[0]), baseCurrency, asOf)
+                .fetch(record -> new FxRateDTO(
+                        record.get("rate_date", LocalDate.class),
+                        record.get("from_currency_code", String.class),
+                        record.get("to_currency_code", String.class),
+                        record.get("rate", BigDecimal.class)
+                ));
+    }
 }
-          
-          
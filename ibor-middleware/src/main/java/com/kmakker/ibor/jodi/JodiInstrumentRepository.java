@@ -1,27 +1,20 @@
 package com.kmakker.ibor.jodi;
 
+import com.kmakker.ibor.dto.InstrumentSearchHitDTO;
 import com.kmakker.ibor.model.instrument.Instrument;
 import com.kmakker.ibor.model.instrument.InstrumentFactory;
 import org.jooq.DSLContext;
+import org.jooq.Record;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public class JodiInstrumentRepository {
-    private final DSLContext dslContext;
-
-    public JodiInstrumentRepository(DSLContext dslContext) {
-        this.dslContext = dslContext;
-    }
-
-    public  Optional<Instrument> findByCodeAsOf(String instrumentCode, LocalDate asOfDate) {
-        final String sql = """
-            WITH args as (
-                SELECT ?::text AS instrument_code, ?::date AS as_of_date
-            )
-            SELECT
+    private static final String INSTRUMENT_COLUMNS = """
                 v.instrument_vid,
                 v.instrument_code,
                 v.instrument_type,
@@ -39,14 +32,137 @@ public class JodiInstrumentRepository {
                 v.option_type,
                 v.multiplier,
                 v.underlying_symbol
+            """;
+
+    private final DSLContext dslContext;
+
+    public JodiInstrumentRepository(DSLContext dslContext) {
+        this.dslContext = dslContext;
+    }
+
+    public  Optional<Instrument> findByCodeAsOf(String instrumentCode, LocalDate asOfDate) {
+        final String sql = """
+            WITH args as (
+                SELECT ?::text AS instrument_code, ?::date AS as_of_date
+            )
+            SELECT
+            """ + INSTRUMENT_COLUMNS + """
             FROM ibor.vw_instrument v, args
            WHERE v.instrument_code = args.instrument_code
-             AND v.valid_from <= args.as_of_date
-             AND v.valid_to >= args.as_of_date
+             AND v.validity @> args.as_of_date
          ORDER BY v.valid_from DESC
          LIMIT 1
         """;
         return dslContext.resultQuery(sql, instrumentCode, asOfDate)
                 .fetchOptional(InstrumentFactory::fromRecord);
     }
+
+    /**
+     * Bulk point-in-time lookup: one round trip for many codes at a single asOf.
+     * Codes that did not exist on that date are simply absent from the result.
+     */
+    public List<Instrument> findByCodesAsOf(Collection<String> instrumentCodes, LocalDate asOfDate) {
+        final String sql = """
+            WITH args as (
+                SELECT ?::text[] AS instrument_codes, ?::date AS as_of_date
+            )
+            SELECT
+            """ + INSTRUMENT_COLUMNS + """
+            FROM ibor.vw_instrument v, args
+           WHERE v.instrument_code = ANY(args.instrument_codes)
+             AND v.validity @> args.as_of_date
+         ORDER BY v.instrument_code
+        """;
+        return dslContext.resultQuery(sql, instrumentCodes.toArray(String[]::new), asOfDate)
+                .fetch(InstrumentFactory::fromRecord);
+    }
+
+    /**
+     * Latest version of every instrument with its ticker (equities only), used to build the
+     * in-memory search index.
+     */
+    public List<InstrumentSearchHitDTO> findSearchEntries() {
+        final String sql = """
+            SELECT DISTINCT ON (di.instrument_code)
+                   di.instrument_code,
+                   di.instrument_name,
+                   eq.ticker,
+                   di.instrument_type
+              FROM ibor.dim_instrument di
+              LEFT JOIN ibor.dim_instrument_equity eq ON eq.instrument_vid = di.instrument_vid
+          ORDER BY di.instrument_code, di.valid_from DESC
+        """;
+        return dslContext.resultQuery(sql).fetch(this::toSearchHit);
+    }
+
+    /**
+     * Database fallback for search while the instrument master is not loaded.
+     * Case-insensitive substring match on code, name and ticker; codes starting with the
+     * query are listed first.
+     */
+    public List<InstrumentSearchHitDTO> searchByText(String query, int limit) {
+        final String sql = """
+            WITH args AS (
+                SELECT lower(?::text) AS q, ?::int AS lim
+            ),
+            latest AS (
+                SELECT DISTINCT ON (di.instrument_code)
+                       di.instrument_code, di.instrument_name, eq.ticker, di.instrument_type
+                  FROM ibor.dim_instrument di
+                  LEFT JOIN ibor.dim_instrument_equity eq ON eq.instrument_vid = di.instrument_vid
+              ORDER BY di.instrument_code, di.valid_from DESC
+            )
+            SELECT l.instrument_code, l.instrument_name, l.ticker, l.instrument_type
+              FROM latest l, args
+             WHERE strpos(lower(l.instrument_code), args.q) > 0
+                OR strpos(lower(coalesce(l.instrument_name, '')), args.q) > 0
+                OR strpos(lower(coalesce(l.ticker, '')), args.q) > 0
+          ORDER BY (lower(l.instrument_code) = args.q OR lower(coalesce(l.ticker, '')) = args.q) DESC,
+                   (starts_with(lower(l.instrument_code), args.q)) DESC,
+                   l.instrument_code
+             LIMIT (SELECT lim FROM args)
+        """;
+        return dslContext.resultQuery(sql, query, limit).fetch(this::toSearchHit);
+    }
+
+    /**
+     * Every SCD2 version of every instrument, ordered by code then valid_from.
+     * Used to warm {@code InstrumentMaster}; one pass over vw_instrument.
+     */
+    public List<Instrument> findAllVersions() {
+        final String sql = """
+            SELECT
+            """ + INSTRUMENT_COLUMNS + """
+            FROM ibor.vw_instrument v
+         ORDER BY v.instrument_code, v.valid_from
+        """;
+        return dslContext.resultQuery(sql).fetch(InstrumentFactory::fromRecord);
+    }
+
+    /**
+     * Cheap change marker for the instrument dimension and its subtype tables.
+     * load_instrument_scd2 and the subtype upserts always move either the row count or
+     * the latest updated_at, so a different value means the master must be reloaded.
+     */
+    public String fetchVersionWatermark() {
+        final String sql = """
+            SELECT concat_ws('|',
+                   (SELECT count(*) FROM ibor.dim_instrument),
+                   GREATEST((SELECT max(updated_at) FROM ibor.dim_instrument),
+                            (SELECT max(updated_at) FROM ibor.dim_instrument_equity),
+                            (SELECT max(updated_at) FROM ibor.dim_instrument_bond),
+                            (SELECT max(updated_at) FROM ibor.dim_instrument_futures),
+                            (SELECT max(updated_at) FROM ibor.dim_instrument_options))) AS watermark
+        """;
+        return dslContext.resultQuery(sql).fetchOne("watermark", String.class);
+    }
+
+    private InstrumentSearchHitDTO toSearchHit(Record record) {
+        return new InstrumentSearchHitDTO(
+                record.get("instrument_code", String.class),
+                record.get("instrument_name", String.class),
+                record.get("ticker", String.class),
+                record.get("instrument_type", String.class)
+        );
+    }
 }
@@ -0,0 +1,181 @@
+package com.kmakker.ibor.jodi;
+
+import org.jooq.Cursor;
+import org.jooq.DSLContext;
+import org.jooq.Record;
+import org.jooq.impl.DSL;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.function.Consumer;
+
+/**
+ * Day-over-day P&amp;L inputs per instrument for one portfolio or the whole firm, streamed row by
+ * row so callers can rank without holding the result set.
+ *
+ * <p>Quantities are the asOf positions (latest snapshot plus adjustments, as in
+ * {@link JodiPositionsRepository#findPositions}), valued at the asOf price and at the prior price
+ * day's price with the same BBG-preferred pick. Both values are converted to the base currency at
+ * the asOf rate, so FX moves are not part of the P&amp;L.</p>
+ */
+@Repository
+public class JodiMoversRepository {
+    private static final int FETCH_SIZE = 2000;
+
+    /**
+     * One instrument summed over the portfolios in scope, in the base currency. Values are NaN when
+     * the instrument has no price on one of the days or no FX rate.
+     */
+    public record MoverRow(String instrumentCode, String instrumentType, String currency, double netQty,
+                           double price, double priorPrice, double marketValue, double priorMarketValue,
+                           double contribution) {}
+
+    private final DSLContext dslContext;
+
+    public JodiMoversRepository(DSLContext dslContext) {
+        this.dslContext = dslContext;
+    }
+
+    /** The latest day before <code>asOf</code> with any price, or null. */
+    public LocalDate findPriorPriceDay(LocalDate asOf) {
+        final String sql = "SELECT max(fp.price_ts)::date AS day FROM ibor.fact_price fp WHERE fp.price_ts < ?::date";
+        return dslContext.resultQuery(sql, asOf).fetchOne("day", LocalDate.class);
+    }
+
+    /**
+     * Streams one {@link MoverRow} per held instrument to <code>sink</code>.
+     *
+     * <p><code>contribution</code> is the prior value times the day's price return, summed over
+     * portfolios. <code>analytics.returns_security_daily</code> is not read: its rows are backfilled
+     * with a placeholder 0 and nothing marks the ones that were computed. The cursor runs inside a
+     * transaction so the driver fetches <code>FETCH_SIZE</code> rows at a time instead of the
+     * whole result.</p>
+     *
+     * @param portfolioCode one portfolio, or null for every portfolio valid on the date
+     */
+    public void streamMovers(LocalDate asOf, LocalDate priorDay, String portfolioCode, String baseCurrency,
+                             Consumer<MoverRow> sink) {
+        final String sql = """
+            WITH args AS (
+              SELECT ?::date AS as_of, ?::date AS prior_dt, ?::text AS portfolio_code, ?::text AS base_ccy
+            ),
+            p AS (
+              SELECT DISTINCT ON (dp.portfolio_code) dp.portfolio_vid
+              FROM ibor.dim_portfolio dp
+              JOIN args ON dp.validity @> args.as_of
+              WHERE args.portfolio_code IS NULL OR dp.portfolio_code = args.portfolio_code
+              ORDER BY dp.portfolio_code, dp.valid_from DESC
+            ),
+            latest_snap AS (
+              SELECT p.portfolio_vid,
+                     (SELECT MAX(ps.position_date)
+                      FROM ibor.fact_position_snapshot ps, args
+                      WHERE ps.portfolio_vid = p.portfolio_vid
+                        AND ps.position_date <= args.as_of) AS snap_date
+              FROM p
+            ),
+            pos AS (
+              SELECT ps.portfolio_vid, ps.instrument_vid, SUM(ps.quantity) AS qty
+              FROM latest_snap ls
+              JOIN ibor.fact_position_snapshot ps
+                ON ps.portfolio_vid = ls.portfolio_vid
+               AND ps.position_date = ls.snap_date
+              GROUP BY ps.portfolio_vid, ps.instrument_vid
+            ),
+            adj AS (
+              SELECT a.portfolio_vid, a.instrument_vid, SUM(a.quantity_delta) AS qty_adj
+              FROM p
+              JOIN ibor.fact_position_adjustment a ON a.portfolio_vid = p.portfolio_vid
+              JOIN args ON a.effective_date <= args.as_of
+              GROUP BY a.portfolio_vid, a.instrument_vid
+            ),
+            cur AS (
+              SELECT COALESCE(pos.portfolio_vid, adj.portfolio_vid) AS portfolio_vid,
+                     COALESCE(pos.instrument_vid, adj.instrument_vid) AS instrument_vid,
+                     COALESCE(pos.qty, 0)::numeric + COALESCE(adj.qty_adj, 0)::numeric AS net_qty
+              FROM pos
+              FULL OUTER JOIN adj
+                ON pos.portfolio_vid = adj.portfolio_vid
+               AND pos.instrument_vid = adj.instrument_vid
+            ),
+            held AS (
+              SELECT DISTINCT instrument_vid FROM cur WHERE net_qty <> 0
+            ),
+            i AS (
+              SELECT di.instrument_vid, di.instrument_code, di.instrument_type, di.currency_code,
+                     COALESCE(fut.contract_size, opt.multiplier, 1)::numeric AS multiplier
+              FROM held
+              JOIN ibor.dim_instrument di ON di.instrument_vid = held.instrument_vid
+              JOIN args ON di.validity @> args.as_of
+              LEFT JOIN ibor.dim_instrument_futures fut ON fut.instrument_vid = di.instrument_vid
+              LEFT JOIN ibor.dim_instrument_options  opt ON opt.instrument_vid = di.instrument_vid
+            ),
+            px AS (
+              SELECT DISTINCT ON (fp.instrument_vid, d.tag)
+                     fp.instrument_vid, d.tag, fp.price, fp.currency_code AS price_currency
+              FROM held
+              JOIN ibor.fact_price fp ON fp.instrument_vid = held.instrument_vid
+              JOIN ibor.dim_price_source dps ON dps.price_source_vid = fp.price_source_vid
+              JOIN args ON TRUE
+              JOIN LATERAL (VALUES ('now', args.as_of), ('prior', args.prior_dt)) d(tag, dt)
+                ON fp.price_ts <= (d.dt + time '23:59:59')
+              ORDER BY fp.instrument_vid, d.tag,
+                       (dps.price_source_code = 'BBG') DESC,
+                       fp.price_ts DESC
+            ),
+            valued AS (
+              SELECT i.*, now_px.price AS price, prior_px.price AS prior_price,
+                     COALESCE(now_px.price_currency, i.currency_code)::text AS value_ccy
+              FROM i
+              LEFT JOIN px now_px   ON now_px.instrument_vid = i.instrument_vid AND now_px.tag = 'now'
+              LEFT JOIN px prior_px ON prior_px.instrument_vid = i.instrument_vid AND prior_px.tag = 'prior'
+            ),
+            fx AS (
+              SELECT c.value_ccy,
+                     CASE WHEN c.value_ccy = args.base_ccy THEN 1::numeric
+                          ELSE ibor.fn_pick_fx_at_or_before(c.value_ccy::char(3), args.base_ccy::char(3), args.as_of)
+                     END AS rate
+              FROM (SELECT DISTINCT value_ccy FROM valued) c, args
+            ),
+            line AS (
+              SELECT v.instrument_code, v.instrument_type, v.value_ccy, v.price, v.prior_price, cur.net_qty,
+                     cur.net_qty * v.price * v.multiplier * fx.rate       AS mv,
+                     cur.net_qty * v.prior_price * v.multiplier * fx.rate AS prior_mv,
+                     v.price / NULLIF(v.prior_price, 0) - 1 AS day_return
+              FROM cur
+              JOIN valued v ON v.instrument_vid = cur.instrument_vid
+              LEFT JOIN fx ON fx.value_ccy = v.value_ccy
+              WHERE cur.net_qty <> 0
+            )
+            SELECT instrument_code, MIN(instrument_type) AS instrument_type, MIN(value_ccy) AS currency,
+                   SUM(net_qty) AS net_qty, MIN(price) AS price, MIN(prior_price) AS prior_price,
+                   SUM(mv) AS mv, SUM(prior_mv) AS prior_mv, SUM(prior_mv * day_return) AS contribution
+            FROM line
+            GROUP BY instrument_code
+        """;
+        dslContext.transaction(cfg -> {
+            try (Cursor<Record> cursor = DSL.using(cfg)
+                    .resultQuery(sql, asOf, priorDay, portfolioCode, baseCurrency)
+                    .fetchSize(FETCH_SIZE)
+                    .fetchLazy()) {
+                for (Record r : cursor) {
+                    sink.accept(new MoverRow(
+                            r.get("instrument_code", String.class),
+                            r.get("instrument_type", String.class),
+                            r.get("currency", String.class),
+                            orNaN(r.get("net_qty", BigDecimal.class)),
+                            orNaN(r.get("price", BigDecimal.class)),
+                            orNaN(r.get("prior_price", BigDecimal.class)),
+                            orNaN(r.get("mv", BigDecimal.class)),
+                            orNaN(r.get("prior_mv", BigDecimal.class)),
+                            orNaN(r.get("contribution", BigDecimal.class))));
+                }
+            }
+        });
+    }
+
+    private static double orNaN(BigDecimal v) {
+        return v == null ? Double.NaN : v.doubleValue();
+    }
+}
@@ -25,8 +25,7 @@ public class JodiPositionCompositionRepository {
                 SELECT portfolio_vid, portfolio_code
                   FRON ibor.dim_portfolio
                  WHERE portfolio_code = ?           -- 1
-                   AND valid_from <= ?                -- 2
-                   AND valid_to   >= ?                -- 3
+                   AND validity @> ?::date            -- 2
                  ORDER BY valid_from DESC
                   LIMIT 1
                   ),
@@ -34,21 +33,20 @@ public class JodiPositionCompositionRepository {
                     SELECT ps.instrument_vid, SUM(ps.quantity) AS qty
                     FROM ibor.fact_position_snapshot ps
                     JOIN p ON ps.portfolio_vid = p.portfolio_vid
-                    WHERE ps.position_date = ?         -- 4
+                    WHERE ps.position_date = ?         -- 3
                     GROUP BY ps.instrument_vid
                   ),
                   adj AS (
                     SELECT a.instrument_vid, SUM(a.quantity_delta) AS qty_adj
                     FROM ibor.fact_position_adjustment a
                     JOIN p ON a.portfolio_vid = p.portfolio_vid
-                    WHERE a.effective_date <= ?        -- 5
+                    WHERE a.effective_date <= ?        -- 4
                     GROUP BY a.instrument_vid
                   ),
                   i AS (
                     SELECT di.instrument_vid, di.instrument_code, di.instrument_type, di.currency_code
                     FROM ibor.dim_instrument di
-                    WHERE di.valid_from <= ?           -- 6
-                      AND di.valid_to   >= ?           -- 7
+                    WHERE di.validity @> ?::date       -- 5
                   ),
                   cur AS (
                     SELECT COALESCE(pos.instrument_vid, adj.instrument_vid) AS instrument_vid,
@@ -65,7 +63,7 @@ public class JodiPositionCompositionRepository {
                            fp.price_ts
                     FROM ibor.fact_price fp
                     JOIN ibor.dim_price_source dps ON dps.price_source_vid = fp.price_source_vid
-                    WHERE fp.price_ts <= (?::date + time '23:59:59')  -- 8
+                    WHERE fp.price_ts <= (?::date + time '23:59:59')  -- 6
                     ORDER BY fp.instrument_vid,
                              (dps.price_source_code = 'BBG') DESC,
                              fp.price_ts DESC
@@ -78,7 +76,7 @@ public class JodiPositionCompositionRepository {
                         LEFT JOIN ibor.dim_instrument_options  opt USING (instrument_vid)
                     )
                     SELECT
-                        ?                                   AS as_of,            -- 9
+                        ?                                   AS as_of,            -- 7
                         (SELECT portfolio_code FROM p)      AS portfolio_code,
                         i.instrument_code                   AS instrument_code,
                         i.instrument_type                   AS instrument_type,
@@ -110,10 +108,8 @@ public class JodiPositionCompositionRepository {
                         asOf,            // 5
                         asOf,            // 6
                         asOf,            // 7
-                        asOf,            // 8
-                        asOf,            // 9
-                        size,            // 10
-                        offset           // 11
+                        size,            // 8
+                        offset           // 9
                 ).fetch(this::toDto);
     }
 
@@ -0,0 +1,200 @@
+package com.kmakker.ibor.jodi;
+
+import org.jooq.DSLContext;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Raw inputs for position time series, read once per date range instead of once per date.
+ *
+ * <p>{@link #fetchEvents} returns every change to the inputs of {@link JodiPositionsRepository#findPositions}
+ * in date order: snapshot dates, snapshot rows, adjustments and prices. State as of the first
+ * date is folded into opening events dated <code>from</code>, so a caller can replay the list
+ * once and read off the position on every day of the range.</p>
+ */
+@Repository
+public class JodiPositionHistoryRepository {
+
+    /** Event kinds, in the order they are applied within a day. */
+    public static final int SNAP_DATE = 0;
+    public static final int SNAP_ROW = 1;
+    public static final int ADJUSTMENT = 2;
+    public static final int PRICE = 3;
+
+    public record PortfolioVersion(long portfolioVid, LocalDate validFrom, LocalDate validTo) {}
+
+    public record InstrumentVersion(long instrumentVid, String instrumentCode, String instrumentName,
+                                    String instrumentType, String currency, LocalDate validFrom,
+                                    LocalDate validTo, BigDecimal contractMultiplier) {}
+
+    /**
+     * One change, effective from <code>day</code>. Snapshot rows carry the quantity at that snapshot
+     * date, adjustments a quantity delta, prices the price with its currency and whether it is a
+     * preferred (BBG) price.
+     */
+    public record Event(int kind, LocalDate day, long instrumentVid, BigDecimal quantity,
+                        BigDecimal price, String currency, String priceSource, boolean preferred) {}
+
+    private final DSLContext dslContext;
+
+    public JodiPositionHistoryRepository(DSLContext dslContext) {
+        this.dslContext = dslContext;
+    }
+
+    /** SCD2 versions of the portfolio overlapping [from, to], oldest first. */
+    public List<PortfolioVersion> findPortfolioVersions(String portfolioCode, LocalDate from, LocalDate to) {
+        String sql = """
+            SELECT dp.portfolio_vid, dp.valid_from, dp.valid_to
+            FROM ibor.dim_portfolio dp
+            WHERE dp.portfolio_code = ?
+              AND dp.validity && daterange(?::date, ?::date, '[]')
+            ORDER BY dp.valid_from
+        """;
+        return dslContext.fetch(sql, portfolioCode, from, to)
+                .map(r -> new PortfolioVersion(
+                        r.get("portfolio_vid", Long.class),
+                        r.get("valid_from", LocalDate.class),
+                        r.get("valid_to", LocalDate.class)));
+    }
+
+    /**
+     * Events for one portfolio version over [from, to], ordered by day then kind.
+     *
+     * <ul>
+     *   <li>Snapshot dates are portfolio-wide, so a new snapshot replaces the previous one even
+     *       when <code>instrumentCode</code> filters its rows out.</li>
+     *   <li>The snapshot in force on <code>from</code> is included; adjustments up to and including
+     *       <code>from</code> arrive as one opening delta per instrument.</li>
+     *   <li>Opening prices are the latest preferred and latest other price on or before
+     *       <code>from</code>; later prices are dated by their calendar day. Prices are limited
+     *       to instruments that appear in a snapshot row or an adjustment.</li>
+     * </ul>
+     */
+    public List<Event> fetchEvents(long portfolioVid, String instrumentCode, LocalDate from, LocalDate to) {
+        String sql = """
+            WITH args AS (
+              SELECT ?::bigint AS portfolio_vid,
+                     ?::text   AS instrument_code,
+                     ?::date   AS from_dt,
+                     ?::date   AS to_dt
+            ),
+            inst AS (
+              SELECT di.instrument_vid
+              FROM ibor.dim_instrument di, args
+              WHERE args.instrument_code IS NULL OR di.instrument_code = args.instrument_code
+            ),
+            snap_dates AS (
+              SELECT DISTINCT ps.position_date AS day
+              FROM ibor.fact_position_snapshot ps, args
+              WHERE ps.portfolio_vid = args.portfolio_vid
+                AND ps.position_date <= args.to_dt
+                AND ps.position_date >= COALESCE(
+                      (SELECT MAX(s.position_date)
+                       FROM ibor.fact_position_snapshot s
+                       WHERE s.portfolio_vid = args.portfolio_vid
+                         AND s.position_date <= args.from_dt),
+                      args.from_dt)
+            ),
+            snaps AS (
+              SELECT ps.position_date AS day, ps.instrument_vid, SUM(ps.quantity)::numeric AS qty
+              FROM ibor.fact_position_snapshot ps
+              JOIN args       ON ps.portfolio_vid = args.portfolio_vid
+              JOIN snap_dates ON snap_dates.day = ps.position_date
+              JOIN inst       ON inst.instrument_vid = ps.instrument_vid
+              GROUP BY ps.position_date, ps.instrument_vid
+            ),
+            adj AS (
+              SELECT GREATEST(a.effective_date, args.from_dt) AS day,
+                     a.instrument_vid,
+                     SUM(a.quantity_delta)::numeric AS qty
+              FROM ibor.fact_position_adjustment a
+              JOIN args ON a.portfolio_vid = args.portfolio_vid
+              JOIN inst ON inst.instrument_vid = a.instrument_vid
+              WHERE a.effective_date <= args.to_dt
+              GROUP BY 1, 2
+            ),
+            held AS (
+              SELECT instrument_vid FROM snaps
+              UNION
+              SELECT instrument_vid FROM adj
+            ),
+            opening_px AS (
+              SELECT DISTINCT ON (fp.instrument_vid, dps.price_source_code = 'BBG')
+                     args.from_dt AS day, fp.instrument_vid, fp.price_ts, fp.price, fp.currency_code,
+                     dps.price_source_code, dps.price_source_code = 'BBG' AS preferred
+              FROM ibor.fact_price fp
+              JOIN held ON held.instrument_vid = fp.instrument_vid
+              JOIN ibor.dim_price_source dps ON dps.price_source_vid = fp.price_source_vid
+              JOIN args ON TRUE
+              WHERE fp.price_ts <= (args.from_dt + time '23:59:59')
+              ORDER BY fp.instrument_vid, dps.price_source_code = 'BBG', fp.price_ts DESC
+            ),
+            range_px AS (
+              SELECT fp.price_ts::date AS day, fp.instrument_vid, fp.price_ts, fp.price, fp.currency_code,
+                     dps.price_source_code, dps.price_source_code = 'BBG' AS preferred
+              FROM ibor.fact_price fp
+              JOIN held ON held.instrument_vid = fp.instrument_vid
+              JOIN ibor.dim_price_source dps ON dps.price_source_vid = fp.price_source_vid
+              JOIN args ON TRUE
+              WHERE fp.price_ts >  (args.from_dt + time '23:59:59')
+                AND fp.price_ts <= (args.to_dt + time '23:59:59')
+            )
+            SELECT 0 AS kind, day, NULL::bigint AS instrument_vid, NULL::numeric AS qty, NULL::timestamptz AS ts,
+                   NULL::numeric AS price, NULL::text AS currency, NULL::text AS source, FALSE AS preferred
+            FROM snap_dates
+            UNION ALL
+            SELECT 1, day, instrument_vid, qty, NULL, NULL, NULL, NULL, FALSE FROM snaps
+            UNION ALL
+            SELECT 2, day, instrument_vid, qty, NULL, NULL, NULL, NULL, FALSE FROM adj
+            UNION ALL
+            SELECT 3, day, instrument_vid, NULL, price_ts, price, currency_code, price_source_code, preferred FROM opening_px
+            UNION ALL
+            SELECT 3, day, instrument_vid, NULL, price_ts, price, currency_code, price_source_code, preferred FROM range_px
+            ORDER BY day, kind, ts
+        """;
+
+        return dslContext.fetch(sql, portfolioVid, instrumentCode, from, to)
+                .map(r -> {
+                    Long vid = r.get("instrument_vid", Long.class);
+                    return new Event(
+                            r.get("kind", Integer.class),
+                            r.get("day", LocalDate.class),
+                            vid == null ? 0L : vid,
+                            r.get("qty", BigDecimal.class),
+                            r.get("price", BigDecimal.class),
+                            r.get("currency", String.class),
+                            r.get("source", String.class),
+                            Boolean.TRUE.equals(r.get("preferred", Boolean.class)));
+                });
+    }
+
+    /** Instrument attributes and contract multiplier for the given instrument versions. */
+    public List<InstrumentVersion> findInstrumentVersions(Collection<Long> instrumentVids) {
+        if (instrumentVids.isEmpty()) {
+            return List.of();
+        }
+        String sql = """
+            SELECT di.instrument_vid, di.instrument_code, di.instrument_name, di.instrument_type,
+                   di.currency_code, di.valid_from, di.valid_to,
+                   COALESCE(fut.contract_size, opt.multiplier, 1)::numeric AS contract_multiplier
+            FROM ibor.dim_instrument di
+            LEFT JOIN ibor.dim_instrument_futures fut USING (instrument_vid)
+            LEFT JOIN ibor.dim_instrument_options  opt USING (instrument_vid)
+            WHERE di.instrument_vid = ANY (?::bigint[])
+        """;
+        return dslContext.fetch(sql, (Object) instrumentVids.toArray(new Long[0]))
+                .map(r -> new InstrumentVersion(
+                        r.get("instrument_vid", Long.class),
+                        r.get("instrument_code", String.class),
+                        r.get("instrument_name", String.class),
+                        r.get("instrument_type", String.class),
+                        r.get("currency_code", String.class),
+                        r.get("valid_from", LocalDate.class),
+                        r.get("valid_to", LocalDate.class),
+                        r.get("contract_multiplier", BigDecimal.class)));
+    }
+}
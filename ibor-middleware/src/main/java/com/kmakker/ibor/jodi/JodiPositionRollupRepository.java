@@ -0,0 +1,213 @@
+package com.kmakker.ibor.jodi;
+
+import com.kmakker.ibor.dto.ExposureRowDTO;
+import org.jooq.DSLContext;
+import org.jooq.Record;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Grouped exposure over one or more portfolios as-of a date, aggregated in PostgreSQL.
+ *
+ * <p>Positions follow the same rules as {@link JodiPositionsRepository#findPositions}; they are
+ * then grouped with <code>GROUP BY ROLLUP(d1, …, dn)</code>, so one statement yields the grand
+ * total, every subtotal level and the leaf groups. Dimension names map to fixed column
+ * expressions in {@link #DIMENSIONS}; nothing from the request is concatenated into the SQL.</p>
+ *
+ * <p>With a base currency, each position's market value is converted with
+ * <code>ibor.fn_pick_fx_at_or_before</code> (direct pair, else triangulated via USD), evaluated
+ * once per distinct currency. Positions without a rate are left out of the sums and counted.
+ * Without one, a group whose positions are in more than one currency has no market value rather
+ * than a sum of unlike amounts.</p>
+ */
+@Repository
+public class JodiPositionRollupRepository {
+
+    /** Rollup dimension name → column of the <code>converted</code> CTE. */
+    public static final Map<String, String> DIMENSIONS = Map.of(
+            "strategy", "strategy_code",
+            "portfolio", "portfolio_code",
+            "type", "instrument_type",
+            "currency", "currency",
+            "instrument", "instrument_code");
+
+    private final DSLContext dslContext;
+
+    public JodiPositionRollupRepository(DSLContext dslContext) {
+        this.dslContext = dslContext;
+    }
+
+    /**
+     * Rollup rows ordered depth-first: grand total, then each first-level group followed by its
+     * subgroups. Weights are the group's share of the grand total market value and are only set
+     * when the total is in one currency (always the case with a base currency).
+     */
+    public List<ExposureRowDTO> findRollup(LocalDate asOf, List<String> portfolioCodes,
+                                           List<String> groupBy, String baseCurrency) {
+        List<String> cols = groupBy.stream().map(DIMENSIONS::get).toList();
+        int n = cols.size();
+        String rollup = String.join(", ", cols);
+        // depth-first: within each parent its subtotal (grouping bit set) comes before its children
+        StringBuilder order = new StringBuilder();
+        for (int k = 0; k < n; k++) {
+            if (k > 0) order.append(", ");
+            order.append("(grouped.grouping_mask >> ").append(n - 1 - k).append(") & 1 DESC, grouped.").append(cols.get(k));
+        }
+
+        final String sql = """
+            WITH args AS (
+              SELECT ?::date AS as_of, ?::text[] AS portfolio_codes, ?::text AS base_ccy
+            ),
+            p AS (
+              SELECT DISTINCT ON (dp.portfolio_code) dp.portfolio_vid, dp.portfolio_code
+              FROM ibor.dim_portfolio dp, args
+              WHERE dp.portfolio_code = ANY (args.portfolio_codes)
+                AND dp.validity @> args.as_of
+              ORDER BY dp.portfolio_code, dp.valid_from DESC
+            ),
+            strat AS (
+              SELECT DISTINCT ON (ps.portfolio_vid) ps.portfolio_vid, s.strategy_code
+              FROM ibor.dim_portfolio_strategy ps
+              JOIN p ON p.portfolio_vid = ps.portfolio_vid
+              JOIN ibor.dim_strategy s ON s.strategy_vid = ps.strategy_vid
+              JOIN args ON args.as_of BETWEEN ps.valid_from AND ps.valid_to
+              ORDER BY ps.portfolio_vid, ps.valid_from DESC
+            ),
+            latest_snap AS (
+              SELECT p.portfolio_vid, MAX(ps.position_date) AS snap_date
+              FROM p
+              JOIN ibor.fact_position_snapshot ps ON ps.portfolio_vid = p.portfolio_vid
+              JOIN args ON ps.position_date <= args.as_of
+              GROUP BY p.portfolio_vid
+            ),
+            pos AS (
+              SELECT ps.portfolio_vid, ps.instrument_vid, SUM(ps.quantity) AS qty
+              FROM latest_snap ls
+              JOIN ibor.fact_position_snapshot ps
+                ON ps.portfolio_vid = ls.portfolio_vid
+               AND ps.position_date = ls.snap_date
+              GROUP BY ps.portfolio_vid, ps.instrument_vid
+            ),
+            adj AS (
+              SELECT a.portfolio_vid, a.instrument_vid, SUM(a.quantity_delta) AS qty_adj
+              FROM p
+              JOIN ibor.fact_position_adjustment a ON a.portfolio_vid = p.portfolio_vid
+              JOIN args ON a.effective_date <= args.as_of
+              GROUP BY a.portfolio_vid, a.instrument_vid
+            ),
+            cur AS (
+              SELECT COALESCE(pos.portfolio_vid, adj.portfolio_vid) AS portfolio_vid,
+                     COALESCE(pos.instrument_vid, adj.instrument_vid) AS instrument_vid,
+                     COALESCE(pos.qty, 0)::numeric + COALESCE(adj.qty_adj, 0)::numeric AS net_qty
+              FROM pos
+              FULL OUTER JOIN adj
+                ON pos.portfolio_vid = adj.portfolio_vid
+               AND pos.instrument_vid = adj.instrument_vid
+            ),
+            price_pick AS (
+              SELECT DISTINCT ON (fp.instrument_vid)
+                     fp.instrument_vid,
+                     fp.price,
+                     fp.currency_code AS price_currency
+              FROM ibor.fact_price fp
+              JOIN (SELECT DISTINCT instrument_vid FROM cur) held ON held.instrument_vid = fp.instrument_vid
+              JOIN ibor.dim_price_source dps ON dps.price_source_vid = fp.price_source_vid
+              JOIN args ON fp.price_ts <= (args.as_of + time '23:59:59')
+              ORDER BY fp.instrument_vid,
+                       (dps.price_source_code = 'BBG') DESC,
+                       fp.price_ts DESC
+            ),
+            valued AS (
+              SELECT COALESCE(strat.strategy_code, 'UNASSIGNED') AS strategy_code,
+                     p.portfolio_code,
+                     di.instrument_type,
+                     di.instrument_code,
+                     COALESCE(pp.price_currency, di.currency_code)::text AS currency,
+                     cur.net_qty,
+                     cur.net_qty * COALESCE(pp.price, 0)
+                       * COALESCE(fut.contract_size, opt.multiplier, 1)::numeric AS mkt_value
+              FROM cur
+              JOIN p ON p.portfolio_vid = cur.portfolio_vid
+              LEFT JOIN strat ON strat.portfolio_vid = cur.portfolio_vid
+              JOIN args ON TRUE
+              JOIN ibor.dim_instrument di
+                ON di.instrument_vid = cur.instrument_vid
+               AND di.validity @> args.as_of
+              LEFT JOIN price_pick pp ON pp.instrument_vid = cur.instrument_vid
+              LEFT JOIN ibor.dim_instrument_futures fut ON fut.instrument_vid = cur.instrument_vid
+              LEFT JOIN ibor.dim_instrument_options  opt ON opt.instrument_vid = cur.instrument_vid
+            ),
+            fx AS (
+              SELECT l.currency,
+                     CASE WHEN l.currency = args.base_ccy THEN 1::numeric
+                          ELSE ibor.fn_pick_fx_at_or_before(l.currency::char(3), args.base_ccy::char(3), args.as_of)
+                     END AS rate
+              FROM (SELECT DISTINCT currency FROM valued) l, args
+              WHERE args.base_ccy IS NOT NULL
+            ),
+            converted AS (
+              SELECT valued.*,
+                     CASE WHEN args.base_ccy IS NULL THEN valued.mkt_value
+                          ELSE valued.mkt_value * fx.rate END AS value,
+                     CASE WHEN args.base_ccy IS NULL THEN valued.currency
+                          ELSE args.base_ccy END AS value_ccy
+              FROM valued
+              JOIN args ON TRUE
+              LEFT JOIN fx ON fx.currency = valued.currency
+            ),
+            grouped AS (
+              SELECT %1$s,
+                     %2$s AS grouping_mask,
+                     COUNT(*) AS positions,
+                     COUNT(*) FILTER (WHERE value IS NULL) AS unconverted,
+                     SUM(net_qty) AS quantity,
+                     CASE WHEN COUNT(DISTINCT value_ccy) <= 1 THEN SUM(value) END AS mkt_value,
+                     CASE WHEN COUNT(DISTINCT value_ccy) = 1 THEN MIN(value_ccy) END AS value_ccy
+              FROM converted
+              GROUP BY ROLLUP(%1$s)
+            )
+            SELECT grouped.*,
+                   CASE WHEN total.value_ccy IS NOT NULL
+                        THEN grouped.mkt_value / NULLIF(total.mkt_value, 0) END AS weight
+            FROM grouped
+            JOIN grouped total ON total.grouping_mask = %3$d
+            ORDER BY %4$s
+        """.formatted(rollup, "GROUPING(" + rollup + ")", (1 << n) - 1, order);
+
+        return dslContext.fetch(sql, asOf, portfolioCodes.toArray(new String[0]), baseCurrency)
+                .map(r -> toDto(r, groupBy));
+    }
+
+    private static ExposureRowDTO toDto(Record r, List<String> groupBy) {
+        int n = groupBy.size();
+        int mask = r.get("grouping_mask", Integer.class);
+        String[] keys = new String[n];
+        for (int k = 0; k < n; k++) {
+            boolean aggregated = ((mask >> (n - 1 - k)) & 1) == 1;
+            keys[k] = aggregated ? null : r.get(DIMENSIONS.get(groupBy.get(k)), String.class);
+        }
+        int unconverted = r.get("unconverted", Integer.class);
+        return new ExposureRowDTO(
+                n - Integer.bitCount(mask),
+                key(groupBy, keys, "strategy"),
+                key(groupBy, keys, "portfolio"),
+                key(groupBy, keys, "type"),
+                key(groupBy, keys, "currency"),
+                key(groupBy, keys, "instrument"),
+                r.get("positions", Integer.class),
+                r.get("quantity", BigDecimal.class),
+                r.get("mkt_value", BigDecimal.class),
+                r.get("value_ccy", String.class),
+                r.get("weight", BigDecimal.class),
+                unconverted == 0 ? null : unconverted);
+    }
+
+    private static String key(List<String> groupBy, String[] keys, String dimension) {
+        int k = groupBy.indexOf(dimension);
+        return k < 0 ? null : keys[k];
+    }
+}
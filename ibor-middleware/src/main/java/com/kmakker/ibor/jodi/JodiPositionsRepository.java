@@ -1,8 +1,11 @@
 package com.kmakker.ibor.jodi;
 
 import com.kmakker.ibor.dto.PositionDTO;
+import com.kmakker.ibor.dto.PositionDiffDTO;
+import com.kmakker.ibor.dto.PositionDiffResponse;
 import org.jooq.DSLContext;
 import org.jooq.Record;
+import org.jooq.Result;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
@@ -12,6 +15,13 @@ import java.util.List;
 
 @Repository
 public class JodiPositionsRepository {
+
+    /**
+     * The first positions of a ranking plus totals over every position, not just those returned.
+     * <code>totalMktValue</code> is null when the positions are in more than one currency.
+     */
+    public record RankedPositions(List<PositionDTO> positions, int totalPositions, BigDecimal totalMktValue) {}
+
     private final DSLContext dslContext;
 
     public JodiPositionsRepository(DSLContext dslContext) {
@@ -22,7 +32,30 @@ public class JodiPositionsRepository {
         int p = (page == null || page < 1) ? 1 : page;
         int s = (size == null || size <= 0) ? 50 : size;
         int offset = Math.max(0, (p - 1) * s);
+        return positions(asOf, portfolioCode, accountCode, "i.instrument_code", false, s, offset)
+                .map(this::toDto);
+    }
+
+    /**
+     * The <code>limit</code> positions with the largest absolute market value, largest first
+     * (unpriced lines last, ties by instrument code). Same rules as {@link #findPositions}; the
+     * ranking is done in the statement, so a portfolio larger than the limit is ranked in full, and
+     * the totals are window aggregates over the whole book, evaluated before the LIMIT.
+     */
+    public RankedPositions findLargestPositions(LocalDate asOf, String portfolioCode, int limit) {
+        var rows = positions(asOf, portfolioCode, null,
+                "abs(cur.net_qty * pp.price * m.contract_multiplier) DESC NULLS LAST, i.instrument_code",
+                true, limit, 0);
+        if (rows.isEmpty()) {
+            return new RankedPositions(List.of(), 0, BigDecimal.ZERO);
+        }
+        Record first = rows.get(0);
+        return new RankedPositions(rows.map(this::toDto), first.get("total_positions", Integer.class),
+                first.get("total_mkt_value", BigDecimal.class));
+    }
 
+    private Result<Record> positions(LocalDate asOf, String portfolioCode, String accountCode,
+                                     String orderBy, boolean withTotals, int limit, int offset) {
         boolean filterByAccount = accountCode != null && !accountCode.isBlank();
 
         // Account filter CTE: only included when accountCode is provided.
@@ -32,16 +65,14 @@ public class JodiPositionsRepository {
               SELECT da.account_vid
               FROM ibor.dim_account da
               WHERE da.account_code = ?          -- account param
-                AND da.valid_from <= ?
-                AND da.valid_to   >= ?
+                AND da.validity @> ?::date
               LIMIT 1
             ),
             acct_ptf AS (
               SELECT dap.portfolio_vid
               FROM ibor.dim_account_portfolio dap
               JOIN acct ON dap.account_vid = acct.account_vid
-              WHERE dap.valid_from <= ?
-                AND dap.valid_to   >= ?
+              WHERE dap.validity @> ?::date
             ),
             """ : "";
 
@@ -49,6 +80,15 @@ public class JodiPositionsRepository {
                 ? "JOIN acct_ptf ON acct_ptf.portfolio_vid = dp.portfolio_vid"
                 : "";
 
+        // window aggregates see every row that passes WHERE, before ORDER BY ... LIMIT
+        String totals = withTotals ? """
+              , COUNT(*) OVER () AS total_positions
+              , CASE WHEN MIN(COALESCE(pp.price_currency, i.currency_code)) OVER ()
+                        = MAX(COALESCE(pp.price_currency, i.currency_code)) OVER ()
+                     THEN SUM(cur.net_qty * COALESCE(pp.price, 0) * m.contract_multiplier) OVER ()
+                END AS total_mkt_value
+            """ : "";
+
         final String sql = """
         WITH
         """ + accountCte + """
@@ -57,8 +97,7 @@ public class JodiPositionsRepository {
               FROM ibor.dim_portfolio dp
               """ + accountJoin + """
               WHERE dp.portfolio_code = ?        -- portfolioCode
-                AND dp.valid_from <= ?
-                AND dp.valid_to   >= ?
+                AND dp.validity @> ?::date
               ORDER BY dp.valid_from DESC
               LIMIT 1
             ),
@@ -87,8 +126,7 @@ public class JodiPositionsRepository {
                      eq.ticker
               FROM ibor.dim_instrument di
               LEFT JOIN ibor.dim_instrument_equity eq ON eq.instrument_vid = di.instrument_vid
-              WHERE di.valid_from <= ?           -- 6
-                AND di.valid_to   >= ?           -- 7
+              WHERE di.validity @> ?::date       -- 6
             ),
             cur AS (
               SELECT COALESCE(pos.instrument_vid, adj.instrument_vid) AS instrument_vid,
@@ -133,13 +171,15 @@ public class JodiPositionsRepository {
               NULL::numeric                       AS unrealized_pnl,
               COALESCE(pp.price_currency, i.currency_code) AS currency,
               m.contract_multiplier               AS contract_multiplier
+              """ + totals + """
             FROM cur
             CROSS JOIN latest_snap
             JOIN i            ON i.instrument_vid = cur.instrument_vid
             LEFT JOIN price_pick pp ON pp.instrument_vid = cur.instrument_vid
             LEFT JOIN mult       m  ON m.instrument_vid  = cur.instrument_vid
             WHERE cur.net_qty IS NOT NULL
-            ORDER BY i.instrument_code
+            ORDER BY
+              """ + orderBy + """
             LIMIT ? OFFSET ?;
         """;
 
@@ -147,26 +187,166 @@ public class JodiPositionsRepository {
         List<Object> params = new ArrayList<>();
         if (filterByAccount) {
             params.add(accountCode); // acct.account_code
-            params.add(asOf);        // acct.valid_from <=
-            params.add(asOf);        // acct.valid_to >=
-            params.add(asOf);        // acct_ptf.valid_from <=
-            params.add(asOf);        // acct_ptf.valid_to >=
+            params.add(asOf);        // acct.validity @>
+            params.add(asOf);        // acct_ptf.validity @>
         }
         params.add(portfolioCode);   // p.portfolio_code
-        params.add(asOf);            // p.valid_from <=
-        params.add(asOf);            // p.valid_to >=
+        params.add(asOf);            // p.validity @>
         params.add(asOf);            // latest_snap.position_date <=
         params.add(asOf);            // adj.effective_date <=
-        params.add(asOf);            // i.valid_from <=
-        params.add(asOf);            // i.valid_to >=
+        params.add(asOf);            // i.validity @>
         params.add(asOf);            // price_pick.price_ts <=
         params.add(asOf);            // as_of literal
-        params.add(s);               // LIMIT
+        params.add(limit);           // LIMIT
         params.add(offset);          // OFFSET
 
         return dslContext
                 .resultQuery(sql, params.toArray())
-                .fetch(this::toDto);
+                .fetch();
+    }
+
+    /**
+     * Positions that differ between two as-of dates, computed in one statement.
+     *
+     * <p>Both sides use the same rules as {@link #findPositions} (latest snapshot on or before the
+     * date, adjustments up to it, BBG-preferred latest price, contract multiplier), evaluated over a
+     * two-row <code>dates</code> CTE so each table is scanned once for both dates. The sides are
+     * FULL OUTER JOINed on instrument code and only rows whose quantity, price or market value
+     * differ are returned, along with the number of instruments held on either date.</p>
+     */
+    public PositionDiffResponse findPositionDiff(String portfolioCode, LocalDate asOf1, LocalDate asOf2) {
+        final String sql = """
+            WITH args AS (
+              SELECT ?::text AS portfolio_code, ?::date AS as_of1, ?::date AS as_of2
+            ),
+            dates AS (
+              SELECT 1 AS side, as_of1 AS as_of FROM args
+              UNION ALL
+              SELECT 2 AS side, as_of2 AS as_of FROM args
+            ),
+            p AS (
+              SELECT DISTINCT ON (dates.side) dates.side, dates.as_of, dp.portfolio_vid
+              FROM dates
+              JOIN args ON TRUE
+              JOIN ibor.dim_portfolio dp
+                ON dp.portfolio_code = args.portfolio_code
+               AND dp.validity @> dates.as_of
+              ORDER BY dates.side, dp.valid_from DESC
+            ),
+            latest_snap AS (
+              SELECT p.side, MAX(ps.position_date) AS snap_date
+              FROM p
+              JOIN ibor.fact_position_snapshot ps
+                ON ps.portfolio_vid = p.portfolio_vid
+               AND ps.position_date <= p.as_of
+              GROUP BY p.side
+            ),
+            pos AS (
+              SELECT p.side, ps.instrument_vid, SUM(ps.quantity) AS qty
+              FROM p
+              JOIN latest_snap ls ON ls.side = p.side
+              JOIN ibor.fact_position_snapshot ps
+                ON ps.portfolio_vid = p.portfolio_vid
+               AND ps.position_date = ls.snap_date
+              GROUP BY p.side, ps.instrument_vid
+            ),
+            adj AS (
+              SELECT p.side, a.instrument_vid, SUM(a.quantity_delta) AS qty_adj
+              FROM p
+              JOIN ibor.fact_position_adjustment a
+                ON a.portfolio_vid = p.portfolio_vid
+               AND a.effective_date <= p.as_of
+              GROUP BY p.side, a.instrument_vid
+            ),
+            cur AS (
+              SELECT COALESCE(pos.side, adj.side) AS side,
+                     COALESCE(pos.instrument_vid, adj.instrument_vid) AS instrument_vid,
+                     COALESCE(pos.qty, 0)::numeric + COALESCE(adj.qty_adj, 0)::numeric AS net_qty
+              FROM pos
+              FULL OUTER JOIN adj ON pos.side = adj.side AND pos.instrument_vid = adj.instrument_vid
+            ),
+            held AS (
+              SELECT DISTINCT instrument_vid FROM cur
+            ),
+            price_pick AS (
+              SELECT DISTINCT ON (dates.side, fp.instrument_vid)
+                     dates.side,
+                     fp.instrument_vid,
+                     fp.price,
+                     fp.currency_code AS price_currency
+              FROM dates
+              JOIN ibor.fact_price fp ON fp.price_ts <= (dates.as_of + time '23:59:59')
+              JOIN held ON held.instrument_vid = fp.instrument_vid
+              JOIN ibor.dim_price_source dps ON dps.price_source_vid = fp.price_source_vid
+              ORDER BY dates.side, fp.instrument_vid,
+                       (dps.price_source_code = 'BBG') DESC,
+                       fp.price_ts DESC
+            ),
+            side_rows AS (
+              SELECT cur.side,
+                     di.instrument_code,
+                     di.instrument_name,
+                     di.instrument_type,
+                     cur.net_qty,
+                     pp.price,
+                     cur.net_qty * COALESCE(pp.price, 0)
+                       * COALESCE(fut.contract_size, opt.multiplier, 1)::numeric AS mkt_value,
+                     COALESCE(pp.price_currency, di.currency_code) AS currency
+              FROM cur
+              JOIN dates ON dates.side = cur.side
+              JOIN ibor.dim_instrument di
+                ON di.instrument_vid = cur.instrument_vid
+               AND di.validity @> dates.as_of
+              LEFT JOIN price_pick pp ON pp.side = cur.side AND pp.instrument_vid = cur.instrument_vid
+              LEFT JOIN ibor.dim_instrument_futures fut ON fut.instrument_vid = cur.instrument_vid
+              LEFT JOIN ibor.dim_instrument_options  opt ON opt.instrument_vid = cur.instrument_vid
+            ),
+            joined AS (
+              SELECT COALESCE(b.instrument_code, a.instrument_code) AS instrument_id,
+                     COALESCE(b.instrument_name, a.instrument_name) AS instrument_name,
+                     COALESCE(b.instrument_type, a.instrument_type) AS instrument_type,
+                     CASE WHEN a.instrument_code IS NULL THEN 'ADDED'
+                          WHEN b.instrument_code IS NULL THEN 'REMOVED'
+                          ELSE 'CHANGED' END AS change,
+                     a.net_qty   AS net_qty1,  b.net_qty   AS net_qty2,
+                     a.price     AS price1,    b.price     AS price2,
+                     a.mkt_value AS mkt_value1, b.mkt_value AS mkt_value2,
+                     COALESCE(b.mkt_value, 0) - COALESCE(a.mkt_value, 0) AS mkt_value_change,
+                     COALESCE(b.currency, a.currency) AS currency,
+                     (a.instrument_code IS NULL OR b.instrument_code IS NULL
+                       OR a.net_qty   IS DISTINCT FROM b.net_qty
+                       OR a.price     IS DISTINCT FROM b.price
+                       OR a.mkt_value IS DISTINCT FROM b.mkt_value) AS changed
+              FROM (SELECT * FROM side_rows WHERE side = 1) a
+              FULL OUTER JOIN (SELECT * FROM side_rows WHERE side = 2) b
+                ON b.instrument_code = a.instrument_code
+            )
+            -- one row carrying the count even when nothing changed
+            SELECT c.instruments_compared, j.*
+            FROM (SELECT COUNT(*)::int AS instruments_compared FROM joined) c
+            LEFT JOIN joined j ON j.changed
+            ORDER BY j.instrument_id
+        """;
+
+        var result = dslContext.fetch(sql, portfolioCode, asOf1, asOf2);
+        int compared = result.isEmpty() ? 0 : result.get(0).get("instruments_compared", Integer.class);
+        List<PositionDiffDTO> changes = result.stream()
+                .filter(r -> r.get("instrument_id") != null)
+                .map(r -> new PositionDiffDTO(
+                r.get("instrument_id", String.class),
+                r.get("instrument_name", String.class),
+                r.get("instrument_type", String.class),
+                r.get("change", String.class),
+                r.get("net_qty1", BigDecimal.class),
+                r.get("net_qty2", BigDecimal.class),
+                r.get("price1", BigDecimal.class),
+                r.get("price2", BigDecimal.class),
+                r.get("mkt_value1", BigDecimal.class),
+                r.get("mkt_value2", BigDecimal.class),
+                r.get("mkt_value_change", BigDecimal.class),
+                r.get("currency", String.class)))
+                .toList();
+        return new PositionDiffResponse(portfolioCode, asOf1, asOf2, compared, changes);
     }
 
     private PositionDTO toDto(Record record) {
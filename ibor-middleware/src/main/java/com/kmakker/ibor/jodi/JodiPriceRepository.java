@@ -6,7 +6,10 @@ import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Repository
 public class JodiPriceRepository {
@@ -32,7 +35,7 @@ public class JodiPriceRepository {
                SELECT di.instrument_vid
                FROM ibor.dim_instrument di, args
                WHERE di.instrument_code = args.instrument_code
-                 AND di.valid_from <= args.to_dt AND di.valid_to >= args.to_dt
+                 AND di.validity @> args.to_dt
                LIMIT 1
            )
            SELECT fp.price_ts,
@@ -58,4 +61,59 @@ public class JodiPriceRepository {
                 ))
                 .toList();
     }
+
+    /**
+     * Price history for several instruments in one round trip. Instruments are resolved as of
+     * <code>to_dt</code>, like {@link #findPrices}; the result is keyed by instrument code in the
+     * order requested, with an empty list for codes that have no prices in the window.
+     */
+    public Map<String, List<PriceRowDTO>> findPricesForInstruments(List<String> instrumentCodes,
+                                                                   LocalDate from_dt,
+                                                                   LocalDate to_dt,
+                                                                   String source) {
+        Map<String, List<PriceRowDTO>> out = new LinkedHashMap<>();
+        for (String code : instrumentCodes) {
+            out.put(code, new ArrayList<>());
+        }
+        if (out.isEmpty()) {
+            return out;
+        }
+
+        String sql = """
+          WITH args AS (
+               SELECT ?::text[] AS instrument_codes,
+                      ?::date AS from_dt,
+                      ?::date AS to_dt,
+                      ?::text AS source_code
+           ),
+           i AS (
+               SELECT DISTINCT ON (di.instrument_code) di.instrument_vid, di.instrument_code
+               FROM ibor.dim_instrument di, args
+               WHERE di.instrument_code = ANY (args.instrument_codes)
+                 AND di.validity @> args.to_dt
+               ORDER BY di.instrument_code, di.valid_from DESC
+           )
+           SELECT i.instrument_code,
+                  fp.price_ts,
+                  fp.price,
+                  fp.currency_code,
+                  dps.price_source_code
+           FROM ibor.fact_price fp
+           JOIN i ON fp.instrument_vid = i.instrument_vid
+           JOIN ibor.dim_price_source dps ON dps.price_source_vid = fp.price_source_vid
+           JOIN args ON TRUE
+           WHERE fp.price_ts BETWEEN args.from_dt AND (args.to_dt + time '23:59:59')
+             AND (args.source_code IS NULL OR dps.price_source_code = args.source_code)
+           ORDER BY i.instrument_code, fp.price_ts ASC
+        """;
+
+        dslContext.fetch(sql, out.keySet().toArray(new String[0]), from_dt, to_dt, source)
+                .forEach(record -> out.get(record.get("instrument_code", String.class)).add(new PriceRowDTO(
+                        record.get("price_ts", java.time.OffsetDateTime.class).toInstant(),
+                        record.get("price", BigDecimal.class),
+                        record.get("currency_code", String.class),
+                        record.get("price_source_code", String.class)
+                )));
+        return out;
+    }
 }
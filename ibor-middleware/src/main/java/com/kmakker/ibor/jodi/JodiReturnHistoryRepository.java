@@ -0,0 +1,85 @@
+package com.kmakker.ibor.jodi;
+
+import org.jooq.DSLContext;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Daily price history for the whole instrument universe, the input to historical-simulation
+ * risk. Prices are raw; corporate actions are applied by the caller.
+ */
+@Repository
+public class JodiReturnHistoryRepository {
+
+    public record DailyPrice(String instrumentCode, LocalDate day, double price) {}
+
+    private final DSLContext dslContext;
+
+    public JodiReturnHistoryRepository(DSLContext dslContext) {
+        this.dslContext = dslContext;
+    }
+
+    /** Day of the newest price, or null when there are no prices. */
+    public LocalDate findLatestPriceDay() {
+        final String sql = "SELECT max(fp.price_ts)::date AS day FROM ibor.fact_price fp";
+        return dslContext.resultQuery(sql).fetchOne("day", LocalDate.class);
+    }
+
+    /** The latest <code>count</code> days on or before <code>asOf</code> with any price, oldest first. */
+    public List<LocalDate> findPriceDays(LocalDate asOf, int count) {
+        String sql = """
+            SELECT day FROM (
+              SELECT DISTINCT fp.price_ts::date AS day
+              FROM ibor.fact_price fp
+              WHERE fp.price_ts <= (?::date + time '23:59:59')
+              ORDER BY day DESC
+              LIMIT ?
+            ) d
+            ORDER BY day
+        """;
+        return dslContext.fetch(sql, asOf, count).map(r -> r.get("day", LocalDate.class));
+    }
+
+    /**
+     * One price per instrument code and day over [from, to], ordered by code then day: the day's
+     * latest price from a single source per instrument for the whole range, BBG when it priced the
+     * instrument in the range, else the source with the most priced days. Switching source from
+     * day to day would turn the basis between vendors into returns.
+     */
+    public List<DailyPrice> findDailyPrices(LocalDate from, LocalDate to) {
+        String sql = """
+            WITH args AS (
+              SELECT ?::date AS from_dt, ?::date AS to_dt
+            ),
+            px AS (
+              SELECT di.instrument_code, dps.price_source_code, fp.price_ts, fp.price
+              FROM ibor.fact_price fp
+              JOIN args ON fp.price_ts >= args.from_dt
+                       AND fp.price_ts <= (args.to_dt + time '23:59:59')
+              JOIN ibor.dim_instrument di ON di.instrument_vid = fp.instrument_vid
+              JOIN ibor.dim_price_source dps ON dps.price_source_vid = fp.price_source_vid
+              WHERE fp.price > 0
+            ),
+            src AS (
+              SELECT DISTINCT ON (instrument_code) instrument_code, price_source_code
+              FROM px
+              GROUP BY instrument_code, price_source_code
+              ORDER BY instrument_code, (price_source_code = 'BBG') DESC,
+                       count(DISTINCT price_ts::date) DESC, price_source_code
+            )
+            SELECT DISTINCT ON (px.instrument_code, px.price_ts::date)
+                   px.instrument_code, px.price_ts::date AS day, px.price
+            FROM px
+            JOIN src ON src.instrument_code = px.instrument_code
+                    AND src.price_source_code = px.price_source_code
+            ORDER BY px.instrument_code, px.price_ts::date, px.price_ts DESC
+        """;
+        return dslContext.fetch(sql, from, to).map(r -> new DailyPrice(
+                r.get("instrument_code", String.class),
+                r.get("day", LocalDate.class),
+                r.get("price", BigDecimal.class).doubleValue()));
+    }
+}
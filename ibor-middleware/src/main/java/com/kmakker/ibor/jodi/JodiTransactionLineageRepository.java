@@ -9,7 +9,10 @@ import org.springframework.stereotype.Repository;
 import java.math.BigDecimal;
 import java.sql.Date;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Repository for transaction lineage and position detail lookups using jOOQ with plain SQL.
@@ -20,7 +23,8 @@ import java.util.List;
  *       (<code>as_of</code>, <code>portfolio_code</code>, <code>instrument_code</code>). This keeps
  *       the SQL readable and avoids repeating placeholders.</li>
  *   <li>Temporal SCD2 joins: dimension tables (portfolio/instrument) are constrained to the
- *       provided <code>as_of</code> window (<code>valid_from &lt;= as_of &amp;&amp; valid_to &gt;= as_of</code>).</li>
+ *       provided <code>as_of</code> by range containment (<code>validity @&gt; as_of</code>), which is
+ *       answered by the GiST index behind each dimension's exclusion constraint.</li>
  *   <li>Explicit JOINs only (no implicit comma joins) to ensure alias scope is unambiguous and
  *       avoid errors such as “invalid reference to FROM-clause entry”.</li>
  *   <li>Dates are bound as <code>java.sql.Date</code> and compared via <code>args.as_of</code> or
@@ -57,7 +61,7 @@ public class JodiTransactionLineageRepository {
                     SELECT dp.portfolio_vid, dp.portfolio_code
                       FROM ibor.dim_portfolio dp, args
                      WHERE dp.portfolio_code = args.portfolio_code
-                       AND dp.valid_from <= args.as_of AND dp.valid_to >= args.as_of
+                       AND dp.validity @> args.as_of
                      ORDER BY valid_from DESC
                      LIMIT 1
                   ),
@@ -65,7 +69,7 @@ public class JodiTransactionLineageRepository {
                     SELECT di.instrument_vid, di.instrument_code, di.instrument_type, di.currency_code
                       FROM ibor.dim_instrument di, args
                      WHERE di.instrument_code = args.instrument_code
-                       AND di.valid_from <= args.as_of AND di.valid_to >= args.as_of
+                       AND di.validity @> args.as_of
                      ORDER BY valid_from DESC
                      LIMIT 1
                   ),
@@ -160,7 +164,7 @@ public class JodiTransactionLineageRepository {
                       SELECT dp.portfolio_vid
                         FROM ibor.dim_portfolio dp, args
                       WHERE dp.portfolio_code = args.portfolio_code
-                        AND dp.valid_from <= args.as_of AND dp.valid_to >= args.as_of
+                        AND dp.validity @> args.as_of
                       ORDER BY valid_from DESC
                       LIMIT 1
                 ),
@@ -168,7 +172,7 @@ public class JodiTransactionLineageRepository {
                       SELECT di.instrument_vid
                         FROM ibor.dim_instrument di, args
                        WHERE di.instrument_code = args.instrument_code
-                        AND di.valid_from <= args.as_of AND di.valid_to >= args.as_of
+                        AND di.validity @> args.as_of
                       ORDER BY valid_from DESC
                       LIMIT 1
                 ),
@@ -191,8 +195,7 @@ public class JodiTransactionLineageRepository {
                     JOIN ibor.dim_account_portfolio ap
                       ON ap.account_vid   = tf.account_vid
                      AND ap.portfolio_vid = p.portfolio_vid
-                     AND ap.valid_from   <= tf.trade_date
-                     AND ap.valid_to     >= tf.trade_date
+                     AND ap.validity     @> tf.trade_date
                    WHERE tf.trade_date <= (args.as_of + time '23:59:59')
                 ),
                 adjustments AS (
@@ -242,6 +245,116 @@ public class JodiTransactionLineageRepository {
         ));
     }
 
+    /**
+     * Transaction lineage for several instruments of one portfolio in a single query.
+     *
+     * <p>Same union of trades and adjustments as {@link #fetchTransactions}, with the portfolio
+     * resolved once and the instruments matched by <code>ANY(text[])</code>. The result is keyed
+     * by instrument code in the order requested; codes without transactions map to an empty list.</p>
+     */
+    public Map<String, List<TransactionDTO>> fetchTransactionsForInstruments(LocalDate asOf,
+                                                                           String portfolioCode,
+                                                                           List<String> instrumentCodes) {
+        Map<String, List<TransactionDTO>> out = new LinkedHashMap<>();
+        for (String code : instrumentCodes) {
+            out.put(code, new ArrayList<>());
+        }
+        if (out.isEmpty()) {
+            return out;
+        }
+
+        String sql = """
+                WITH args AS (
+                    SELECT cast(? as date) AS as_of,
+                           cast(? as text) AS portfolio_code,
+                           cast(? as text[]) AS instrument_codes
+                ),
+                p AS (
+                      SELECT dp.portfolio_vid
+                        FROM ibor.dim_portfolio dp, args
+                      WHERE dp.portfolio_code = args.portfolio_code
+                        AND dp.validity @> args.as_of
+                      ORDER BY valid_from DESC
+                      LIMIT 1
+                ),
+                i AS (
+                      SELECT DISTINCT ON (di.instrument_code) di.instrument_vid, di.instrument_code
+                        FROM ibor.dim_instrument di, args
+                       WHERE di.instrument_code = ANY (args.instrument_codes)
+                        AND di.validity @> args.as_of
+                      ORDER BY di.instrument_code, valid_from DESC
+                ),
+                trades AS (
+                    SELECT i.instrument_code,
+                           'TRADE'::text AS source,
+                           tf.trade_code AS external_id,
+                           tf.trade_date::timestamp AS ts,
+                           CASE WHEN tf.quantity > 0 THEN 'BUY'::text ELSE 'SELL'::text END AS action,
+                           tf.quantity::numeric AS quantity,
+                           tf.price::numeric AS price,
+                           (tf.quantity * tf.price)::numeric AS gross_amount,
+                           tf.broker_code AS broker,
+                           NULL::text AS strategy,
+                           NULL::text AS notes
+                    FROM args
+                    JOIN p ON TRUE
+                    JOIN i ON TRUE
+                    JOIN ibor.fact_trade tf
+                      ON tf.instrument_vid = i.instrument_vid
+                    JOIN ibor.dim_account_portfolio ap
+                      ON ap.account_vid   = tf.account_vid
+                     AND ap.portfolio_vid = p.portfolio_vid
+                     AND ap.validity     @> tf.trade_date
+                   WHERE tf.trade_date <= (args.as_of + time '23:59:59')
+                ),
+                adjustments AS (
+                    SELECT i.instrument_code,
+                           'ADJUST'::text AS source,
+                           a.position_adjustment_id::text AS external_id,
+                           a.effective_date::timestamp AS ts,
+                           'ADJUST'::text AS action,
+                           a.quantity_delta::numeric AS quantity,
+                           NULL::numeric AS price,
+                           a.quantity_delta::numeric AS gross_amount,
+                           NULL::text AS broker,
+                           NULL::text AS strategy,
+                           a.reason AS notes
+                    FROM args
+                    JOIN p ON TRUE
+                    JOIN i ON TRUE
+                    JOIN ibor.fact_position_adjustment a
+                      ON a.portfolio_vid = p.portfolio_vid
+                     AND a.instrument_vid = i.instrument_vid
+                    WHERE a.effective_date <= args.as_of
+                )
+                SELECT * FROM (
+                    SELECT * FROM trades
+                    UNION ALL
+                    SELECT * FROM adjustments
+                ) AS all_transactions
+                ORDER BY instrument_code, ts ASC, source DESC;
+        """;
+
+        Object[] params = new Object[]{ Date.valueOf(asOf), portfolioCode, out.keySet().toArray(new String[0]) };
+        if (log.isDebugEnabled()) {
+            log.debug("fetchTransactionsForInstruments SQL:\n{}", inlineParameters(sql, params));
+        }
+
+        dslContext.resultQuery(sql, params).forEach(r -> out.get(r.get("instrument_code", String.class)).add(new TransactionDTO(
+                r.get("source", String.class),
+                r.get("external_id", String.class),
+                r.get("ts", java.time.LocalDateTime.class),
+                r.get("action", String.class),
+                r.get("quantity", BigDecimal.class),
+                r.get("price", BigDecimal.class),
+                r.get("gross_amount", BigDecimal.class),
+                r.get("broker", String.class),
+                r.get("strategy", String.class),
+                r.get("notes", String.class)
+        )));
+        return out;
+    }
+
     /**
      * Debug helper: produces a best-effort SQL string with parameters inlined in place of '?'
      * for log inspection only. Do not execute the returned string.
@@ -275,6 +388,14 @@ public class JodiTransactionLineageRepository {
             case Number number -> {
                 return v.toString();
             }
+            case String[] arr -> {
+                StringBuilder sb = new StringBuilder("ARRAY[");
+                for (int i = 0; i < arr.length; i++) {
+                    if (i > 0) sb.append(", ");
+                    sb.append(formatParam(arr[i]));
+                }
+                return sb.append("]::text[]").toString();
+            }
             default -> {
             }
         }
@@ -0,0 +1,52 @@
+package com.kmakker.ibor.metrics;
+
+import org.jooq.ExecuteContext;
+import org.jooq.ExecuteListener;
+import org.jooq.Record;
+
+/**
+ * jOOQ listener that times every statement from start to end (render, bind, execute and fetch)
+ * and counts fetched rows/bytes, reporting to {@link QueryMetrics}. State lives in the
+ * {@link ExecuteContext} data map, so one listener instance serves all threads.
+ */
+public class JooqQueryMetricsListener implements ExecuteListener {
+    private static final String STATE = JooqQueryMetricsListener.class.getName();
+
+    private final QueryMetrics metrics;
+
+    public JooqQueryMetricsListener(QueryMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    private static final class State {
+        final String queryName = QueryNames.fromCaller();
+        final long startNanos = System.nanoTime();
+        long rows;
+        long bytes;
+    }
+
+    @Override
+    public void start(ExecuteContext ctx) {
+        ctx.data(STATE, new State());
+    }
+
+    @Override
+    public void recordEnd(ExecuteContext ctx) {
+        State state = (State) ctx.data(STATE);
+        Record record = ctx.record();
+        if (state == null || record == null) return;
+        state.rows++;
+        for (int i = 0; i < record.size(); i++) {
+            state.bytes += QueryMetrics.estimateBytes(record.get(i));
+        }
+    }
+
+    @Override
+    public void end(ExecuteContext ctx) {
+        State state = (State) ctx.data(STATE);
+        if (state == null) return;
+        long rows = state.rows > 0 ? state.rows : Math.max(ctx.rows(), 0);
+        metrics.record("jooq", state.queryName, System.nanoTime() - state.startNanos,
+                rows, state.bytes, ctx.exception() == null);
+    }
+}
@@ -0,0 +1,46 @@
+package com.kmakker.ibor.metrics;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import javax.sql.DataSource;
+import java.util.Collection;
+
+/**
+ * JdbcTemplate that reports every query to {@link QueryMetrics}. All <code>query(...)</code>
+ * overloads used by the analytics repositories funnel into
+ * {@link #query(PreparedStatementCreator, PreparedStatementSetter, ResultSetExtractor)}, which is
+ * the single interception point.
+ *
+ * <p>The ResultSet is handed to the extractor unwrapped, so row mapping pays nothing per column.
+ * Rows are taken from the extracted collection (the <code>RowMapper</code> overloads return a
+ * List); other extractors report no row count, and bytes are only estimated on the jOOQ path.</p>
+ */
+public class MeteredJdbcTemplate extends JdbcTemplate {
+    private final QueryMetrics metrics;
+
+    public MeteredJdbcTemplate(DataSource dataSource, QueryMetrics metrics) {
+        super(dataSource);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public <T> T query(PreparedStatementCreator psc, PreparedStatementSetter pss, ResultSetExtractor<T> rse)
+            throws DataAccessException {
+        String queryName = QueryNames.fromCaller();
+        long start = System.nanoTime();
+        T result = null;
+        boolean success = false;
+        try {
+            result = super.query(psc, pss, rse);
+            success = true;
+            return result;
+        } finally {
+            long rows = result instanceof Collection<?> c ? c.size() : QueryMetrics.UNKNOWN;
+            metrics.record("jdbc", queryName, System.nanoTime() - start, rows, QueryMetrics.UNKNOWN, success);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.kmakker.ibor.metrics;
+
+import org.jooq.ExecuteListenerProvider;
+import org.jooq.impl.DefaultExecuteListenerProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * Wires query metrics into both data-access paths: the jOOQ listeners (metrics and slow-query
+ * capture) are picked up by Spring Boot's jOOQ auto-configuration, and the metered JdbcTemplate
+ * replaces the auto-configured one.
+ */
+@Configuration(proxyBeanMethods = false)
+public class MetricsConfiguration {
+
+    @Bean
+    public ExecuteListenerProvider queryMetricsExecuteListenerProvider(QueryMetrics metrics) {
+        return new DefaultExecuteListenerProvider(new JooqQueryMetricsListener(metrics));
+    }
+
+    @Bean
+    public ExecuteListenerProvider slowQueryExecuteListenerProvider(SlowQueryRecorder recorder) {
+        return new DefaultExecuteListenerProvider(new SlowQueryListener(recorder));
+    }
+
+    @Bean
+    public JdbcTemplate jdbcTemplate(DataSource dataSource, QueryMetrics metrics) {
+        return new MeteredJdbcTemplate(dataSource, metrics);
+    }
+}
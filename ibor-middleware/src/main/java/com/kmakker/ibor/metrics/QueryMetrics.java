@@ -0,0 +1,80 @@
+package com.kmakker.ibor.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-query database metrics, tagged by query name (see {@link QueryNames}) and client
+ * (jooq / jdbc):
+ *
+ * <ul>
+ *   <li><code>ibor.db.query</code> — latency timer with percentile histogram, also tagged by outcome</li>
+ *   <li><code>ibor.db.query.rows</code> — rows fetched per execution</li>
+ *   <li><code>ibor.db.query.bytes</code> — bytes fetched per execution, estimated from decoded values</li>
+ * </ul>
+ *
+ * <p>Counts the caller could not measure are passed as {@link #UNKNOWN} and leave their summary
+ * untouched rather than recording a zero.</p>
+ *
+ * <p>Connection pool wait time is covered by Hikari's own <code>hikaricp.connections.acquire</code>
+ * timer, which Spring Boot binds automatically.</p>
+ */
+@Component
+public class QueryMetrics {
+    /** Row or byte count that was not measured. */
+    public static final long UNKNOWN = -1;
+
+    private final MeterRegistry registry;
+
+    public QueryMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void record(String client, String queryName, long elapsedNanos, long rows, long bytes, boolean success) {
+        Timer.builder("ibor.db.query")
+                .description("Database query latency by repository method")
+                .tag("client", client)
+                .tag("query", queryName)
+                .tag("outcome", success ? "success" : "error")
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+        if (!success) return;
+        if (rows != UNKNOWN) {
+            DistributionSummary.builder("ibor.db.query.rows")
+                    .description("Rows fetched per query execution")
+                    .baseUnit("rows")
+                    .tag("client", client)
+                    .tag("query", queryName)
+                    .register(registry)
+                    .record(rows);
+        }
+        if (bytes != UNKNOWN) {
+            DistributionSummary.builder("ibor.db.query.bytes")
+                    .description("Bytes fetched per query execution (estimated from decoded values)")
+                    .baseUnit("bytes")
+                    .tag("client", client)
+                    .tag("query", queryName)
+                    .register(registry)
+                    .record(bytes);
+        }
+    }
+
+    /** Rough wire-size estimate of a decoded column value. */
+    static long estimateBytes(Object value) {
+        if (value == null) return 0;
+        if (value instanceof CharSequence s) return s.length();
+        if (value instanceof java.math.BigDecimal d) return 8 + (d.unscaledValue().bitLength() + 7) / 8;
+        if (value instanceof byte[] b) return b.length;
+        if (value instanceof Object[] a) {
+            long n = 0;
+            for (Object o : a) n += estimateBytes(o);
+            return n;
+        }
+        return 8;   // numbers, booleans, dates, timestamps
+    }
+}
@@ -0,0 +1,46 @@
+package com.kmakker.ibor.metrics;
+
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Derives a stable query name ("JodiPositionsRepository.findPositions") from the call stack, so
+ * every repository method gets its own metric series without annotating each query.
+ *
+ * <p>The name is the first frame in a repository package (<code>com.kmakker.ibor.jodi</code> or
+ * <code>com.kmakker.ibor.repositories</code>). Each repository method issues one statement, so the
+ * method identifies the SQL (and its CTEs) that a latency series belongs to.</p>
+ *
+ * <p>This runs once per statement, so the walk is kept short: frames are fetched in one batch
+ * sized for a request thread's depth, and statements issued from outside a repository (Spring
+ * Boot's own, schedulers) stop after {@link #MAX_DEPTH} frames instead of walking the whole
+ * stack.</p>
+ */
+public final class QueryNames {
+    static final String UNKNOWN = "unknown";
+    static final int MAX_DEPTH = 128;
+
+    private static final StackWalker WALKER = StackWalker.getInstance(Set.of(), MAX_DEPTH);
+
+    private QueryNames() {}
+
+    public static String fromCaller() {
+        Optional<String> name = WALKER.walk(frames -> frames
+                .limit(MAX_DEPTH)
+                .filter(f -> isRepository(f.getClassName()))
+                .findFirst()
+                .map(f -> simpleName(f.getClassName()) + "." + f.getMethodName()));
+        return name.orElse(UNKNOWN);
+    }
+
+    private static boolean isRepository(String className) {
+        return className.startsWith("com.kmakker.ibor.jodi.")
+                || className.startsWith("com.kmakker.ibor.repositories.");
+    }
+
+    private static String simpleName(String className) {
+        String s = className.substring(className.lastIndexOf('.') + 1);
+        int inner = s.indexOf('$');   // lambdas / anonymous classes inside the repository
+        return inner > 0 ? s.substring(0, inner) : s;
+    }
+}
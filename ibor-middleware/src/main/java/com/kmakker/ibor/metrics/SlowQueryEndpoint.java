@@ -0,0 +1,38 @@
+package com.kmakker.ibor.metrics;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Actuator endpoint <code>/actuator/slowqueries</code> listing the plans captured by
+ * {@link SlowQueryRecorder}, optionally narrowed to one query name
+ * (<code>/actuator/slowqueries/JodiPositionsRepository.findPositions</code>).
+ *
+ * <p>Not exposed over HTTP by default: the captures hold SQL text and timings of client queries,
+ * so it is added to <code>management.endpoints.web.exposure.include</code> only where the
+ * management port is protected.</p>
+ */
+@Component
+@Endpoint(id = "slowqueries")
+public class SlowQueryEndpoint {
+    private final SlowQueryRecorder recorder;
+
+    public SlowQueryEndpoint(SlowQueryRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @ReadOperation
+    public Map<String, List<SlowQueryPlan>> slowQueries() {
+        return recorder.snapshot();
+    }
+
+    @ReadOperation
+    public List<SlowQueryPlan> slowQuery(@Selector String queryName) {
+        return recorder.forQuery(queryName);
+    }
+}
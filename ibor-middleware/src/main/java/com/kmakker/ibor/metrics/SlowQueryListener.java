@@ -0,0 +1,37 @@
+package com.kmakker.ibor.metrics;
+
+import org.jooq.ExecuteContext;
+import org.jooq.ExecuteListener;
+import org.jooq.Query;
+
+import java.util.List;
+
+/**
+ * jOOQ listener that hands statements slower than the configured threshold to
+ * {@link SlowQueryRecorder}, together with the SQL and the values bound to it.
+ */
+public class SlowQueryListener implements ExecuteListener {
+    private static final String START = SlowQueryListener.class.getName();
+
+    private final SlowQueryRecorder recorder;
+
+    public SlowQueryListener(SlowQueryRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @Override
+    public void executeStart(ExecuteContext ctx) {
+        ctx.data(START, System.nanoTime());
+    }
+
+    @Override
+    public void end(ExecuteContext ctx) {
+        Long start = (Long) ctx.data(START);
+        if (start == null || ctx.exception() != null) return;
+        long elapsed = System.nanoTime() - start;
+        if (!recorder.isSlow(elapsed)) return;
+        Query query = ctx.query();
+        List<Object> binds = query == null ? List.of() : query.getBindValues();
+        recorder.onSlowQuery(QueryNames.fromCaller(), ctx.sql(), binds, elapsed);
+    }
+}
@@ -0,0 +1,18 @@
+package com.kmakker.ibor.metrics;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * A slow statement captured by {@link SlowQueryRecorder}: the SQL, the values bound to it and the
+ * plan PostgreSQL chose for them (or the reason no plan could be taken).
+ */
+public record SlowQueryPlan(
+        String queryName,
+        Instant capturedAt,
+        long elapsedMs,
+        String sql,
+        List<String> bindValues,
+        String plan,
+        String error
+) {}
@@ -0,0 +1,199 @@
+package com.kmakker.ibor.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SlowQueryRecorder
+ *
+ * <p>Captures the plan PostgreSQL actually chooses for statements that exceed
+ * <code>ibor.slow-query.threshold-ms</code>:</p>
+ * <ul>
+ *   <li>A sampled share of slow statements is re-run as <code>EXPLAIN (ANALYZE, BUFFERS)</code>
+ *       with the same bind values, on a separate pooled connection and off the request thread.</li>
+ *   <li>Only read statements (<code>SELECT</code> / <code>WITH</code>) are explained, inside a
+ *       read-only transaction that is rolled back, under a statement timeout.</li>
+ *   <li>At most one explain runs at a time with a small backlog; when it is full further slow
+ *       statements are recorded without a plan rather than queued.</li>
+ *   <li>The last <code>plans-per-query</code> captures are kept per query name and served by
+ *       {@link SlowQueryEndpoint}.</li>
+ *   <li>Bind values are kept for the EXPLAIN re-run only; captures show their types unless
+ *       <code>ibor.slow-query.show-bind-values</code> is set, since they carry portfolio codes and
+ *       other client data.</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class SlowQueryRecorder implements DisposableBean {
+
+    private static final int MAX_BIND_LENGTH = 200;
+
+    private final DataSource dataSource;
+    private final boolean enabled;
+    private final long thresholdNanos;
+    private final double sampleRate;
+    private final boolean showBindValues;
+    private final int plansPerQuery;
+    private final long explainTimeoutMs;
+    private final Executor executor;
+    private final Map<String, ArrayDeque<SlowQueryPlan>> plans = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SlowQueryRecorder(DataSource dataSource,
+                             @Value("${ibor.slow-query.enabled:true}") boolean enabled,
+                             @Value("${ibor.slow-query.threshold-ms:500}") long thresholdMs,
+                             @Value("${ibor.slow-query.sample-rate:0.05}") double sampleRate,
+                             @Value("${ibor.slow-query.show-bind-values:false}") boolean showBindValues,
+                             @Value("${ibor.slow-query.plans-per-query:5}") int plansPerQuery,
+                             @Value("${ibor.slow-query.explain-timeout-ms:30000}") long explainTimeoutMs) {
+        this(dataSource, enabled, thresholdMs, sampleRate, showBindValues, plansPerQuery, explainTimeoutMs,
+                new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(4),
+                        r -> Thread.ofPlatform().daemon().name("slow-query-explain").unstarted(r),
+                        new ThreadPoolExecutor.AbortPolicy()));
+    }
+
+    SlowQueryRecorder(DataSource dataSource, boolean enabled, long thresholdMs, double sampleRate,
+                      boolean showBindValues, int plansPerQuery, long explainTimeoutMs, Executor executor) {
+        this.dataSource = dataSource;
+        this.enabled = enabled;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+        this.sampleRate = sampleRate;
+        this.showBindValues = showBindValues;
+        this.plansPerQuery = Math.max(1, plansPerQuery);
+        this.explainTimeoutMs = explainTimeoutMs;
+        this.executor = executor;
+    }
+
+    public boolean isSlow(long elapsedNanos) {
+        return enabled && elapsedNanos >= thresholdNanos;
+    }
+
+    /** Called from the execution pipeline once a statement has finished above the threshold. */
+    public void onSlowQuery(String queryName, String sql, List<Object> binds, long elapsedNanos) {
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        List<String> shownBinds = binds.stream()
+                .map(showBindValues ? SlowQueryRecorder::show : SlowQueryRecorder::redact)
+                .toList();
+        log.warn("Slow query {} took {} ms", queryName, elapsedMs);
+
+        if (!isRead(sql)) {
+            store(new SlowQueryPlan(queryName, Instant.now(), elapsedMs, sql, shownBinds, null,
+                    "not explained: only SELECT/WITH statements are re-run"));
+            return;
+        }
+        if (ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            store(new SlowQueryPlan(queryName, Instant.now(), elapsedMs, sql, shownBinds, null,
+                    "not explained: not sampled"));
+            return;
+        }
+        List<Object> bindCopy = new ArrayList<>(binds);
+        try {
+            executor.execute(() -> store(explain(queryName, sql, bindCopy, shownBinds, elapsedMs)));
+        } catch (RuntimeException rejected) {
+            store(new SlowQueryPlan(queryName, Instant.now(), elapsedMs, sql, shownBinds, null,
+                    "not explained: explain backlog full"));
+        }
+    }
+
+    /** Captured plans by query name, most recent first. */
+    public Map<String, List<SlowQueryPlan>> snapshot() {
+        Map<String, List<SlowQueryPlan>> out = new TreeMap<>();
+        plans.forEach((name, ring) -> out.put(name, copy(ring)));
+        return out;
+    }
+
+    public List<SlowQueryPlan> forQuery(String queryName) {
+        ArrayDeque<SlowQueryPlan> ring = plans.get(queryName);
+        return ring == null ? List.of() : copy(ring);
+    }
+
+    private SlowQueryPlan explain(String queryName, String sql, List<Object> binds,
+                                  List<String> shownBinds, long elapsedMs) {
+        try (Connection conn = dataSource.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                try (Statement st = conn.createStatement()) {
+                    st.execute("SET TRANSACTION READ ONLY");
+                    st.execute("SET LOCAL statement_timeout = " + explainTimeoutMs);
+                }
+                StringBuilder plan = new StringBuilder();
+                try (PreparedStatement ps = conn.prepareStatement("EXPLAIN (ANALYZE, BUFFERS) " + sql)) {
+                    for (int i = 0; i < binds.size(); i++) {
+                        ps.setObject(i + 1, binds.get(i));
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) plan.append(rs.getString(1)).append('\n');
+                    }
+                }
+                return new SlowQueryPlan(queryName, Instant.now(), elapsedMs, sql, shownBinds, plan.toString(), null);
+            } finally {
+                conn.rollback();
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            log.warn("EXPLAIN for slow query {} failed: {}", queryName, e.getMessage());
+            return new SlowQueryPlan(queryName, Instant.now(), elapsedMs, sql, shownBinds, null,
+                    "explain failed: " + e.getMessage());
+        }
+    }
+
+    private void store(SlowQueryPlan plan) {
+        ArrayDeque<SlowQueryPlan> ring = plans.computeIfAbsent(plan.queryName(), k -> new ArrayDeque<>(plansPerQuery));
+        synchronized (ring) {
+            if (ring.size() == plansPerQuery) ring.removeLast();
+            ring.addFirst(plan);
+        }
+    }
+
+    private static List<SlowQueryPlan> copy(ArrayDeque<SlowQueryPlan> ring) {
+        synchronized (ring) {
+            return Collections.unmodifiableList(new ArrayList<>(ring));
+        }
+    }
+
+    static boolean isRead(String sql) {
+        String s = sql == null ? "" : sql.stripLeading().toLowerCase(Locale.ROOT);
+        return s.startsWith("select") || s.startsWith("with");
+    }
+
+    private static String show(Object value) {
+        String s = value instanceof Object[] a ? Arrays.toString(a) : String.valueOf(value);
+        return s.length() > MAX_BIND_LENGTH ? s.substring(0, MAX_BIND_LENGTH) + "..." : s;
+    }
+
+    private static String redact(Object value) {
+        return value == null ? "null" : "<" + value.getClass().getSimpleName() + ">";
+    }
+
+    @Override
+    public void destroy() {
+        if (executor instanceof ExecutorService service) service.shutdownNow();
+    }
+}
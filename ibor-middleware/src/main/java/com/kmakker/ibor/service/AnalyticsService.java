@@ -18,41 +18,54 @@ public class AnalyticsService {
     private final SecurityReturnRepository securityRepo;
     private final BenchmarkSegmentRepository benchmarkRepo;
     private final BrinsonAttributionRepository brinsonRepo;
+    private final RequestCoalescer coalescer;
 
     public AnalyticsService(PortfolioReturnRepository portfolioRepo,
                             SecurityReturnRepository securityRepo,
                             BenchmarkSegmentRepository benchmarkRepo,
-                            BrinsonAttributionRepository brinsonRepo) {
+                            BrinsonAttributionRepository brinsonRepo,
+                            RequestCoalescer coalescer) {
         this.portfolioRepo = portfolioRepo;
         this.securityRepo = securityRepo;
         this.benchmarkRepo = benchmarkRepo;
         this.brinsonRepo = brinsonRepo;
+        this.coalescer = coalescer;
     }
 
     public PortfolioReturnResponse getPortfolioReturns(String portfolioCode, String startDate, String endDate) {
-        var rows = portfolioRepo.findDailyReturns(portfolioCode, startDate, endDate);
+        var rows = coalescer.execute("analytics.portfolioReturns",
+                () -> portfolioRepo.findDailyReturns(portfolioCode, startDate, endDate),
+                portfolioCode, startDate, endDate);
         double product = rows.stream().mapToDouble(r -> 1 + r.twrr()).reduce(1, (a, b) -> a * b);
         double period = product - 1;
         return new PortfolioReturnResponse(portfolioCode, rows, period);
     }
 
     public SecurityReturnResponse getSecurityReturns(String portfolioCode, String asOfDate) {
-        var rows = securityRepo.findbyPortfolioAndDate(portfolioCode, asOfDate);
+        var rows = coalescer.execute("analytics.securityReturns",
+                () -> securityRepo.findbyPortfolioAndDate(portfolioCode, asOfDate),
+                portfolioCode, asOfDate);
         return new SecurityReturnResponse(portfolioCode, asOfDate, rows);
     }
 
     public BenchmarkSegmentResponse getBenchmarkSegments(String benchmarkCode, String startDate, String endDate) {
-        var rows = benchmarkRepo.findSegments(benchmarkCode, startDate, endDate);
+        var rows = coalescer.execute("analytics.benchmarkSegments",
+                () -> benchmarkRepo.findSegments(benchmarkCode, startDate, endDate),
+                benchmarkCode, startDate, endDate);
         return new BenchmarkSegmentResponse(benchmarkCode, rows);
     }
 
     public BrinsonAttributionDailyResponse getDailyBrinsonAttribution(String portfolioCode, String benchmarkCode, String startDate, String endDate) {
-        var rows = brinsonRepo.findDaily(portfolioCode, benchmarkCode, startDate, endDate);
+        var rows = coalescer.execute("analytics.brinsonDaily",
+                () -> brinsonRepo.findDaily(portfolioCode, benchmarkCode, startDate, endDate),
+                portfolioCode, benchmarkCode, startDate, endDate);
         return new BrinsonAttributionDailyResponse(portfolioCode, benchmarkCode, rows);
     }
 
     public BrinsonAttributionPeriodResponse getPeriodBrinsonAttribution(String portfolioCode, String benchmarkCode, String startDate, String endDate) {
-        var rows = brinsonRepo.findPeriod(portfolioCode, benchmarkCode, startDate, endDate);
+        var rows = coalescer.execute("analytics.brinsonPeriod",
+                () -> brinsonRepo.findPeriod(portfolioCode, benchmarkCode, startDate, endDate),
+                portfolioCode, benchmarkCode, startDate, endDate);
         double total = rows.stream().mapToDouble(r -> r.total()).sum();
         return new BrinsonAttributionPeriodResponse(portfolioCode, benchmarkCode, rows, total);
     }
@@ -0,0 +1,254 @@
+package com.kmakker.ibor.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kmakker.ibor.dto.BatchItemRequest;
+import com.kmakker.ibor.dto.BatchItemResult;
+import com.kmakker.ibor.dto.BatchRequest;
+import com.kmakker.ibor.dto.BatchResponse;
+import com.kmakker.ibor.exception.InvalidRequestException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.context.WebServerInitializedEvent;
+import org.springframework.boot.web.server.Ssl;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * BatchService
+ *
+ * <p>Runs a list of independent read requests against this server's own <code>/api</code>
+ * routes concurrently and returns every outcome in request order.</p>
+ *
+ * <ul>
+ *   <li>Sub-requests are GETs dispatched over loopback HTTP, so each goes through the same
+ *       controller, validation, bulkhead and ETag handling as a direct call. The loopback URL uses
+ *       the application server's port, scheme and context path, never the management server's.</li>
+ *   <li>All batches share one bounded executor (<code>ibor.batch.max-parallel</code> virtual
+ *       threads plus a short queue). Sub-requests that find it full are reported as 503 without
+ *       being started.</li>
+ *   <li>The batch has one deadline (<code>ibor.batch.timeout-ms</code>, or less when the client
+ *       asks); sub-requests still running at the deadline are cancelled and reported as 504.</li>
+ *   <li>Failures are per item: a bad path or a failing route never fails the other items.</li>
+ * </ul>
+ */
+@Slf4j
+@Service
+public class BatchService implements DisposableBean {
+
+    private final ExecutorService executor;
+    private final Function<BatchItemRequest, BatchItemResult> dispatcher;
+    private final long maxTimeoutMs;
+    private final int maxRequests;
+
+    private volatile String baseUrl;
+
+    @Autowired
+    public BatchService(ObjectMapper objectMapper,
+                        @Value("${ibor.batch.max-parallel:8}") int maxParallel,
+                        @Value("${ibor.batch.queue-capacity:256}") int queueCapacity,
+                        @Value("${ibor.batch.timeout-ms:10000}") long maxTimeoutMs,
+                        @Value("${ibor.batch.max-requests:50}") int maxRequests) {
+        this.executor = new ThreadPoolExecutor(maxParallel, maxParallel, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofVirtual().name("batch-", 0).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.maxTimeoutMs = maxTimeoutMs;
+        this.maxRequests = maxRequests;
+        RestClient client = RestClient.builder()
+                .requestFactory(loopbackFactory(maxTimeoutMs))
+                .build();
+        this.dispatcher = item -> loopback(client, objectMapper, item);
+    }
+
+    BatchService(ExecutorService executor, Function<BatchItemRequest, BatchItemResult> dispatcher,
+                 long maxTimeoutMs, int maxRequests) {
+        this.executor = executor;
+        this.dispatcher = dispatcher;
+        this.maxTimeoutMs = maxTimeoutMs;
+        this.maxRequests = maxRequests;
+    }
+
+    @EventListener
+    public void onWebServerReady(WebServerInitializedEvent event) {
+        // a management server on its own port publishes this event too
+        if ("management".equals(event.getApplicationContext().getServerNamespace())) {
+            return;
+        }
+        Environment env = event.getApplicationContext().getEnvironment();
+        boolean ssl = Ssl.isEnabled(Binder.get(env).bind("server.ssl", Ssl.class).orElse(null));
+        baseUrl = baseUrl(ssl, event.getWebServer().getPort(), env.getProperty("server.servlet.context-path", ""));
+    }
+
+    static String baseUrl(boolean ssl, int port, String contextPath) {
+        String path = contextPath.endsWith("/") ? contextPath.substring(0, contextPath.length() - 1) : contextPath;
+        return (ssl ? "https" : "http") + "://localhost:" + port + path;
+    }
+
+    String baseUrl() {
+        return baseUrl;
+    }
+
+    public BatchResponse execute(BatchRequest request) {
+        if (request == null || request.requests() == null || request.requests().isEmpty()) {
+            throw new InvalidRequestException("requests must contain at least one sub-request");
+        }
+        List<BatchItemRequest> items = request.requests();
+        if (items.size() > maxRequests) {
+            throw new InvalidRequestException("at most " + maxRequests + " sub-requests per batch");
+        }
+        long timeoutMs = request.timeoutMs() == null ? maxTimeoutMs : request.timeoutMs();
+        if (timeoutMs < 1 || timeoutMs > maxTimeoutMs) {
+            throw new InvalidRequestException("timeoutMs must be between 1 and " + maxTimeoutMs);
+        }
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+
+        // Items that cannot run are answered up front; the rest are submitted before any is awaited.
+        BatchItemResult[] early = new BatchItemResult[items.size()];
+        List<Future<BatchItemResult>> futures = new ArrayList<>(items.size());
+        for (int k = 0; k < items.size(); k++) {
+            BatchItemRequest item = items.get(k);
+            String invalid = validate(item);
+            Future<BatchItemResult> future = null;
+            if (invalid != null) {
+                early[k] = failure(item, 400, invalid, 0);
+            } else {
+                try {
+                    future = executor.submit(() -> timed(item));
+                } catch (RejectedExecutionException e) {
+                    early[k] = failure(item, 503, "batch executor at capacity, retry later", 0);
+                }
+            }
+            futures.add(future);
+        }
+
+        List<BatchItemResult> results = new ArrayList<>(items.size());
+        for (int k = 0; k < items.size(); k++) {
+            results.add(early[k] != null ? early[k] : await(items.get(k), futures.get(k), deadline, start));
+        }
+
+        int succeeded = (int) results.stream().filter(BatchItemResult::succeeded).count();
+        return new BatchResponse(results, succeeded, results.size() - succeeded, elapsedMs(start));
+    }
+
+    private BatchItemResult await(BatchItemRequest item, Future<BatchItemResult> future, long deadline, long start) {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            return failure(item, 504, "batch deadline exceeded", elapsedMs(start));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            return failure(item, 503, "batch interrupted", elapsedMs(start));
+        } catch (ExecutionException e) {
+            log.warn("Batch sub-request {} failed: {}", item.path(), e.getCause().toString());
+            return failure(item, 500, String.valueOf(e.getCause().getMessage()), elapsedMs(start));
+        }
+    }
+
+    private BatchItemResult timed(BatchItemRequest item) {
+        long start = System.nanoTime();
+        BatchItemResult result = dispatcher.apply(item);
+        return new BatchItemResult(result.id(), result.path(), result.status(), result.body(), result.error(),
+                elapsedMs(start));
+    }
+
+    /** Null when the sub-request may be dispatched, otherwise the reason it is rejected. */
+    static String validate(BatchItemRequest item) {
+        if (item == null || item.path() == null || item.path().isBlank()) {
+            return "path must be provided";
+        }
+        String path = item.path();
+        if (!path.startsWith("/api/")) {
+            return "path must be a route under /api/";
+        }
+        if (path.startsWith("/api/batch")) {
+            return "batches cannot be nested";
+        }
+        if (path.contains("..") || path.contains("?") || path.contains("#") || path.contains("//")) {
+            return "path must be a plain route; pass query parameters in params";
+        }
+        return null;
+    }
+
+    private BatchItemResult loopback(RestClient client, ObjectMapper mapper, BatchItemRequest item) {
+        String base = baseUrl;
+        if (base == null) {
+            return failure(item, 503, "server not ready", 0);
+        }
+        UriComponentsBuilder uri = UriComponentsBuilder.fromUriString(base).path(item.path());
+        if (item.params() != null) {
+            item.params().forEach((name, value) -> {
+                if (value instanceof Collection<?> values) {
+                    values.forEach(v -> uri.queryParam(name, v));
+                } else if (value != null) {
+                    uri.queryParam(name, value);
+                }
+            });
+        }
+        URI target = uri.encode().build().toUri();
+        return client.get()
+                .uri(target)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange((req, res) -> {
+                    int status = res.getStatusCode().value();
+                    String text = StreamUtils.copyToString(res.getBody(), StandardCharsets.UTF_8);
+                    JsonNode body = text.isEmpty() ? null : mapper.readTree(text);
+                    String error = status >= 400 && body != null && body.hasNonNull("error")
+                            ? body.get("error").asText() : null;
+                    return new BatchItemResult(item.id(), item.path(), status, body, error, 0);
+                });
+    }
+
+    private static JdkClientHttpRequestFactory loopbackFactory(long timeoutMs) {
+        JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(2))
+                .build());
+        factory.setReadTimeout(Duration.ofMillis(timeoutMs));
+        return factory;
+    }
+
+    private static BatchItemResult failure(BatchItemRequest item, int status, String error, long elapsedMs) {
+        return new BatchItemResult(item == null ? null : item.id(), item == null ? null : item.path(),
+                status, null, error, elapsedMs);
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,181 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.dto.CashRowDTO;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * CashLadder
+ *
+ * <p>Net cash per (portfolio, currency, value date) bucket together with the drivers that make it
+ * up. Drivers are keyed by a stable id, so re-applying a changed driver moves its amount out of
+ * its old bucket and into the new one; only buckets a driver enters or leaves are touched.</p>
+ *
+ * <p>Writers take the write lock for one batch of changes, readers the read lock for one
+ * query, so a query never sees half a batch.</p>
+ */
+final class CashLadder {
+
+    /** One cash flow. <code>source</code> groups drivers that are replaced together. */
+    record Driver(String id, String source, String portfolioCode, String currency, LocalDate valueDate,
+                  BigDecimal amount, String description) {}
+
+    record BucketKey(String portfolioCode, String currency, LocalDate valueDate) {}
+
+    // cash events may be booked without a currency; they get their own bucket, listed first
+    private static final Comparator<BucketKey> ORDER = Comparator.comparing(BucketKey::portfolioCode)
+            .thenComparing(BucketKey::currency, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(BucketKey::valueDate);
+
+    private static final class Bucket {
+        BigDecimal net = BigDecimal.ZERO;
+        final Map<String, Driver> drivers = new LinkedHashMap<>();
+    }
+
+    private final Map<String, Driver> drivers = new HashMap<>();
+    private final TreeMap<BucketKey, Bucket> buckets = new TreeMap<>(ORDER);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private long revision;
+
+    /** @param revision starting revision, so a rebuilt ladder never repeats an earlier one */
+    CashLadder(long revision) {
+        this.revision = revision;
+    }
+
+    /** Adds or replaces drivers by id; returns the number of buckets touched. */
+    int apply(Collection<Driver> changed) {
+        lock.writeLock().lock();
+        try {
+            Set<BucketKey> touched = new HashSet<>();
+            for (Driver d : changed) {
+                Driver old = drivers.put(d.id(), d);
+                if (d.equals(old)) continue;
+                if (old != null) touched.add(remove(old));
+                touched.add(add(d));
+            }
+            if (!touched.isEmpty()) revision++;
+            return touched.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Makes <code>current</code> the complete set of drivers of one source; returns buckets touched. */
+    int replaceSource(String source, Collection<Driver> current) {
+        lock.writeLock().lock();
+        try {
+            Set<String> keep = new HashSet<>();
+            for (Driver d : current) keep.add(d.id());
+            Set<BucketKey> touched = new HashSet<>();
+            for (var it = drivers.values().iterator(); it.hasNext(); ) {
+                Driver d = it.next();
+                if (d.source().equals(source) && !keep.contains(d.id())) {
+                    it.remove();
+                    touched.add(remove(d));
+                }
+            }
+            if (!touched.isEmpty()) revision++;
+            return touched.size() + apply(current);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    long count(String source) {
+        lock.readLock().lock();
+        try {
+            return drivers.values().stream().filter(d -> d.source().equals(source)).count();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Increases whenever any bucket changes. */
+    long revision() {
+        lock.readLock().lock();
+        try {
+            return revision;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int buckets() {
+        lock.readLock().lock();
+        try {
+            return buckets.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Buckets in (portfolio, currency, value date) order, filtered by portfolio and currency
+     * (null = all) and value dates within [from, to].
+     */
+    List<CashRowDTO> rows(String portfolioCode, String currency, LocalDate from, LocalDate to,
+                          Function<String, Integer> portfolioId) {
+        lock.readLock().lock();
+        try {
+            List<CashRowDTO> out = new ArrayList<>();
+            for (var e : buckets.entrySet()) {
+                BucketKey k = e.getKey();
+                if (portfolioCode != null && !portfolioCode.equals(k.portfolioCode())) continue;
+                if (currency != null && !currency.equals(k.currency())) continue;
+                if (k.valueDate().isBefore(from) || k.valueDate().isAfter(to)) continue;
+                List<String> why = new ArrayList<>(e.getValue().drivers.size());
+                for (Driver d : e.getValue().drivers.values()) {
+                    why.add(d.description() + " " + d.amount().stripTrailingZeros().toPlainString());
+                }
+                out.add(new CashRowDTO(portfolioId.apply(k.portfolioCode()), k.currency(), k.valueDate(),
+                        e.getValue().net, why));
+            }
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private BucketKey add(Driver d) {
+        BucketKey key = new BucketKey(d.portfolioCode(), d.currency(), d.valueDate());
+        Bucket b = buckets.computeIfAbsent(key, k -> new Bucket());
+        b.drivers.put(d.id(), d);
+        b.net = b.net.add(d.amount());
+        return key;
+    }
+
+    private BucketKey remove(Driver d) {
+        BucketKey key = new BucketKey(d.portfolioCode(), d.currency(), d.valueDate());
+        Bucket b = buckets.get(key);
+        if (b != null && b.drivers.remove(d.id()) != null) {
+            b.net = b.net.subtract(d.amount());
+            if (b.drivers.isEmpty()) buckets.remove(key);
+        }
+        return key;
+    }
+
+    /** <code>days</code> weekdays after the trade date; weekends are skipped, holidays are not known. */
+    static LocalDate settlementDate(LocalDate tradeDate, int days) {
+        LocalDate d = tradeDate;
+        for (int i = 0; i < days; ) {
+            d = d.plusDays(1);
+            if (d.getDayOfWeek() != DayOfWeek.SATURDAY && d.getDayOfWeek() != DayOfWeek.SUNDAY) i++;
+        }
+        return d;
+    }
+}
@@ -0,0 +1,271 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.dto.CashProjectionResponse;
+import com.kmakker.ibor.exception.InvalidRequestException;
+import com.kmakker.ibor.jodi.JodiCashLadderRepository;
+import com.kmakker.ibor.jodi.JodiCashLadderRepository.CashEvent;
+import com.kmakker.ibor.jodi.JodiCashLadderRepository.Entitlement;
+import com.kmakker.ibor.jodi.JodiCashLadderRepository.TradeFill;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * CashProjectionService
+ *
+ * <p>Cash ladder: projected net cash per portfolio, currency and value date, with the drivers of
+ * each bucket, kept in memory in a {@link CashLadder} and updated incrementally.</p>
+ *
+ * <ul>
+ *   <li>Drivers are booked cash events (value date = event date), trade fills (value date = trade
+ *       date + a settlement lag in weekdays per instrument type) and, with
+ *       <code>ibor.cash.project-entitlements</code>, corporate-action cash entitlements (value
+ *       date = pay date).</li>
+ *   <li>Built when the application is ready from <code>ibor.cash.history-days</code> before
+ *       today, and rebuilt when the day rolls or portfolio/account links change. Until a build
+ *       succeeds requests are answered 503 and the scheduled poll retries it.</li>
+ *   <li>Every <code>ibor.cash.refresh-ms</code>, sources whose data version moved are read from
+ *       their <code>updated_at</code> watermark only, and changed drivers are re-applied to the
+ *       buckets they leave and enter. Entitlements depend on holdings and bookings, so they are
+ *       re-read as a set when positions, corporate actions or cash events change. A source whose row count no longer
+ *       matches the ladder (a delete) triggers a rebuild.</li>
+ * </ul>
+ *
+ * <p>Entitlements are off by default because the loaders book dividends and coupons as cash
+ * events, and counting both would double the income. Turn them on for feeds that do not. An
+ * entitlement is still dropped when the portfolio has a cash event in its currency on its pay
+ * date, which is taken as its booking. Only the instrument-currency leg of a trade is
+ * projected.</p>
+ */
+@Slf4j
+@Service
+public class CashProjectionService {
+    private static final Map<String, Integer> SETTLEMENT_DAYS = Map.of("FX", 2, "FUT", 0);
+    private static final int DEFAULT_SETTLEMENT_DAYS = 1;
+    private static final int DEFAULT_WINDOW_DAYS = 90;
+
+    /** Ladder plus what it was built from. */
+    private record State(CashLadder ladder, LocalDate from, LocalDate builtOn, String linkVersion,
+                         Watermarks marks, OffsetDateTime refreshedAt) {}
+
+    /** Last data versions and <code>updated_at</code> seen per source. */
+    private record Watermarks(String cashVersion, LocalDateTime cash, String tradeVersion, LocalDateTime trade,
+                              String entitlementVersion) {}
+
+    private final JodiCashLadderRepository repository;
+    private final DataVersionService dataVersions;
+    private final Clock clock;
+    private final boolean enabled;
+    private final boolean projectEntitlements;
+    private final int historyDays;
+    private final long epoch;                 // process start, so ETags differ across restarts
+    private volatile State state;
+    private volatile Map<String, Integer> portfolioIds = Map.of();   // code -> version valid at build
+
+    @Autowired
+    public CashProjectionService(JodiCashLadderRepository repository,
+                                 DataVersionService dataVersions,
+                                 @Value("${ibor.cash.enabled:true}") boolean enabled,
+                                 @Value("${ibor.cash.project-entitlements:false}") boolean projectEntitlements,
+                                 @Value("${ibor.cash.history-days:30}") int historyDays) {
+        this(repository, dataVersions, Clock.systemDefaultZone(), enabled, projectEntitlements, historyDays);
+    }
+
+    CashProjectionService(JodiCashLadderRepository repository, DataVersionService dataVersions, Clock clock,
+                          boolean enabled, boolean projectEntitlements, int historyDays) {
+        this.repository = repository;
+        this.dataVersions = dataVersions;
+        this.clock = clock;
+        this.enabled = enabled;
+        this.projectEntitlements = projectEntitlements;
+        this.historyDays = historyDays;
+        this.epoch = clock.millis();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void load() {
+        if (!enabled) return;
+        try {
+            state = build();
+            log.info("Cash ladder loaded: {} buckets from {}", state.ladder().buckets(), state.from());
+        } catch (RuntimeException e) {
+            log.warn("Cash ladder not loaded: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ibor.cash.refresh-ms:15000}",
+               initialDelayString = "${ibor.cash.refresh-ms:15000}")
+    public synchronized void refreshIfChanged() {
+        if (!enabled) return;
+        State current = state;
+        if (current == null
+                || !current.builtOn().equals(LocalDate.now(clock))
+                || !Objects.equals(current.linkVersion(), linkVersion())) {
+            load();
+            return;
+        }
+        try {
+            state = refresh(current);
+        } catch (RuntimeException e) {
+            log.warn("Cash ladder refresh failed, keeping current copy: {}", e.getMessage());
+        }
+    }
+
+    /** Weak ETag over the ladder revision; empty until the ladder is loaded. */
+    public String etag() {
+        State current = state;
+        return current == null ? null : "W/\"cash-" + epoch + "-" + current.ladder().revision() + "\"";
+    }
+
+    public CashProjectionResponse getProjection(String portfolioCode, String currency, LocalDate from, LocalDate to) {
+        State current = state;
+        if (current == null) {   // built by load()/refreshIfChanged(), never on a request thread
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "cash ladder is not loaded");
+        }
+        LocalDate start = from == null ? LocalDate.now(clock) : from;
+        LocalDate end = to == null ? start.plusDays(DEFAULT_WINDOW_DAYS) : to;
+        if (end.isBefore(start)) {
+            throw new InvalidRequestException("to must not be before from");
+        }
+        if (start.isBefore(current.from())) {
+            throw new InvalidRequestException("from must be on or after " + current.from()
+                    + " (ibor.cash.history-days before today)");
+        }
+        String portfolio = portfolioCode == null || portfolioCode.isBlank() ? null : portfolioCode.trim();
+        String ccy = currency == null || currency.isBlank() ? null : currency.trim().toUpperCase(Locale.ROOT);
+        Map<String, Integer> ids = portfolioIds;
+        return new CashProjectionResponse(
+                current.ladder().rows(portfolio, ccy, start, end, code -> ids.getOrDefault(code, 0)),
+                current.refreshedAt());
+    }
+
+    private State build() {
+        LocalDate today = LocalDate.now(clock);
+        LocalDate from = today.minusDays(historyDays);
+        String link = linkVersion();
+        Map<String, Integer> ids = new HashMap<>();
+        repository.findPortfolioVids(today).forEach((code, vid) -> ids.put(code, vid.intValue()));
+        portfolioIds = Map.copyOf(ids);
+
+        State previous = state;
+        CashLadder ladder = new CashLadder(previous == null ? 0 : previous.ladder().revision() + 1);
+        Watermarks marks = new Watermarks(dataVersions.etag("cash").orElse(null), null,
+                dataVersions.etag("trade").orElse(null), null, entitlementVersion());
+        List<CashEvent> events = repository.findCashEvents(from, null);
+        List<TradeFill> fills = repository.findTradeFills(from, null);
+        ladder.apply(cashDrivers(events));
+        ladder.apply(tradeDrivers(fills));
+        if (projectEntitlements) {
+            ladder.replaceSource("CA", entitlementDrivers(repository.findEntitlements(from)));
+        }
+        marks = new Watermarks(marks.cashVersion(), latestCash(events, null),
+                marks.tradeVersion(), latestTrade(fills, null), marks.entitlementVersion());
+        return new State(ladder, from, today, link, marks, OffsetDateTime.now(clock));
+    }
+
+    private State refresh(State current) {
+        Watermarks m = current.marks();
+        CashLadder ladder = current.ladder();
+        String cashVersion = dataVersions.etag("cash").orElse(null);
+        String tradeVersion = dataVersions.etag("trade").orElse(null);
+        String entitlementVersion = entitlementVersion();
+
+        LocalDateTime cashMark = m.cash(), tradeMark = m.trade();
+        int touched = 0;
+        boolean read = false;
+        if (cashVersion == null || !cashVersion.equals(m.cashVersion())) {
+            read = true;
+            List<CashEvent> events = repository.findCashEvents(current.from(), cashMark);
+            touched += ladder.apply(cashDrivers(events));
+            cashMark = latestCash(events, cashMark);
+        }
+        if (tradeVersion == null || !tradeVersion.equals(m.tradeVersion())) {
+            read = true;
+            List<TradeFill> fills = repository.findTradeFills(current.from(), tradeMark);
+            touched += ladder.apply(tradeDrivers(fills));
+            tradeMark = latestTrade(fills, tradeMark);
+        }
+        if (projectEntitlements && (entitlementVersion == null || !entitlementVersion.equals(m.entitlementVersion()))) {
+            touched += ladder.replaceSource("CA", entitlementDrivers(repository.findEntitlements(current.from())));
+        }
+        if (read) {
+            // catches deletes, and rows committed with an updated_at behind the watermark
+            long[] counts = repository.countSources(current.from());
+            if (counts[0] != ladder.count("CASH") || counts[1] != ladder.count("TRADE")) {
+                log.info("Cash ladder out of step with its sources, rebuilding");
+                return build();
+            }
+        }
+        if (touched > 0) log.debug("Cash ladder refreshed: {} buckets touched", touched);
+        return new State(ladder, current.from(), current.builtOn(), current.linkVersion(),
+                new Watermarks(cashVersion, cashMark, tradeVersion, tradeMark, entitlementVersion),
+                touched > 0 ? OffsetDateTime.now(clock) : current.refreshedAt());
+    }
+
+    private String linkVersion() {
+        return dataVersions.etag("portfolio").orElse(null);
+    }
+
+    private String entitlementVersion() {
+        return dataVersions.etag("position", "corporate_action", "cash").orElse(null);
+    }
+
+    static List<CashLadder.Driver> cashDrivers(List<CashEvent> events) {
+        List<CashLadder.Driver> out = new ArrayList<>(events.size());
+        for (CashEvent e : events) {
+            String id = "CASH:" + e.portfolioVid() + ":" + e.eventDate() + ":" + e.amount().stripTrailingZeros().toPlainString();
+            out.add(new CashLadder.Driver(id, "CASH", e.portfolioCode(), e.currency(), e.eventDate(), e.amount(),
+                    e.eventType() == null ? "CASH" : e.eventType()));
+        }
+        return out;
+    }
+
+    static List<CashLadder.Driver> tradeDrivers(List<TradeFill> fills) {
+        List<CashLadder.Driver> out = new ArrayList<>(fills.size());
+        for (TradeFill t : fills) {
+            int lag = SETTLEMENT_DAYS.getOrDefault(t.instrumentType(), DEFAULT_SETTLEMENT_DAYS);
+            out.add(new CashLadder.Driver("TRADE:" + t.executionId(), "TRADE", t.portfolioCode(), t.currency(),
+                    CashLadder.settlementDate(t.tradeDate(), lag), t.cashAmount(),
+                    "TRADE " + t.executionId() + " " + t.instrumentCode()));
+        }
+        return out;
+    }
+
+    static List<CashLadder.Driver> entitlementDrivers(List<Entitlement> entitlements) {
+        List<CashLadder.Driver> out = new ArrayList<>(entitlements.size());
+        for (Entitlement e : entitlements) {
+            out.add(new CashLadder.Driver("CA:" + e.caAppliedId() + ":" + e.portfolioCode(), "CA", e.portfolioCode(),
+                    e.currency(), e.payDate(), e.amount(), e.actionCode() + " " + e.instrumentCode()));
+        }
+        return out;
+    }
+
+    private static LocalDateTime latestCash(List<CashEvent> rows, LocalDateTime mark) {
+        LocalDateTime m = mark;
+        for (CashEvent e : rows) if (m == null || e.updatedAt().isAfter(m)) m = e.updatedAt();
+        return m;
+    }
+
+    private static LocalDateTime latestTrade(List<TradeFill> rows, LocalDateTime mark) {
+        LocalDateTime m = mark;
+        for (TradeFill t : rows) if (m == null || t.updatedAt().isAfter(m)) m = t.updatedAt();
+        return m;
+    }
+}
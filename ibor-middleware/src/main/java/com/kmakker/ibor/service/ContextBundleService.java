@@ -0,0 +1,157 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.dto.ContextBundleResponse;
+import com.kmakker.ibor.dto.PositionDTO;
+import com.kmakker.ibor.dto.PositionDetailDTO;
+import com.kmakker.ibor.dto.PriceRowDTO;
+import com.kmakker.ibor.dto.TransactionDTO;
+import com.kmakker.ibor.exception.InvalidRequestException;
+import com.kmakker.ibor.jodi.JodiPositionsRepository;
+import com.kmakker.ibor.jodi.JodiPositionsRepository.RankedPositions;
+import com.kmakker.ibor.jodi.JodiPriceRepository;
+import com.kmakker.ibor.jodi.JodiTransactionLineageRepository;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * ContextBundleService
+ *
+ * <p>Assembles the context for one analyst question in a single call instead of one HTTP round
+ * trip per position drill-down and price series.</p>
+ *
+ * <ol>
+ *   <li>Positions for the portfolio as-of the date, ranked by absolute market value in the query
+ *       and cut at <code>ibor.context.max-positions</code> rows; <code>truncated</code> says
+ *       whether the portfolio held more. The position count and total market value cover the
+ *       whole portfolio, so a cut bundle does not understate them.</li>
+ *   <li>The first N of them give the instrument codes every other part is keyed on.</li>
+ *   <li>Transaction lineage and price history for those codes are fetched concurrently, one
+ *       batched query each, on virtual threads.</li>
+ * </ol>
+ *
+ * <p>Drill-down headers are taken from the position rows rather than re-queried per instrument.
+ * Identical concurrent bundle requests share one computation via {@link RequestCoalescer}.</p>
+ *
+ * <p>The two parallel queries mean a bundle request can hold two pool connections at once; see the
+ * connection budget in <code>application.yml</code>.</p>
+ */
+@Service
+public class ContextBundleService implements DisposableBean {
+    private static final int DEFAULT_TOP_N = 10;
+    private static final int MAX_TOP_N = 50;
+    private static final int DEFAULT_PRICE_DAYS = 30;
+    private static final int MAX_PRICE_DAYS = 366;
+
+    private final JodiPositionsRepository positionsRepository;
+    private final JodiTransactionLineageRepository lineageRepository;
+    private final JodiPriceRepository priceRepository;
+    private final RequestCoalescer coalescer;
+    private final int maxPositions;
+    private final Executor executor;
+
+    @Autowired
+    public ContextBundleService(JodiPositionsRepository positionsRepository,
+                                JodiTransactionLineageRepository lineageRepository,
+                                JodiPriceRepository priceRepository,
+                                RequestCoalescer coalescer,
+                                @Value("${ibor.context.max-positions:500}") int maxPositions) {
+        this(positionsRepository, lineageRepository, priceRepository, coalescer, maxPositions,
+                Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    ContextBundleService(JodiPositionsRepository positionsRepository,
+                         JodiTransactionLineageRepository lineageRepository,
+                         JodiPriceRepository priceRepository,
+                         RequestCoalescer coalescer,
+                         int maxPositions,
+                         Executor executor) {
+        this.positionsRepository = positionsRepository;
+        this.lineageRepository = lineageRepository;
+        this.priceRepository = priceRepository;
+        this.coalescer = coalescer;
+        this.maxPositions = maxPositions;
+        this.executor = executor;
+    }
+
+    public ContextBundleResponse getBundle(String portfolioCode, LocalDate asOf,
+                                           Integer topN, Integer priceDays, String source) {
+        if (asOf == null) {
+            throw new InvalidRequestException("asOf must be provided (YYYY-MM-DD)");
+        }
+        if (portfolioCode == null || portfolioCode.isBlank()) {
+            throw new InvalidRequestException("portfolioCode must be provided");
+        }
+        int n = topN == null ? DEFAULT_TOP_N : topN;
+        if (n < 1 || n > MAX_TOP_N) {
+            throw new InvalidRequestException("topN must be between 1 and " + MAX_TOP_N);
+        }
+        int days = priceDays == null ? DEFAULT_PRICE_DAYS : priceDays;
+        if (days < 1 || days > MAX_PRICE_DAYS) {
+            throw new InvalidRequestException("priceDays must be between 1 and " + MAX_PRICE_DAYS);
+        }
+
+        return coalescer.execute("context",
+                () -> load(portfolioCode, asOf, n, days, source),
+                portfolioCode, asOf, n, days, source);
+    }
+
+    private ContextBundleResponse load(String portfolioCode, LocalDate asOf, int topN, int priceDays, String source) {
+        RankedPositions ranked = positionsRepository.findLargestPositions(asOf, portfolioCode, maxPositions);
+        List<PositionDTO> positions = ranked.positions();
+        boolean truncated = ranked.totalPositions() > positions.size();
+
+        List<PositionDTO> top = positions.subList(0, Math.min(topN, positions.size()));
+        List<String> codes = top.stream().map(PositionDTO::instrumentId).distinct().toList();
+        LocalDate priceFrom = asOf.minusDays(priceDays - 1L);
+
+        CompletableFuture<Map<String, List<TransactionDTO>>> transactions = CompletableFuture.supplyAsync(
+                () -> lineageRepository.fetchTransactionsForInstruments(asOf, portfolioCode, codes), executor);
+        CompletableFuture<Map<String, List<PriceRowDTO>>> prices = CompletableFuture.supplyAsync(
+                () -> priceRepository.findPricesForInstruments(codes, priceFrom, asOf, source), executor);
+
+        Map<String, List<TransactionDTO>> txByCode = join(transactions);
+        List<PositionDetailDTO> details = top.stream()
+                .map(p -> new PositionDetailDTO(
+                        p.asOf(),
+                        p.portfolioId(),
+                        p.instrumentId(),
+                        p.instrumentType(),
+                        p.netQty(),
+                        p.price(),
+                        p.mktValue(),
+                        p.currency(),
+                        p.unrealizedPnl(),
+                        "NONE",
+                        txByCode.getOrDefault(p.instrumentId(), List.of()),
+                        List.of()))
+                .toList();
+
+        return new ContextBundleResponse(portfolioCode, asOf, priceFrom, List.copyOf(positions), truncated,
+                ranked.totalPositions(), ranked.totalMktValue(), details, join(prices));
+    }
+
+    @Override
+    public void destroy() {
+        if (executor instanceof ExecutorService service) service.shutdownNow();
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+}
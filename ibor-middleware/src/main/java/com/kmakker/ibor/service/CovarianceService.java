@@ -0,0 +1,327 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.dto.PositionDTO;
+import com.kmakker.ibor.dto.analytics.CovarianceResponse;
+import com.kmakker.ibor.exception.InvalidRequestException;
+import com.kmakker.ibor.intern.EpochDays;
+import com.kmakker.ibor.jodi.JodiPositionsRepository;
+import com.kmakker.ibor.jodi.JodiReturnHistoryRepository;
+import com.kmakker.ibor.jodi.JodiReturnHistoryRepository.DailyPrice;
+import com.kmakker.ibor.service.PriceAdjustmentService.Factors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * CovarianceService
+ *
+ * <p>Instrument covariance of daily price returns for the whole priced universe, held in memory
+ * as a {@link RollingCovariance} (EWMA and equal-weight window) and served as sub-matrices for a
+ * portfolio's instruments.</p>
+ *
+ * <ul>
+ *   <li>Built once the application is ready by replaying the last
+ *       <code>ibor.covariance.history-days</code> price days. Until a build succeeds requests are
+ *       answered 503 and the scheduled poll retries it.</li>
+ *   <li>Every <code>ibor.covariance.refresh-ms</code> the price data version is checked. New price
+ *       days are folded in one return vector at a time, <code>O(n&sup2;)</code> each, on a copy
+ *       that is then swapped in; readers never see a half-updated matrix.</li>
+ *   <li>A price change without a new day (a restatement), or a new day that prices an instrument
+ *       outside the universe, triggers a full rebuild instead.</li>
+ *   <li>Returns are simple returns of one price source per instrument, adjusted for splits and
+ *       dividends ({@link PriceAdjustmentService}), carried forward over gaps, and 0 before an
+ *       instrument's first price, as in {@link ReturnMatrix}. The last raw price and its day are
+ *       kept per instrument, so an action between two prices is applied when the later one
+ *       arrives. A change to the corporate-action data version triggers a full rebuild, since a
+ *       late action changes returns already folded in.</li>
+ * </ul>
+ *
+ * <p>The universe is capped at <code>ibor.covariance.max-instruments</code>; above it the
+ * matrix is not built and requests are answered 503.</p>
+ */
+@Slf4j
+@Service
+public class CovarianceService {
+
+    /** Published state; replaced as a whole, never mutated after publication. */
+    private record State(Map<String, Integer> index, RollingCovariance cov, double[] lastPrice,
+                         int[] lastPriceDay, LocalDate lastDay, String version, String actionVersion) {}
+
+    private final JodiReturnHistoryRepository historyRepository;
+    private final PriceAdjustmentService priceAdjustments;
+    private final JodiPositionsRepository positionsRepository;
+    private final DataVersionService dataVersions;
+    private final RequestCoalescer coalescer;
+    private final boolean enabled;
+    private final double lambda;
+    private final int window;
+    private final int historyDays;
+    private final int maxInstruments;
+    private final int maxMatrix;
+    private final int maxLines;
+    private volatile State state;
+
+    @Autowired
+    public CovarianceService(JodiReturnHistoryRepository historyRepository,
+                             PriceAdjustmentService priceAdjustments,
+                             JodiPositionsRepository positionsRepository,
+                             DataVersionService dataVersions,
+                             RequestCoalescer coalescer,
+                             @Value("${ibor.covariance.enabled:true}") boolean enabled,
+                             @Value("${ibor.covariance.lambda:0.94}") double lambda,
+                             @Value("${ibor.covariance.window:250}") int window,
+                             @Value("${ibor.covariance.history-days:500}") int historyDays,
+                             @Value("${ibor.covariance.max-instruments:3000}") int maxInstruments,
+                             @Value("${ibor.covariance.max-matrix:500}") int maxMatrix,
+                             @Value("${ibor.covariance.max-lines:20000}") int maxLines) {
+        this.historyRepository = historyRepository;
+        this.priceAdjustments = priceAdjustments;
+        this.positionsRepository = positionsRepository;
+        this.dataVersions = dataVersions;
+        this.coalescer = coalescer;
+        this.enabled = enabled;
+        this.lambda = lambda;
+        this.window = window;
+        this.historyDays = historyDays;
+        this.maxInstruments = maxInstruments;
+        this.maxMatrix = maxMatrix;
+        this.maxLines = maxLines;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void load() {
+        if (!enabled) return;
+        try {
+            state = rebuild(dataVersions.etag("price").orElse(null),
+                    dataVersions.etag("corporate_action").orElse(null));
+            if (state != null) {
+                log.info("Covariance loaded: {} instruments, {} returns up to {}",
+                        state.index().size(), state.cov().observations(), state.lastDay());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Covariance not loaded: {}", e.getMessage());
+        }
+    }
+
+    /** Folds in new price days, or rebuilds when prices changed in a way that cannot be appended. */
+    @Scheduled(fixedDelayString = "${ibor.covariance.refresh-ms:60000}",
+               initialDelayString = "${ibor.covariance.refresh-ms:60000}")
+    public synchronized void refreshIfChanged() {
+        if (!enabled) return;
+        State current = state;
+        if (current == null) {
+            load();
+            return;
+        }
+        String version = dataVersions.etag("price").orElse(null);
+        String actionVersion = dataVersions.etag("corporate_action").orElse(null);
+        boolean actionsChanged = actionVersion != null && !actionVersion.equals(current.actionVersion());
+        if (!actionsChanged && version != null && version.equals(current.version())) return;
+        try {
+            LocalDate latest = historyRepository.findLatestPriceDay();
+            if (actionsChanged) {
+                state = rebuild(version, actionVersion);
+            } else if (latest != null && latest.isAfter(current.lastDay())) {
+                State next = append(current, historyRepository.findDailyPrices(current.lastDay().plusDays(1), latest),
+                        latest, version);
+                state = next != null ? next : rebuild(version, actionVersion);
+            } else if (version != null) {
+                state = rebuild(version, actionVersion);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Covariance refresh failed, keeping current copy: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Weak ETag over the published matrix (its price and corporate-action versions and last price
+     * day) and the portfolio's positions; null until a matrix is loaded or while versions are
+     * unknown. It moves when the state is swapped, not when the database moves, so a response
+     * is never cached under a version the matrix has not caught up with yet.
+     */
+    public String etag(String portfolioCode) {
+        State current = state;
+        if (current == null || current.version() == null) return null;
+        String positions = dataVersions.etag("position:" + portfolioCode, "portfolio").orElse(null);
+        if (positions == null) return null;
+        String key = current.version() + "|" + current.actionVersion() + "|" + current.lastDay() + "|" + positions;
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) h = (h ^ key.charAt(i)) * 0x100000001b3L;
+        return "W/\"cov-" + Long.toHexString(h) + "\"";
+    }
+
+    /** True once a matrix is in memory. */
+    public boolean isLoaded() {
+        return state != null;
+    }
+
+    public CovarianceResponse getCovariance(String portfolioCode, LocalDate asOf, String method, boolean correlation) {
+        if (asOf == null) {
+            throw new InvalidRequestException("asOf must be provided (YYYY-MM-DD)");
+        }
+        if (portfolioCode == null || portfolioCode.isBlank()) {
+            throw new InvalidRequestException("portfolioCode must be provided");
+        }
+        String m = method == null || method.isBlank() ? "ewma" : method.trim().toLowerCase(Locale.ROOT);
+        if (!m.equals("ewma") && !m.equals("equal")) {
+            throw new InvalidRequestException("method must be 'ewma' or 'equal'");
+        }
+        State current = state;
+        if (current == null) {   // built by load()/refreshIfChanged(), never on a request thread
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "covariance matrix is not loaded");
+        }
+
+        List<String> held = coalescer.execute("covariance.instruments",
+                () -> heldInstruments(portfolioCode, asOf), portfolioCode, asOf);
+        List<String> instruments = new ArrayList<>(held.size());
+        List<String> missing = new ArrayList<>();
+        int[] idx = new int[held.size()];
+        for (String code : held) {
+            Integer i = current.index().get(code);
+            if (i == null) {
+                missing.add(code);
+            } else {
+                idx[instruments.size()] = i;
+                instruments.add(code);
+            }
+        }
+        if (instruments.size() > maxMatrix) {
+            throw new InvalidRequestException("portfolio holds " + instruments.size()
+                    + " instruments with price history; at most " + maxMatrix + " can be returned");
+        }
+        boolean exponential = m.equals("ewma");
+        double[][] matrix = current.cov().covariance(Arrays.copyOf(idx, instruments.size()), exponential);
+        if (correlation) matrix = RollingCovariance.correlation(matrix);
+        return new CovarianceResponse(portfolioCode, asOf, m,
+                correlation ? "correlation" : "covariance",
+                current.lastDay(),
+                exponential ? (int) Math.min(current.cov().observations(), Integer.MAX_VALUE)
+                        : current.cov().windowObservations(),
+                exponential ? lambda : null,
+                instruments,
+                missing.isEmpty() ? null : missing,
+                matrix);
+    }
+
+    private List<String> heldInstruments(String portfolioCode, LocalDate asOf) {
+        TreeSet<String> codes = new TreeSet<>();
+        for (PositionDTO p : positionsRepository.findPositions(asOf, portfolioCode, null, 1, maxLines)) {
+            if (p.instrumentId() != null) codes.add(p.instrumentId());
+        }
+        return List.copyOf(codes);
+    }
+
+    private State rebuild(String version, String actionVersion) {
+        LocalDate latest = historyRepository.findLatestPriceDay();
+        if (latest == null) return null;
+        List<LocalDate> days = historyRepository.findPriceDays(latest, historyDays + 1);
+        List<DailyPrice> prices = historyRepository.findDailyPrices(days.get(0), latest);
+
+        TreeSet<String> codes = new TreeSet<>();
+        for (DailyPrice p : prices) codes.add(p.instrumentCode());
+        if (codes.size() > maxInstruments) {
+            log.warn("Covariance not built: {} priced instruments exceed ibor.covariance.max-instruments={}",
+                    codes.size(), maxInstruments);
+            return null;
+        }
+        Map<String, Integer> index = HashMap.newHashMap(codes.size());
+        for (String code : codes) index.put(code, index.size());
+
+        double[] lastPrice = new double[index.size()];
+        Arrays.fill(lastPrice, Double.NaN);
+        int[] lastPriceDay = new int[index.size()];
+        Factors[] factors = factors(index, priceAdjustments.factorsBetween(days.get(0), latest));
+        RollingCovariance cov = new RollingCovariance(index.size(), lambda, window);
+        boolean first = true;
+        for (var day : byDay(prices, index).entrySet()) {
+            // the oldest day only sets prices
+            step(cov, lastPrice, lastPriceDay, day.getValue(), EpochDays.of(day.getKey()), factors, !first);
+            first = false;
+        }
+        return new State(Map.copyOf(index), cov, lastPrice, lastPriceDay, latest, version, actionVersion);
+    }
+
+    /** New state with the given later days applied, or null when they price an unknown instrument. */
+    private State append(State current, List<DailyPrice> prices, LocalDate latest, String version) {
+        for (DailyPrice p : prices) {
+            if (!current.index().containsKey(p.instrumentCode())) return null;
+        }
+        RollingCovariance cov = current.cov().copy();
+        double[] lastPrice = current.lastPrice().clone();
+        int[] lastPriceDay = current.lastPriceDay().clone();
+        int oldest = EpochDays.of(current.lastDay());   // actions since any carried-forward price apply
+        for (int i = 0; i < lastPrice.length; i++) {
+            if (!Double.isNaN(lastPrice[i])) oldest = Math.min(oldest, lastPriceDay[i]);
+        }
+        Factors[] factors = factors(current.index(),
+                priceAdjustments.factorsBetween(EpochDays.toDate(oldest), latest));
+        LocalDate lastDay = current.lastDay();
+        for (var day : byDay(prices, current.index()).entrySet()) {
+            step(cov, lastPrice, lastPriceDay, day.getValue(), EpochDays.of(day.getKey()), factors, true);
+            lastDay = day.getKey();
+        }
+        return new State(current.index(), cov, lastPrice, lastPriceDay, lastDay, version, current.actionVersion());
+    }
+
+    /** Factors in universe order, null for instruments without an action in the range. */
+    private static Factors[] factors(Map<String, Integer> index, Map<String, Factors> byCode) {
+        Factors[] out = new Factors[index.size()];
+        byCode.forEach((code, f) -> {
+            Integer i = index.get(code);
+            if (i != null) out[i] = f;
+        });
+        return out;
+    }
+
+    /** Prices per day in universe order, NaN where an instrument was not priced. */
+    private static TreeMap<LocalDate, double[]> byDay(List<DailyPrice> prices, Map<String, Integer> index) {
+        TreeMap<LocalDate, double[]> days = new TreeMap<>();
+        for (DailyPrice p : prices) {
+            double[] row = days.computeIfAbsent(p.day(), d -> {
+                double[] r = new double[index.size()];
+                Arrays.fill(r, Double.NaN);
+                return r;
+            });
+            row[Objects.requireNonNull(index.get(p.instrumentCode()))] = p.price();
+        }
+        return days;
+    }
+
+    /**
+     * Turns one day of raw prices into returns against the carried-forward prices, adjusted for
+     * the actions between the two price days, and records them.
+     */
+    static void step(RollingCovariance cov, double[] lastPrice, int[] lastPriceDay, double[] dayPrices, int day,
+                     Factors[] factors, boolean record) {
+        double[] r = new double[lastPrice.length];
+        for (int i = 0; i < r.length; i++) {
+            double p = dayPrices[i];
+            if (Double.isNaN(p)) continue;   // carried forward: no move
+            if (!Double.isNaN(lastPrice[i])) {
+                Factors f = factors[i];
+                double adjusted = f == null ? p : p * f.at(day) / f.at(lastPriceDay[i]);
+                r[i] = adjusted / lastPrice[i] - 1;
+            }
+            lastPrice[i] = p;
+            lastPriceDay[i] = day;
+        }
+        if (record) cov.add(r);
+    }
+}
@@ -0,0 +1,74 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.jodi.JodiDataVersionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * DataVersionService
+ *
+ * <p>In-memory copy of the <code>ibor.data_version</code> watermarks that the loaders bump, used
+ * to derive ETags for read endpoints.</p>
+ *
+ * <ul>
+ *   <li>Scopes are named like the table rows: <code>"price"</code> for the scope-wide version,
+ *       <code>"position:P-ALPHA"</code> for one business key.</li>
+ *   <li>The table is polled every <code>ibor.data-version.refresh-ms</code>; evaluating an ETag
+ *       never touches the database, so a matching <code>If-None-Match</code> is answered with
+ *       304 straight from memory.</li>
+ *   <li>A load becomes visible in ETags within one poll interval. Until then clients holding the
+ *       previous ETag may still get 304.</li>
+ *   <li>Until the first successful poll no ETag is produced and requests are served normally.</li>
+ *   <li>ETags are weak: they identify the data version, while the bytes also depend on the
+ *       negotiated format (JSON/CBOR/Smile) and on gzip. Tomcat also refuses to compress
+ *       responses carrying a strong ETag.</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class DataVersionService {
+
+    private final JodiDataVersionRepository repo;
+    private final boolean enabled;
+    private volatile Map<String, Long> versions;
+
+    public DataVersionService(JodiDataVersionRepository repo,
+                              @Value("${ibor.data-version.enabled:true}") boolean enabled) {
+        this.repo = repo;
+        this.enabled = enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${ibor.data-version.refresh-ms:5000}",
+               initialDelayString = "${ibor.data-version.refresh-ms:5000}")
+    public void refresh() {
+        if (!enabled) return;
+        try {
+            versions = Map.copyOf(repo.findAll());
+        } catch (RuntimeException e) {
+            log.warn("Data versions not refreshed, keeping current copy: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Weak ETag (<code>W/"..."</code>) over the current versions of the given scopes; empty when
+     * versions are not loaded. Scopes that were never bumped count as version zero.
+     */
+    public Optional<String> etag(String... scopes) {
+        Map<String, Long> current = versions;
+        if (current == null) return Optional.empty();
+        long h = 0xcbf29ce484222325L;
+        for (String scope : scopes) {
+            h = (h ^ scope.hashCode()) * 0x100000001b3L;
+            h = (h ^ current.getOrDefault(scope, 0L)) * 0x100000001b3L;
+        }
+        return Optional.of("W/\"" + Long.toHexString(h) + "\"");
+    }
+}
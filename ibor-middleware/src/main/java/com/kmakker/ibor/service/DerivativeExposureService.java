@@ -0,0 +1,196 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.dto.DerivativeExposureDTO;
+import com.kmakker.ibor.dto.DerivativeExposureResponse;
+import com.kmakker.ibor.exception.InvalidRequestException;
+import com.kmakker.ibor.intern.LruCache;
+import com.kmakker.ibor.jodi.JodiDerivativeExposureRepository;
+import com.kmakker.ibor.jodi.JodiDerivativeExposureRepository.DerivativeInput;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * DerivativeExposureService
+ *
+ * <p>Delta-adjusted exposure and Greeks for the futures and option positions of a portfolio.
+ * Market value says what an option is worth; delta notional says how much underlying it moves
+ * like, which is what exposure limits are about.</p>
+ *
+ * <ul>
+ *   <li>Futures are linear: delta 1, delta notional = quantity x contract size x price.</li>
+ *   <li>Options on equities use Black-Scholes with the equity's dividend yield; options on futures
+ *       use Black-76. Exercise style is ignored (European approximation).</li>
+ *   <li>Volatility is implied from the option's own price when it has one, otherwise
+ *       <code>ibor.greeks.default-vol</code>. The rate is <code>ibor.greeks.risk-free-rate</code>.</li>
+ *   <li>Options not in the cache are priced together in one pass of {@link OptionGreeks#price}
+ *       over primitive arrays.</li>
+ *   <li>Per-unit Greeks are cached per (instrument, asOf) together with the price/instrument data
+ *       version, so a loader run makes old entries unreachable. Nothing is cached until data
+ *       versions are known. Beyond <code>ibor.greeks.cache-size</code> entries the least recently
+ *       used are evicted ({@link LruCache}).</li>
+ * </ul>
+ */
+@Service
+public class DerivativeExposureService {
+    static final String BLACK_SCHOLES = "BLACK_SCHOLES";
+    static final String BLACK_76 = "BLACK_76";
+    static final String LINEAR = "LINEAR";
+
+    private final JodiDerivativeExposureRepository repository;
+    private final DataVersionService dataVersions;
+    private final RequestCoalescer coalescer;
+    private final double riskFreeRate;
+    private final double defaultVol;
+    private final LruCache<GreeksKey, UnitGreeks> greeksCache;
+
+    public DerivativeExposureService(JodiDerivativeExposureRepository repository,
+                                     DataVersionService dataVersions,
+                                     RequestCoalescer coalescer,
+                                     @Value("${ibor.greeks.risk-free-rate:0.04}") double riskFreeRate,
+                                     @Value("${ibor.greeks.default-vol:0.25}") double defaultVol,
+                                     @Value("${ibor.greeks.cache-size:100000}") int cacheSize) {
+        this.repository = repository;
+        this.dataVersions = dataVersions;
+        this.coalescer = coalescer;
+        this.riskFreeRate = riskFreeRate;
+        this.defaultVol = defaultVol;
+        this.greeksCache = new LruCache<>(cacheSize);
+    }
+
+    record GreeksKey(String instrumentCode, LocalDate asOf, String dataVersion) {}
+
+    record UnitGreeks(String model, double vol, boolean implied,
+                      double delta, double gamma, double vega, double theta, double rho) {}
+
+    public DerivativeExposureResponse getExposure(String portfolioCode, LocalDate asOf) {
+        if (asOf == null) {
+            throw new InvalidRequestException("asOf must be provided (YYYY-MM-DD)");
+        }
+        if (portfolioCode == null || portfolioCode.isBlank()) {
+            throw new InvalidRequestException("portfolioCode must be provided");
+        }
+        return coalescer.execute("positions.derivatives",
+                () -> load(portfolioCode, asOf),
+                portfolioCode, asOf);
+    }
+
+    int cachedGreeks() {
+        return greeksCache.size();
+    }
+
+    private DerivativeExposureResponse load(String portfolioCode, LocalDate asOf) {
+        List<DerivativeInput> inputs = repository.findDerivativePositions(portfolioCode, asOf);
+        String version = dataVersions.etag("price", "instrument").orElse(null);
+
+        UnitGreeks[] greeks = new UnitGreeks[inputs.size()];
+        List<Integer> misses = new ArrayList<>();
+        for (int i = 0; i < greeks.length; i++) {
+            DerivativeInput in = inputs.get(i);
+            if (in.optionType() == null) {
+                greeks[i] = new UnitGreeks(LINEAR, Double.NaN, false, 1, 0, 0, 0, 0);
+            } else if (in.strike() == null || in.expiry() == null || in.underlyingPrice() == null) {
+                greeks[i] = null;   // cannot be priced without underlying price and terms
+            } else {
+                greeks[i] = version == null ? null : greeksCache.get(new GreeksKey(in.instrumentCode(), asOf, version));
+                if (greeks[i] == null) misses.add(i);
+            }
+        }
+        if (!misses.isEmpty()) {
+            priceMisses(inputs, misses, asOf, version, greeks);
+        }
+
+        List<DerivativeExposureDTO> rows = new ArrayList<>(greeks.length);
+        Map<String, BigDecimal> byCurrency = new TreeMap<>();
+        for (int i = 0; i < greeks.length; i++) {
+            DerivativeExposureDTO row = toDto(inputs.get(i), greeks[i]);
+            rows.add(row);
+            if (row.deltaNotional() != null && row.currency() != null) {
+                byCurrency.merge(row.currency(), row.deltaNotional(), BigDecimal::add);
+            }
+        }
+        return new DerivativeExposureResponse(portfolioCode, asOf, riskFreeRate, byCurrency, rows);
+    }
+
+    /** Implies a volatility per option, then prices all misses in one pass over the arrays. */
+    private void priceMisses(List<DerivativeInput> inputs, List<Integer> misses, LocalDate asOf,
+                             String version, UnitGreeks[] out) {
+        OptionGreeks.Book book = new OptionGreeks.Book(misses.size());
+        boolean[] implied = new boolean[book.n];
+        String[] models = new String[book.n];
+        for (int j = 0; j < book.n; j++) {
+            DerivativeInput in = inputs.get(misses.get(j));
+            boolean onFuture = "FUT".equals(in.underlyingType());
+            double q = in.dividendYield() == null ? 0 : in.dividendYield().doubleValue();
+            models[j] = onFuture ? BLACK_76 : BLACK_SCHOLES;
+            book.spot[j] = in.underlyingPrice().doubleValue();
+            book.strike[j] = in.strike().doubleValue();
+            book.years[j] = ChronoUnit.DAYS.between(asOf, in.expiry()) / 365.0;
+            book.rate[j] = riskFreeRate;
+            book.carry[j] = onFuture ? 0 : riskFreeRate - q;
+            book.call[j] = "CALL".equalsIgnoreCase(in.optionType()) || "C".equalsIgnoreCase(in.optionType());
+
+            double iv = in.price() == null ? Double.NaN : OptionGreeks.impliedVol(in.price().doubleValue(),
+                    book.spot[j], book.strike[j], book.years[j], book.rate[j], book.carry[j], book.call[j]);
+            implied[j] = !Double.isNaN(iv);
+            book.vol[j] = implied[j] ? iv : defaultVol;
+        }
+
+        OptionGreeks.price(book);
+
+        for (int j = 0; j < book.n; j++) {
+            int i = misses.get(j);
+            UnitGreeks g = new UnitGreeks(models[j], book.vol[j], implied[j],
+                    book.delta[j], book.gamma[j], book.vega[j], book.theta[j], book.rho[j]);
+            out[i] = g;
+            if (version != null) {
+                greeksCache.put(new GreeksKey(inputs.get(i).instrumentCode(), asOf, version), g);
+            }
+        }
+    }
+
+    private static DerivativeExposureDTO toDto(DerivativeInput in, UnitGreeks g) {
+        BigDecimal units = in.quantity().multiply(in.multiplier());
+        BigDecimal marketValue = in.price() == null ? null : money(units.multiply(in.price()));
+        boolean linear = g != null && LINEAR.equals(g.model());
+        BigDecimal reference = linear ? in.price() : in.underlyingPrice();
+        BigDecimal deltaNotional = g == null || reference == null ? null
+                : money(units.multiply(reference).multiply(BigDecimal.valueOf(g.delta())));
+        return new DerivativeExposureDTO(
+                in.instrumentCode(),
+                in.instrumentType(),
+                g == null ? null : g.model(),
+                in.optionType(),
+                in.strike(),
+                in.expiry(),
+                in.underlyingCode(),
+                in.quantity(),
+                in.multiplier(),
+                in.price(),
+                in.underlyingPrice(),
+                g == null || linear ? null : g.vol(),
+                g == null || linear ? null : (g.implied() ? "IMPLIED" : "DEFAULT"),
+                g == null ? null : g.delta(),
+                g == null || linear ? null : g.gamma(),
+                g == null || linear ? null : g.vega(),
+                g == null || linear ? null : g.theta(),
+                g == null || linear ? null : g.rho(),
+                marketValue,
+                deltaNotional,
+                g == null || linear ? null : money(units.multiply(BigDecimal.valueOf(g.vega()))),
+                g == null || linear ? null : money(units.multiply(BigDecimal.valueOf(g.theta()))),
+                in.currency());
+    }
+
+    private static BigDecimal money(BigDecimal v) {
+        return v.setScale(2, RoundingMode.HALF_UP);
+    }
+}
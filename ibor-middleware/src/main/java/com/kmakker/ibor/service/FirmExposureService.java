@@ -0,0 +1,261 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.dto.FirmExposureDTO;
+import com.kmakker.ibor.dto.FirmExposureResponse;
+import com.kmakker.ibor.exception.InvalidRequestException;
+import com.kmakker.ibor.jodi.JodiFirmExposureRepository;
+import com.kmakker.ibor.jodi.JodiFirmExposureRepository.Quantity;
+import com.kmakker.ibor.jodi.JodiFirmExposureRepository.Valuation;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FirmExposureService
+ *
+ * <p>Exposure per instrument summed over every portfolio valid on a date, in one base currency,
+ * e.g. "total EQ-IBM across the firm" without one <code>/api/positions</code> call per portfolio.</p>
+ *
+ * <ol>
+ *   <li>The valuation snapshot (price, multiplier and FX rate per instrument) is loaded once and
+ *       shared by all workers; it is read while the portfolio list is fetched and the first
+ *       partitions run.</li>
+ *   <li>Portfolios are dealt round-robin into up to <code>ibor.firm-exposure.parallelism</code>
+ *       partitions. Each partition is one quantity query on its own connection, valued in memory
+ *       against the snapshot.</li>
+ *   <li>Each worker sums its partition into its own per-instrument {@link BigDecimal} totals; the
+ *       partial sums are merged once every partition is in. Sums are exact, so the result does not
+ *       depend on which partition finishes first.</li>
+ *   <li>The top N instruments by absolute market value are kept in a bounded heap.</li>
+ * </ol>
+ *
+ * <p>All requests share one executor of <code>parallelism</code> threads, so the number of
+ * connections used for partitions stays fixed however many firm-wide requests run at once; they
+ * are reserved in the connection budget next to the bulkhead limits. Its queue holds
+ * <code>ibor.firm-exposure.queue-capacity</code> partitions; a request that does not fit is
+ * answered 503 rather than waiting behind an unbounded backlog.</p>
+ */
+@Service
+public class FirmExposureService implements DisposableBean {
+    private static final int DEFAULT_TOP_N = 20;
+    private static final int MAX_TOP_N = 500;
+
+    private final JodiFirmExposureRepository repository;
+    private final RequestCoalescer coalescer;
+    private final int parallelism;
+    private final Executor executor;
+
+    @Autowired
+    public FirmExposureService(JodiFirmExposureRepository repository,
+                               RequestCoalescer coalescer,
+                               @Value("${ibor.firm-exposure.parallelism:3}") int parallelism,
+                               @Value("${ibor.firm-exposure.queue-capacity:16}") int queueCapacity) {
+        this(repository, coalescer, parallelism,
+                new ThreadPoolExecutor(parallelism, parallelism, 0, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(queueCapacity),
+                        Thread.ofVirtual().name("firm-exposure-", 0).factory(),
+                        new ThreadPoolExecutor.AbortPolicy()));
+    }
+
+    FirmExposureService(JodiFirmExposureRepository repository, RequestCoalescer coalescer,
+                        int parallelism, Executor executor) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("ibor.firm-exposure.parallelism must be at least 1");
+        }
+        this.repository = repository;
+        this.coalescer = coalescer;
+        this.parallelism = parallelism;
+        this.executor = executor;
+    }
+
+    @Override
+    public void destroy() {
+        if (executor instanceof ExecutorService es) es.shutdownNow();
+    }
+
+    public FirmExposureResponse getFirmExposure(LocalDate asOf, String baseCurrency, String instrumentCode, Integer topN) {
+        if (asOf == null) {
+            throw new InvalidRequestException("asOf must be provided (YYYY-MM-DD)");
+        }
+        String base = (baseCurrency == null || baseCurrency.isBlank())
+                ? "USD" : baseCurrency.trim().toUpperCase(Locale.ROOT);
+        if (base.length() != 3) {
+            throw new InvalidRequestException("baseCurrency must be a 3-letter currency code");
+        }
+        int n = topN == null ? DEFAULT_TOP_N : topN;
+        if (n < 1 || n > MAX_TOP_N) {
+            throw new InvalidRequestException("topN must be between 1 and " + MAX_TOP_N);
+        }
+        String instrument = (instrumentCode == null || instrumentCode.isBlank()) ? null : instrumentCode.trim();
+
+        return coalescer.execute("positions.firm",
+                () -> load(asOf, base, instrument, n),
+                asOf, base, instrument, n);
+    }
+
+    private FirmExposureResponse load(LocalDate asOf, String base, String instrumentCode, int topN) {
+        List<Long> portfolioVids;
+        List<CompletableFuture<Totals>> workers = new ArrayList<>();
+        CompletableFuture<Map<Long, Valuation>> snapshot;
+        try {
+            snapshot = CompletableFuture.supplyAsync(() -> {
+                Map<Long, Valuation> byVid = new HashMap<>();
+                for (Valuation v : repository.fetchValuationSnapshot(asOf, base, instrumentCode)) {
+                    byVid.put(v.instrumentVid(), v);
+                }
+                return byVid;
+            }, executor);
+
+            portfolioVids = repository.findPortfolioVids(asOf);
+            for (long[] partition : partition(portfolioVids, parallelism)) {
+                workers.add(CompletableFuture
+                        .supplyAsync(() -> repository.fetchQuantities(asOf, partition, instrumentCode), executor)
+                        .thenCombine(snapshot, FirmExposureService::accumulate));
+            }
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "firm exposure requests at capacity, retry later");
+        }
+        join(CompletableFuture.allOf(workers.toArray(CompletableFuture[]::new)));
+        join(snapshot);
+        Totals totals = new Totals();
+        for (CompletableFuture<Totals> worker : workers) totals.merge(join(worker));
+
+        BigDecimal gross = totals.gross;
+        List<FirmExposureDTO> exposures = top(totals.byInstrument, topN).stream()
+                .map(e -> new FirmExposureDTO(
+                        e.valuation.instrumentCode(),
+                        e.valuation.instrumentType(),
+                        e.portfolios,
+                        decimal(e.quantity),
+                        decimal(e.mktValue),
+                        gross.signum() == 0 ? null : e.mktValue.divide(gross, 6, RoundingMode.HALF_UP)))
+                .toList();
+        return new FirmExposureResponse(asOf, base, instrumentCode, portfolioVids.size(),
+                totals.positions, totals.unconverted == 0 ? null : totals.unconverted,
+                decimal(gross), decimal(totals.net), exposures);
+    }
+
+    /**
+     * Values one partition's rows against the shared snapshot. Rows whose instrument version is
+     * not valid on the date are skipped, as in <code>/api/positions</code>; unpriced rows count
+     * with a zero value.
+     */
+    static Totals accumulate(List<Quantity> rows, Map<Long, Valuation> valuations) {
+        Totals totals = new Totals();
+        for (Quantity q : rows) {
+            Valuation v = valuations.get(q.instrumentVid());
+            if (v == null) continue;
+            totals.positions++;
+            if (!v.converted()) {
+                totals.unconverted++;
+                continue;
+            }
+            BigDecimal value = q.netQty().multiply(v.price()).multiply(v.multiplier()).multiply(v.fxRate());
+            Exposure e = totals.byInstrument.computeIfAbsent(v.instrumentVid(), k -> new Exposure(v));
+            e.quantity = e.quantity.add(q.netQty());
+            e.mktValue = e.mktValue.add(value);
+            e.portfolios++;
+            totals.net = totals.net.add(value);
+            totals.gross = totals.gross.add(value.abs());
+        }
+        return totals;
+    }
+
+    /** Round-robin so partitions differ in size by at most one portfolio. */
+    static List<long[]> partition(List<Long> vids, int parallelism) {
+        int parts = Math.min(parallelism, vids.size());
+        List<long[]> out = new ArrayList<>(parts);
+        for (int p = 0; p < parts; p++) {
+            long[] partition = new long[(vids.size() - p + parts - 1) / parts];
+            for (int k = 0; k < partition.length; k++) {
+                partition[k] = vids.get(p + k * parts);
+            }
+            out.add(partition);
+        }
+        return out;
+    }
+
+    /** The n largest exposures by absolute market value, largest first, via a size-n min-heap. */
+    private static List<Exposure> top(Map<Long, Exposure> exposures, int n) {
+        Comparator<Exposure> byAbs = Comparator.comparing(e -> e.mktValue.abs());
+        PriorityQueue<Exposure> heap = new PriorityQueue<>(n + 1, byAbs);
+        for (Exposure e : exposures.values()) {
+            heap.offer(e);
+            if (heap.size() > n) heap.poll();
+        }
+        List<Exposure> out = new ArrayList<>(heap);
+        out.sort(byAbs.reversed().thenComparing(e -> e.valuation.instrumentCode()));
+        return out;
+    }
+
+    private static BigDecimal decimal(BigDecimal v) {
+        return v.setScale(6, RoundingMode.HALF_UP);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+
+    /** Sums for one partition, or for all of them once merged; owned by one thread at a time. */
+    static final class Totals {
+        final Map<Long, Exposure> byInstrument = new HashMap<>();
+        int positions;
+        int unconverted;
+        BigDecimal gross = BigDecimal.ZERO;
+        BigDecimal net = BigDecimal.ZERO;
+
+        void merge(Totals other) {
+            positions += other.positions;
+            unconverted += other.unconverted;
+            gross = gross.add(other.gross);
+            net = net.add(other.net);
+            other.byInstrument.forEach((vid, e) -> byInstrument.merge(vid, e, Exposure::merge));
+        }
+    }
+
+    static final class Exposure {
+        final Valuation valuation;
+        BigDecimal quantity = BigDecimal.ZERO;
+        BigDecimal mktValue = BigDecimal.ZERO;
+        int portfolios;
+
+        Exposure(Valuation valuation) {
+            this.valuation = valuation;
+        }
+
+        Exposure merge(Exposure other) {
+            quantity = quantity.add(other.quantity);
+            mktValue = mktValue.add(other.mktValue);
+            portfolios += other.portfolios;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.dto.FxRateDTO;
+import com.kmakker.ibor.exception.InvalidRequestException;
+import com.kmakker.ibor.intern.CodeDictionary;
+import com.kmakker.ibor.jodi.JodiFxRateRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * FxSnapshot
+ *
+ * <p>Rates from each currency into one base currency as of one date, resolved once per request
+ * and then applied row by row without further lookups.</p>
+ *
+ * <p>Rates are held in an array indexed by interned currency id ({@link CodeDictionary}), so a
+ * conversion is one id lookup and one array read. The base currency always converts at 1;
+ * currencies without a rate return null from {@link #rate(String)}.</p>
+ *
+ * <p>Only codes returned by the database are interned. A client-supplied base currency goes
+ * through {@link #load}, which rejects codes outside <code>ibor.dim_currency</code> so request
+ * input cannot grow the process-wide dictionary.</p>
+ */
+public final class FxSnapshot {
+    private final String baseCurrency;
+    private final LocalDate asOf;
+    private final CodeDictionary currencies;
+    private final BigDecimal[] rateById;
+
+    /**
+     * Rates from <code>from</code> into <code>baseCurrency</code> as of the date. The base currency
+     * is accepted when rates into it were found or it is in <code>ibor.dim_currency</code>;
+     * otherwise this throws InvalidRequestException (400) and nothing is interned.
+     */
+    public static FxSnapshot load(JodiFxRateRepository fxRateRepository, CodeDictionary currencies,
+                                  String baseCurrency, LocalDate asOf, Collection<String> from) {
+        String base = baseCurrency.trim().toUpperCase(Locale.ROOT);
+        List<FxRateDTO> rates = fxRateRepository.findFxRatesAtOrBefore(from, base, asOf);
+        if (rates.isEmpty() && currencies.find(base) == CodeDictionary.NO_ID
+                && !fxRateRepository.currencyExists(base)) {
+            throw new InvalidRequestException("unknown baseCurrency: " + base);
+        }
+        return new FxSnapshot(base, asOf, rates, currencies);
+    }
+
+    /** Rates and base as read from the database; every code here is interned. */
+    FxSnapshot(String baseCurrency, LocalDate asOf, List<FxRateDTO> rates, CodeDictionary currencies) {
+        this.baseCurrency = baseCurrency.trim().toUpperCase(Locale.ROOT);
+        this.asOf = asOf;
+        this.currencies = currencies;
+
+        int baseId = currencies.id(this.baseCurrency);
+        int[] ids = new int[rates.size()];
+        int max = baseId;
+        for (int k = 0; k < ids.length; k++) {
+            ids[k] = currencies.id(rates.get(k).fromCurrency());
+            max = Math.max(max, ids[k]);
+        }
+        rateById = new BigDecimal[max + 1];
+        for (int k = 0; k < ids.length; k++) {
+            rateById[ids[k]] = rates.get(k).rate();
+        }
+        rateById[baseId] = BigDecimal.ONE;
+    }
+
+    public String baseCurrency() {
+        return baseCurrency;
+    }
+
+    public LocalDate asOf() {
+        return asOf;
+    }
+
+    /** Rate(currency→base), or null when the snapshot has none for the currency. */
+    public BigDecimal rate(String currency) {
+        if (currency == null) return null;
+        int id = currencies.find(currency);
+        return id == CodeDictionary.NO_ID || id >= rateById.length ? null : rateById[id];
+    }
+
+    /** Amount in the base currency, or null when the amount is null or there is no rate. */
+    public BigDecimal convert(BigDecimal amount, String currency) {
+        BigDecimal rate = rate(currency);
+        return amount == null || rate == null ? null : amount.multiply(rate);
+    }
+}
@@ -0,0 +1,91 @@
+package com.kmakker.ibor.service;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * HistoricalVarEngine
+ *
+ * <p>Portfolio P&amp;L under each historical scenario of a {@link ReturnMatrix}:
+ * <code>pnl[t] = sum over positions k of value[k] x returns[t][column[k]]</code>, followed by
+ * the VaR / expected-shortfall tail statistics of that distribution.</p>
+ *
+ * <p>Scenario ranges are revalued in parallel on a {@link ForkJoinPool}; within a range
+ * {@link #revalue} reads one contiguous matrix row per scenario.</p>
+ */
+final class HistoricalVarEngine {
+    /** Ranges are split until they cover at most this many position revaluations. */
+    private static final long LEAF_WORK = 1 << 15;
+
+    private HistoricalVarEngine() {}
+
+    /** P&amp;L per scenario for positions with base-currency <code>values</code> at matrix <code>columns</code>. */
+    static double[] pnl(double[] returns, int width, int scenarios, int[] columns, double[] values, ForkJoinPool pool) {
+        double[] pnl = new double[scenarios];
+        pool.invoke(new Range(returns, width, columns, values, pnl, 0, scenarios));
+        return pnl;
+    }
+
+    /** Inner loop: fills <code>pnl[from..to)</code>. */
+    static void revalue(double[] returns, int width, int[] columns, double[] values, double[] pnl, int from, int to) {
+        for (int t = from; t < to; t++) {
+            int row = t * width;
+            double acc = 0;
+            for (int k = 0; k < columns.length; k++) {
+                acc += values[k] * returns[row + columns[k]];
+            }
+            pnl[t] = acc;
+        }
+    }
+
+    /**
+     * Historical VaR as a positive loss: minus the P&amp;L at rank <code>floor(n x (1 - confidence))</code>
+     * of the ascending P&amp;L, i.e. the worst outcome not in the tail.
+     */
+    static double valueAtRisk(double[] sortedPnl, double confidence) {
+        return -sortedPnl[tailCount(sortedPnl.length, confidence) - 1];
+    }
+
+    /** Expected shortfall as a positive loss: minus the mean P&amp;L of the tail VaR is read from. */
+    static double expectedShortfall(double[] sortedPnl, double confidence) {
+        int k = tailCount(sortedPnl.length, confidence);
+        double sum = 0;
+        for (int i = 0; i < k; i++) sum += sortedPnl[i];
+        return -sum / k;
+    }
+
+    /** Scenarios up to and including the VaR rank: <code>floor(n x (1 - confidence)) + 1</code>, capped at n. */
+    private static int tailCount(int n, double confidence) {
+        return Math.min(n, (int) Math.floor(n * (1 - confidence) + 1e-9) + 1);
+    }
+
+    private static final class Range extends RecursiveAction {
+        private final double[] returns;
+        private final int width;
+        private final int[] columns;
+        private final double[] values;
+        private final double[] pnl;
+        private final int from, to;
+
+        Range(double[] returns, int width, int[] columns, double[] values, double[] pnl, int from, int to) {
+            this.returns = returns;
+            this.width = width;
+            this.columns = columns;
+            this.values = values;
+            this.pnl = pnl;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1 && (long) (to - from) * columns.length > LEAF_WORK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Range(returns, width, columns, values, pnl, from, mid),
+                        new Range(returns, width, columns, values, pnl, mid, to));
+            } else {
+                revalue(returns, width, columns, values, pnl, from, to);
+            }
+        }
+    }
+}
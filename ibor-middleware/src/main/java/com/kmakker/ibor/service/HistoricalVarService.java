@@ -0,0 +1,247 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.dto.PositionDTO;
+import com.kmakker.ibor.dto.analytics.VarResponse;
+import com.kmakker.ibor.dto.analytics.VarResponse.Measure;
+import com.kmakker.ibor.dto.analytics.VarResponse.ScenarioPnl;
+import com.kmakker.ibor.exception.InvalidRequestException;
+import com.kmakker.ibor.intern.CodeDictionaries;
+import com.kmakker.ibor.intern.LruCache;
+import com.kmakker.ibor.jodi.JodiFxRateRepository;
+import com.kmakker.ibor.jodi.JodiPositionsRepository;
+import com.kmakker.ibor.jodi.JodiReturnHistoryRepository;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * HistoricalVarService
+ *
+ * <p>Historical-simulation VaR and expected shortfall: today's positions are revalued under each
+ * of the last <code>lookback</code> daily returns of their instruments.</p>
+ *
+ * <ol>
+ *   <li>The {@link ReturnMatrix} of a window (lookback, asOf) covers the whole instrument universe,
+ *       so one matrix serves every portfolio. It is cached together with the price and
+ *       corporate-action data versions, so a load of either makes old matrices unreachable; nothing is cached until data versions are
+ *       known. Beyond <code>ibor.var.cache-size</code> matrices the least recently used are
+ *       evicted ({@link LruCache}).</li>
+ *   <li>Positions are loaded as in <code>/api/positions</code> (up to
+ *       <code>ibor.var.max-lines</code>, in instrument code order; <code>truncated</code> says the
+ *       book holds more), valued in the base currency with one {@link FxSnapshot}
+ *       and netted per instrument.</li>
+ *   <li>Scenario P&amp;L is computed by {@link HistoricalVarEngine} on a dedicated fork/join pool
+ *       of <code>ibor.var.parallelism</code> workers.</li>
+ * </ol>
+ *
+ * <p>Returns are local-currency price returns from one price source per instrument, adjusted
+ * for splits and dividends ({@link ReturnMatrix}). FX moves against the base currency are not
+ * simulated. Lines whose instrument has no price in the window are reported as unmodelled.</p>
+ */
+@Service
+public class HistoricalVarService implements DisposableBean {
+    static final int DEFAULT_LOOKBACK = 250;
+    static final int MAX_LOOKBACK = 2500;
+    private static final List<Double> DEFAULT_CONFIDENCE = List.of(0.95, 0.99);
+    private static final int WORST_SCENARIOS = 5;
+
+    private final JodiReturnHistoryRepository historyRepository;
+    private final PriceAdjustmentService priceAdjustments;
+    private final JodiPositionsRepository positionsRepository;
+    private final JodiFxRateRepository fxRateRepository;
+    private final CodeDictionaries codeDictionaries;
+    private final DataVersionService dataVersions;
+    private final RequestCoalescer coalescer;
+    private final int maxLines;
+    private final ForkJoinPool pool;
+    private final LruCache<MatrixKey, ReturnMatrix> matrices;
+
+    @Autowired
+    public HistoricalVarService(JodiReturnHistoryRepository historyRepository,
+                                PriceAdjustmentService priceAdjustments,
+                                JodiPositionsRepository positionsRepository,
+                                JodiFxRateRepository fxRateRepository,
+                                CodeDictionaries codeDictionaries,
+                                DataVersionService dataVersions,
+                                RequestCoalescer coalescer,
+                                @Value("${ibor.var.max-lines:20000}") int maxLines,
+                                @Value("${ibor.var.cache-size:16}") int cacheSize,
+                                @Value("${ibor.var.parallelism:0}") int parallelism) {
+        this.historyRepository = historyRepository;
+        this.priceAdjustments = priceAdjustments;
+        this.positionsRepository = positionsRepository;
+        this.fxRateRepository = fxRateRepository;
+        this.codeDictionaries = codeDictionaries;
+        this.dataVersions = dataVersions;
+        this.coalescer = coalescer;
+        this.maxLines = maxLines;
+        this.matrices = new LruCache<>(cacheSize);
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public void destroy() {
+        pool.shutdownNow();
+    }
+
+    record MatrixKey(int lookback, LocalDate asOf, String dataVersion) {}
+
+    /** Positions netted per instrument, in base-currency value. */
+    record Exposure(String[] instrumentCodes, double[] baseValue, int lines, int unconverted, boolean truncated) {}
+
+    int cachedMatrices() {
+        return matrices.size();
+    }
+
+    public VarResponse getVar(String portfolioCode, LocalDate asOf, Integer lookback,
+                              List<Double> confidence, String baseCurrency) {
+        if (asOf == null) {
+            throw new InvalidRequestException("asOf must be provided (YYYY-MM-DD)");
+        }
+        if (portfolioCode == null || portfolioCode.isBlank()) {
+            throw new InvalidRequestException("portfolioCode must be provided");
+        }
+        int days = lookback == null ? DEFAULT_LOOKBACK : lookback;
+        if (days < 2 || days > MAX_LOOKBACK) {
+            throw new InvalidRequestException("lookback must be between 2 and " + MAX_LOOKBACK + " price days");
+        }
+        List<Double> levels = confidence == null || confidence.isEmpty() ? DEFAULT_CONFIDENCE : confidence;
+        for (Double c : levels) {
+            if (c == null || !(c > 0 && c < 1)) {
+                throw new InvalidRequestException("confidence must be between 0 and 1 exclusive (e.g. 0.99)");
+            }
+        }
+        String base = (baseCurrency == null || baseCurrency.isBlank())
+                ? "USD" : baseCurrency.trim().toUpperCase(Locale.ROOT);
+        if (base.length() != 3) {
+            throw new InvalidRequestException("baseCurrency must be a 3-letter currency code");
+        }
+
+        ReturnMatrix matrix = returnMatrix(days, asOf);
+        Exposure exposure = coalescer.execute("var.exposure",
+                () -> loadExposure(portfolioCode, asOf, base),
+                portfolioCode, asOf, base);
+        return simulate(portfolioCode, asOf, base, days, levels, matrix, exposure);
+    }
+
+    private ReturnMatrix returnMatrix(int lookback, LocalDate asOf) {
+        String version = dataVersions.etag("price", "corporate_action").orElse(null);
+        if (version == null) {
+            return coalescer.execute("var.returns", () -> buildMatrix(lookback, asOf), lookback, asOf);
+        }
+        MatrixKey key = new MatrixKey(lookback, asOf, version);
+        ReturnMatrix cached = matrices.get(key);
+        if (cached != null) return cached;
+        ReturnMatrix built = coalescer.execute("var.returns", () -> buildMatrix(lookback, asOf), lookback, asOf, version);
+        matrices.put(key, built);
+        return built;
+    }
+
+    private ReturnMatrix buildMatrix(int lookback, LocalDate asOf) {
+        // lookback returns need lookback + 1 price days
+        List<LocalDate> days = historyRepository.findPriceDays(asOf, lookback + 1);
+        if (days.size() < 2) {
+            return new ReturnMatrix(days, List.of(), Map.of());
+        }
+        LocalDate from = days.get(0), to = days.get(days.size() - 1);
+        return new ReturnMatrix(days, historyRepository.findDailyPrices(from, to),
+                priceAdjustments.factorsBetween(from, to));
+    }
+
+    private Exposure loadExposure(String portfolioCode, LocalDate asOf, String base) {
+        List<PositionDTO> positions = positionsRepository.findPositions(asOf, portfolioCode, null, 1, maxLines + 1);
+        boolean truncated = positions.size() > maxLines;
+        if (truncated) positions = positions.subList(0, maxLines);
+        Set<String> currencies = new LinkedHashSet<>();
+        for (PositionDTO p : positions) {
+            if (p.currency() != null && !base.equalsIgnoreCase(p.currency())) currencies.add(p.currency());
+        }
+        FxSnapshot fx = FxSnapshot.load(fxRateRepository, codeDictionaries.currencies(), base, asOf, currencies);
+
+        Map<String, Double> byInstrument = new LinkedHashMap<>();
+        int unconverted = 0;
+        for (PositionDTO p : positions) {
+            BigDecimal v = fx.convert(p.mktValue(), p.currency());
+            if (v == null || p.instrumentId() == null) {
+                unconverted++;
+                continue;
+            }
+            byInstrument.merge(p.instrumentId(), v.doubleValue(), Double::sum);
+        }
+        String[] codes = byInstrument.keySet().toArray(String[]::new);
+        double[] values = new double[codes.length];
+        for (int i = 0; i < codes.length; i++) values[i] = byInstrument.get(codes[i]);
+        return new Exposure(codes, values, positions.size(), unconverted, truncated);
+    }
+
+    VarResponse simulate(String portfolioCode, LocalDate asOf, String base, int lookback,
+                         List<Double> confidence, ReturnMatrix matrix, Exposure exposure) {
+        int n = exposure.instrumentCodes().length;
+        int[] columns = new int[n];
+        double[] values = new double[n];
+        double total = 0;
+        int modelled = 0, unmodelled = 0;
+        for (int i = 0; i < n; i++) {
+            total += exposure.baseValue()[i];
+            int col = matrix.column(exposure.instrumentCodes()[i]);
+            if (col < 0) {
+                unmodelled++;
+                continue;
+            }
+            columns[modelled] = col;
+            values[modelled++] = exposure.baseValue()[i];
+        }
+        columns = Arrays.copyOf(columns, modelled);
+        values = Arrays.copyOf(values, modelled);
+
+        int t = matrix.scenarios();
+        if (t == 0) {
+            throw new InvalidRequestException("no price history on or before " + asOf);
+        }
+        double[] pnl = HistoricalVarEngine.pnl(matrix.returns(), matrix.width(), t, columns, values, pool);
+
+        Integer[] order = new Integer[t];
+        for (int i = 0; i < t; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Double.compare(pnl[a], pnl[b]));
+        double[] sorted = new double[t];
+        for (int i = 0; i < t; i++) sorted[i] = pnl[order[i]];
+
+        List<Measure> measures = new ArrayList<>(confidence.size());
+        for (double c : confidence) {
+            measures.add(new Measure(c,
+                    HistoricalVarEngine.valueAtRisk(sorted, c),
+                    HistoricalVarEngine.expectedShortfall(sorted, c)));
+        }
+        double mean = 0;
+        for (double v : pnl) mean += v;
+        mean /= t;
+        double sq = 0;
+        for (double v : pnl) sq += (v - mean) * (v - mean);
+        double stdev = t > 1 ? Math.sqrt(sq / (t - 1)) : 0;
+
+        List<ScenarioPnl> worst = new ArrayList<>();
+        for (int i = 0; i < Math.min(WORST_SCENARIOS, t); i++) {
+            worst.add(new ScenarioPnl(matrix.scenarioDay(order[i]), pnl[order[i]]));
+        }
+        return new VarResponse(portfolioCode, asOf, base, lookback, t,
+                matrix.scenarioDay(0), matrix.scenarioDay(t - 1),
+                total, exposure.lines(),
+                exposure.unconverted() == 0 ? null : exposure.unconverted(),
+                exposure.truncated() ? Boolean.TRUE : null,
+                unmodelled == 0 ? null : unmodelled,
+                measures, mean, stdev, sorted[0], sorted[t - 1], worst);
+    }
+}
@@ -0,0 +1,151 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.dto.InstrumentSearchHitDTO;
+import com.kmakker.ibor.jodi.JodiInstrumentRepository;
+import com.kmakker.ibor.model.instrument.Instrument;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * InstrumentMaster
+ *
+ * <p>Warm, read-only copy of every SCD2 instrument version held in memory so point-in-time
+ * instrument lookups never go to the database.</p>
+ *
+ * <ul>
+ *   <li>Per instrument code, versions are kept in arrays sorted by <code>valid_from</code>
+ *       (as epoch days) next to the fully built {@link Instrument} from {@code InstrumentFactory}.</li>
+ *   <li>An as-of lookup is a binary search for the last version starting on or before the date,
+ *       then a check that it has not ended. The exclusion constraint on
+ *       <code>dim_instrument</code> guarantees versions never overlap, so one candidate is enough.</li>
+ *   <li>Loaded once the application is ready and reloaded when the dimension watermark moves,
+ *       i.e. after <code>load_instrument_scd2</code> or a subtype upsert has run.</li>
+ *   <li>A search index over code, name and ticker ({@link InstrumentSearchIndex}) is rebuilt
+ *       with every load.</li>
+ *   <li>The whole index is swapped atomically; readers never see a half-built master.</li>
+ * </ul>
+ *
+ * <p>If the initial load fails (database down at startup) the master stays unloaded and
+ * {@link InstrumentService} falls back to {@link JodiInstrumentRepository}.</p>
+ */
+@Slf4j
+@Component
+public class InstrumentMaster {
+
+    /** Versions of a single instrument code, sorted by valid_from. */
+    private record Versions(int[] validFrom, int[] validTo, Instrument[] instruments) {
+        Instrument asOf(int day) {
+            int lo = 0, hi = validFrom.length - 1, hit = -1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (validFrom[mid] <= day) { hit = mid; lo = mid + 1; }
+                else hi = mid - 1;
+            }
+            return (hit >= 0 && validTo[hit] >= day) ? instruments[hit] : null;
+        }
+    }
+
+    private record Snapshot(Map<String, Versions> byCode, int versionCount,
+                            InstrumentSearchIndex searchIndex, String watermark) {}
+
+    private final JodiInstrumentRepository repo;
+    private final boolean enabled;
+    private volatile Snapshot snapshot;
+
+    public InstrumentMaster(JodiInstrumentRepository repo,
+                            @Value("${ibor.instrument-master.enabled:true}") boolean enabled) {
+        this.repo = repo;
+        this.enabled = enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) return;
+        try {
+            String watermark = repo.fetchVersionWatermark();
+            snapshot = build(repo.findAllVersions(), repo.findSearchEntries(), watermark);
+            log.info("Instrument master loaded: {} codes, {} versions",
+                    snapshot.byCode().size(), snapshot.versionCount());
+        } catch (RuntimeException e) {
+            log.warn("Instrument master not loaded, falling back to database lookups: {}", e.getMessage());
+        }
+    }
+
+    /** Polls the dimension watermark and reloads when instruments have been (re)loaded. */
+    @Scheduled(fixedDelayString = "${ibor.instrument-master.refresh-ms:60000}",
+               initialDelayString = "${ibor.instrument-master.refresh-ms:60000}")
+    public void refreshIfChanged() {
+        if (!enabled) return;
+        Snapshot current = snapshot;
+        if (current == null) {
+            load();
+            return;
+        }
+        try {
+            if (!Objects.equals(current.watermark(), repo.fetchVersionWatermark())) {
+                load();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Instrument master refresh check failed, keeping current copy: {}", e.getMessage());
+        }
+    }
+
+    /** True once a full copy of the dimension is in memory. */
+    public boolean isLoaded() {
+        return snapshot != null;
+    }
+
+    /**
+     * Point-in-time lookup. Only meaningful when {@link #isLoaded()}; a loaded master that
+     * returns empty means the instrument did not exist on that date.
+     */
+    public Optional<Instrument> findAsOf(String instrumentCode, LocalDate asOf) {
+        Snapshot current = snapshot;
+        if (current == null || instrumentCode == null || asOf == null) return Optional.empty();
+        Versions versions = current.byCode().get(instrumentCode);
+        if (versions == null) return Optional.empty();
+        return Optional.ofNullable(versions.asOf((int) asOf.toEpochDay()));
+    }
+
+    /**
+     * Search over code, name and ticker of the latest version of each instrument.
+     * Empty when the master is not loaded; callers check {@link #isLoaded()} first.
+     */
+    public List<InstrumentSearchHitDTO> search(String query, int limit) {
+        Snapshot current = snapshot;
+        return current == null ? List.of() : current.searchIndex().search(query, limit);
+    }
+
+    private static Snapshot build(List<Instrument> rows, List<InstrumentSearchHitDTO> searchEntries, String watermark) {
+        // rows arrive ordered by (instrument_code, valid_from)
+        Map<String, List<Instrument>> grouped = new HashMap<>();
+        for (Instrument instrument : rows) {
+            grouped.computeIfAbsent(instrument.instrumentCode(), k -> new ArrayList<>()).add(instrument);
+        }
+        Map<String, Versions> byCode = HashMap.newHashMap(grouped.size());
+        grouped.forEach((code, list) -> {
+            int n = list.size();
+            int[] from = new int[n];
+            int[] to = new int[n];
+            Instrument[] instruments = list.toArray(new Instrument[0]);
+            for (int k = 0; k < n; k++) {
+                from[k] = (int) instruments[k].validFrom().toEpochDay();
+                to[k] = (int) instruments[k].validTo().toEpochDay();
+            }
+            byCode.put(code, new Versions(from, to, instruments));
+        });
+        return new Snapshot(Map.copyOf(byCode), rows.size(), new InstrumentSearchIndex(searchEntries), watermark);
+    }
+}
@@ -0,0 +1,251 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.dto.InstrumentSearchHitDTO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * InstrumentSearchIndex
+ *
+ * <p>Immutable in-memory index for instrument search/autocomplete over code, name and ticker.</p>
+ *
+ * <p>Lookup runs in three tiers, each capped by the requested limit:</p>
+ * <ol>
+ *   <li>Exact code or ticker match (hash lookup)</li>
+ *   <li>Prefix match on code, ticker or any name word (binary search over sorted keys)</li>
+ *   <li>Substring match of three or more characters (trigram posting lists, intersected
+ *       starting from the shortest list, then verified against the text)</li>
+ * </ol>
+ *
+ * <p>No tier scans the whole universe, so a lookup stays well under a millisecond even with
+ * hundreds of thousands of instruments. Matching is case-insensitive.</p>
+ */
+final class InstrumentSearchIndex {
+
+    private final InstrumentSearchHitDTO[] entries;   // sorted by instrument code
+    private final String[] haystacks;                 // lower-cased "code\u0000ticker\u0000name"
+    private final Map<String, int[]> exact;           // lower-cased code/ticker -> entry ids
+    private final String[] prefixKeys;                // sorted lower-cased code/ticker/name words
+    private final int[] prefixEntry;                  // entry id for each prefix key
+    private final TrigramTable trigrams;              // packed trigram -> ascending entry ids
+
+    InstrumentSearchIndex(List<InstrumentSearchHitDTO> rows) {
+        entries = rows.stream()
+                .sorted((a, b) -> a.instrumentCode().compareTo(b.instrumentCode()))
+                .toArray(InstrumentSearchHitDTO[]::new);
+        haystacks = new String[entries.length];
+
+        Map<String, List<Integer>> exactBuild = new HashMap<>();
+        List<PrefixKey> keys = new ArrayList<>();
+        TrigramTable trigramBuild = new TrigramTable();
+
+        for (int id = 0; id < entries.length; id++) {
+            InstrumentSearchHitDTO e = entries[id];
+            String code = lower(e.instrumentCode());
+            String ticker = lower(e.ticker());
+            String name = lower(e.instrumentName());
+            haystacks[id] = code + '\u0000' + ticker + '\u0000' + name;
+
+            Set<String> words = new LinkedHashSet<>();
+            words.add(code);
+            if (!ticker.isEmpty()) words.add(ticker);
+            exactBuild.computeIfAbsent(code, k -> new ArrayList<>()).add(id);
+            if (!ticker.isEmpty() && !ticker.equals(code)) {
+                exactBuild.computeIfAbsent(ticker, k -> new ArrayList<>()).add(id);
+            }
+            for (String word : name.split("[^\\p{L}\\p{N}]+")) {
+                if (!word.isEmpty()) words.add(word);
+            }
+            for (String word : words) {
+                keys.add(new PrefixKey(word, id));
+            }
+
+            String h = haystacks[id];
+            for (int i = 0; i + 3 <= h.length(); i++) {
+                long gram = pack(h, i);
+                if (gram == 0) continue;   // spans a field separator
+                trigramBuild.add(gram, id);
+            }
+        }
+
+        exact = new HashMap<>(exactBuild.size() * 2);
+        exactBuild.forEach((k, v) -> exact.put(k, v.stream().mapToInt(Integer::intValue).toArray()));
+
+        keys.sort((a, b) -> a.key().compareTo(b.key()));
+        prefixKeys = new String[keys.size()];
+        prefixEntry = new int[keys.size()];
+        for (int i = 0; i < prefixKeys.length; i++) {
+            prefixKeys[i] = keys.get(i).key();
+            prefixEntry[i] = keys.get(i).entry();
+        }
+
+        trigramBuild.freeze();
+        trigrams = trigramBuild;
+    }
+
+    int size() {
+        return entries.length;
+    }
+
+    List<InstrumentSearchHitDTO> search(String query, int limit) {
+        String q = lower(query).strip();
+        if (q.isEmpty() || limit <= 0) return List.of();
+
+        Set<Integer> hits = new LinkedHashSet<>();
+
+        // 1) exact code / ticker
+        for (int id : exact.getOrDefault(q, new int[0])) {
+            if (hits.size() >= limit) break;
+            hits.add(id);
+        }
+
+        // 2) prefix of code / ticker / name word
+        if (hits.size() < limit) {
+            int from = lowerBound(q);
+            for (int i = from; i < prefixKeys.length && hits.size() < limit && prefixKeys[i].startsWith(q); i++) {
+                hits.add(prefixEntry[i]);
+            }
+        }
+
+        // 3) substring via trigram intersection
+        if (hits.size() < limit && q.length() >= 3) {
+            substring(q, hits, limit);
+        }
+
+        List<InstrumentSearchHitDTO> out = new ArrayList<>(hits.size());
+        for (int id : hits) out.add(entries[id]);
+        return out;
+    }
+
+    private void substring(String q, Set<Integer> hits, int limit) {
+        int grams = q.length() - 2;
+        int[][] lists = new int[grams][];
+        for (int i = 0; i < grams; i++) {
+            int[] list = trigrams.get(pack(q, i));
+            if (list == null) return;   // some trigram never occurs: no substring match
+            lists[i] = list;
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.length, b.length));
+
+        outer:
+        for (int id : lists[0]) {
+            for (int k = 1; k < lists.length; k++) {
+                if (Arrays.binarySearch(lists[k], id) < 0) continue outer;
+            }
+            if (haystacks[id].contains(q)) {
+                hits.add(id);
+                if (hits.size() >= limit) return;
+            }
+        }
+    }
+
+    private int lowerBound(String q) {
+        int lo = 0, hi = prefixKeys.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (prefixKeys[mid].compareTo(q) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /** Packs three chars into a long key; 0 when the window contains the field separator. */
+    private static long pack(String s, int i) {
+        char a = s.charAt(i), b = s.charAt(i + 1), c = s.charAt(i + 2);
+        if (a == 0 || b == 0 || c == 0) return 0;
+        return ((long) a << 32) | ((long) b << 16) | c;
+    }
+
+    private static String lower(String s) {
+        return s == null ? "" : s.toLowerCase(Locale.ROOT);
+    }
+
+    private record PrefixKey(String key, int entry) {}
+
+    /**
+     * Open-addressing map from packed trigram to posting list. Keys stay primitive so the
+     * build does not allocate a boxed Long per trigram occurrence; 0 marks an empty slot.
+     */
+    private static final class TrigramTable {
+        private long[] keys = new long[1 << 12];
+        private IntList[] building = new IntList[keys.length];
+        private int[][] postings;
+        private int size;
+
+        void add(long gram, int id) {
+            int slot = slot(gram);
+            if (keys[slot] == 0) {
+                keys[slot] = gram;
+                building[slot] = new IntList();
+                if (++size * 2 > keys.length) {
+                    grow();
+                    slot = slot(gram);
+                }
+            }
+            IntList list = building[slot];
+            if (list.size == 0 || list.last() != id) list.add(id);
+        }
+
+        /** Converts the posting lists to exact-size arrays; the table is read-only afterwards. */
+        void freeze() {
+            postings = new int[keys.length][];
+            for (int i = 0; i < keys.length; i++) {
+                if (building[i] != null) postings[i] = building[i].toArray();
+            }
+            building = null;
+        }
+
+        int[] get(long gram) {
+            if (gram == 0) return null;
+            int slot = slot(gram);
+            return keys[slot] == 0 ? null : postings[slot];
+        }
+
+        private int slot(long gram) {
+            int mask = keys.length - 1;
+            int i = (int) ((gram * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+            while (keys[i] != 0 && keys[i] != gram) i = (i + 1) & mask;
+            return i;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            IntList[] oldLists = building;
+            keys = new long[oldKeys.length * 2];
+            building = new IntList[keys.length];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = slot(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    building[slot] = oldLists[i];
+                }
+            }
+        }
+    }
+
+    /** Growable int array; avoids boxing while building posting lists. */
+    private static final class IntList {
+        int[] data = new int[4];
+        int size;
+
+        void add(int v) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+
+        int last() {
+            return data[size - 1];
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
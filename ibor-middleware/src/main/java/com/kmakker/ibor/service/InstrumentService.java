@@ -1,24 +1,95 @@
 package com.kmakker.ibor.service;
 
+import com.kmakker.ibor.dto.InstrumentBulkResponse;
+import com.kmakker.ibor.dto.InstrumentSearchHitDTO;
+import com.kmakker.ibor.exception.InvalidRequestException;
 import com.kmakker.ibor.jodi.JodiInstrumentRepository;
 import com.kmakker.ibor.model.instrument.Instrument;
 import org.springframework.stereotype.Service;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class InstrumentService {
+    static final int MAX_BULK_CODES = 1000;
+    static final int DEFAULT_SEARCH_LIMIT = 20;
+    static final int MAX_SEARCH_LIMIT = 100;
+
     private final JodiInstrumentRepository repo;
+    private final InstrumentMaster instrumentMaster;
 
-    public InstrumentService(JodiInstrumentRepository repo) {
+    public InstrumentService(JodiInstrumentRepository repo, InstrumentMaster instrumentMaster) {
         this.repo = repo;
+        this.instrumentMaster = instrumentMaster;
     }
 
     /**
      * Returns the instrument as-of the given date, or Optional.empty() if not found.
+     * Served from the in-memory {@link InstrumentMaster} once it is loaded; the database
+     * is only queried while the master is unavailable.
      * Service layer does not throw; the controller maps Optional to HTTP response.
      */
     public Optional<Instrument> getInstrumentAsOf(String instrumentCode, LocalDate asOf) {
+        if (instrumentMaster.isLoaded()) {
+            return instrumentMaster.findAsOf(instrumentCode, asOf);
+        }
         return repo.findByCodeAsOf(instrumentCode, asOf);
     }
+
+    /**
+     * Bulk as-of lookup for many codes. Answered from the instrument master when loaded,
+     * otherwise with a single query. Duplicate and blank codes are ignored; codes with no
+     * version valid on asOf are listed in {@code notFound}.
+     */
+    public InstrumentBulkResponse getInstrumentsAsOf(List<String> instrumentCodes, LocalDate asOf) {
+        if (asOf == null) {
+            throw new InvalidRequestException("asOf must be provided (YYYY-MM-DD)");
+        }
+        Set<String> codes = new LinkedHashSet<>();
+        if (instrumentCodes != null) {
+            for (String code : instrumentCodes) {
+                if (code != null && !code.isBlank()) codes.add(code.strip());
+            }
+        }
+        if (codes.isEmpty()) {
+            throw new InvalidRequestException("codes must contain at least one instrument code");
+        }
+        if (codes.size() > MAX_BULK_CODES) {
+            throw new InvalidRequestException("at most " + MAX_BULK_CODES + " codes per request");
+        }
+
+        List<Instrument> found = new ArrayList<>(codes.size());
+        if (instrumentMaster.isLoaded()) {
+            for (String code : codes) {
+                instrumentMaster.findAsOf(code, asOf).ifPresent(found::add);
+            }
+        } else {
+            found.addAll(repo.findByCodesAsOf(codes, asOf));
+        }
+
+        Set<String> foundCodes = new HashSet<>();
+        for (Instrument instrument : found) foundCodes.add(instrument.instrumentCode());
+        List<String> notFound = codes.stream().filter(c -> !foundCodes.contains(c)).toList();
+        return new InstrumentBulkResponse(asOf, found, notFound);
+    }
+
+    /**
+     * Search/autocomplete over instrument code, name and ticker (case-insensitive).
+     * Exact code/ticker matches first, then prefix matches, then substring matches.
+     */
+    public List<InstrumentSearchHitDTO> search(String query, Integer limit) {
+        if (query == null || query.isBlank()) {
+            throw new InvalidRequestException("q must be provided");
+        }
+        int l = (limit == null || limit <= 0) ? DEFAULT_SEARCH_LIMIT : Math.min(limit, MAX_SEARCH_LIMIT);
+        if (instrumentMaster.isLoaded()) {
+            return instrumentMaster.search(query, l);
+        }
+        return repo.searchByText(query.strip(), l);
+    }
 }
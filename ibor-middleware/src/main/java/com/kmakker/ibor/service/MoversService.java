@@ -0,0 +1,173 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.dto.analytics.MoversResponse;
+import com.kmakker.ibor.dto.analytics.MoversResponse.Mover;
+import com.kmakker.ibor.exception.InvalidRequestException;
+import com.kmakker.ibor.jodi.JodiMoversRepository;
+import com.kmakker.ibor.jodi.JodiMoversRepository.MoverRow;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * MoversService
+ *
+ * <p>Biggest day-over-day movers of one portfolio or the whole firm: instruments ranked by P&amp;L,
+ * by contribution to return or by price return, with the top and bottom N returned.</p>
+ *
+ * <ul>
+ *   <li>Rows are streamed from {@link JodiMoversRepository#streamMovers}, one per instrument,
+ *       and never held as a whole: each is offered to a size-N min-heap (top) and a size-N
+ *       max-heap (bottom) while the scope totals are summed, so memory is O(N).</li>
+ *   <li>The prior day is the latest price day before asOf.</li>
+ *   <li>Contribution is the instrument's prior value times its return over the total prior value
+ *       of the scope. The heaps hold the amount before that division, which is known row by row;
+ *       when the total turns out negative (a net short scope) the division reverses the order, so
+ *       top and bottom swap and the lists are ranked on the final signed contribution.</li>
+ * </ul>
+ */
+@Service
+public class MoversService {
+    private static final int DEFAULT_N = 10;
+    private static final int MAX_N = 500;
+
+    /** Ranking metrics, by request name. */
+    enum RankBy {
+        PNL(m -> m.pnl),
+        CONTRIBUTION(m -> m.contribution),
+        RETURN(m -> m.dayReturn);
+
+        final ToDoubleFunction<Line> metric;
+
+        RankBy(ToDoubleFunction<Line> metric) {
+            this.metric = metric;
+        }
+    }
+
+    private final JodiMoversRepository repository;
+    private final RequestCoalescer coalescer;
+
+    public MoversService(JodiMoversRepository repository, RequestCoalescer coalescer) {
+        this.repository = repository;
+        this.coalescer = coalescer;
+    }
+
+    public MoversResponse getMovers(String portfolioCode, LocalDate asOf, String rankBy, Integer n, String baseCurrency) {
+        if (asOf == null) {
+            throw new InvalidRequestException("asOf must be provided (YYYY-MM-DD)");
+        }
+        String portfolio = (portfolioCode == null || portfolioCode.isBlank()) ? null : portfolioCode.trim();
+        RankBy rank;
+        try {
+            rank = rankBy == null || rankBy.isBlank() ? RankBy.PNL : RankBy.valueOf(rankBy.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("rankBy must be one of pnl, contribution, return");
+        }
+        int limit = n == null ? DEFAULT_N : n;
+        if (limit < 1 || limit > MAX_N) {
+            throw new InvalidRequestException("n must be between 1 and " + MAX_N);
+        }
+        String base = (baseCurrency == null || baseCurrency.isBlank())
+                ? "USD" : baseCurrency.trim().toUpperCase(Locale.ROOT);
+        if (base.length() != 3) {
+            throw new InvalidRequestException("baseCurrency must be a 3-letter currency code");
+        }
+
+        return coalescer.execute("analytics.movers",
+                () -> load(portfolio, asOf, rank, limit, base),
+                portfolio, asOf, rank, limit, base);
+    }
+
+    private MoversResponse load(String portfolioCode, LocalDate asOf, RankBy rank, int n, String base) {
+        LocalDate prior = repository.findPriorPriceDay(asOf);
+        if (prior == null) {
+            throw new InvalidRequestException("no price day before " + asOf);
+        }
+        Ranking ranking = new Ranking(rank, n);
+        repository.streamMovers(asOf, prior, portfolioCode, base, ranking::accept);
+        return ranking.response(portfolioCode, asOf, prior, base);
+    }
+
+    /** One priced instrument, base currency. */
+    static final class Line {
+        final MoverRow row;
+        final double pnl;
+        final double contribution;
+        final double dayReturn;
+
+        Line(MoverRow row) {
+            this.row = row;
+            this.pnl = row.marketValue() - row.priorMarketValue();
+            this.contribution = row.contribution();
+            this.dayReturn = row.priorPrice() == 0 ? 0 : row.price() / row.priorPrice() - 1;
+        }
+    }
+
+    /** Single-pass selection of the top and bottom N plus scope totals. */
+    static final class Ranking {
+        private final RankBy rank;
+        private final int n;
+        private final Comparator<Line> order;
+        private final PriorityQueue<Line> top;      // min-heap: root is the weakest of the top N
+        private final PriorityQueue<Line> bottom;   // max-heap: root is the strongest of the bottom N
+        private int lines, unpriced;
+        private double marketValue, priorMarketValue;
+
+        Ranking(RankBy rank, int n) {
+            this.rank = rank;
+            this.n = n;
+            this.order = Comparator.<Line>comparingDouble(rank.metric)
+                    .thenComparing(l -> l.row.instrumentCode(), Comparator.reverseOrder());
+            this.top = new PriorityQueue<>(n + 1, order);
+            this.bottom = new PriorityQueue<>(n + 1, order.reversed());
+        }
+
+        void accept(MoverRow row) {
+            lines++;
+            if (Double.isNaN(row.marketValue()) || Double.isNaN(row.priorMarketValue())) {
+                unpriced++;
+                return;
+            }
+            marketValue += row.marketValue();
+            priorMarketValue += row.priorMarketValue();
+            Line line = new Line(row);
+            offer(top, line);
+            offer(bottom, line);
+        }
+
+        private void offer(PriorityQueue<Line> heap, Line line) {
+            if (heap.size() < n) {
+                heap.offer(line);
+            } else if (heap.comparator().compare(line, heap.peek()) > 0) {
+                heap.poll();
+                heap.offer(line);
+            }
+        }
+
+        MoversResponse response(String portfolioCode, LocalDate asOf, LocalDate prior, String base) {
+            boolean flipped = rank == RankBy.CONTRIBUTION && priorMarketValue < 0;
+            List<Line> best = new ArrayList<>(flipped ? bottom : top);
+            best.sort(flipped ? order : order.reversed());
+            List<Line> worst = new ArrayList<>(flipped ? top : bottom);
+            worst.sort(flipped ? order.reversed() : order);
+            return new MoversResponse(portfolioCode, asOf, prior, base, rank.name().toLowerCase(Locale.ROOT),
+                    lines, unpriced == 0 ? null : unpriced,
+                    marketValue, priorMarketValue, marketValue - priorMarketValue,
+                    best.stream().map(this::mover).toList(),
+                    worst.stream().map(this::mover).toList());
+        }
+
+        private Mover mover(Line l) {
+            MoverRow r = l.row;
+            return new Mover(r.instrumentCode(), r.instrumentType(), r.currency(), r.netQty(),
+                    r.price(), r.priorPrice(), l.dayReturn, r.marketValue(), l.pnl,
+                    priorMarketValue == 0 ? null : l.contribution / priorMarketValue);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.kmakker.ibor.service;
+
+/**
+ * OptionGreeks
+ *
+ * <p>European option value and Greeks under generalized Black-Scholes-Merton, over columns of
+ * primitive arrays so a whole book is priced in one loop without per-option objects.</p>
+ *
+ * <p>The cost of carry <code>b</code> selects the model: <code>b = r - q</code> is Black-Scholes on
+ * an asset paying a continuous yield <code>q</code>; <code>b = 0</code> is Black-76 on a futures
+ * price. Units: vega and rho per 1 percentage point, theta per calendar day.</p>
+ */
+final class OptionGreeks {
+    static final double MIN_VOL = 1e-4;
+    static final double MAX_VOL = 5.0;
+
+    private static final double INV_SQRT_2PI = 0.3989422804014327;
+
+    private OptionGreeks() {}
+
+    /** Inputs and outputs for n options, one array per field. */
+    static final class Book {
+        final int n;
+        final double[] spot, strike, years, rate, carry, vol;
+        final boolean[] call;
+        final double[] value, delta, gamma, vega, theta, rho;
+
+        Book(int n) {
+            this.n = n;
+            spot = new double[n];
+            strike = new double[n];
+            years = new double[n];
+            rate = new double[n];
+            carry = new double[n];
+            vol = new double[n];
+            call = new boolean[n];
+            value = new double[n];
+            delta = new double[n];
+            gamma = new double[n];
+            vega = new double[n];
+            theta = new double[n];
+            rho = new double[n];
+        }
+    }
+
+    /** Fills value and Greeks for every option in the book. Expired options get intrinsic value and delta. */
+    static void price(Book b) {
+        for (int i = 0; i < b.n; i++) {
+            double s = b.spot[i], k = b.strike[i], t = b.years[i], r = b.rate[i], c = b.carry[i], v = b.vol[i];
+            boolean isCall = b.call[i];
+            if (t <= 0 || v <= 0) {
+                double intrinsic = isCall ? s - k : k - s;
+                b.value[i] = Math.max(intrinsic, 0);
+                b.delta[i] = intrinsic > 0 ? (isCall ? 1 : -1) : 0;
+                b.gamma[i] = b.vega[i] = b.theta[i] = b.rho[i] = 0;
+                continue;
+            }
+            double sqrtT = Math.sqrt(t);
+            double vSqrtT = v * sqrtT;
+            double d1 = (Math.log(s / k) + (c + 0.5 * v * v) * t) / vSqrtT;
+            double d2 = d1 - vSqrtT;
+            double carryDf = Math.exp((c - r) * t);
+            double df = Math.exp(-r * t);
+            double pdf = INV_SQRT_2PI * Math.exp(-0.5 * d1 * d1);
+            double nd1 = cdf(isCall ? d1 : -d1);
+            double nd2 = cdf(isCall ? d2 : -d2);
+            double sign = isCall ? 1 : -1;
+
+            double value = sign * (s * carryDf * nd1 - k * df * nd2);
+            b.value[i] = value;
+            b.delta[i] = sign * carryDf * nd1;
+            b.gamma[i] = carryDf * pdf / (s * vSqrtT);
+            b.vega[i] = s * carryDf * pdf * sqrtT / 100;
+            b.theta[i] = (-s * carryDf * pdf * v / (2 * sqrtT)
+                    - sign * (c - r) * s * carryDf * nd1
+                    - sign * r * k * df * nd2) / 365;
+            b.rho[i] = (c == 0 ? -t * value : sign * k * t * df * nd2) / 100;
+        }
+    }
+
+    /**
+     * Volatility at which the model value matches <code>target</code>: Newton steps on vega,
+     * falling back to bisection when a step leaves the bracket. NaN when the target is outside
+     * the no-arbitrage range for the inputs.
+     */
+    static double impliedVol(double target, double s, double k, double t, double r, double c, boolean call) {
+        if (!(target > 0) || t <= 0) return Double.NaN;
+        Book one = new Book(1);
+        one.spot[0] = s;
+        one.strike[0] = k;
+        one.years[0] = t;
+        one.rate[0] = r;
+        one.carry[0] = c;
+        one.call[0] = call;
+
+        double lo = MIN_VOL, hi = MAX_VOL;
+        if (valueAt(one, lo) > target || valueAt(one, hi) < target) return Double.NaN;
+        double v = 0.3;
+        for (int iter = 0; iter < 100; iter++) {
+            double diff = valueAt(one, v) - target;
+            if (Math.abs(diff) < 1e-10 * Math.max(1, target)) return v;
+            if (diff > 0) hi = v; else lo = v;
+            double vega = one.vega[0] * 100;
+            double next = vega > 1e-12 ? v - diff / vega : Double.NaN;
+            v = (next > lo && next < hi) ? next : 0.5 * (lo + hi);
+            if (hi - lo < 1e-12) return v;
+        }
+        return v;
+    }
+
+    private static double valueAt(Book one, double vol) {
+        one.vol[0] = vol;
+        price(one);
+        return one.value[0];
+    }
+
+    /**
+     * Standard normal CDF, double precision (Hart 1968 as given by West, "Better approximations
+     * to cumulative normal functions"); absolute error around 1e-14.
+     */
+    static double cdf(double x) {
+        double ax = Math.abs(x);
+        double p;
+        if (ax > 37) {
+            p = 0;
+        } else {
+            double e = Math.exp(-ax * ax / 2);
+            if (ax < 7.07106781186547) {
+                double num = ((((((3.52624965998911e-02 * ax + 0.700383064443688) * ax + 6.37396220353165) * ax
+                        + 33.912866078383) * ax + 112.079291497871) * ax + 221.213596169931) * ax + 220.206867912376);
+                double den = (((((((8.83883476483184e-02 * ax + 1.75566716318264) * ax + 16.064177579207) * ax
+                        + 86.7807322029461) * ax + 296.564248779674) * ax + 637.333633378831) * ax
+                        + 793.826512519948) * ax + 440.413735824752);
+                p = e * num / den;
+            } else {
+                double f = ax + 1 / (ax + 2 / (ax + 3 / (ax + 4 / (ax + 0.65))));
+                p = e / f / 2.506628274631;
+            }
+        }
+        return x > 0 ? 1 - p : p;
+    }
+}
@@ -1,6 +1,7 @@
 package com.kmakker.ibor.service;
 
 import com.kmakker.ibor.dto.PositionSummaryDTO;
+import com.kmakker.ibor.exception.InvalidRequestException;
 import com.kmakker.ibor.jodi.JodiPositionCompositionRepository;
 import org.springframework.stereotype.Service;
 
@@ -20,8 +21,8 @@ public class PositionCompositionService {
     }
 
     public List<PositionSummaryDTO> getComposition(LocalDate asOf, String portfolioCode, Integer page, Integer size) {
-        if (asOf == null) throw new IllegalArgumentException("asOf is required");
-        if (portfolioCode == null) throw new IllegalArgumentException("portfolioCode is required");
+        if (asOf == null) throw new InvalidRequestException("asOf is required");
+        if (portfolioCode == null) throw new InvalidRequestException("portfolioCode is required");
         int p = (page == null || page < DEFAULT_PAGE) ? DEFAULT_PAGE : page;
         int s = (size == null || size <= 0) ? DEFAULT_SIZE : Math.min(size, MAX_PAGE_SIZE);
         return positionCompositionRepository.findComposition(asOf, portfolioCode, p, s);
@@ -0,0 +1,167 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.dto.PositionPointDTO;
+import com.kmakker.ibor.dto.PositionSeriesDTO;
+import com.kmakker.ibor.dto.PositionTimeSeriesResponse;
+import com.kmakker.ibor.exception.InvalidRequestException;
+import com.kmakker.ibor.jodi.JodiPositionHistoryRepository;
+import com.kmakker.ibor.jodi.JodiPositionHistoryRepository.Event;
+import com.kmakker.ibor.jodi.JodiPositionHistoryRepository.InstrumentVersion;
+import com.kmakker.ibor.jodi.JodiPositionHistoryRepository.PortfolioVersion;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static com.kmakker.ibor.jodi.JodiPositionHistoryRepository.ADJUSTMENT;
+import static com.kmakker.ibor.jodi.JodiPositionHistoryRepository.PRICE;
+import static com.kmakker.ibor.jodi.JodiPositionHistoryRepository.SNAP_DATE;
+import static com.kmakker.ibor.jodi.JodiPositionHistoryRepository.SNAP_ROW;
+
+/**
+ * PositionHistoryService
+ *
+ * <p>Daily position series for a portfolio (optionally one instrument) over a date range, with
+ * the same numbers <code>/api/positions</code> returns for each date.</p>
+ *
+ * <p>Instead of one as-of query per date, the date-ordered events from
+ * {@link JodiPositionHistoryRepository#fetchEvents} are replayed once, keeping per instrument
+ * version the current snapshot quantity, the cumulative adjustment and the latest preferred and
+ * other price. After each day's events the held instruments are read off as that day's points.
+ * Cost is one query per portfolio version plus one instrument lookup, whatever the range length.</p>
+ */
+@Service
+public class PositionHistoryService {
+    private static final int MAX_DAYS = 1830;
+
+    private final JodiPositionHistoryRepository historyRepository;
+    private final RequestCoalescer coalescer;
+
+    public PositionHistoryService(JodiPositionHistoryRepository historyRepository, RequestCoalescer coalescer) {
+        this.historyRepository = historyRepository;
+        this.coalescer = coalescer;
+    }
+
+    public PositionTimeSeriesResponse getTimeSeries(String portfolioCode, String instrumentCode,
+                                                    LocalDate from, LocalDate to) {
+        if (portfolioCode == null || portfolioCode.isBlank()) {
+            throw new InvalidRequestException("portfolioCode must be provided");
+        }
+        if (from == null || to == null) {
+            throw new InvalidRequestException("from and to must be provided (YYYY-MM-DD)");
+        }
+        if (from.isAfter(to)) {
+            throw new InvalidRequestException("from must be on or before to");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_DAYS) {
+            throw new InvalidRequestException("date range is limited to " + MAX_DAYS + " days");
+        }
+        String instrument = (instrumentCode == null || instrumentCode.isBlank()) ? null : instrumentCode;
+
+        return coalescer.execute("positions.history",
+                () -> load(portfolioCode, instrument, from, to),
+                portfolioCode, instrument, from, to);
+    }
+
+    private PositionTimeSeriesResponse load(String portfolioCode, String instrumentCode, LocalDate from, LocalDate to) {
+        List<PortfolioVersion> versions = historyRepository.findPortfolioVersions(portfolioCode, from, to);
+
+        List<List<Event>> eventsByVersion = new ArrayList<>(versions.size());
+        Set<Long> instrumentVids = new HashSet<>();
+        for (PortfolioVersion v : versions) {
+            LocalDate start = v.validFrom().isAfter(from) ? v.validFrom() : from;
+            LocalDate end = v.validTo().isBefore(to) ? v.validTo() : to;
+            List<Event> events = historyRepository.fetchEvents(v.portfolioVid(), instrumentCode, start, end);
+            for (Event e : events) {
+                if (e.kind() != SNAP_DATE) instrumentVids.add(e.instrumentVid());
+            }
+            eventsByVersion.add(events);
+        }
+
+        Map<Long, InstrumentVersion> instruments = new HashMap<>();
+        for (InstrumentVersion iv : historyRepository.findInstrumentVersions(instrumentVids)) {
+            instruments.put(iv.instrumentVid(), iv);
+        }
+
+        Map<String, SeriesBuilder> series = new TreeMap<>();
+        for (int k = 0; k < versions.size(); k++) {
+            PortfolioVersion v = versions.get(k);
+            LocalDate start = v.validFrom().isAfter(from) ? v.validFrom() : from;
+            LocalDate end = v.validTo().isBefore(to) ? v.validTo() : to;
+            sweep(eventsByVersion.get(k), instruments, start, end, series);
+        }
+
+        return new PositionTimeSeriesResponse(portfolioCode, instrumentCode, from, to,
+                series.values().stream().map(SeriesBuilder::build).toList());
+    }
+
+    /** Replays events once over [start, end], appending a point per held instrument per day. */
+    static void sweep(List<Event> events, Map<Long, InstrumentVersion> instruments,
+                      LocalDate start, LocalDate end, Map<String, SeriesBuilder> series) {
+        Map<Long, BigDecimal> snapQty = new HashMap<>();
+        Map<Long, BigDecimal> adjQty = new HashMap<>();
+        Map<Long, Event> preferredPx = new HashMap<>();
+        Map<Long, Event> otherPx = new HashMap<>();
+        LocalDate snapDate = null;
+
+        int next = 0;
+        for (LocalDate day = start; !day.isAfter(end); day = day.plusDays(1)) {
+            for (; next < events.size() && !events.get(next).day().isAfter(day); next++) {
+                Event e = events.get(next);
+                switch (e.kind()) {
+                    case SNAP_DATE -> {
+                        snapQty.clear();
+                        snapDate = e.day();
+                    }
+                    case SNAP_ROW -> snapQty.put(e.instrumentVid(), e.quantity());
+                    case ADJUSTMENT -> adjQty.merge(e.instrumentVid(), e.quantity(), BigDecimal::add);
+                    case PRICE -> (e.preferred() ? preferredPx : otherPx).put(e.instrumentVid(), e);
+                    default -> throw new IllegalStateException("unknown event kind " + e.kind());
+                }
+            }
+
+            Set<Long> held = new HashSet<>(snapQty.keySet());
+            held.addAll(adjQty.keySet());
+            for (long vid : held) {
+                InstrumentVersion iv = instruments.get(vid);
+                if (iv == null || day.isBefore(iv.validFrom()) || day.isAfter(iv.validTo())) {
+                    continue;   // as-of queries only see instrument versions valid on the day
+                }
+                BigDecimal qty = snapQty.getOrDefault(vid, BigDecimal.ZERO)
+                        .add(adjQty.getOrDefault(vid, BigDecimal.ZERO));
+                Event px = preferredPx.getOrDefault(vid, otherPx.get(vid));
+                BigDecimal price = px == null ? null : px.price();
+                BigDecimal mktValue = qty
+                        .multiply(price == null ? BigDecimal.ZERO : price)
+                        .multiply(iv.contractMultiplier() == null ? BigDecimal.ONE : iv.contractMultiplier());
+                String currency = px != null && px.currency() != null ? px.currency() : iv.currency();
+
+                series.computeIfAbsent(iv.instrumentCode(), c -> new SeriesBuilder(iv))
+                        .points.add(new PositionPointDTO(day, snapDate, qty, price,
+                                px == null ? null : px.priceSource(), mktValue, currency));
+            }
+        }
+    }
+
+    static final class SeriesBuilder {
+        private final InstrumentVersion instrument;
+        private final List<PositionPointDTO> points = new ArrayList<>();
+
+        SeriesBuilder(InstrumentVersion instrument) {
+            this.instrument = instrument;
+        }
+
+        PositionSeriesDTO build() {
+            return new PositionSeriesDTO(instrument.instrumentCode(), instrument.instrumentName(),
+                    instrument.instrumentType(), List.copyOf(points));
+        }
+    }
+}
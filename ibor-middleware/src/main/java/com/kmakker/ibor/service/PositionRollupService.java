@@ -0,0 +1,77 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.dto.ExposureRollupResponse;
+import com.kmakker.ibor.exception.InvalidRequestException;
+import com.kmakker.ibor.jodi.JodiPositionRollupRepository;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Exposure rollups (market value, quantity, weight) grouped hierarchically by strategy,
+ * portfolio, instrument type, currency or instrument, computed in one query by
+ * {@link JodiPositionRollupRepository}.
+ */
+@Service
+public class PositionRollupService {
+    private static final List<String> DEFAULT_GROUP_BY = List.of("type", "currency", "instrument");
+    private static final int MAX_PORTFOLIOS = 100;
+
+    private final JodiPositionRollupRepository rollupRepository;
+    private final RequestCoalescer coalescer;
+
+    public PositionRollupService(JodiPositionRollupRepository rollupRepository, RequestCoalescer coalescer) {
+        this.rollupRepository = rollupRepository;
+        this.coalescer = coalescer;
+    }
+
+    public ExposureRollupResponse getRollup(LocalDate asOf, List<String> portfolioCodes,
+                                            List<String> groupBy, String baseCurrency) {
+        if (asOf == null) {
+            throw new InvalidRequestException("asOf must be provided (YYYY-MM-DD)");
+        }
+        List<String> portfolios = portfolioCodes == null ? List.of() : portfolioCodes.stream()
+                .filter(c -> c != null && !c.isBlank())
+                .map(String::trim)
+                .distinct()
+                .sorted()
+                .toList();
+        if (portfolios.isEmpty()) {
+            throw new InvalidRequestException("portfolioCodes must contain at least one portfolio");
+        }
+        if (portfolios.size() > MAX_PORTFOLIOS) {
+            throw new InvalidRequestException("at most " + MAX_PORTFOLIOS + " portfolios per rollup");
+        }
+
+        List<String> dims = (groupBy == null || groupBy.isEmpty()) ? DEFAULT_GROUP_BY : normalize(groupBy);
+        String base = (baseCurrency == null || baseCurrency.isBlank())
+                ? null : baseCurrency.trim().toUpperCase(Locale.ROOT);
+        if (base != null && base.length() != 3) {
+            throw new InvalidRequestException("baseCurrency must be a 3-letter currency code");
+        }
+
+        return coalescer.execute("positions.rollup",
+                () -> new ExposureRollupResponse(asOf, portfolios, dims, base,
+                        rollupRepository.findRollup(asOf, portfolios, dims, base)),
+                asOf, portfolios, dims, base);
+    }
+
+    private static List<String> normalize(List<String> groupBy) {
+        Set<String> dims = new LinkedHashSet<>();
+        for (String d : groupBy) {
+            String dim = d == null ? "" : d.trim().toLowerCase(Locale.ROOT);
+            if (!JodiPositionRollupRepository.DIMENSIONS.containsKey(dim)) {
+                throw new InvalidRequestException("groupBy must be drawn from "
+                        + JodiPositionRollupRepository.DIMENSIONS.keySet().stream().sorted().toList());
+            }
+            if (!dims.add(dim)) {
+                throw new InvalidRequestException("groupBy lists '" + dim + "' more than once");
+            }
+        }
+        return List.copyOf(dims);
+    }
+}
@@ -1,11 +1,19 @@
 package com.kmakker.ibor.service;
 
 import com.kmakker.ibor.dto.PositionDTO;
+import com.kmakker.ibor.dto.PositionDiffResponse;
+import com.kmakker.ibor.exception.InvalidRequestException;
+import com.kmakker.ibor.intern.CodeDictionaries;
+import com.kmakker.ibor.jodi.JodiFxRateRepository;
 import com.kmakker.ibor.jodi.JodiPositionsRepository;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 @Service
 public class PositionService {
@@ -13,21 +21,73 @@ public class PositionService {
     private static final int DEFAULT_PAGE_SIZE = 100;
 
     private final JodiPositionsRepository positionsRepository;
+    private final JodiFxRateRepository fxRateRepository;
+    private final CodeDictionaries codeDictionaries;
+    private final RequestCoalescer coalescer;
 
-    public PositionService(JodiPositionsRepository positionsRepository) {
+    public PositionService(JodiPositionsRepository positionsRepository,
+                           JodiFxRateRepository fxRateRepository,
+                           CodeDictionaries codeDictionaries,
+                           RequestCoalescer coalescer) {
         this.positionsRepository = positionsRepository;
+        this.fxRateRepository = fxRateRepository;
+        this.codeDictionaries = codeDictionaries;
+        this.coalescer = coalescer;
     }
 
-    public List<PositionDTO> getPositions(LocalDate asOf, String portfolioCode, String accountCode, Integer page, Integer size) {
+    /**
+     * Positions as-of a date. With a base currency each row also carries its market value in that
+     * currency, converted with one {@link FxSnapshot} resolved for all currencies on the page.
+     */
+    public List<PositionDTO> getPositions(LocalDate asOf, String portfolioCode, String accountCode,
+                                          Integer page, Integer size, String baseCurrency) {
         if (asOf == null) {
-            throw new IllegalArgumentException("asOf must be provided (YYYY-MM-DD)");
+            throw new InvalidRequestException("asOf must be provided (YYYY-MM-DD)");
         }
         if (portfolioCode == null || portfolioCode.isBlank()) {
-            throw new IllegalArgumentException("portfolioCode must be provided");
+            throw new InvalidRequestException("portfolioCode must be provided");
         }
         int p = (page == null || page < 1) ? 1 : page;
         int s = (size == null || size <= 0) ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+        String base = (baseCurrency == null || baseCurrency.isBlank())
+                ? null : baseCurrency.trim().toUpperCase(Locale.ROOT);
+        if (base != null && base.length() != 3) {
+            throw new InvalidRequestException("baseCurrency must be a 3-letter currency code");
+        }
+
+        return coalescer.execute("positions",
+                () -> {
+                    List<PositionDTO> rows = positionsRepository.findPositions(asOf, portfolioCode, accountCode, p, s);
+                    return base == null ? rows : toBase(rows, asOf, base);
+                },
+                asOf, portfolioCode, accountCode, p, s, base);
+    }
 
-        return positionsRepository.findPositions(asOf, portfolioCode, accountCode, p, s);
+    private List<PositionDTO> toBase(List<PositionDTO> rows, LocalDate asOf, String base) {
+        Set<String> currencies = new LinkedHashSet<>();
+        for (PositionDTO row : rows) {
+            if (row.currency() != null && !base.equalsIgnoreCase(row.currency())) currencies.add(row.currency());
+        }
+        FxSnapshot fx = FxSnapshot.load(fxRateRepository, codeDictionaries.currencies(), base, asOf, currencies);
+
+        PositionDTO[] out = new PositionDTO[rows.size()];
+        for (int k = 0; k < out.length; k++) {
+            PositionDTO row = rows.get(k);
+            BigDecimal value = fx.convert(row.mktValue(), row.currency());
+            out[k] = row.withBaseValue(value, value == null ? null : fx.baseCurrency());
+        }
+        return List.of(out);
+    }
+
+    public PositionDiffResponse getPositionDiff(String portfolioCode, LocalDate asOf1, LocalDate asOf2) {
+        if (asOf1 == null || asOf2 == null) {
+            throw new InvalidRequestException("asOf1 and asOf2 must be provided (YYYY-MM-DD)");
+        }
+        if (portfolioCode == null || portfolioCode.isBlank()) {
+            throw new InvalidRequestException("portfolioCode must be provided");
+        }
+        return coalescer.execute("positions.diff",
+                () -> positionsRepository.findPositionDiff(portfolioCode, asOf1, asOf2),
+                portfolioCode, asOf1, asOf2);
     }
 }
@@ -0,0 +1,185 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.dto.PriceRowDTO;
+import com.kmakker.ibor.intern.EpochDays;
+import com.kmakker.ibor.intern.LruCache;
+import com.kmakker.ibor.jodi.JodiCorporateActionRepository;
+import com.kmakker.ibor.jodi.JodiCorporateActionRepository.PriceAdjustment;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * PriceAdjustmentService
+ *
+ * <p>Back-adjusts price series for splits and dividends so returns computed from them are not
+ * broken by corporate actions. A price dated before an ex date is multiplied by that action's
+ * factor; the latest prices are left as they are.</p>
+ *
+ * <ul>
+ *   <li>Factor per action: splits (action codes containing <code>SPLIT</code>) use
+ *       1 / <code>factor</code>, with <code>factor</code> the new shares per old share. Other
+ *       actions with a <code>factor</code> use it as the price factor as given. Cash actions
+ *       with only an <code>amount</code> use 1 - amount / close before the ex date. Actions
+ *       without usable inputs are skipped.</li>
+ *   <li>Per instrument the actions are reduced once to a sorted int[] of ex dates (epoch days)
+ *       and the cumulative product of the factors from each ex date onwards; each price row then
+ *       costs one binary search.</li>
+ *   <li>These arrays are cached per instrument with the <code>corporate_action</code> and
+ *       <code>price</code> data versions of that instrument (a dividend factor depends on the
+ *       prior close), so a corporate-action or price load makes the entry stale. Nothing is
+ *       cached until data versions are known; beyond <code>ibor.prices.adjustment-cache-size</code>
+ *       instruments the least recently used are evicted ({@link LruCache}).</li>
+ * </ul>
+ */
+@Service
+public class PriceAdjustmentService {
+
+    /** Cumulative adjustment factors of one instrument. */
+    static final class Factors {
+        static final Factors NONE = new Factors(new int[0], new double[]{1.0});
+
+        private final int[] exDays;          // ascending, distinct
+        private final double[] cumulative;   // [j] = product of the factors of exDays[j..]; [length] = 1
+
+        Factors(int[] exDays, double[] cumulative) {
+            this.exDays = exDays;
+            this.cumulative = cumulative;
+        }
+
+        /** Factor for a price on the given day: every action with a later ex date applies. */
+        double at(int epochDay) {
+            int j = Arrays.binarySearch(exDays, epochDay);
+            j = j >= 0 ? j + 1 : -j - 1;   // on the ex date the price is already ex
+            return cumulative[j];
+        }
+
+        int actions() {
+            return exDays.length;
+        }
+
+        static Factors of(List<PriceAdjustment> adjustments) {
+            int[] days = new int[adjustments.size()];
+            double[] factors = new double[adjustments.size()];
+            int n = 0;
+            for (PriceAdjustment a : adjustments) {   // ex-date order; same-day actions are combined
+                double f = factor(a);
+                if (Double.isNaN(f) || f <= 0 || f == 1.0) continue;
+                int day = EpochDays.of(a.exDate());
+                if (n > 0 && days[n - 1] == day) {
+                    factors[n - 1] *= f;
+                } else {
+                    days[n] = day;
+                    factors[n++] = f;
+                }
+            }
+            if (n == 0) return NONE;
+            double[] cumulative = new double[n + 1];
+            cumulative[n] = 1.0;
+            for (int j = n - 1; j >= 0; j--) cumulative[j] = cumulative[j + 1] * factors[j];
+            return new Factors(Arrays.copyOf(days, n), cumulative);
+        }
+
+        private static double factor(PriceAdjustment a) {
+            String code = a.actionCode() == null ? "" : a.actionCode().toUpperCase(Locale.ROOT);
+            if (a.factor() != null && a.factor().signum() > 0) {
+                return code.contains("SPLIT") ? 1.0 / a.factor().doubleValue() : a.factor().doubleValue();
+            }
+            if (a.amount() != null && a.priorClose() != null && a.priorClose().signum() > 0) {
+                return 1.0 - a.amount().doubleValue() / a.priorClose().doubleValue();
+            }
+            return Double.NaN;
+        }
+    }
+
+    private record Cached(String version, Factors factors) {}
+
+    private final JodiCorporateActionRepository repository;
+    private final DataVersionService dataVersions;
+    private final LruCache<String, Cached> cache;
+
+    public PriceAdjustmentService(JodiCorporateActionRepository repository,
+                                  DataVersionService dataVersions,
+                                  @Value("${ibor.prices.adjustment-cache-size:10000}") int cacheSize) {
+        this.repository = repository;
+        this.dataVersions = dataVersions;
+        this.cache = new LruCache<>(cacheSize);
+    }
+
+    /** Rows with prices multiplied by the instrument's cumulative factor for their day, scale 8. */
+    public List<PriceRowDTO> adjust(String instrumentCode, List<PriceRowDTO> rows) {
+        Factors factors = factors(instrumentCode);
+        if (factors.actions() == 0) return rows;
+        List<PriceRowDTO> out = new ArrayList<>(rows.size());
+        for (PriceRowDTO row : rows) {
+            double f = factors.at(EpochDays.of(row.priceTs()));
+            out.add(f == 1.0 ? row : new PriceRowDTO(
+                    row.priceTs(),
+                    row.price().multiply(BigDecimal.valueOf(f)).setScale(8, RoundingMode.HALF_UP),
+                    row.currency(),
+                    row.source()));
+        }
+        return out;
+    }
+
+    Factors factors(String instrumentCode) {
+        String version = version(instrumentCode);
+        Factors cached = cached(instrumentCode, version);
+        if (cached != null) return cached;
+
+        Factors factors = Factors.of(repository.findPriceAdjustments(instrumentCode));
+        if (version != null) {
+            cache.put(instrumentCode, new Cached(version, factors));
+        }
+        return factors;
+    }
+
+    /**
+     * Factors of every instrument with an action whose ex date falls in (from, to]; any other
+     * instrument has one constant factor over that range, so returns inside it need no adjustment.
+     * Instruments missing from the cache are loaded in one query.
+     */
+    Map<String, Factors> factorsBetween(LocalDate from, LocalDate to) {
+        Map<String, Factors> out = new HashMap<>();
+        Map<String, String> missing = new LinkedHashMap<>();   // code -> data version, null when unknown
+        for (String code : repository.findInstrumentCodesWithActions(from, to)) {
+            String version = version(code);
+            Factors cached = cached(code, version);
+            if (cached != null) {
+                out.put(code, cached);
+            } else {
+                missing.put(code, version);
+            }
+        }
+        if (missing.isEmpty()) return out;
+
+        Map<String, List<PriceAdjustment>> loaded = repository.findPriceAdjustmentsByCode(missing.keySet());
+        for (var e : missing.entrySet()) {
+            Factors factors = Factors.of(loaded.getOrDefault(e.getKey(), List.of()));
+            if (e.getValue() != null) {
+                cache.put(e.getKey(), new Cached(e.getValue(), factors));
+            }
+            out.put(e.getKey(), factors);
+        }
+        return out;
+    }
+
+    private String version(String instrumentCode) {
+        return dataVersions.etag("corporate_action:" + instrumentCode, "price:" + instrumentCode).orElse(null);
+    }
+
+    private Factors cached(String instrumentCode, String version) {
+        Cached cached = version == null ? null : cache.get(instrumentCode);
+        return cached != null && cached.version().equals(version) ? cached.factors() : null;
+    }
+}
@@ -2,6 +2,10 @@ package com.kmakker.ibor.service;
 
 import com.kmakker.ibor.dto.FxRateDTO;
 import com.kmakker.ibor.dto.PriceRowDTO;
+import com.kmakker.ibor.intern.CodeDictionaries;
+import com.kmakker.ibor.intern.CodeDictionary;
+import com.kmakker.ibor.intern.EpochDays;
+import com.kmakker.ibor.intern.IntObjectHashMap;
 import com.kmakker.ibor.jodi.JodiFxRateRepository;
 import com.kmakker.ibor.jodi.JodiPriceRepository;
 import org.springframework.stereotype.Service;
@@ -9,7 +13,6 @@ import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
-import java.time.ZoneOffset;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -22,8 +25,14 @@ import java.util.stream.Collectors;
  *   <li>Optionally convert those prices into a requested base currency using FX rates from
  *       {@link JodiFxRateRepository}</li>
  *   <li>Perform all FX arithmetic in-memory; repositories stay focused on data access</li>
+ *   <li>Optionally back-adjust prices for splits and dividends ({@link PriceAdjustmentService})
+ *       before any conversion</li>
+ *   <li>Coalesce identical concurrent requests into one computation ({@link RequestCoalescer})</li>
  * </ul>
  *
+ * <p>Rate series are held per interned currency id ({@link CodeDictionaries}) as arrays indexed by
+ * epoch-day offset from the start of the range, instead of String/LocalDate keyed hash maps.</p>
+ *
  * <p>Conversion strategy (per instrument price row):</p>
  * <ol>
  *   <li>If the instrument currency already equals the requested base, return the row unchanged</li>
@@ -46,10 +55,20 @@ public class PriceService {
 
     private final JodiPriceRepository priceRepository;
     private final JodiFxRateRepository fxRateRepository;
-
-    public PriceService(JodiPriceRepository priceRepository, JodiFxRateRepository fxRateRepository) {
+    private final CodeDictionaries codeDictionaries;
+    private final PriceAdjustmentService priceAdjustments;
+    private final RequestCoalescer coalescer;
+
+    public PriceService(JodiPriceRepository priceRepository,
+                        JodiFxRateRepository fxRateRepository,
+                        CodeDictionaries codeDictionaries,
+                        PriceAdjustmentService priceAdjustments,
+                        RequestCoalescer coalescer) {
         this.priceRepository = priceRepository;
         this.fxRateRepository = fxRateRepository;
+        this.codeDictionaries = codeDictionaries;
+        this.priceAdjustments = priceAdjustments;
+        this.coalescer = coalescer;
     }
 
     /**
@@ -61,17 +80,33 @@ public class PriceService {
      * @param to_dt          inclusive end date
      * @param maybeSource    optional price source code (e.g., "BBG"); repository decides how to apply
      * @param maybeBaseCurrency optional ISO-4217 code (e.g., "USD"). If empty, no conversion is performed
+     * @param adjusted       back-adjust for splits and dividends (in native currency, before conversion)
      * @return list of prices, converted to base if requested and rate available for each row's date
      */
     public List<PriceRowDTO> getPrices(String instrumentCode,
                                        LocalDate from_dt,
                                        LocalDate to_dt,
                                        String maybeSource,
-                                       String maybeBaseCurrency) {
+                                       String maybeBaseCurrency,
+                                       boolean adjusted) {
+        return coalescer.execute("prices",
+                () -> loadPrices(instrumentCode, from_dt, to_dt, maybeSource, maybeBaseCurrency, adjusted),
+                instrumentCode, from_dt, to_dt, maybeSource, maybeBaseCurrency, adjusted);
+    }
+
+    private List<PriceRowDTO> loadPrices(String instrumentCode,
+                                         LocalDate from_dt,
+                                         LocalDate to_dt,
+                                         String maybeSource,
+                                         String maybeBaseCurrency,
+                                         boolean adjusted) {
 
-        // 1) Fetch raw instrument prices (in their native currency)
-        final List<PriceRowDTO> rawPrices = priceRepository.findPrices(
+        // 1) Fetch raw instrument prices (in their native currency), back-adjusted if asked
+        final List<PriceRowDTO> fetched = priceRepository.findPrices(
                 instrumentCode, from_dt, to_dt, maybeSource);
+        final List<PriceRowDTO> rawPrices = adjusted && !fetched.isEmpty()
+                ? priceAdjustments.adjust(instrumentCode, fetched)
+                : fetched;
 
         if (rawPrices.isEmpty() || maybeBaseCurrency == null || maybeBaseCurrency.isBlank()) {
             return rawPrices;   // nothing to convert or no base requested
@@ -96,30 +131,31 @@ public class PriceService {
         if (sourceCurrencies.isEmpty()) return rawPrices;
 
 
-        // 3) Build a per-day FX map from sourceCurrency -> (rate_date -> rateToBase)
-        //    Using strategy: direct, inverse, else triangulate via USD.
-        final Map<String, Map<LocalDate, BigDecimal>> fxToBaseByCcy = new HashMap<>();
+        // 3) Build a per-day FX series per source currency: rate(src->base) indexed by
+        //    (epochDay - fromDay). Strategy: direct, inverse, else triangulate via USD.
+        final int fromDay = EpochDays.of(from_dt);
+        final int days = EpochDays.of(to_dt) - fromDay + 1;
+        final CodeDictionary currencies = codeDictionaries.currencies();
+        final IntObjectHashMap<BigDecimal[]> fxToBaseByCcy = new IntObjectHashMap<>(sourceCurrencies.size());
 
         for (String sourceCurrency : sourceCurrencies) {
             if (sourceCurrency.equals(baseCcy)) continue;
 
             // Try direct/inverse first
-            Map<LocalDate, BigDecimal> directOrInverse = buildDirectOrInverseRateMap(sourceCurrency, baseCcy, from_dt, to_dt);
-
-            // If some dates are missing, fill gaps via USD triangulation
-            if (!coversRange(directOrInverse, from_dt, to_dt)) {
-                Map<LocalDate, BigDecimal> viaUSD = buildViaUsdRateMap(sourceCurrency, baseCcy, from_dt, to_dt);
-                // merge: prefer directOrInverse where present; else viaUSD
-
-                Map<LocalDate, BigDecimal> mergedRates = new HashMap<>(viaUSD);
-                mergedRates.putAll(directOrInverse);
-                directOrInverse = mergedRates;
+            BigDecimal[] rates = buildDirectOrInverseRates(sourceCurrency, baseCcy, from_dt, to_dt, fromDay, days);
+
+            // If some dates are missing, fill gaps via USD triangulation (direct/inverse wins where present)
+            if (!coversRange(rates)) {
+                BigDecimal[] viaUSD = buildViaUsdRates(sourceCurrency, baseCcy, from_dt, to_dt, fromDay, days);
+                for (int k = 0; k < days; k++) {
+                    if (rates[k] == null) rates[k] = viaUSD[k];
+                }
             }
 
-            fxToBaseByCcy.put(sourceCurrency, directOrInverse);
+            fxToBaseByCcy.put(currencies.id(sourceCurrency), rates);
         }
         return rawPrices.stream()
-                .map(price -> convertIfNeeded(price, baseCcy, fxToBaseByCcy))
+                .map(price -> convertIfNeeded(price, baseCcy, fromDay, fxToBaseByCcy))
                 .collect(Collectors.toList());
     }
 
@@ -130,19 +166,21 @@ public class PriceService {
      *
      * @param row            input price row (native currency)
      * @param baseCcy        requested base currency (normalized upper-case)
-     * @param fxToBaseByCcy  per-currency map of date→rate(src→base)
+     * @param fromDay        epoch day of index 0 in each rate series
+     * @param fxToBaseByCcy  per-currency-id series of rate(src→base) by day offset
      * @return converted row if rate present for that date, otherwise original row
      */
     private PriceRowDTO convertIfNeeded(PriceRowDTO row,
                                         String baseCcy,
-                                        Map<String, Map<LocalDate, BigDecimal>> fxToBaseByCcy) {
+                                        int fromDay,
+                                        IntObjectHashMap<BigDecimal[]> fxToBaseByCcy) {
         final String srcCcy = safeUpper(row.currency());
-        if (srcCcy.equals(baseCcy)) return row;
+        if (srcCcy.equals(baseCcy) || srcCcy.isEmpty()) return row;
 
-        final LocalDate d = row.priceTs().atZone(ZoneOffset.UTC).toLocalDate();
-        final BigDecimal rate = Optional.ofNullable(fxToBaseByCcy.get(srcCcy))
-                .map(m -> m.get(d))
-                .orElse(null);
+        final int ccyId = codeDictionaries.currencies().find(srcCcy);
+        final BigDecimal[] rates = ccyId == CodeDictionary.NO_ID ? null : fxToBaseByCcy.get(ccyId);
+        final int offset = EpochDays.of(row.priceTs()) - fromDay;
+        final BigDecimal rate = (rates == null || offset < 0 || offset >= rates.length) ? null : rates[offset];
 
         if (rate == null) {
             // No rate for that day — return row as-is (you could also drop or flag it)
@@ -163,7 +201,8 @@ public class PriceService {
     }
 
     /**
-     * Build a date→rate map for src→base using available direct or inverse pairs fetched in one round trip.
+     * Build a day-indexed rate series for src→base using available direct or inverse pairs
+     * fetched in one round trip.
      *
      * <p>Rules:
      * <ul>
@@ -175,100 +214,101 @@ public class PriceService {
      * @param baseCcy base currency code
      * @param from    inclusive start date
      * @param to      inclusive end date
-     * @return map of date→rate(src→base)
+     * @param fromDay epoch day of {@code from}
+     * @param days    length of the series
+     * @return rate(src→base) by day offset; null where no rate
      */
-    private Map<LocalDate, BigDecimal> buildDirectOrInverseRateMap(String srcCcy,
-                                                                   String baseCcy,
-                                                                   LocalDate from,
-                                                                   LocalDate to) {
+    private BigDecimal[] buildDirectOrInverseRates(String srcCcy,
+                                                   String baseCcy,
+                                                   LocalDate from,
+                                                   LocalDate to,
+                                                   int fromDay,
+                                                   int days) {
         // One round trip pulls both A->B and B->A
         List<FxRateDTO> both = fxRateRepository.findFxRatesBothDirections(srcCcy, baseCcy, from, to);
 
-        // Partition into direct and inverse
-        Map<LocalDate, BigDecimal> direct = both.stream()
-                .filter(r -> srcCcy.equalsIgnoreCase(r.fromCurrency())
-                        && baseCcy.equalsIgnoreCase(r.toCurrency()))
-                .collect(Collectors.toMap(
-                        FxRateDTO::fxDate,
-                        FxRateDTO::rate,
-                        // same-day duplicates: keep the latest or any
-                        (a, b) -> b,
-                        HashMap::new
-                ));
-
-        Map<LocalDate, BigDecimal> inverse = both.stream()
-                .filter(r -> baseCcy.equalsIgnoreCase(r.fromCurrency())
-                        && srcCcy.equalsIgnoreCase(r.toCurrency()))
-                .collect(Collectors.toMap(
-                        FxRateDTO::fxDate,
-                        r -> safeInverse(r.rate()),
-                        (a, b) -> b,
-                        HashMap::new
-                ));
+        BigDecimal[] direct = new BigDecimal[days];
+        BigDecimal[] inverse = new BigDecimal[days];
+        for (FxRateDTO r : both) {
+            int k = EpochDays.of(r.fxDate()) - fromDay;
+            if (k < 0 || k >= days) continue;
+            if (srcCcy.equalsIgnoreCase(r.fromCurrency()) && baseCcy.equalsIgnoreCase(r.toCurrency())) {
+                direct[k] = r.rate();
+            } else if (baseCcy.equalsIgnoreCase(r.fromCurrency()) && srcCcy.equalsIgnoreCase(r.toCurrency())) {
+                inverse[k] = safeInverse(r.rate());
+            }
+        }
 
         // Merge (prefer direct if both exist for a day)
-        Map<LocalDate, BigDecimal> merged = new HashMap<>(inverse);
-        merged.putAll(direct);
-        return merged;
+        for (int k = 0; k < days; k++) {
+            if (direct[k] == null) direct[k] = inverse[k];
+        }
+        return direct;
     }
 
     /**
      * Triangulate missing days via USD: rate(src→base) = rate(src→USD) / rate(base→USD).
      */
-    private Map<LocalDate, BigDecimal> buildViaUsdRateMap(String srcCcy,
-                                                          String baseCcy,
-                                                          LocalDate from,
-                                                          LocalDate to) {
+    private BigDecimal[] buildViaUsdRates(String srcCcy,
+                                          String baseCcy,
+                                          LocalDate from,
+                                          LocalDate to,
+                                          int fromDay,
+                                          int days) {
         // Fetch legs: src<->USD and base<->USD
         List<FxRateDTO> srcUsd = fxRateRepository.findFxRatesBothDirections(srcCcy, USD, from, to);
         List<FxRateDTO> baseUsd = fxRateRepository.findFxRatesBothDirections(baseCcy, USD, from, to);
 
         // Normalize legs to direction X->USD for src leg; B->USD for base leg
-        Map<LocalDate, BigDecimal> srcToUsd = reduceToDirection(srcUsd, srcCcy, USD);
-        Map<LocalDate, BigDecimal> baseToUsd = reduceToDirection(baseUsd, baseCcy, USD);
+        BigDecimal[] srcToUsd = reduceToDirection(srcUsd, srcCcy, USD, fromDay, days);
+        BigDecimal[] baseToUsd = reduceToDirection(baseUsd, baseCcy, USD, fromDay, days);
 
         // Build src->base = (src->USD) / (base->USD)
-        Map<LocalDate, BigDecimal> out = new HashMap<>();
-        LocalDate d = from;
-        while (!d.isAfter(to)) {
-            BigDecimal s = srcToUsd.get(d);
-            BigDecimal b = baseToUsd.get(d);
+        BigDecimal[] out = new BigDecimal[days];
+        for (int k = 0; k < days; k++) {
+            BigDecimal s = srcToUsd[k];
+            BigDecimal b = baseToUsd[k];
             if (s != null && b != null && b.compareTo(BigDecimal.ZERO) != 0) {
-                out.put(d, s.divide(b, 12, RoundingMode.HALF_UP));
+                out[k] = s.divide(b, 12, RoundingMode.HALF_UP);
             }
-            d = d.plusDays(1);
         }
         return out;
     }
 
     /**
-     * Reduce a list of FX legs to a single direction (fromCcy→toCcy).
+     * Reduce a list of FX legs to a single direction (fromCcy→toCcy), indexed by day offset.
      * Prefers direct; if only inverse exists, returns inverted values.
      */
-    private Map<LocalDate, BigDecimal> reduceToDirection(List<FxRateDTO> legs,
-                                                         String fromCcy,
-                                                         String toCcy) {
+    private static BigDecimal[] reduceToDirection(List<FxRateDTO> legs,
+                                                  String fromCcy,
+                                                  String toCcy,
+                                                  int fromDay,
+                                                  int days) {
         // Prefer direct(from->to); if only inverse is present, invert it
-        Map<LocalDate, BigDecimal> direct = legs.stream()
-                .filter(r -> fromCcy.equalsIgnoreCase(r.fromCurrency())
-                        && toCcy.equalsIgnoreCase(r.toCurrency()))
-                .collect(Collectors.toMap(FxRateDTO::fxDate, FxRateDTO::rate, (a, b) -> b));
-
-        if (!direct.isEmpty()) return direct;
-
-        return legs.stream()
-                .filter(r -> toCcy.equalsIgnoreCase(r.fromCurrency())
-                        && fromCcy.equalsIgnoreCase(r.toCurrency()))
-                .collect(Collectors.toMap(FxRateDTO::fxDate, r -> safeInverse(r.rate()), (a, b) -> b));
+        BigDecimal[] direct = new BigDecimal[days];
+        BigDecimal[] inverse = new BigDecimal[days];
+        boolean anyDirect = false;
+        for (FxRateDTO r : legs) {
+            int k = EpochDays.of(r.fxDate()) - fromDay;
+            if (k < 0 || k >= days) continue;
+            if (fromCcy.equalsIgnoreCase(r.fromCurrency()) && toCcy.equalsIgnoreCase(r.toCurrency())) {
+                direct[k] = r.rate();
+                anyDirect = true;
+            } else if (toCcy.equalsIgnoreCase(r.fromCurrency()) && fromCcy.equalsIgnoreCase(r.toCurrency())) {
+                inverse[k] = safeInverse(r.rate());
+            }
+        }
+        return anyDirect ? direct : inverse;
     }
 
     /**
      * Quick coverage check: do we have at least one rate within [from, to]?
      */
-    private static boolean coversRange(Map<LocalDate, BigDecimal> m, LocalDate from, LocalDate to) {
-        if (m.isEmpty()) return false;
-        // Quick check: have at least one in range and not just sparse single day
-        return m.keySet().stream().anyMatch(d -> !d.isBefore(from) && !d.isAfter(to));
+    private static boolean coversRange(BigDecimal[] rates) {
+        for (BigDecimal rate : rates) {
+            if (rate != null) return true;
+        }
+        return false;
     }
 
     /** Safely invert x; returns null for null or zero. */
@@ -0,0 +1,82 @@
+package com.kmakker.ibor.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * RequestCoalescer
+ *
+ * <p>Single-flight execution for read-only service calls: concurrent callers asking for the same
+ * operation with equal arguments share one in-flight computation instead of each taking a
+ * connection and running the same SQL.</p>
+ *
+ * <ul>
+ *   <li>The first caller for a key runs the loader on its own thread; callers arriving while it
+ *       runs wait for and receive the same result (or the same exception).</li>
+ *   <li>The key is dropped as soon as the computation completes, so nothing is cached: a caller
+ *       arriving afterwards triggers a fresh query.</li>
+ *   <li>Shared results are handed to every waiter as-is and must be treated as read-only.</li>
+ *   <li>Calls answered by another caller's computation are counted in
+ *       <code>ibor.coalesce.saved</code>, executed ones in <code>ibor.coalesce.executed</code>,
+ *       both tagged by operation.</li>
+ * </ul>
+ */
+@Component
+public class RequestCoalescer {
+
+    private record Key(String operation, List<Object> args) {}
+
+    private final Map<Key, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final MeterRegistry registry;
+
+    public RequestCoalescer(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String operation, Supplier<T> loader, Object... args) {
+        Key key = new Key(operation, Arrays.asList(args));
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, mine);
+
+        if (existing != null) {
+            counter("ibor.coalesce.saved", operation).increment();
+            try {
+                return (T) existing.join();
+            } catch (CompletionException e) {
+                throw rethrow(e.getCause());
+            }
+        }
+
+        counter("ibor.coalesce.executed", operation).increment();
+        try {
+            T result = loader.get();
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private Counter counter(String name, String operation) {
+        return Counter.builder(name).tag("operation", operation).register(registry);
+    }
+
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException re) return re;
+        if (cause instanceof Error err) throw err;
+        return new CompletionException(cause);
+    }
+}
@@ -0,0 +1,89 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.intern.EpochDays;
+import com.kmakker.ibor.jodi.JodiReturnHistoryRepository.DailyPrice;
+import com.kmakker.ibor.service.PriceAdjustmentService.Factors;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ReturnMatrix
+ *
+ * <p>Simple returns of every instrument between consecutive price days, in one contiguous
+ * row-major <code>double[]</code>: row <code>t</code> is the move from day <code>t</code> to day
+ * <code>t + 1</code> for all instruments, so one historical scenario is one contiguous row.</p>
+ *
+ * <p>Prices are back-adjusted with the instrument's corporate-action factors (see
+ * {@link PriceAdjustmentService}), so a split or dividend does not show up as a return. They are
+ * carried forward over days an instrument was not priced. A return is 0 until the
+ * instrument's first price in the window. Immutable once built, so one instance is shared by all
+ * requests for the same window.</p>
+ */
+final class ReturnMatrix {
+    private final LocalDate[] scenarioDays;   // day each return ends on
+    private final Map<String, Integer> column;
+    private final double[] returns;           // scenarios x width, row-major
+    private final int width;
+
+    /** <code>factors</code> holds the instruments with a corporate action inside the window. */
+    ReturnMatrix(List<LocalDate> days, List<DailyPrice> prices, Map<String, Factors> factors) {
+        int t = Math.max(days.size() - 1, 0);
+        scenarioDays = days.size() < 2 ? new LocalDate[0] : days.subList(1, days.size()).toArray(LocalDate[]::new);
+
+        Map<LocalDate, Integer> dayIndex = new HashMap<>(days.size() * 2);
+        for (int d = 0; d < days.size(); d++) dayIndex.put(days.get(d), d);
+
+        column = new HashMap<>();
+        for (DailyPrice p : prices) column.putIfAbsent(p.instrumentCode(), column.size());
+        width = column.size();
+        returns = new double[t * width];
+
+        // prices arrive grouped by instrument and ordered by day: fill one price path at a time
+        double[] path = new double[days.size()];
+        int start = 0;
+        while (start < prices.size()) {
+            String code = prices.get(start).instrumentCode();
+            Factors f = factors.get(code);
+            int end = start;
+            Arrays.fill(path, Double.NaN);
+            for (; end < prices.size() && prices.get(end).instrumentCode().equals(code); end++) {
+                Integer d = dayIndex.get(prices.get(end).day());
+                if (d == null) continue;
+                double price = prices.get(end).price();
+                path[d] = f == null ? price : price * f.at(EpochDays.of(prices.get(end).day()));
+            }
+            int col = column.get(code);
+            for (int d = 1; d < path.length; d++) {
+                if (Double.isNaN(path[d])) path[d] = path[d - 1];   // carry forward; stays NaN before the first price
+                double prev = path[d - 1];
+                returns[(d - 1) * width + col] = Double.isNaN(prev) || Double.isNaN(path[d]) ? 0 : path[d] / prev - 1;
+            }
+            start = end;
+        }
+    }
+
+    int scenarios() {
+        return scenarioDays.length;
+    }
+
+    int width() {
+        return width;
+    }
+
+    LocalDate scenarioDay(int t) {
+        return scenarioDays[t];
+    }
+
+    /** Column of the instrument, or -1 when it has no price in the window. */
+    int column(String instrumentCode) {
+        return column.getOrDefault(instrumentCode, -1);
+    }
+
+    double[] returns() {
+        return returns;
+    }
+}
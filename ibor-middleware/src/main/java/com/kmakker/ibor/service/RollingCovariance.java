@@ -0,0 +1,160 @@
+package com.kmakker.ibor.service;
+
+/**
+ * RollingCovariance
+ *
+ * <p>Covariance of daily returns over a fixed universe of <code>n</code> instruments, kept up to
+ * date one return vector at a time in two flavours:</p>
+ *
+ * <ul>
+ *   <li>Exponentially weighted (RiskMetrics, zero mean):
+ *       <code>S = lambda x S + (1 - lambda) x r r'</code>, divided by the total weight
+ *       <code>1 - lambda^k</code> so that short histories are not biased towards zero.</li>
+ *   <li>Equal-weight sample covariance over the last <code>window</code> returns, from running
+ *       sums of returns and of cross products; the return leaving the window is subtracted
+ *       from a ring buffer.</li>
+ * </ul>
+ *
+ * <p>Both matrices are symmetric and stored as packed upper triangles of
+ * <code>n(n+1)/2</code> doubles, so an update is one pass of <code>O(n&sup2;)</code>
+ * multiply-adds. Not thread-safe: writers work on a {@link #copy()} and publish it.</p>
+ */
+final class RollingCovariance {
+    private final int n;
+    private final double lambda;
+    private final int window;
+
+    private final double[] ewma;       // packed upper triangle
+    private double ewmaWeight;         // 1 - lambda^k
+    private final double[] sum;        // per instrument, over the window
+    private final double[] sumProd;    // packed upper triangle, over the window
+    private final double[] ring;       // window x n returns, oldest overwritten first
+    private int count;                 // returns in the window
+    private int head;                  // next ring row to write
+    private long observations;         // returns seen in total
+
+    RollingCovariance(int n, double lambda, int window) {
+        if (n < 0 || window < 2 || !(lambda > 0 && lambda < 1)) {
+            throw new IllegalArgumentException("need n >= 0, window >= 2 and 0 < lambda < 1");
+        }
+        this.n = n;
+        this.lambda = lambda;
+        this.window = window;
+        int packed = n * (n + 1) / 2;
+        this.ewma = new double[packed];
+        this.sum = new double[n];
+        this.sumProd = new double[packed];
+        this.ring = new double[window * n];
+    }
+
+    private RollingCovariance(RollingCovariance o) {
+        this.n = o.n;
+        this.lambda = o.lambda;
+        this.window = o.window;
+        this.ewma = o.ewma.clone();
+        this.ewmaWeight = o.ewmaWeight;
+        this.sum = o.sum.clone();
+        this.sumProd = o.sumProd.clone();
+        this.ring = o.ring.clone();
+        this.count = o.count;
+        this.head = o.head;
+        this.observations = o.observations;
+    }
+
+    RollingCovariance copy() {
+        return new RollingCovariance(this);
+    }
+
+    int size() {
+        return n;
+    }
+
+    long observations() {
+        return observations;
+    }
+
+    /** Returns in the equal-weight window, at most <code>window</code>. */
+    int windowObservations() {
+        return count;
+    }
+
+    /** Position of (i, j), i &lt;= j, in a packed upper triangle of order n. */
+    static int packedIndex(int n, int i, int j) {
+        return i * n - i * (i - 1) / 2 + (j - i);
+    }
+
+    /** Adds one return vector of length n. */
+    void add(double[] r) {
+        if (r.length != n) throw new IllegalArgumentException("return vector has " + r.length + " entries, expected " + n);
+        int out = head * n;
+        boolean full = count == window;
+        double w = 1 - lambda;
+        int p = 0;
+        for (int i = 0; i < n; i++) {
+            double ri = r[i], oi = ring[out + i];
+            double wi = w * ri;
+            if (full) {
+                for (int j = i; j < n; j++, p++) {
+                    ewma[p] = lambda * ewma[p] + wi * r[j];
+                    sumProd[p] += ri * r[j] - oi * ring[out + j];
+                }
+                sum[i] += ri - oi;
+            } else {
+                for (int j = i; j < n; j++, p++) {
+                    ewma[p] = lambda * ewma[p] + wi * r[j];
+                    sumProd[p] += ri * r[j];
+                }
+                sum[i] += ri;
+            }
+        }
+        System.arraycopy(r, 0, ring, out, n);
+        head = (head + 1) % window;
+        if (!full) count++;
+        ewmaWeight = lambda * ewmaWeight + w;
+        observations++;
+    }
+
+    /**
+     * Covariance sub-matrix over the given instrument indexes, full and symmetric, in index order.
+     * Zeros until there are enough returns (one for EWMA, two for equal weight).
+     */
+    double[][] covariance(int[] idx, boolean exponential) {
+        int k = idx.length;
+        double[][] out = new double[k][k];
+        for (int a = 0; a < k; a++) {
+            for (int b = a; b < k; b++) {
+                double c = exponential ? ewma(idx[a], idx[b]) : windowCovariance(idx[a], idx[b]);
+                out[a][b] = c;
+                out[b][a] = c;
+            }
+        }
+        return out;
+    }
+
+    /** Correlation from {@link #covariance}; 0 off the diagonal where either variance is 0. */
+    static double[][] correlation(double[][] cov) {
+        int k = cov.length;
+        double[] sd = new double[k];
+        for (int a = 0; a < k; a++) sd[a] = Math.sqrt(Math.max(cov[a][a], 0));
+        double[][] out = new double[k][];
+        for (int a = 0; a < k; a++) {
+            out[a] = new double[k];
+            for (int b = 0; b < k; b++) {
+                out[a][b] = a == b ? (sd[a] > 0 ? 1 : 0)
+                        : (sd[a] > 0 && sd[b] > 0 ? cov[a][b] / (sd[a] * sd[b]) : 0);
+            }
+        }
+        return out;
+    }
+
+    private double ewma(int i, int j) {
+        if (ewmaWeight == 0) return 0;
+        return ewma[packedIndex(n, Math.min(i, j), Math.max(i, j))] / ewmaWeight;
+    }
+
+    private double windowCovariance(int i, int j) {
+        if (count < 2) return 0;
+        double sp = sumProd[packedIndex(n, Math.min(i, j), Math.max(i, j))];
+        return (sp - sum[i] * sum[j] / count) / (count - 1);
+    }
+}
@@ -0,0 +1,220 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.dto.PositionDTO;
+import com.kmakker.ibor.dto.analytics.ScenarioRequest;
+import com.kmakker.ibor.dto.analytics.ScenarioRequest.Scenario;
+import com.kmakker.ibor.dto.analytics.ScenarioResponse;
+import com.kmakker.ibor.dto.analytics.ScenarioResponse.ScenarioResult;
+import com.kmakker.ibor.exception.InvalidRequestException;
+import com.kmakker.ibor.intern.CodeDictionaries;
+import com.kmakker.ibor.jodi.JodiFxRateRepository;
+import com.kmakker.ibor.jodi.JodiPositionsRepository;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * ScenarioService
+ *
+ * <p>Stress revaluation of a portfolio under user-defined shocks such as "equities -10%, EUR
+ * +5%", many scenarios per request.</p>
+ *
+ * <ol>
+ *   <li>The book is loaded once: positions as in <code>/api/positions</code> (up to
+ *       <code>ibor.scenarios.max-lines</code>, in instrument code order; <code>truncated</code> says
+ *       the book holds more), valued in the base currency with one
+ *       {@link FxSnapshot}. Concurrent requests for the same book share the load.</li>
+ *   <li>Codes in the book and in the shocks are mapped to dense ids, giving primitive arrays for
+ *       {@link ScenarioEngine}.</li>
+ *   <li>All scenarios are revalued on a dedicated fork/join pool of
+ *       <code>ibor.scenarios.parallelism</code> workers.</li>
+ * </ol>
+ *
+ * <p>Revaluation is linear in each line's own price: an option moves by its own shock, not
+ * through its underlying. Shocks on codes absent from the book have no effect.</p>
+ */
+@Service
+public class ScenarioService implements DisposableBean {
+    private static final int MAX_SCENARIOS = 5000;
+
+    private final JodiPositionsRepository positionsRepository;
+    private final JodiFxRateRepository fxRateRepository;
+    private final CodeDictionaries codeDictionaries;
+    private final RequestCoalescer coalescer;
+    private final int maxLines;
+    private final ForkJoinPool pool;
+
+    @Autowired
+    public ScenarioService(JodiPositionsRepository positionsRepository,
+                           JodiFxRateRepository fxRateRepository,
+                           CodeDictionaries codeDictionaries,
+                           RequestCoalescer coalescer,
+                           @Value("${ibor.scenarios.max-lines:20000}") int maxLines,
+                           @Value("${ibor.scenarios.parallelism:0}") int parallelism) {
+        this.positionsRepository = positionsRepository;
+        this.fxRateRepository = fxRateRepository;
+        this.codeDictionaries = codeDictionaries;
+        this.coalescer = coalescer;
+        this.maxLines = maxLines;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public void destroy() {
+        pool.shutdownNow();
+    }
+
+    /** A book as loaded: one entry per position with a base-currency value. */
+    record Lines(List<PositionDTO> positions, double[] baseValue, int unconverted, boolean truncated) {}
+
+    public ScenarioResponse run(ScenarioRequest request) {
+        if (request == null || request.asOf() == null) {
+            throw new InvalidRequestException("asOf must be provided (YYYY-MM-DD)");
+        }
+        String portfolioCode = request.portfolioCode();
+        if (portfolioCode == null || portfolioCode.isBlank()) {
+            throw new InvalidRequestException("portfolioCode must be provided");
+        }
+        List<Scenario> scenarios = request.scenarios() == null ? List.of() : request.scenarios();
+        if (scenarios.isEmpty() || scenarios.size() > MAX_SCENARIOS) {
+            throw new InvalidRequestException("scenarios must contain between 1 and " + MAX_SCENARIOS + " entries");
+        }
+        for (Scenario s : scenarios) {
+            if (s == null) throw new InvalidRequestException("scenarios must not contain null entries");
+            validate(s.instrumentTypes(), "instrumentTypes");
+            validate(s.currencies(), "currencies");
+            validate(s.instruments(), "instruments");
+        }
+        String base = (request.baseCurrency() == null || request.baseCurrency().isBlank())
+                ? "USD" : request.baseCurrency().trim().toUpperCase(Locale.ROOT);
+        if (base.length() != 3) {
+            throw new InvalidRequestException("baseCurrency must be a 3-letter currency code");
+        }
+        LocalDate asOf = request.asOf();
+
+        Lines lines = coalescer.execute("scenarios.book",
+                () -> loadLines(portfolioCode, asOf, base),
+                portfolioCode, asOf, base);
+        return revalue(portfolioCode, asOf, base, lines, scenarios);
+    }
+
+    private Lines loadLines(String portfolioCode, LocalDate asOf, String base) {
+        List<PositionDTO> positions = positionsRepository.findPositions(asOf, portfolioCode, null, 1, maxLines + 1);
+        boolean truncated = positions.size() > maxLines;
+        if (truncated) positions = positions.subList(0, maxLines);
+        Set<String> currencies = new LinkedHashSet<>();
+        for (PositionDTO p : positions) {
+            if (p.currency() != null && !base.equalsIgnoreCase(p.currency())) currencies.add(p.currency());
+        }
+        FxSnapshot fx = FxSnapshot.load(fxRateRepository, codeDictionaries.currencies(), base, asOf, currencies);
+
+        List<PositionDTO> kept = new ArrayList<>(positions.size());
+        double[] value = new double[positions.size()];
+        for (PositionDTO p : positions) {
+            BigDecimal v = fx.convert(p.mktValue(), p.currency());
+            if (v == null) continue;
+            value[kept.size()] = v.doubleValue();
+            kept.add(p);
+        }
+        return new Lines(List.copyOf(kept), Arrays.copyOf(value, kept.size()),
+                positions.size() - kept.size(), truncated);
+    }
+
+    ScenarioResponse revalue(String portfolioCode, LocalDate asOf, String base, Lines lines, List<Scenario> scenarios) {
+        int n = lines.positions().size();
+        Map<String, Integer> types = new LinkedHashMap<>();
+        Map<String, Integer> currencies = new HashMap<>();
+        Map<String, Integer> instruments = new HashMap<>();
+        int[] type = new int[n], ccy = new int[n], instrument = new int[n];
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            PositionDTO p = lines.positions().get(i);
+            type[i] = types.computeIfAbsent(upper(p.instrumentType()), k -> types.size());
+            ccy[i] = currencies.computeIfAbsent(upper(p.currency()), k -> currencies.size());
+            instrument[i] = instruments.computeIfAbsent(p.instrumentId(), k -> instruments.size());
+            total += lines.baseValue()[i];
+        }
+        var book = new ScenarioEngine.Book(lines.baseValue(), type, ccy, instrument,
+                types.size(), currencies.size(), instruments.size());
+
+        int m = scenarios.size();
+        double[][] typeShock = new double[m][types.size()];
+        double[][] ccyShock = new double[m][currencies.size()];
+        int[][] instrumentIds = new int[m][];
+        double[][] instrumentShocks = new double[m][];
+        for (int s = 0; s < m; s++) {
+            Scenario sc = scenarios.get(s);
+            dense(sc.instrumentTypes(), types, typeShock[s]);
+            dense(sc.currencies(), currencies, ccyShock[s]);
+            Integer baseId = currencies.get(base);
+            if (baseId != null) ccyShock[s][baseId] = 0;   // the base cannot move against itself
+            Map<String, Double> overrides = sc.instruments() == null ? Map.of() : sc.instruments();
+            int[] ids = new int[overrides.size()];
+            double[] shocks = new double[overrides.size()];
+            int k = 0;
+            for (var e : overrides.entrySet()) {
+                Integer id = instruments.get(e.getKey());
+                if (id == null) continue;
+                ids[k] = id;
+                shocks[k++] = e.getValue();
+            }
+            instrumentIds[s] = Arrays.copyOf(ids, k);
+            instrumentShocks[s] = Arrays.copyOf(shocks, k);
+        }
+
+        double[][] pnl = ScenarioEngine.run(book,
+                new ScenarioEngine.Shocks(typeShock, ccyShock, instrumentIds, instrumentShocks), pool);
+
+        List<String> typeNames = List.copyOf(types.keySet());
+        List<ScenarioResult> results = new ArrayList<>(m);
+        for (int s = 0; s < m; s++) {
+            Map<String, Double> byType = new LinkedHashMap<>();
+            double sum = 0;
+            for (int t = 0; t < typeNames.size(); t++) {
+                byType.put(typeNames.get(t), pnl[s][t]);
+                sum += pnl[s][t];
+            }
+            String name = scenarios.get(s).name() == null ? "scenario-" + (s + 1) : scenarios.get(s).name();
+            results.add(new ScenarioResult(name, sum, total == 0 ? 0 : sum / total, byType));
+        }
+        return new ScenarioResponse(portfolioCode, asOf, base, n,
+                lines.unconverted() == 0 ? null : lines.unconverted(), lines.truncated() ? Boolean.TRUE : null,
+                total, results);
+    }
+
+    private static void dense(Map<String, Double> shocks, Map<String, Integer> ids, double[] out) {
+        if (shocks == null) return;
+        for (var e : shocks.entrySet()) {
+            Integer id = ids.get(upper(e.getKey()));
+            if (id != null) out[id] = e.getValue();
+        }
+    }
+
+    private static void validate(Map<String, Double> shocks, String field) {
+        if (shocks == null) return;
+        for (var e : shocks.entrySet()) {
+            Double v = e.getValue();
+            if (e.getKey() == null || v == null || !Double.isFinite(v) || v <= -1) {
+                throw new InvalidRequestException(field + " shocks must be finite and greater than -1 (e.g. -0.10 for -10%)");
+            }
+        }
+    }
+
+    private static String upper(String s) {
+        return s == null ? "" : s.trim().toUpperCase(Locale.ROOT);
+    }
+}
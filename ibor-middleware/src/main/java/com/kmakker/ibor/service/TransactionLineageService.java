@@ -3,6 +3,7 @@ package com.kmakker.ibor.service;
 import com.kmakker.ibor.dto.LotDTO;
 import com.kmakker.ibor.dto.PositionDetailDTO;
 import com.kmakker.ibor.dto.TransactionDTO;
+import com.kmakker.ibor.exception.InvalidRequestException;
 import com.kmakker.ibor.jodi.JodiTransactionLineageRepository;
 import org.springframework.stereotype.Service;
 
@@ -20,9 +21,9 @@ public class TransactionLineageService {
     }
 
     public PositionDetailDTO getDetail(LocalDate asOf, String portfolioCode, String instrumentCode, String lotView) {
-        if (asOf == null) throw new IllegalArgumentException("asOf must be provided.");
-        if (portfolioCode == null || portfolioCode.isBlank()) throw new IllegalArgumentException("portfolioCode must be provided.");
-        if (instrumentCode == null || instrumentCode.isBlank()) throw new IllegalArgumentException("instrumentCode must be provided.");
+        if (asOf == null) throw new InvalidRequestException("asOf must be provided.");
+        if (portfolioCode == null || portfolioCode.isBlank()) throw new InvalidRequestException("portfolioCode must be provided.");
+        if (instrumentCode == null || instrumentCode.isBlank()) throw new InvalidRequestException("instrumentCode must be provided.");
 
         var header = transactionLineageRepository.fetchHeader(asOf, portfolioCode, instrumentCode);
         if (header == null) {
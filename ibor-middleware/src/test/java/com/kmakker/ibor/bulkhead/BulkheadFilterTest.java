@@ -0,0 +1,168 @@
+package com.kmakker.ibor.bulkhead;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Load test: analytics is held at capacity by requests blocked on a latch while positions traffic
+ * keeps flowing. Every positions request must complete while analytics is still held, only
+ * analytics requests are rejected, and the positions p99 stays within
+ * {@link #P99_FACTOR} x baseline + {@link #P99_SLACK_MS} ms of the same traffic run alone.
+ */
+public class BulkheadFilterTest {
+    /** Saturated positions p99 may be this multiple of the unsaturated p99 ... */
+    private static final int P99_FACTOR = 3;
+    /** ... plus this much, so a 2-3 ms baseline is not failed by one scheduler hiccup. */
+    private static final long P99_SLACK_MS = 20;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final BulkheadFilter filter = new BulkheadFilter(
+            List.of(new Bulkhead("analytics", List.of("/api/analytics/"), 2, 20),
+                    new Bulkhead("positions", List.of("/api/positions"), 4, 20)),
+            new Bulkhead("default", List.of("/api/"), 1, 20),
+            registry);
+
+    private int call(String path, Runnable work) throws Exception {
+        var request = new MockHttpServletRequest("GET", path);
+        var response = new MockHttpServletResponse();
+        filter.doFilter(request, response, (req, res) -> work.run());
+        return response.getStatus();
+    }
+
+    @Test
+    void positions_p99_holds_while_analytics_is_saturated() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger analyticsEntered = new AtomicInteger();
+        AtomicInteger analyticsRejected = new AtomicInteger();
+
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            // baseline: the same positions traffic with analytics idle
+            long baselineP99 = positionsP99(pool, null, null);
+
+            // saturate analytics: 50 callers, only 2 permits, permits held until the latch opens
+            List<Future<Integer>> analytics = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                analytics.add(pool.submit(() -> {
+                    int status = call("/api/analytics/attribution/brinson/daily", () -> {
+                        analyticsEntered.incrementAndGet();
+                        await(release);
+                    });
+                    if (status == 503) analyticsRejected.incrementAndGet();
+                    return status;
+                }));
+            }
+
+            AtomicInteger positionsDuringHold = new AtomicInteger();
+            long saturatedP99 = positionsP99(pool, release, positionsDuringHold);
+
+            // every positions request finished while the two admitted analytics requests were blocked
+            assertThat(positionsDuringHold.get()).isEqualTo(400);
+            assertThat(saturatedP99).as("saturated p99 (ms) vs baseline %d ms", baselineP99)
+                    .isLessThanOrEqualTo(P99_FACTOR * baselineP99 + P99_SLACK_MS);
+            // the other 48 analytics callers are turned away without being admitted
+            while (analyticsRejected.get() < 48) Thread.sleep(5);
+            assertThat(analyticsEntered.get()).isEqualTo(2);
+            release.countDown();
+
+            long ok = 0;
+            for (Future<Integer> f : analytics) if (f.get(5, TimeUnit.SECONDS) == 200) ok++;
+            assertThat(ok).isEqualTo(2);
+            assertThat(analyticsRejected.get()).isEqualTo(48);
+        }
+
+        assertThat(registry.get("ibor.bulkhead.rejected").tag("group", "analytics").counter().count()).isEqualTo(48);
+        assertThat(registry.get("ibor.bulkhead.rejected").tag("group", "positions").counter().count()).isZero();
+    }
+
+    /**
+     * Positions traffic: 4 concurrent clients x 100 requests of ~2 ms work each. Returns the p99 in
+     * milliseconds; when {@code held} is given, counts the requests that finished while it was closed.
+     */
+    private long positionsP99(ExecutorService pool, CountDownLatch held, AtomicInteger duringHold) throws Exception {
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger ok = new AtomicInteger();
+        List<Future<?>> clients = new ArrayList<>();
+        for (int c = 0; c < 4; c++) {
+            clients.add(pool.submit(() -> {
+                for (int i = 0; i < 100; i++) {
+                    long t0 = System.nanoTime();
+                    if (call("/api/positions", () -> sleep(2)) == 200) ok.incrementAndGet();
+                    latencies.add(System.nanoTime() - t0);
+                    if (held != null && held.getCount() == 1) duringHold.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        for (Future<?> f : clients) f.get(30, TimeUnit.SECONDS);
+        assertThat(ok.get()).isEqualTo(400);
+        List<Long> sorted = latencies.stream().sorted().toList();
+        return TimeUnit.NANOSECONDS.toMillis(sorted.get((int) Math.ceil(sorted.size() * 0.99) - 1));
+    }
+
+    @Test
+    void context_bundles_have_their_own_group() {
+        var withContext = new BulkheadFilter(
+                List.of(new Bulkhead("context", List.of("/api/context"), 1, 0),
+                        new Bulkhead("positions", List.of("/api/positions"), 1, 0)),
+                new Bulkhead("default", List.of("/api/"), 1, 0),
+                new SimpleMeterRegistry());
+        assertThat(withContext.route("/api/context/P-ALPHA").name()).isEqualTo("context");
+        assertThat(withContext.route("/api/positions/firm-exposure").name()).isEqualTo("positions");
+        assertThat(withContext.route("/api/prices/EQ-IBM").name()).isEqualTo("default");
+        // the defaults fill the Hikari pool of 25 exactly
+        assertThat(BulkheadConfiguration.connectionBudget(6, 7, 2, 3, 3)).isEqualTo(25);
+    }
+
+    @Test
+    void rejects_with_503_and_retry_after_when_group_is_full() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch entered = new CountDownLatch(1);
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<Integer> holder = pool.submit(() -> call("/api/instruments/EQ-IBM", () -> {
+                entered.countDown();
+                await(release);
+            }));
+            entered.await();
+
+            var response = new MockHttpServletResponse();
+            filter.doFilter(new MockHttpServletRequest("GET", "/api/prices/EQ-IBM"), response, (req, res) -> {});
+            assertThat(response.getStatus()).isEqualTo(503);
+            assertThat(response.getHeader("Retry-After")).isEqualTo("1");
+            assertThat(response.getContentAsString()).contains("\"status\":503", "default");
+
+            release.countDown();
+            assertThat(holder.get(5, TimeUnit.SECONDS)).isEqualTo(200);
+        }
+        assertThat(call("/actuator/health", () -> {})).isEqualTo(200);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
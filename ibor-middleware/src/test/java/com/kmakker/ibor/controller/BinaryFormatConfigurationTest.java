@@ -0,0 +1,94 @@
+package com.kmakker.ibor.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.kmakker.ibor.dto.PositionDTO;
+import com.kmakker.ibor.service.DataVersionService;
+import com.kmakker.ibor.service.PositionHistoryService;
+import com.kmakker.ibor.service.PositionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasItem;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(controllers = PositionController.class)
+public class BinaryFormatConfigurationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private PositionService positionService;
+
+    @MockitoBean
+    private PositionHistoryService positionHistoryService;
+
+    @MockitoBean
+    private DataVersionService dataVersionService;
+
+    @BeforeEach
+    void positions() {
+        var dto = new PositionDTO(LocalDate.parse("2025-01-02"), LocalDate.parse("2025-01-02"), "P-ALPHA",
+                "EQ-IBM", "IBM Corp.", "IBM", "EQUITY", new BigDecimal("100"), new BigDecimal("150.25"), "BBG",
+                new BigDecimal("15025.00"), null, null, "USD", BigDecimal.ONE);
+        when(positionService.getPositions(any(), any(), any(), any(), any(), any())).thenReturn(List.of(dto));
+    }
+
+    private JsonNode fetch(MediaType accept, ObjectMapper decoder) throws Exception {
+        byte[] body = mockMvc.perform(get("/api/positions")
+                        .param("asOf", "2025-01-02")
+                        .param("portfolioCode", "P-ALPHA")
+                        .accept(accept))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(accept))
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItem("Accept")))
+                .andReturn().getResponse().getContentAsByteArray();
+        return decoder.readTree(body);
+    }
+
+    @Test
+    void cbor_and_smile_carry_the_same_fields_as_json() throws Exception {
+        JsonNode json = fetch(MediaType.APPLICATION_JSON, new ObjectMapper());
+        JsonNode cbor = fetch(MediaType.APPLICATION_CBOR, new ObjectMapper(new CBORFactory()));
+        JsonNode smile = fetch(MediaType.parseMediaType(BinaryFormatConfiguration.APPLICATION_SMILE_VALUE),
+                new ObjectMapper(new SmileFactory()));
+
+        assertThat(json.get(0).get("asOf").asText()).isEqualTo("2025-01-02");
+        assertSameFields(cbor.get(0), json.get(0));
+        assertSameFields(smile.get(0), json.get(0));
+    }
+
+    /** Binary encodings keep BigDecimal as a decimal where JSON has a plain number, so numbers compare by value. */
+    private static void assertSameFields(JsonNode actual, JsonNode json) {
+        assertThat(actual.properties()).extracting(Map.Entry::getKey)
+                .containsExactlyElementsOf(json.properties().stream().map(Map.Entry::getKey).toList());
+        json.properties().forEach(e -> {
+            JsonNode v = actual.get(e.getKey());
+            if (e.getValue().isNumber()) {
+                assertThat(v.decimalValue()).isEqualByComparingTo(e.getValue().decimalValue());
+            } else {
+                assertThat(v.asText()).isEqualTo(e.getValue().asText());
+            }
+        });
+    }
+}
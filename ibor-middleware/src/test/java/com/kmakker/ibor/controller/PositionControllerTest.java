@@ -1,6 +1,11 @@
 package com.kmakker.ibor.controller;
 
 import com.kmakker.ibor.dto.PositionDTO;
+import com.kmakker.ibor.dto.PositionDiffDTO;
+import com.kmakker.ibor.dto.PositionDiffResponse;
+import com.kmakker.ibor.exception.InvalidRequestException;
+import com.kmakker.ibor.service.DataVersionService;
+import com.kmakker.ibor.service.PositionHistoryService;
 import com.kmakker.ibor.service.PositionService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,8 +17,12 @@ import org.springframework.http.MediaType;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
 
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -27,6 +36,12 @@ class PositionControllerTest {
     @MockitoBean
     private PositionService positionService;
 
+    @MockitoBean
+    private PositionHistoryService positionHistoryService;
+
+    @MockitoBean
+    private DataVersionService dataVersionService;
+
     // dto returns a single position
     @Test
     void getPositions_returnOkWithBodyAndContractHeader() throws Exception {
@@ -50,7 +65,7 @@ class PositionControllerTest {
 
         // service method is mocked to return the dto (defined above)
         when(positionService.getPositions(
-                any(), any(), any(), any(), any()
+                any(), any(), any(), any(), any(), any()
         )).thenReturn(List.of(dto));
 
         // this controller internally calls the positionService which has been mocked above using @MockBean
@@ -71,8 +86,74 @@ class PositionControllerTest {
                 .andExpect(jsonPath("$[0].currency").value("USD"))
                 .andExpect(jsonPath("$[0].contractMultiplier").value(1));
     }
-}
 
+    // matching If-None-Match answers 304 from the watermark alone; the service is never called
+    @Test
+    void getPositions_returnsNotModifiedWhenETagMatches() throws Exception {
+        when(dataVersionService.etag(any(String[].class))).thenReturn(Optional.of("W/\"v42\""));
+
+        mockMvc.perform(get("/api/positions")
+                        .param("asOf", "2025-01-02")
+                        .param("portfolioCode", "P-ALPHA")
+                        .header("If-None-Match", "\"v42\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "W/\"v42\""));
+        verify(positionService, never()).getPositions(any(), any(), any(), any(), any(), any());
+
+        when(positionService.getPositions(any(), any(), any(), any(), any(), any())).thenReturn(List.of());
+        mockMvc.perform(get("/api/positions")
+                        .param("asOf", "2025-01-02")
+                        .param("portfolioCode", "P-ALPHA")
+                        .header("If-None-Match", "\"v41\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "W/\"v42\""));
+    }
+
+    // only changed instruments are serialized; the compared count covers the quiet ones
+    @Test
+    void getPositionDiff_returnsChangedInstrumentsOnly() throws Exception {
+        var change = new PositionDiffDTO("EQ-IBM", "IBM Corp.", "EQUITY", "CHANGED",
+                new BigDecimal("100"), new BigDecimal("120"), new BigDecimal("150"), new BigDecimal("150"),
+                new BigDecimal("15000"), new BigDecimal("18000"), new BigDecimal("3000"), "USD");
+        when(positionService.getPositionDiff("P-ALPHA", LocalDate.parse("2025-01-02"), LocalDate.parse("2025-01-03")))
+                .thenReturn(new PositionDiffResponse("P-ALPHA", LocalDate.parse("2025-01-02"),
+                        LocalDate.parse("2025-01-03"), 51, List.of(change)));
 
+        mockMvc.perform(get("/api/positions/diff")
+                        .param("portfolioCode", "P-ALPHA")
+                        .param("asOf1", "2025-01-02")
+                        .param("asOf2", "2025-01-03"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("x-contract-version", "1"))
+                .andExpect(jsonPath("$.instrumentsCompared").value(51))
+                .andExpect(jsonPath("$.changes.length()").value(1))
+                .andExpect(jsonPath("$.changes[0].change").value("CHANGED"))
+                .andExpect(jsonPath("$.changes[0].mktValueChange").value(3000));
+    }
 
+    // input checks answer 400 with their message
+    @Test
+    void getPositions_returnsBadRequestForInvalidInput() throws Exception {
+        when(positionService.getPositions(any(), any(), any(), any(), any(), any()))
+                .thenThrow(new InvalidRequestException("baseCurrency must be a 3-letter currency code"));
 
+        mockMvc.perform(get("/api/positions")
+                        .param("asOf", "2025-01-02")
+                        .param("portfolioCode", "P-ALPHA"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.status").value(400))
+                .andExpect(jsonPath("$.error").value("baseCurrency must be a 3-letter currency code"));
+    }
+
+    // any other IllegalArgumentException is a server error, left to the container's 500 page
+    @Test
+    void getPositions_doesNotMapOtherIllegalArgumentsToBadRequest() {
+        when(positionService.getPositions(any(), any(), any(), any(), any(), any()))
+                .thenThrow(new IllegalArgumentException("Required column 'price' is missing"));
+
+        assertThatThrownBy(() -> mockMvc.perform(get("/api/positions")
+                        .param("asOf", "2025-01-02")
+                        .param("portfolioCode", "P-ALPHA")))
+                .hasRootCauseInstanceOf(IllegalArgumentException.class);
+    }
+}
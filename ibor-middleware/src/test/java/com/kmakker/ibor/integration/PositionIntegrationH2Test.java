@@ -12,9 +12,16 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 
+import java.io.ByteArrayInputStream;
 import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.anyInt;
@@ -75,4 +82,41 @@ public class PositionIntegrationH2Test {
         assertThat(response.getBody().length).isGreaterThanOrEqualTo(1);
         assertThat(response.getBody()[0].instrumentId()).isEqualTo("EQ-IBM");
     }
+
+    @Test
+    void getPositions_gzipsLargeResponsesForGzipClients() throws Exception {
+        var dtos = new java.util.ArrayList<PositionDTO>();
+        for (int i = 0; i < 40; i++) {
+            dtos.add(new PositionDTO(LocalDate.parse("2025-01-03"), LocalDate.parse("2025-01-03"), "P-GZIP",
+                    "EQ-" + i, "Instrument " + i, "T" + i, "EQUITY", new BigDecimal("100"),
+                    new BigDecimal("150.25"), "BBG", new BigDecimal("15025.00"), null, null, "USD", BigDecimal.ONE));
+        }
+        when(positionsRepository.findPositions(eq(LocalDate.parse("2025-01-03")), eq("P-GZIP"),
+                org.mockito.ArgumentMatchers.isNull(), anyInt(), anyInt()))
+                .thenReturn(dtos);
+
+        // a raw client, so the Content-Encoding header and body arrive as sent
+        var client = HttpClient.newHttpClient();
+        HttpResponse<byte[]> large = client.send(request("gzip"), HttpResponse.BodyHandlers.ofByteArray());
+        HttpResponse<byte[]> plain = client.send(request("identity"), HttpResponse.BodyHandlers.ofByteArray());
+
+        assertThat(large.statusCode()).isEqualTo(200);
+        assertThat(large.headers().firstValue("Content-Encoding")).hasValue("gzip");
+        try (var in = new GZIPInputStream(new ByteArrayInputStream(large.body()))) {
+            String json = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            assertThat(json.length()).isGreaterThan(2048);
+            assertThat(json).contains("\"instrumentId\":\"EQ-39\"");
+        }
+        assertThat(plain.statusCode()).isEqualTo(200);
+        assertThat(plain.headers().firstValue("Content-Encoding")).isEmpty();
+        assertThat(new String(plain.body(), StandardCharsets.UTF_8)).contains("\"instrumentId\":\"EQ-39\"");
+    }
+
+    private HttpRequest request(String acceptEncoding) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port
+                        + "/api/positions?asOf=2025-01-03&size=100&portfolioCode=P-GZIP"))
+                .header("Accept", "application/json")
+                .header("Accept-Encoding", acceptEncoding)
+                .build();
+    }
 }
@@ -2,21 +2,33 @@ package com.kmakker.ibor.integration;
 
 import com.kmakker.ibor.IborApplication;
 import com.kmakker.ibor.dto.PositionDTO;
+import com.kmakker.ibor.dto.PositionDiffDTO;
 import com.kmakker.ibor.jodi.JodiPositionsRepository;
 import com.kmakker.ibor.support.PgWithProjectFiles;
+import org.jooq.DSLContext;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 @SpringBootTest(classes = IborApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 public class PositionIntegrationPostgresTest extends PgWithProjectFiles {
     @Autowired
     private JodiPositionsRepository jodiPositionsRepository;
 
+    @Autowired
+    private DSLContext dsl;
+
     @Test
     void positions_work_against_real_postgres_schema_and_data() {
         List<PositionDTO> positions = jodiPositionsRepository.findPositions(
@@ -28,4 +40,61 @@ public class PositionIntegrationPostgresTest extends PgWithProjectFiles {
         // TODO: add assertions
         assertThat(positions).isNotEmpty();
     }
+
+    // day 2 re-books P-ALPHA's latest snapshot minus EQ-MSFT, plus 10 EQ-IBM, plus an adjustment
+    // opening a new instrument; every other line and every price is the same on both days
+    @Test
+    @Transactional
+    void position_diff_returns_added_removed_and_changed_rows_only() {
+        LocalDate day1 = LocalDate.parse("2031-01-02");
+        LocalDate day2 = day1.plusDays(1);
+        Map<String, PositionDTO> before = jodiPositionsRepository.findPositions(day1, "P-ALPHA", null, 1, 10_000)
+                .stream().collect(Collectors.toMap(PositionDTO::instrumentId, Function.identity()));
+        assertThat(before).containsKeys("EQ-IBM", "EQ-MSFT");
+        String added = dsl.resultQuery("""
+                SELECT MIN(di.instrument_code) FROM ibor.dim_instrument di
+                WHERE di.validity @> ?::date AND di.instrument_code <> ALL (?::text[])
+                """, day2, before.keySet().toArray(new String[0])).fetchOne(0, String.class);
+
+        dsl.execute("""
+                INSERT INTO ibor.fact_position_snapshot (portfolio_vid, instrument_vid, position_date, quantity)
+                SELECT ps.portfolio_vid, ps.instrument_vid, ?::date,
+                       ps.quantity + CASE WHEN di.instrument_code = 'EQ-IBM' THEN 10 ELSE 0 END
+                FROM ibor.fact_position_snapshot ps
+                JOIN ibor.dim_portfolio dp ON dp.portfolio_vid = ps.portfolio_vid AND dp.portfolio_code = 'P-ALPHA'
+                JOIN ibor.dim_instrument di ON di.instrument_vid = ps.instrument_vid
+                WHERE di.instrument_code <> 'EQ-MSFT'
+                  AND ps.position_date = (SELECT MAX(s.position_date) FROM ibor.fact_position_snapshot s
+                                          WHERE s.portfolio_vid = ps.portfolio_vid AND s.position_date <= ?::date)
+                """, day2, day1);
+        dsl.execute("""
+                INSERT INTO ibor.fact_position_adjustment (portfolio_vid, instrument_vid, effective_date, quantity_delta, reason)
+                SELECT dp.portfolio_vid, di.instrument_vid, ?::date, 25, 'position diff test'
+                FROM ibor.dim_portfolio dp, ibor.dim_instrument di
+                WHERE dp.portfolio_code = 'P-ALPHA' AND dp.validity @> ?::date
+                  AND di.instrument_code = ? AND di.validity @> ?::date
+                """, day2, day2, added, day2);
+
+        var diff = jodiPositionsRepository.findPositionDiff("P-ALPHA", day1, day2);
+
+        assertThat(diff.instrumentsCompared()).isEqualTo(before.size() + 1);
+        assertThat(diff.changes()).extracting(PositionDiffDTO::instrumentId, PositionDiffDTO::change)
+                .containsExactlyInAnyOrder(tuple("EQ-IBM", "CHANGED"), tuple("EQ-MSFT", "REMOVED"), tuple(added, "ADDED"));
+        Map<String, PositionDiffDTO> byCode = diff.changes().stream()
+                .collect(Collectors.toMap(PositionDiffDTO::instrumentId, Function.identity()));
+
+        PositionDiffDTO ibm = byCode.get("EQ-IBM");
+        assertThat(ibm.netQty2().subtract(ibm.netQty1())).isEqualByComparingTo("10");
+        assertThat(ibm.price2()).isEqualByComparingTo(ibm.price1());
+        assertThat(ibm.mktValueChange()).isEqualByComparingTo(ibm.price1().multiply(BigDecimal.TEN));
+
+        PositionDiffDTO msft = byCode.get("EQ-MSFT");
+        assertThat(msft.netQty1()).isEqualByComparingTo(before.get("EQ-MSFT").netQty());
+        assertThat(msft.netQty2()).isNull();
+        assertThat(msft.mktValueChange()).isEqualByComparingTo(msft.mktValue1().negate());
+
+        PositionDiffDTO opened = byCode.get(added);
+        assertThat(opened.netQty1()).isNull();
+        assertThat(opened.netQty2()).isEqualByComparingTo("25");
+    }
 }
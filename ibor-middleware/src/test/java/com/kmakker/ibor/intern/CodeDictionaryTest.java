@@ -0,0 +1,23 @@
+package com.kmakker.ibor.intern;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CodeDictionaryTest {
+
+    @Test
+    void ids_are_dense_stable_and_normalized() {
+        var dict = new CodeDictionary("currency");
+
+        assertThat(dict.id("USD")).isEqualTo(0);
+        assertThat(dict.id("eur ")).isEqualTo(1);
+        assertThat(dict.id("usd")).isEqualTo(0);
+        assertThat(dict.find("EUR")).isEqualTo(1);
+        assertThat(dict.find("GBP")).isEqualTo(CodeDictionary.NO_ID);
+        assertThat(dict.code(1)).isEqualTo("EUR");
+        assertThat(dict.size()).isEqualTo(2);
+        assertThatThrownBy(() -> dict.code(2)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,27 @@
+package com.kmakker.ibor.intern;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IntObjectHashMapTest {
+
+    @Test
+    void put_get_survive_growth() {
+        var map = new IntObjectHashMap<String>(2);
+        int base = EpochDays.of(LocalDate.parse("2025-01-01"));
+        for (int k = -500; k < 500; k++) {
+            map.put(base + k * 7, "v" + k);
+        }
+
+        assertThat(map.size()).isEqualTo(1000);
+        assertThat(map.get(base)).isEqualTo("v0");
+        assertThat(map.get(base - 3500)).isEqualTo("v-500");
+        assertThat(map.get(base + 1)).isNull();
+        assertThat(map.put(base, "x")).isEqualTo("v0");
+        assertThat(map.computeIfAbsent(base + 1, k -> "new")).isEqualTo("new");
+        assertThat(map.size()).isEqualTo(1001);
+    }
+}
@@ -0,0 +1,25 @@
+package com.kmakker.ibor.intern;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LruCacheTest {
+
+    @Test
+    void evicts_the_least_recently_used_entry_instead_of_clearing() {
+        var cache = new LruCache<String, Integer>(3);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+        assertThat(cache.get("a")).isEqualTo(1);   // a is now the most recent
+
+        cache.put("d", 4);
+
+        assertThat(cache.size()).isEqualTo(3);
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("a")).isEqualTo(1);
+        assertThat(cache.get("c")).isEqualTo(3);
+        assertThat(cache.get("d")).isEqualTo(4);
+    }
+}
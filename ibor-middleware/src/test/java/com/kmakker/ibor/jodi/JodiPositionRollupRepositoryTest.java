@@ -0,0 +1,116 @@
+package com.kmakker.ibor.jodi;
+
+import com.kmakker.ibor.dto.ExposureRowDTO;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Result;
+import org.jooq.Record;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultConfiguration;
+import org.jooq.tools.jdbc.MockConnection;
+import org.jooq.tools.jdbc.MockResult;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JodiPositionRollupRepositoryTest {
+
+    private static final LocalDate AS_OF = LocalDate.parse("2025-06-30");
+
+    private final Field<String> type = DSL.field("instrument_type", String.class);
+    private final Field<String> currency = DSL.field("currency", String.class);
+    private final Field<Integer> mask = DSL.field("grouping_mask", Integer.class);
+    private final Field<Integer> positions = DSL.field("positions", Integer.class);
+    private final Field<Integer> unconverted = DSL.field("unconverted", Integer.class);
+    private final Field<BigDecimal> quantity = DSL.field("quantity", BigDecimal.class);
+    private final Field<BigDecimal> mktValue = DSL.field("mkt_value", BigDecimal.class);
+    private final Field<String> valueCcy = DSL.field("value_ccy", String.class);
+    private final Field<BigDecimal> weight = DSL.field("weight", BigDecimal.class);
+
+    private final DSLContext create = DSL.using(SQLDialect.POSTGRES);
+    private final Field<?>[] columns = {type, currency, mask, positions, unconverted, quantity, mktValue, valueCcy, weight};
+    private final Result<Record> rows = create.newResult(columns);
+    private final List<String> executed = new ArrayList<>();
+
+    private JodiPositionRollupRepository repository() {
+        var configuration = new DefaultConfiguration()
+                .set(new MockConnection(ctx -> {
+                    executed.add(ctx.sql());
+                    return new MockResult[]{new MockResult(rows.size(), rows)};
+                }))
+                .set(SQLDialect.POSTGRES);
+        return new JodiPositionRollupRepository(DSL.using(configuration));
+    }
+
+    private void row(String t, String c, int m, int n, int missing, String qty, String value, String ccy, String w) {
+        Record r = create.newRecord(columns);
+        r.fromArray(t, c, m, n, missing, new BigDecimal(qty), value == null ? null : new BigDecimal(value),
+                ccy, w == null ? null : new BigDecimal(w));
+        rows.add(r);
+    }
+
+    @Test
+    void groups_with_rollup_and_orders_each_subtotal_before_its_children() {
+        repository().findRollup(AS_OF, List.of("P-ALPHA"), List.of("type", "currency"), null);
+
+        String sql = executed.get(0).replaceAll("\\s+", " ");
+        assertThat(sql).contains("GROUPING(instrument_type, currency) AS grouping_mask");
+        assertThat(sql).contains("GROUP BY ROLLUP(instrument_type, currency)");
+        // the grand total row (both bits set) is the weight denominator
+        assertThat(sql).contains("JOIN grouped total ON total.grouping_mask = 3");
+        // per level: aggregated rows first, then by key, outermost level first
+        assertThat(sql).contains("ORDER BY (grouped.grouping_mask >> 1) & 1 DESC, grouped.instrument_type, "
+                + "(grouped.grouping_mask >> 0) & 1 DESC, grouped.currency");
+        // no base currency: a group that mixes currencies gets no sum
+        assertThat(sql).contains("CASE WHEN COUNT(DISTINCT value_ccy) <= 1 THEN SUM(value) END AS mkt_value");
+    }
+
+    @Test
+    void grouping_mask_sets_the_level_and_blanks_the_aggregated_keys() {
+        // rows in the order ORDER BY above returns them
+        row(null, null, 3, 5, 0, "900", null, null, null);                // total over USD and GBP
+        row("EQUITY", null, 1, 4, 0, "800", null, null, null);            // EQUITY in USD and GBP
+        row("EQUITY", "GBP", 0, 1, 0, "100", "200", "GBP", null);
+        row("EQUITY", "USD", 0, 3, 0, "700", "7000", "USD", null);
+        row("FUT", null, 1, 1, 1, "100", "0", "USD", null);               // FUT, one unconverted position
+        row("FUT", "USD", 0, 1, 1, "100", "0", "USD", null);
+
+        List<ExposureRowDTO> out = repository().findRollup(AS_OF, List.of("P-ALPHA"), List.of("type", "currency"), null);
+
+        assertThat(out).extracting(ExposureRowDTO::level).containsExactly(0, 1, 2, 2, 1, 2);
+        assertThat(out).extracting(ExposureRowDTO::instrumentType)
+                .containsExactly(null, "EQUITY", "EQUITY", "EQUITY", "FUT", "FUT");
+        assertThat(out).extracting(ExposureRowDTO::currency).containsExactly(null, null, "GBP", "USD", null, "USD");
+        assertThat(out).allSatisfy(r -> {
+            assertThat(r.strategy()).isNull();
+            assertThat(r.portfolio()).isNull();
+            assertThat(r.instrument()).isNull();
+        });
+        var total = out.get(0);
+        assertThat(total.mktValue()).isNull();
+        assertThat(total.mktValueCurrency()).isNull();
+        assertThat(total.unconvertedPositions()).isNull();
+        assertThat(out.get(3).mktValue()).isEqualByComparingTo("7000");
+        assertThat(out.get(3).mktValueCurrency()).isEqualTo("USD");
+        assertThat(out.get(4).unconvertedPositions()).isEqualTo(1);
+    }
+
+    @Test
+    void mask_bits_follow_the_requested_dimension_order() {
+        // groupBy currency, type: the low bit is type, so mask 1 is a currency subtotal
+        row("EQUITY", "USD", 1, 3, 0, "700", "7000", "USD", "1");
+
+        List<ExposureRowDTO> out = repository().findRollup(AS_OF, List.of("P-ALPHA"), List.of("currency", "type"), "USD");
+
+        assertThat(out.get(0).level()).isEqualTo(1);
+        assertThat(out.get(0).currency()).isEqualTo("USD");
+        assertThat(out.get(0).instrumentType()).isNull();
+        assertThat(out.get(0).weight()).isEqualByComparingTo("1");
+    }
+}
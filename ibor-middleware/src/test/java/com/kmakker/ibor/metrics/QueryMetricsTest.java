@@ -0,0 +1,116 @@
+package com.kmakker.ibor.metrics;
+
+import com.kmakker.ibor.jodi.JodiCorporateActionRepository;
+import com.kmakker.ibor.repositories.analytics.PortfolioReturnRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultConfiguration;
+import org.jooq.impl.DefaultExecuteListenerProvider;
+import org.jooq.tools.jdbc.MockConnection;
+import org.jooq.tools.jdbc.MockResult;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.DataAccessException;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+public class QueryMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final QueryMetrics metrics = new QueryMetrics(registry);
+
+    private Timer timer(String client, String query, String outcome) {
+        return registry.find("ibor.db.query").tags("client", client, "query", query, "outcome", outcome).timer();
+    }
+
+    private DistributionSummary summary(String name, String client, String query) {
+        return registry.find(name).tags("client", client, "query", query).summary();
+    }
+
+    @Test
+    void jooq_statements_are_timed_per_repository_method_with_rows_and_bytes() {
+        var code = DSL.field("instrument_code", String.class);
+        var exDate = DSL.field("ex_date", LocalDate.class);
+        var actionCode = DSL.field("action_code", String.class);
+        var factor = DSL.field("factor", BigDecimal.class);
+        var amount = DSL.field("amount", BigDecimal.class);
+        var priorClose = DSL.field("prior_close", BigDecimal.class);
+        var create = DSL.using(SQLDialect.POSTGRES);
+        var rows = create.newResult(code, exDate, actionCode, factor, amount, priorClose);
+        for (int i = 0; i < 3; i++) {
+            rows.add(create.newRecord(code, exDate, actionCode, factor, amount, priorClose)
+                    .values("EQ-WMT", LocalDate.parse("2025-06-02").plusDays(i), "SPLIT", new BigDecimal("3"), null, null));
+        }
+        var configuration = new DefaultConfiguration()
+                .set(new MockConnection(ctx -> new MockResult[]{new MockResult(rows.size(), rows)}))
+                .set(SQLDialect.POSTGRES)
+                .set(new DefaultExecuteListenerProvider(new JooqQueryMetricsListener(metrics)));
+
+        new JodiCorporateActionRepository(DSL.using(configuration)).findPriceAdjustmentsByCode(List.of("EQ-WMT"));
+
+        String query = "JodiCorporateActionRepository.findPriceAdjustmentsByCode";
+        assertThat(timer("jooq", query, "success").count()).isEqualTo(1);
+        assertThat(summary("ibor.db.query.rows", "jooq", query).totalAmount()).isEqualTo(3);
+        // per row: "EQ-WMT" 6 + date 8 + "SPLIT" 5 + BigDecimal 3 (8 + 1)
+        assertThat(summary("ibor.db.query.bytes", "jooq", query).totalAmount()).isEqualTo(3 * (6 + 8 + 5 + 9));
+    }
+
+    @Test
+    void jdbc_rows_are_counted_from_the_mapped_list() throws Exception {
+        var rs = Mockito.mock(ResultSet.class);
+        when(rs.next()).thenReturn(true, true, false);
+        when(rs.getDate("return_as_of_date")).thenReturn(Date.valueOf("2025-01-02"), Date.valueOf("2025-01-03"));
+        when(rs.getDouble("twrr")).thenReturn(0.01, -0.02);
+        var ps = Mockito.mock(PreparedStatement.class);
+        when(ps.executeQuery()).thenReturn(rs);
+        var template = new MeteredJdbcTemplate(dataSource(ps), metrics);
+
+        var daily = new PortfolioReturnRepository(template).findDailyReturns("P-ALPHA", "2025-01-01", "2025-01-31");
+
+        assertThat(daily).hasSize(2);
+        String query = "PortfolioReturnRepository.findDailyReturns";
+        assertThat(timer("jdbc", query, "success").count()).isEqualTo(1);
+        assertThat(summary("ibor.db.query.rows", "jdbc", query).totalAmount()).isEqualTo(2);
+        assertThat(summary("ibor.db.query.bytes", "jdbc", query)).isNull();
+    }
+
+    @Test
+    void failed_jdbc_queries_are_timed_as_errors_without_row_counts() throws Exception {
+        var ps = Mockito.mock(PreparedStatement.class);
+        when(ps.executeQuery()).thenThrow(new SQLException("canceling statement due to statement timeout", "57014"));
+        var template = new MeteredJdbcTemplate(dataSource(ps), metrics);
+
+        assertThatThrownBy(() -> new PortfolioReturnRepository(template)
+                .findDailyReturns("P-ALPHA", "2025-01-01", "2025-01-31"))
+                .isInstanceOf(DataAccessException.class);
+
+        String query = "PortfolioReturnRepository.findDailyReturns";
+        assertThat(timer("jdbc", query, "error").count()).isEqualTo(1);
+        assertThat(timer("jdbc", query, "success")).isNull();
+        assertThat(summary("ibor.db.query.rows", "jdbc", query)).isNull();
+    }
+
+    private static DataSource dataSource(PreparedStatement ps) throws Exception {
+        var ds = Mockito.mock(DataSource.class);
+        var conn = Mockito.mock(Connection.class);
+        when(ds.getConnection()).thenReturn(conn);
+        when(conn.prepareStatement(anyString())).thenReturn(ps);
+        return ds;
+    }
+}
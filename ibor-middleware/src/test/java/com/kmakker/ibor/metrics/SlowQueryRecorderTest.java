@@ -0,0 +1,89 @@
+package com.kmakker.ibor.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SlowQueryRecorderTest {
+
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(900);
+
+    private static DataSource explainingDataSource(Connection conn) throws Exception {
+        var ds = Mockito.mock(DataSource.class);
+        var st = Mockito.mock(Statement.class);
+        var ps = Mockito.mock(PreparedStatement.class);
+        var rs = Mockito.mock(ResultSet.class);
+        when(ds.getConnection()).thenReturn(conn);
+        when(conn.getAutoCommit()).thenReturn(true);
+        when(conn.createStatement()).thenReturn(st);
+        when(conn.prepareStatement(anyString())).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true, false);
+        when(rs.getString(1)).thenReturn("Seq Scan on fact_position_snapshot");
+        return ds;
+    }
+
+    @Test
+    void explains_slow_reads_with_their_binds_and_rolls_back() throws Exception {
+        var conn = Mockito.mock(Connection.class);
+        var recorder = new SlowQueryRecorder(explainingDataSource(conn), true, 500, 1.0, true, 5, 1000, Runnable::run);
+
+        assertThat(recorder.isSlow(TimeUnit.MILLISECONDS.toNanos(100))).isFalse();
+        assertThat(recorder.isSlow(SLOW)).isTrue();
+        recorder.onSlowQuery("JodiPositionsRepository.findPositions", "WITH p AS (SELECT 1) SELECT * FROM p WHERE d <= ?",
+                List.of(LocalDate.parse("2025-01-03")), SLOW);
+
+        SlowQueryPlan plan = recorder.forQuery("JodiPositionsRepository.findPositions").getFirst();
+        assertThat(plan.plan()).contains("Seq Scan");
+        assertThat(plan.bindValues()).containsExactly("2025-01-03");
+        assertThat(plan.elapsedMs()).isEqualTo(900);
+        verify(conn).prepareStatement("EXPLAIN (ANALYZE, BUFFERS) WITH p AS (SELECT 1) SELECT * FROM p WHERE d <= ?");
+        verify(conn).rollback();
+    }
+
+    @Test
+    void never_reruns_writes_and_keeps_only_the_last_plans() throws Exception {
+        var conn = Mockito.mock(Connection.class);
+        var recorder = new SlowQueryRecorder(explainingDataSource(conn), true, 500, 1.0, true, 2, 1000, Runnable::run);
+
+        for (int i = 0; i < 3; i++) {
+            recorder.onSlowQuery("Repo.update", "UPDATE ibor.t SET x = ?", List.of(i), SLOW);
+        }
+
+        List<SlowQueryPlan> plans = recorder.forQuery("Repo.update");
+        assertThat(plans).hasSize(2);
+        assertThat(plans.getFirst().bindValues()).containsExactly("2");
+        assertThat(plans.getFirst().plan()).isNull();
+        assertThat(plans.getFirst().error()).contains("only SELECT/WITH");
+        verify(conn, never()).prepareStatement(anyString());
+    }
+
+    @Test
+    void captures_show_bind_types_only_and_unsampled_reads_are_not_rerun() throws Exception {
+        var conn = Mockito.mock(Connection.class);
+        var recorder = new SlowQueryRecorder(explainingDataSource(conn), true, 500, 0.0, false, 5, 1000, Runnable::run);
+
+        recorder.onSlowQuery("JodiPositionsRepository.findPositions", "SELECT * FROM p WHERE code = ? AND d <= ?",
+                Arrays.asList("P-ALPHA", LocalDate.parse("2025-01-03"), null), SLOW);
+
+        SlowQueryPlan plan = recorder.forQuery("JodiPositionsRepository.findPositions").getFirst();
+        assertThat(plan.bindValues()).containsExactly("<String>", "<LocalDate>", "null");
+        assertThat(plan.error()).contains("not sampled");
+        verify(conn, never()).prepareStatement(anyString());
+    }
+}
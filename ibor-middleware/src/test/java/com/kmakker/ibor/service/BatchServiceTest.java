@@ -0,0 +1,118 @@
+package com.kmakker.ibor.service;
+
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.kmakker.ibor.dto.BatchItemRequest;
+import com.kmakker.ibor.dto.BatchItemResult;
+import com.kmakker.ibor.dto.BatchRequest;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.boot.web.context.WebServerInitializedEvent;
+import org.springframework.boot.web.server.WebServer;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+public class BatchServiceTest {
+
+    private static BatchItemResult answer(BatchItemRequest item) {
+        if (item.path().endsWith("/slow")) {
+            try {
+                Thread.sleep(5_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        int status = item.path().endsWith("/missing") ? 404 : 200;
+        return new BatchItemResult(item.id(), item.path(), status, TextNode.valueOf(item.path()), null, 0);
+    }
+
+    private static BatchItemRequest get(String id, String path) {
+        return new BatchItemRequest(id, path, Map.of());
+    }
+
+    @Test
+    void results_keep_request_order_with_per_item_failures() throws Exception {
+        try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+            var service = new BatchService(executor, BatchServiceTest::answer, 2_000, 10);
+
+            var response = service.execute(new BatchRequest(List.of(
+                    get("a", "/api/prices/EQ-AAPL"),
+                    get("b", "/actuator/env"),
+                    get("c", "/api/instruments/missing"),
+                    get("d", "/api/batch"),
+                    get("e", "/api/positions")), null));
+
+            assertThat(response.results()).extracting(BatchItemResult::id).containsExactly("a", "b", "c", "d", "e");
+            assertThat(response.results()).extracting(BatchItemResult::status).containsExactly(200, 400, 404, 400, 200);
+            assertThat(response.succeeded()).isEqualTo(2);
+            assertThat(response.failed()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    void items_still_running_at_the_deadline_are_reported_as_504() throws Exception {
+        try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+            var service = new BatchService(executor, BatchServiceTest::answer, 2_000, 10);
+
+            long start = System.nanoTime();
+            var response = service.execute(new BatchRequest(List.of(
+                    get("fast", "/api/prices/EQ-AAPL"),
+                    get("slow", "/api/prices/slow")), 200L));
+
+            assertThat(System.nanoTime() - start).isLessThan(2_000_000_000L);
+            assertThat(response.results()).extracting(BatchItemResult::status).containsExactly(200, 504);
+        }
+    }
+
+    @Test
+    void rejects_empty_oversized_or_over_deadline_batches() {
+        var service = new BatchService(Executors.newSingleThreadExecutor(), BatchServiceTest::answer, 1_000, 1);
+        assertThatThrownBy(() -> service.execute(new BatchRequest(List.of(), null)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.execute(new BatchRequest(
+                List.of(get("a", "/api/x"), get("b", "/api/y")), null)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.execute(new BatchRequest(List.of(get("a", "/api/x")), 5_000L)))
+                .isInstanceOf(IllegalArgumentException.class);
+        service.destroy();
+    }
+
+    @Test
+    void loopback_url_follows_the_application_server_not_the_management_server() {
+        var service = new BatchService(Executors.newSingleThreadExecutor(), BatchServiceTest::answer, 1_000, 1);
+        var env = new MockEnvironment()
+                .withProperty("server.servlet.context-path", "/ibor/")
+                .withProperty("server.ssl.enabled", "true");
+
+        service.onWebServerReady(event("management", 9090, env));
+        assertThat(service.baseUrl()).isNull();
+
+        service.onWebServerReady(event(null, 8443, env));
+        assertThat(service.baseUrl()).isEqualTo("https://localhost:8443/ibor");
+
+        service.onWebServerReady(event("management", 9090, new MockEnvironment()));
+        assertThat(service.baseUrl()).isEqualTo("https://localhost:8443/ibor");
+        assertThat(BatchService.baseUrl(false, 8080, "")).isEqualTo("http://localhost:8080");
+        service.destroy();
+    }
+
+    private static WebServerInitializedEvent event(String namespace, int port, MockEnvironment env) {
+        var context = Mockito.mock(WebServerApplicationContext.class);
+        when(context.getServerNamespace()).thenReturn(namespace);
+        when(context.getEnvironment()).thenReturn(env);
+        var server = Mockito.mock(WebServer.class);
+        when(server.getPort()).thenReturn(port);
+        var event = Mockito.mock(WebServerInitializedEvent.class);
+        when(event.getApplicationContext()).thenReturn(context);
+        when(event.getWebServer()).thenReturn(server);
+        return event;
+    }
+}
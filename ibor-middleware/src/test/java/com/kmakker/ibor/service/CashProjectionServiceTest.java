@@ -0,0 +1,141 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.dto.CashRowDTO;
+import com.kmakker.ibor.jodi.JodiCashLadderRepository;
+import com.kmakker.ibor.jodi.JodiCashLadderRepository.CashEvent;
+import com.kmakker.ibor.jodi.JodiCashLadderRepository.Entitlement;
+import com.kmakker.ibor.jodi.JodiCashLadderRepository.TradeFill;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+public class CashProjectionServiceTest {
+
+    private static final LocalDate TODAY = LocalDate.parse("2025-06-27");   // a Friday
+    private static final LocalDate FROM = TODAY.minusDays(30);
+    private static final LocalDateTime T0 = LocalDateTime.parse("2025-06-27T08:00:00");
+
+    private final JodiCashLadderRepository repository = Mockito.mock(JodiCashLadderRepository.class);
+    private final DataVersionService dataVersions = Mockito.mock(DataVersionService.class);
+    private final CashProjectionService service = new CashProjectionService(repository, dataVersions,
+            Clock.fixed(TODAY.atTime(9, 0).toInstant(ZoneOffset.UTC), ZoneOffset.UTC), true, true, 30);
+
+    @Test
+    void settlement_lag_counts_weekdays_only() {
+        assertThat(CashLadder.settlementDate(TODAY, 0)).isEqualTo(TODAY);
+        assertThat(CashLadder.settlementDate(TODAY, 1)).isEqualTo(LocalDate.parse("2025-06-30"));
+        assertThat(CashLadder.settlementDate(TODAY, 2)).isEqualTo(LocalDate.parse("2025-07-01"));
+        assertThat(CashLadder.settlementDate(LocalDate.parse("2025-06-28"), 1)).isEqualTo(LocalDate.parse("2025-06-30"));
+    }
+
+    @Test
+    void drivers_without_a_currency_get_their_own_bucket() {
+        CashLadder ladder = new CashLadder(0);
+        ladder.apply(List.of(
+                new CashLadder.Driver("CASH:1", "CASH", "P-ALPHA", "USD", TODAY, new BigDecimal("10"), "FEE"),
+                new CashLadder.Driver("CASH:2", "CASH", "P-ALPHA", null, TODAY, new BigDecimal("5"), "FEE"),
+                new CashLadder.Driver("CASH:3", "CASH", "P-ALPHA", null, TODAY, new BigDecimal("7"), "FEE")));
+
+        List<CashRowDTO> rows = ladder.rows(null, null, TODAY, TODAY, code -> 1);
+        assertThat(rows).extracting(CashRowDTO::ccy).containsExactly(null, "USD");
+        assertThat(rows.get(0).net()).isEqualByComparingTo("12");
+        assertThat(ladder.rows(null, "USD", TODAY, TODAY, code -> 1)).hasSize(1);
+    }
+
+    @Test
+    void changed_rows_move_only_between_their_buckets() {
+        TradeFill buy = new TradeFill("X1", "P-ALPHA", "EQ-A", "EQUITY", TODAY, new BigDecimal("-1000"), "USD", T0);
+        TradeFill fx = new TradeFill("X2", "P-ALPHA", "FX-EURUSD", "FX", TODAY, new BigDecimal("500"), "USD", T0);
+        CashEvent fee = new CashEvent(7, "P-ALPHA", LocalDate.parse("2025-06-30"), new BigDecimal("-25"),
+                "USD", "FEE", T0);
+        Entitlement dividend = new Entitlement(1, "P-ALPHA", "EQ-B", "DIV", LocalDate.parse("2025-07-01"),
+                new BigDecimal("40"), "USD");
+        when(dataVersions.etag("portfolio")).thenReturn(Optional.of("p1"));
+        when(dataVersions.etag("cash")).thenReturn(Optional.of("c1"));
+        when(dataVersions.etag("trade")).thenReturn(Optional.of("t1"));
+        when(dataVersions.etag("position", "corporate_action", "cash")).thenReturn(Optional.of("e1"));
+        when(repository.findPortfolioVids(TODAY)).thenReturn(Map.of("P-ALPHA", 3L));
+        when(repository.findCashEvents(FROM, null)).thenReturn(List.of(fee));
+        when(repository.findTradeFills(FROM, null)).thenReturn(List.of(buy, fx));
+        when(repository.findEntitlements(FROM)).thenReturn(List.of(dividend));
+        service.load();
+
+        List<CashRowDTO> rows = service.getProjection("P-ALPHA", "usd", null, null).rows();
+        assertThat(rows).extracting(CashRowDTO::valueDt)
+                .containsExactly(LocalDate.parse("2025-06-30"), LocalDate.parse("2025-07-01"));
+        assertThat(rows.get(0).net()).isEqualByComparingTo("-1025");   // T+1 buy and the fee
+        assertThat(rows.get(0).portfolioId()).isEqualTo(3);
+        assertThat(rows.get(1).net()).isEqualByComparingTo("540");     // T+2 FX and the dividend
+        assertThat(rows.get(1).drivers()).containsExactly("TRADE X2 FX-EURUSD 500", "DIV EQ-B 40");
+        String before = service.etag();
+
+        // nothing moved: no reads, same ETag
+        service.refreshIfChanged();
+        assertThat(service.etag()).isEqualTo(before);
+
+        // the buy is amended to a smaller fill; only rows since the watermark are read
+        LocalDateTime t1 = T0.plusMinutes(5);
+        when(dataVersions.etag("trade")).thenReturn(Optional.of("t2"));
+        when(repository.findTradeFills(FROM, T0)).thenReturn(List.of(
+                new TradeFill("X1", "P-ALPHA", "EQ-A", "EQUITY", TODAY, new BigDecimal("-600"), "USD", t1)));
+        when(repository.countSources(FROM)).thenReturn(new long[]{1, 2});
+        service.refreshIfChanged();
+
+        rows = service.getProjection("P-ALPHA", null, TODAY, null).rows();
+        assertThat(rows.get(0).net()).isEqualByComparingTo("-625");
+        assertThat(rows.get(1).net()).isEqualByComparingTo("540");
+        assertThat(service.etag()).isNotEqualTo(before);
+        verify(repository, times(1)).findCashEvents(any(), any());
+        verify(repository, times(1)).findEntitlements(FROM);
+
+        assertThatThrownBy(() -> service.getProjection(null, null, FROM.minusDays(1), null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void entitlements_are_not_read_unless_projected() {
+        CashProjectionService bookedOnly = new CashProjectionService(repository, dataVersions,
+                Clock.fixed(TODAY.atTime(9, 0).toInstant(ZoneOffset.UTC), ZoneOffset.UTC), true, false, 30);
+        CashEvent dividend = new CashEvent(7, "P-ALPHA", LocalDate.parse("2025-07-01"), new BigDecimal("40"),
+                "USD", "DIVIDEND", T0);
+        when(repository.findPortfolioVids(TODAY)).thenReturn(Map.of("P-ALPHA", 3L));
+        when(repository.findCashEvents(FROM, null)).thenReturn(List.of(dividend));
+        bookedOnly.load();
+
+        when(dataVersions.etag("position", "corporate_action", "cash")).thenReturn(Optional.of("e2"));
+        when(repository.countSources(FROM)).thenReturn(new long[]{1, 0});
+        bookedOnly.refreshIfChanged();
+
+        assertThat(bookedOnly.getProjection("P-ALPHA", null, null, null).rows())
+                .singleElement().satisfies(r -> assertThat(r.drivers()).containsExactly("DIVIDEND 40"));
+        verify(repository, never()).findEntitlements(any());
+    }
+
+    @Test
+    void requests_before_the_first_build_are_answered_503_without_building_on_the_request_thread() {
+        assertThatThrownBy(() -> service.getProjection("P-ALPHA", null, null, null))
+                .isInstanceOf(ResponseStatusException.class)
+                .extracting(e -> ((ResponseStatusException) e).getStatusCode())
+                .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        verifyNoInteractions(repository, dataVersions);
+    }
+}
@@ -0,0 +1,98 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.dto.PositionDTO;
+import com.kmakker.ibor.dto.PriceRowDTO;
+import com.kmakker.ibor.dto.TransactionDTO;
+import com.kmakker.ibor.jodi.JodiPositionsRepository;
+import com.kmakker.ibor.jodi.JodiPositionsRepository.RankedPositions;
+import com.kmakker.ibor.jodi.JodiPriceRepository;
+import com.kmakker.ibor.jodi.JodiTransactionLineageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ContextBundleServiceTest {
+
+    private static final LocalDate AS_OF = LocalDate.parse("2025-01-03");
+
+    private final JodiPositionsRepository positions = Mockito.mock(JodiPositionsRepository.class);
+    private final JodiTransactionLineageRepository lineage = Mockito.mock(JodiTransactionLineageRepository.class);
+    private final JodiPriceRepository prices = Mockito.mock(JodiPriceRepository.class);
+    private final ContextBundleService service = new ContextBundleService(positions, lineage, prices,
+            new RequestCoalescer(new SimpleMeterRegistry()), 3, Runnable::run);
+
+    private static PositionDTO position(String code, String mktValue) {
+        return new PositionDTO(AS_OF, AS_OF, "P-ALPHA", code, code, code, "EQUITY",
+                BigDecimal.TEN, BigDecimal.ONE, "BBG", new BigDecimal(mktValue), null, null, "USD", BigDecimal.ONE);
+    }
+
+    @Test
+    void drills_into_largest_absolute_market_values_with_one_batched_query_per_part() {
+        // ranked by the query, largest |market value| first
+        when(positions.findLargestPositions(AS_OF, "P-ALPHA", 3)).thenReturn(new RankedPositions(List.of(
+                position("EQ-IBM", "-500"), position("EQ-MSFT", "300"), position("EQ-AAPL", "100")),
+                3, new BigDecimal("-100")));
+        var trade = new TransactionDTO("TRADE", "T1", LocalDateTime.parse("2025-01-02T00:00"), "SELL",
+                BigDecimal.TEN.negate(), BigDecimal.ONE, BigDecimal.TEN.negate(), null, null, null);
+        when(lineage.fetchTransactionsForInstruments(AS_OF, "P-ALPHA", List.of("EQ-IBM", "EQ-MSFT")))
+                .thenReturn(Map.of("EQ-IBM", List.of(trade), "EQ-MSFT", List.of()));
+        var px = new PriceRowDTO(Instant.parse("2025-01-03T00:00:00Z"), BigDecimal.ONE, "USD", "BBG");
+        when(prices.findPricesForInstruments(List.of("EQ-IBM", "EQ-MSFT"), LocalDate.parse("2024-12-25"), AS_OF, null))
+                .thenReturn(Map.of("EQ-IBM", List.of(px), "EQ-MSFT", List.of(px)));
+
+        var bundle = service.getBundle("P-ALPHA", AS_OF, 2, 10, null);
+
+        assertThat(bundle.positions()).hasSize(3);
+        assertThat(bundle.truncated()).isFalse();
+        assertThat(bundle.totalMktValue()).isEqualByComparingTo("-100");
+        assertThat(bundle.priceFrom()).isEqualTo(LocalDate.parse("2024-12-25"));
+        assertThat(bundle.topPositions()).extracting("instrumentCode").containsExactly("EQ-IBM", "EQ-MSFT");
+        assertThat(bundle.topPositions().getFirst().transactions()).containsExactly(trade);
+        assertThat(bundle.priceHistory()).containsOnlyKeys("EQ-IBM", "EQ-MSFT");
+    }
+
+    @Test
+    void marks_the_bundle_truncated_when_the_portfolio_holds_more_than_the_cap() {
+        when(positions.findLargestPositions(AS_OF, "P-ALPHA", 3)).thenReturn(new RankedPositions(List.of(
+                position("EQ-IBM", "-500"), position("EQ-MSFT", "300"), position("EQ-AAPL", "100")),
+                5, new BigDecimal("-30")));
+        when(lineage.fetchTransactionsForInstruments(any(), any(), any())).thenReturn(Map.of());
+        when(prices.findPricesForInstruments(any(), any(), any(), any())).thenReturn(Map.of());
+
+        var bundle = service.getBundle("P-ALPHA", AS_OF, 1, null, null);
+
+        assertThat(bundle.truncated()).isTrue();
+        // totals cover the whole book, not the three positions returned
+        assertThat(bundle.totalPositions()).isEqualTo(5);
+        assertThat(bundle.totalMktValue()).isEqualByComparingTo("-30");
+        assertThat(bundle.positions()).extracting(PositionDTO::instrumentId)
+                .containsExactly("EQ-IBM", "EQ-MSFT", "EQ-AAPL");
+        assertThat(bundle.topPositions()).extracting("instrumentCode").containsExactly("EQ-IBM");
+    }
+
+    @Test
+    void rejects_out_of_range_arguments_before_querying() {
+        assertThatThrownBy(() -> service.getBundle("P-ALPHA", AS_OF, 0, null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.getBundle("P-ALPHA", AS_OF, null, 400, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.getBundle(" ", AS_OF, null, null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        verify(positions, never()).findLargestPositions(any(), any(), anyInt());
+    }
+}
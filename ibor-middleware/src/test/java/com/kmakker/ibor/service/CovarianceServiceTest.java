@@ -0,0 +1,220 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.dto.PositionDTO;
+import com.kmakker.ibor.jodi.JodiCorporateActionRepository;
+import com.kmakker.ibor.jodi.JodiCorporateActionRepository.PriceAdjustment;
+import com.kmakker.ibor.jodi.JodiPositionsRepository;
+import com.kmakker.ibor.jodi.JodiReturnHistoryRepository;
+import com.kmakker.ibor.jodi.JodiReturnHistoryRepository.DailyPrice;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+public class CovarianceServiceTest {
+
+    private static final LocalDate AS_OF = LocalDate.parse("2025-06-30");
+
+    private final JodiReturnHistoryRepository history = Mockito.mock(JodiReturnHistoryRepository.class);
+    private final JodiPositionsRepository positions = Mockito.mock(JodiPositionsRepository.class);
+    private final JodiCorporateActionRepository corporateActions = Mockito.mock(JodiCorporateActionRepository.class);
+    private final DataVersionService dataVersions = Mockito.mock(DataVersionService.class);
+    private final CovarianceService service = new CovarianceService(history,
+            new PriceAdjustmentService(corporateActions, dataVersions, 100), positions, dataVersions,
+            new RequestCoalescer(new SimpleMeterRegistry()), true, 0.9, 5, 100, 100, 100, 20000);
+
+    private static PositionDTO row(String code) {
+        return new PositionDTO(AS_OF, AS_OF, "P-ALPHA", code, code, code, "EQUITY", BigDecimal.ONE,
+                null, "BBG", BigDecimal.TEN, null, null, "USD", BigDecimal.ONE);
+    }
+
+    @Test
+    void incremental_updates_match_a_full_recomputation() {
+        Random rnd = new Random(3);
+        int n = 4, window = 5, t = 12;
+        double lambda = 0.9;
+        double[][] r = new double[t][n];
+        for (double[] v : r) for (int i = 0; i < n; i++) v[i] = rnd.nextGaussian() * 0.01;
+
+        RollingCovariance cov = new RollingCovariance(n, lambda, window);
+        for (double[] v : r) cov.add(v);
+        int[] all = {0, 1, 2, 3};
+        double[][] ewma = cov.covariance(all, true);
+        double[][] equal = cov.covariance(all, false);
+
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                double s = 0, w = 0;
+                for (int k = 0; k < t; k++) {
+                    double weight = (1 - lambda) * Math.pow(lambda, t - 1 - k);
+                    s += weight * r[k][i] * r[k][j];
+                    w += weight;
+                }
+                assertThat(ewma[i][j]).isCloseTo(s / w, within(1e-15));
+
+                double mi = 0, mj = 0;
+                for (int k = t - window; k < t; k++) { mi += r[k][i]; mj += r[k][j]; }
+                mi /= window;
+                mj /= window;
+                double c = 0;
+                for (int k = t - window; k < t; k++) c += (r[k][i] - mi) * (r[k][j] - mj);
+                assertThat(equal[i][j]).isCloseTo(c / (window - 1), within(1e-15));
+            }
+        }
+        assertThat(cov.windowObservations()).isEqualTo(window);
+        double[][] corr = RollingCovariance.correlation(equal);
+        assertThat(corr[1][1]).isEqualTo(1.0);
+        assertThat(corr[0][2]).isCloseTo(equal[0][2] / Math.sqrt(equal[0][0] * equal[2][2]), within(1e-12));
+    }
+
+    @Test
+    void new_price_days_are_appended_without_a_rebuild_and_served_per_portfolio() {
+        List<LocalDate> days = new ArrayList<>();
+        List<DailyPrice> prices = new ArrayList<>();
+        Random rnd = new Random(11);
+        double a = 100, b = 50;
+        for (int d = 0; d < 8; d++) {
+            LocalDate day = AS_OF.minusDays(8 - d);
+            days.add(day);
+            a *= 1 + rnd.nextGaussian() * 0.01;
+            b *= 1 + rnd.nextGaussian() * 0.01;
+            prices.add(new DailyPrice("EQ-A", day, a));
+            if (d != 3) prices.add(new DailyPrice("EQ-B", day, b));   // one gap, carried forward
+        }
+        List<DailyPrice> sorted = new ArrayList<>(prices);
+        sorted.sort((x, y) -> x.instrumentCode().equals(y.instrumentCode())
+                ? x.day().compareTo(y.day()) : x.instrumentCode().compareTo(y.instrumentCode()));
+
+        when(dataVersions.etag("price")).thenReturn(Optional.of("v1"));
+        when(history.findLatestPriceDay()).thenReturn(days.get(6));
+        when(history.findPriceDays(days.get(6), 101)).thenReturn(days.subList(0, 7));
+        when(history.findDailyPrices(days.get(0), days.get(6)))
+                .thenReturn(sorted.stream().filter(p -> !p.day().equals(days.get(7))).toList());
+        service.load();
+
+        // one more day arrives
+        when(dataVersions.etag("price")).thenReturn(Optional.of("v2"));
+        when(history.findLatestPriceDay()).thenReturn(days.get(7));
+        when(history.findDailyPrices(days.get(7), days.get(7)))
+                .thenReturn(sorted.stream().filter(p -> p.day().equals(days.get(7))).toList());
+        service.refreshIfChanged();
+        verify(history, never()).findPriceDays(days.get(7), 101);
+
+        when(positions.findPositions(AS_OF, "P-ALPHA", null, 1, 20000)).thenReturn(List.of(
+                row("EQ-B"), row("EQ-A"), row("EQ-NEW")));
+        var response = service.getCovariance("P-ALPHA", AS_OF, "equal", false);
+
+        // the same eight days replayed from scratch
+        RollingCovariance expected = new RollingCovariance(2, 0.9, 5);
+        double[] last = {Double.NaN, Double.NaN};
+        int[] lastDay = new int[2];
+        for (LocalDate day : days) {
+            double[] px = {Double.NaN, Double.NaN};
+            for (DailyPrice p : prices) {
+                if (p.day().equals(day)) px[p.instrumentCode().equals("EQ-A") ? 0 : 1] = p.price();
+            }
+            CovarianceService.step(expected, last, lastDay, px, (int) day.toEpochDay(),
+                    new PriceAdjustmentService.Factors[2], day != days.get(0));
+        }
+        double[][] want = expected.covariance(new int[]{0, 1}, false);
+
+        assertThat(response.priceDay()).isEqualTo(days.get(7));
+        assertThat(response.observations()).isEqualTo(5);
+        assertThat(response.instruments()).containsExactly("EQ-A", "EQ-B");
+        assertThat(response.missingInstruments()).containsExactly("EQ-NEW");
+        for (int i = 0; i < 2; i++) {
+            for (int j = 0; j < 2; j++) {
+                assertThat(response.matrix()[i][j]).isCloseTo(want[i][j], within(1e-15));
+            }
+        }
+        assertThat(service.getCovariance("P-ALPHA", AS_OF, null, true).matrix()[0][0]).isEqualTo(1.0);
+    }
+
+    @Test
+    void a_split_between_two_appended_prices_is_not_a_return() {
+        List<LocalDate> days = List.of(AS_OF.minusDays(3), AS_OF.minusDays(2), AS_OF.minusDays(1), AS_OF);
+        when(corporateActions.findInstrumentCodesWithActions(any(), any())).thenReturn(List.of("EQ-A"));
+        when(corporateActions.findPriceAdjustmentsByCode(any())).thenReturn(Map.of("EQ-A", List.of(
+                new PriceAdjustment(days.get(2), "SPLIT", new BigDecimal("3"), null, null))));
+        when(dataVersions.etag("price")).thenReturn(Optional.of("v1"));
+        when(history.findLatestPriceDay()).thenReturn(days.get(1));
+        when(history.findPriceDays(days.get(1), 101)).thenReturn(days.subList(0, 2));
+        when(history.findDailyPrices(days.get(0), days.get(1))).thenReturn(List.of(
+                new DailyPrice("EQ-A", days.get(0), 90),
+                new DailyPrice("EQ-A", days.get(1), 94.5)));      // +5%
+        service.load();
+
+        when(dataVersions.etag("price")).thenReturn(Optional.of("v2"));
+        when(history.findLatestPriceDay()).thenReturn(AS_OF);
+        when(history.findDailyPrices(days.get(2), AS_OF)).thenReturn(List.of(
+                new DailyPrice("EQ-A", days.get(2), 31.5),        // 3-for-1 split: flat
+                new DailyPrice("EQ-A", AS_OF, 33.075)));          // +5%
+        service.refreshIfChanged();
+        verify(history, never()).findPriceDays(AS_OF, 101);
+
+        when(positions.findPositions(AS_OF, "P-ALPHA", null, 1, 20000)).thenReturn(List.of(row("EQ-A")));
+        RollingCovariance expected = new RollingCovariance(1, 0.9, 5);
+        for (double r : new double[]{0.05, 0, 0.05}) expected.add(new double[]{r});
+        assertThat(service.getCovariance("P-ALPHA", AS_OF, "equal", false).matrix()[0][0])
+                .isCloseTo(expected.covariance(new int[]{0}, false)[0][0], within(1e-15));
+    }
+
+    @Test
+    void etag_follows_the_published_state_not_the_live_versions() {
+        List<LocalDate> days = List.of(AS_OF.minusDays(1), AS_OF);
+        when(dataVersions.etag("price")).thenReturn(Optional.of("v1"));
+        when(dataVersions.etag("position:P-ALPHA", "portfolio")).thenReturn(Optional.of("p1"));
+        when(history.findLatestPriceDay()).thenReturn(days.get(0));
+        when(history.findPriceDays(days.get(0), 101)).thenReturn(days.subList(0, 1));
+        when(history.findDailyPrices(days.get(0), days.get(0))).thenReturn(List.of(
+                new DailyPrice("EQ-A", days.get(0), 100)));
+        assertThat(service.etag("P-ALPHA")).isNull();
+        service.load();
+        String loaded = service.etag("P-ALPHA");
+        assertThat(loaded).startsWith("W/\"");
+
+        // a price load lands in the database; the matrix has not been refreshed yet
+        when(dataVersions.etag("price")).thenReturn(Optional.of("v2"));
+        when(dataVersions.etag("corporate_action")).thenReturn(Optional.of("a2"));
+        assertThat(service.etag("P-ALPHA")).isEqualTo(loaded);
+
+        when(history.findLatestPriceDay()).thenReturn(AS_OF);
+        when(history.findPriceDays(AS_OF, 101)).thenReturn(days);
+        when(history.findDailyPrices(days.get(0), AS_OF)).thenReturn(List.of(
+                new DailyPrice("EQ-A", days.get(0), 100), new DailyPrice("EQ-A", AS_OF, 101)));
+        service.refreshIfChanged();
+        String swapped = service.etag("P-ALPHA");
+        assertThat(swapped).isNotEqualTo(loaded);
+
+        // the portfolio's positions move on their own
+        when(dataVersions.etag("position:P-ALPHA", "portfolio")).thenReturn(Optional.of("p2"));
+        assertThat(service.etag("P-ALPHA")).isNotEqualTo(swapped);
+    }
+
+    @Test
+    void requests_before_the_first_build_are_answered_503_without_building_on_the_request_thread() {
+        assertThatThrownBy(() -> service.getCovariance("P-ALPHA", AS_OF, null, false))
+                .isInstanceOf(ResponseStatusException.class)
+                .extracting(e -> ((ResponseStatusException) e).getStatusCode())
+                .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        verifyNoInteractions(history, dataVersions);
+    }
+}
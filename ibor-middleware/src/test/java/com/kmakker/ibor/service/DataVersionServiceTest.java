@@ -0,0 +1,48 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.jodi.JodiDataVersionRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+public class DataVersionServiceTest {
+
+    @Test
+    void etag_moves_only_with_the_scopes_it_covers() {
+        var repo = Mockito.mock(JodiDataVersionRepository.class);
+        when(repo.findAll()).thenReturn(Map.of("position:P-ALPHA", 11L, "position:P-BETA", 21L, "price", 31L));
+        var service = new DataVersionService(repo, true);
+
+        assertThat(service.etag("position:P-ALPHA", "price")).isEmpty();   // not loaded yet
+        service.refresh();
+        String alpha = service.etag("position:P-ALPHA", "price").orElseThrow();
+        assertThat(alpha).startsWith("W/\"").endsWith("\"");
+        assertThat(service.etag("position:P-ALPHA", "price")).contains(alpha);
+
+        // another portfolio's load leaves P-ALPHA's tag alone; a price load changes it
+        when(repo.findAll()).thenReturn(Map.of("position:P-ALPHA", 11L, "position:P-BETA", 22L, "price", 31L));
+        service.refresh();
+        assertThat(service.etag("position:P-ALPHA", "price")).contains(alpha);
+
+        when(repo.findAll()).thenReturn(Map.of("position:P-ALPHA", 11L, "position:P-BETA", 22L, "price", 32L));
+        service.refresh();
+        assertThat(service.etag("position:P-ALPHA", "price")).isPresent().get().isNotEqualTo(alpha);
+    }
+
+    @Test
+    void keeps_last_versions_when_refresh_fails() {
+        var repo = Mockito.mock(JodiDataVersionRepository.class);
+        when(repo.findAll()).thenReturn(Map.of("instrument", 5L));
+        var service = new DataVersionService(repo, true);
+        service.refresh();
+        String before = service.etag("instrument").orElseThrow();
+
+        when(repo.findAll()).thenThrow(new IllegalStateException("db down"));
+        service.refresh();
+        assertThat(service.etag("instrument")).contains(before);
+    }
+}
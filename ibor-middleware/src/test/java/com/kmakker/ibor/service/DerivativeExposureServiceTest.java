@@ -0,0 +1,111 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.jodi.JodiDerivativeExposureRepository;
+import com.kmakker.ibor.jodi.JodiDerivativeExposureRepository.DerivativeInput;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.when;
+
+public class DerivativeExposureServiceTest {
+
+    private static final LocalDate AS_OF = LocalDate.parse("2025-06-30");
+
+    private final JodiDerivativeExposureRepository repo = Mockito.mock(JodiDerivativeExposureRepository.class);
+    private final DataVersionService dataVersions = Mockito.mock(DataVersionService.class);
+    private final DerivativeExposureService service = new DerivativeExposureService(repo, dataVersions,
+            new RequestCoalescer(new SimpleMeterRegistry()), 0.04, 0.25, 1000);
+
+    private static OptionGreeks.Book book(double s, double k, double t, double r, double b, double vol, boolean call) {
+        var book = new OptionGreeks.Book(1);
+        book.spot[0] = s;
+        book.strike[0] = k;
+        book.years[0] = t;
+        book.rate[0] = r;
+        book.carry[0] = b;
+        book.vol[0] = vol;
+        book.call[0] = call;
+        OptionGreeks.price(book);
+        return book;
+    }
+
+    // Hull, Options Futures and Other Derivatives, example 15.6: S=42 K=40 r=10% vol=20% T=0.5
+    @Test
+    void black_scholes_matches_reference_values_and_parity() {
+        var call = book(42, 40, 0.5, 0.10, 0.10, 0.20, true);
+        var put = book(42, 40, 0.5, 0.10, 0.10, 0.20, false);
+
+        assertThat(call.value[0]).isCloseTo(4.7594, within(1e-4));
+        assertThat(put.value[0]).isCloseTo(0.8086, within(1e-4));
+        assertThat(call.value[0] - put.value[0]).isCloseTo(42 - 40 * Math.exp(-0.05), within(1e-10));
+        assertThat(call.delta[0] - put.delta[0]).isCloseTo(1, within(1e-12));
+        assertThat(call.gamma[0]).isCloseTo(put.gamma[0], within(1e-12));
+    }
+
+    @Test
+    void greeks_agree_with_finite_differences_for_black_76() {
+        double s = 100, k = 95, t = 0.75, r = 0.03, vol = 0.3, h = 1e-3;
+        var base = book(s, k, t, r, 0, vol, false);
+        double up = book(s + h, k, t, r, 0, vol, false).value[0];
+        double down = book(s - h, k, t, r, 0, vol, false).value[0];
+
+        assertThat(base.delta[0]).isCloseTo((up - down) / (2 * h), within(1e-6));
+        assertThat(base.gamma[0]).isCloseTo((up - 2 * base.value[0] + down) / (h * h), within(1e-4));
+        double volUp = book(s, k, t, r, 0, vol + 1e-4, false).value[0];
+        double volDown = book(s, k, t, r, 0, vol - 1e-4, false).value[0];
+        assertThat(base.vega[0]).isCloseTo((volUp - volDown) / 2e-4 / 100, within(1e-6));
+        double rateUp = book(s, k, t, r + 1e-5, 0, vol, false).value[0];
+        double rateDown = book(s, k, t, r - 1e-5, 0, vol, false).value[0];
+        assertThat(base.rho[0]).isCloseTo((rateUp - rateDown) / 2e-5 / 100, within(1e-6));
+        double later = book(s, k, t - 1.0 / 365, r, 0, vol, false).value[0];
+        assertThat(base.theta[0]).isCloseTo(later - base.value[0], within(1e-3));
+    }
+
+    @Test
+    void implied_vol_recovers_the_pricing_vol() {
+        double value = book(230, 200, 1.2, 0.04, 0.035, 0.37, false).value[0];
+        assertThat(OptionGreeks.impliedVol(value, 230, 200, 1.2, 0.04, 0.035, false)).isCloseTo(0.37, within(1e-8));
+        assertThat(OptionGreeks.impliedVol(0.0001, 230, 100, 1.2, 0.04, 0.035, true)).isNaN();   // below intrinsic
+    }
+
+    @Test
+    void futures_are_linear_and_option_greeks_are_cached_per_data_version() {
+        var option = new DerivativeInput("OPT-AAPL-C", "OPT", "USD", new BigDecimal("10"), new BigDecimal("100"),
+                new BigDecimal("15"), "CALL", new BigDecimal("230"), AS_OF.plusDays(365),
+                "EQ-AAPL", "EQUITY", new BigDecimal("210"), new BigDecimal("0.005"));
+        var future = new DerivativeInput("FUT-ESM6", "FUT", "USD", new BigDecimal("5"), new BigDecimal("50"),
+                new BigDecimal("6000"), null, null, AS_OF.plusDays(90), null, null, null, null);
+        when(repo.findDerivativePositions("P-ALPHA", AS_OF)).thenReturn(List.of(future, option));
+        when(dataVersions.etag("price", "instrument")).thenReturn(Optional.of("W/\"1\""));
+
+        var first = service.getExposure("P-ALPHA", AS_OF);
+        var fut = first.positions().get(0);
+        var opt = first.positions().get(1);
+
+        assertThat(fut.model()).isEqualTo("LINEAR");
+        assertThat(fut.deltaNotional()).isEqualByComparingTo("1500000");
+        assertThat(opt.model()).isEqualTo("BLACK_SCHOLES");
+        assertThat(opt.volatilitySource()).isEqualTo("IMPLIED");
+        assertThat(opt.delta()).isBetween(0.0, 1.0);
+        assertThat(opt.marketValue()).isEqualByComparingTo("15000");
+        assertThat(opt.deltaNotional().doubleValue()).isCloseTo(1000 * 210 * opt.delta(), within(0.01));
+        assertThat(first.deltaNotionalByCurrency().get("USD"))
+                .isEqualByComparingTo(fut.deltaNotional().add(opt.deltaNotional()));
+        assertThat(service.cachedGreeks()).isEqualTo(1);
+
+        service.getExposure("P-ALPHA", AS_OF);
+        assertThat(service.cachedGreeks()).isEqualTo(1);
+
+        when(dataVersions.etag("price", "instrument")).thenReturn(Optional.of("W/\"2\""));
+        assertThat(service.getExposure("P-ALPHA", AS_OF).positions().get(1).delta()).isEqualTo(opt.delta());
+        assertThat(service.cachedGreeks()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,141 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.jodi.JodiFirmExposureRepository;
+import com.kmakker.ibor.jodi.JodiFirmExposureRepository.Quantity;
+import com.kmakker.ibor.jodi.JodiFirmExposureRepository.Valuation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FirmExposureServiceTest {
+
+    private static final LocalDate AS_OF = LocalDate.parse("2025-06-30");
+
+    private final JodiFirmExposureRepository repo = Mockito.mock(JodiFirmExposureRepository.class);
+
+    private FirmExposureService service(int parallelism) {
+        return new FirmExposureService(repo, new RequestCoalescer(new SimpleMeterRegistry()),
+                parallelism, Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    @Test
+    void sums_each_instrument_across_partitions_in_base_currency() {
+        when(repo.findPortfolioVids(AS_OF)).thenReturn(LongStream.rangeClosed(1, 200).boxed().toList());
+        when(repo.fetchValuationSnapshot(AS_OF, "USD", null)).thenReturn(List.of(
+                new Valuation(10, "EQ-IBM", "EQUITY", bd("100"), bd("1"), bd("1"), true),
+                new Valuation(20, "FUT-ES", "FUT", bd("5000"), bd("50"), bd("1"), true),
+                new Valuation(30, "EQ-VOD", "EQUITY", bd("2"), bd("1"), bd("1.25"), true),
+                new Valuation(40, "EQ-JPN", "EQUITY", bd("1000"), bd("1"), bd("0"), false)));
+        when(repo.fetchQuantities(eq(AS_OF), any(long[].class), eq(null))).thenAnswer(inv -> {
+            long[] vids = inv.getArgument(1);
+            List<Quantity> rows = new ArrayList<>();
+            for (long vid : vids) {
+                rows.add(new Quantity(vid, 10, BigDecimal.valueOf(10)));
+                rows.add(new Quantity(vid, 30, BigDecimal.valueOf(-100)));
+                if (vid % 2 == 0) rows.add(new Quantity(vid, 40, BigDecimal.valueOf(1)));
+                if (vid == 7) rows.add(new Quantity(vid, 20, BigDecimal.valueOf(1)));
+                if (vid == 9) rows.add(new Quantity(vid, 99, BigDecimal.valueOf(1)));   // instrument version not valid on the date
+            }
+            return rows;
+        });
+
+        var response = service(8).getFirmExposure(AS_OF, "usd", " ", 2);
+
+        assertThat(response.baseCurrency()).isEqualTo("USD");
+        assertThat(response.portfolios()).isEqualTo(200);
+        assertThat(response.positions()).isEqualTo(200 + 200 + 100 + 1);
+        assertThat(response.unconvertedPositions()).isEqualTo(100);
+        assertThat(response.exposures()).extracting(e -> e.instrumentCode()).containsExactly("FUT-ES", "EQ-IBM");
+        var es = response.exposures().get(0);
+        assertThat(es.portfolios()).isEqualTo(1);
+        assertThat(es.mktValue()).isEqualByComparingTo("250000");
+        var ibm = response.exposures().get(1);
+        assertThat(ibm.portfolios()).isEqualTo(200);
+        assertThat(ibm.quantity()).isEqualByComparingTo("2000");
+        assertThat(ibm.mktValue()).isEqualByComparingTo("200000");
+        assertThat(response.netExposure()).isEqualByComparingTo("400000");    // 250000 + 200000 - 50000
+        assertThat(response.grossExposure()).isEqualByComparingTo("500000");
+        assertThat(ibm.weight()).isEqualByComparingTo("0.4");
+        verify(repo, Mockito.times(8)).fetchQuantities(eq(AS_OF), any(long[].class), eq(null));
+    }
+
+    @Test
+    void firm_wide_sums_are_exact_at_scale_6() {
+        // 300 x 123456789.123457 x 98765.4321 is about 3.7e15: a double keeps roughly one decimal there
+        BigDecimal qty = new BigDecimal("123456789.123457");
+        BigDecimal price = new BigDecimal("98765.4321");
+        when(repo.findPortfolioVids(AS_OF)).thenReturn(LongStream.rangeClosed(1, 300).boxed().toList());
+        when(repo.fetchValuationSnapshot(AS_OF, "USD", null)).thenReturn(List.of(
+                new Valuation(10, "EQ-BRK", "EQUITY", price, BigDecimal.ONE, BigDecimal.ONE, true)));
+        when(repo.fetchQuantities(eq(AS_OF), any(long[].class), eq(null))).thenAnswer(inv -> {
+            List<Quantity> rows = new ArrayList<>();
+            for (long vid : (long[]) inv.getArgument(1)) rows.add(new Quantity(vid, 10, qty));
+            return rows;
+        });
+
+        var response = service(7).getFirmExposure(AS_OF, "USD", null, null);
+
+        BigDecimal expected = qty.multiply(price).multiply(BigDecimal.valueOf(300)).setScale(6, RoundingMode.HALF_UP);
+        assertThat(response.exposures().get(0).mktValue()).isEqualTo(expected);
+        assertThat(response.exposures().get(0).quantity()).isEqualTo(qty.multiply(BigDecimal.valueOf(300)).setScale(6));
+        assertThat(response.netExposure()).isEqualTo(expected);
+        assertThat(response.exposures().get(0).weight()).isEqualByComparingTo("1");
+    }
+
+    @Test
+    void partitions_are_round_robin_and_cover_every_portfolio_once() {
+        var parts = FirmExposureService.partition(LongStream.rangeClosed(1, 7).boxed().toList(), 3);
+
+        assertThat(parts).hasSize(3);
+        assertThat(parts.get(0)).containsExactly(1, 4, 7);
+        assertThat(parts.get(1)).containsExactly(2, 5);
+        assertThat(parts.get(2)).containsExactly(3, 6);
+        assertThat(FirmExposureService.partition(List.of(1L, 2L), 8)).hasSize(2);
+    }
+
+    @Test
+    void validates_before_querying() {
+        var service = service(2);
+        assertThatThrownBy(() -> service.getFirmExposure(null, null, null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.getFirmExposure(AS_OF, "DOLLARS", null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.getFirmExposure(AS_OF, null, null, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        verify(repo, never()).findPortfolioVids(any());
+    }
+
+    @Test
+    void answers_503_when_the_partition_queue_is_full() {
+        when(repo.findPortfolioVids(AS_OF)).thenReturn(List.of(1L, 2L));
+        var full = new FirmExposureService(repo, new RequestCoalescer(new SimpleMeterRegistry()), 2,
+                task -> { throw new RejectedExecutionException("queue full"); });
+
+        assertThatThrownBy(() -> full.getFirmExposure(AS_OF, "USD", null, null))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode().value()).isEqualTo(503));
+        verify(repo, never()).fetchQuantities(any(), any(), any());
+    }
+
+    private static BigDecimal bd(String v) {
+        return new BigDecimal(v);
+    }
+}
@@ -0,0 +1,184 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.dto.PositionDTO;
+import com.kmakker.ibor.intern.CodeDictionaries;
+import com.kmakker.ibor.jodi.JodiCorporateActionRepository;
+import com.kmakker.ibor.jodi.JodiCorporateActionRepository.PriceAdjustment;
+import com.kmakker.ibor.jodi.JodiFxRateRepository;
+import com.kmakker.ibor.jodi.JodiPositionsRepository;
+import com.kmakker.ibor.jodi.JodiReturnHistoryRepository;
+import com.kmakker.ibor.jodi.JodiReturnHistoryRepository.DailyPrice;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class HistoricalVarServiceTest {
+
+    private static final LocalDate AS_OF = LocalDate.parse("2025-06-30");
+
+    private final JodiReturnHistoryRepository history = Mockito.mock(JodiReturnHistoryRepository.class);
+    private final JodiPositionsRepository positions = Mockito.mock(JodiPositionsRepository.class);
+    private final JodiFxRateRepository fx = Mockito.mock(JodiFxRateRepository.class);
+    private final JodiCorporateActionRepository corporateActions = Mockito.mock(JodiCorporateActionRepository.class);
+    private final DataVersionService dataVersions = Mockito.mock(DataVersionService.class);
+    private final PriceAdjustmentService adjustments = new PriceAdjustmentService(corporateActions, dataVersions, 100);
+    private final HistoricalVarService service = new HistoricalVarService(history, adjustments, positions, fx,
+            new CodeDictionaries(), dataVersions, new RequestCoalescer(new SimpleMeterRegistry()), 20000, 16, 4);
+
+    @AfterEach
+    void shutdown() {
+        service.destroy();
+    }
+
+    private static PositionDTO row(String code, String mktValue) {
+        return new PositionDTO(AS_OF, AS_OF, "P-ALPHA", code, code, code, "EQUITY", BigDecimal.ONE,
+                null, "BBG", new BigDecimal(mktValue), null, null, "USD", BigDecimal.ONE);
+    }
+
+    @Test
+    void return_matrix_carries_prices_forward_and_holds_flat_before_the_first_price() {
+        List<LocalDate> days = List.of(AS_OF.minusDays(3), AS_OF.minusDays(2), AS_OF.minusDays(1), AS_OF);
+        var matrix = new ReturnMatrix(days, List.of(
+                new DailyPrice("A", days.get(0), 100),
+                new DailyPrice("A", days.get(1), 110),
+                new DailyPrice("A", days.get(3), 99),      // day 2 missing: 110 carried forward
+                new DailyPrice("B", days.get(2), 50),      // first priced on day 2
+                new DailyPrice("B", days.get(3), 55)), Map.of());
+
+        assertThat(matrix.scenarios()).isEqualTo(3);
+        assertThat(matrix.scenarioDay(0)).isEqualTo(days.get(1));
+        int a = matrix.column("A"), b = matrix.column("B"), w = matrix.width();
+        assertThat(matrix.column("C")).isEqualTo(-1);
+        double[] r = matrix.returns();
+        assertThat(r[a]).isCloseTo(0.10, within(1e-12));
+        assertThat(r[w + a]).isZero();
+        assertThat(r[2 * w + a]).isCloseTo(-0.10, within(1e-12));
+        assertThat(r[b]).isZero();
+        assertThat(r[w + b]).isZero();
+        assertThat(r[2 * w + b]).isCloseTo(0.10, within(1e-12));
+    }
+
+    @Test
+    void return_matrix_adjusts_prices_across_a_split_in_the_window() {
+        List<LocalDate> days = List.of(AS_OF.minusDays(2), AS_OF.minusDays(1), AS_OF);
+        when(corporateActions.findInstrumentCodesWithActions(days.get(0), AS_OF)).thenReturn(List.of("EQ-WMT"));
+        when(corporateActions.findPriceAdjustmentsByCode(any())).thenReturn(Map.of("EQ-WMT", List.of(
+                new PriceAdjustment(AS_OF.minusDays(1), "SPLIT", new BigDecimal("3"), null, null))));
+
+        var matrix = new ReturnMatrix(days, List.of(
+                new DailyPrice("EQ-WMT", days.get(0), 90),
+                new DailyPrice("EQ-WMT", days.get(1), 31.5),     // 3-for-1 split, up 5% on the day
+                new DailyPrice("EQ-WMT", AS_OF, 30)), adjustments.factorsBetween(days.get(0), AS_OF));
+
+        int c = matrix.column("EQ-WMT"), w = matrix.width();
+        assertThat(matrix.returns()[c]).isCloseTo(0.05, within(1e-12));
+        assertThat(matrix.returns()[w + c]).isCloseTo(30 / 31.5 - 1, within(1e-12));
+    }
+
+    @Test
+    void var_and_expected_shortfall_come_from_the_loss_tail_and_the_matrix_is_cached() {
+        // 21 price days -> 20 returns of -10%, -9%, ..., +9%
+        List<LocalDate> days = new ArrayList<>();
+        List<DailyPrice> prices = new ArrayList<>();
+        double price = 100;
+        for (int d = 0; d <= 20; d++) {
+            LocalDate day = AS_OF.minusDays(20 - d);
+            days.add(day);
+            if (d > 0) price *= 1 + (d - 11) / 100.0;
+            prices.add(new DailyPrice("EQ-IBM", day, price));
+        }
+        when(history.findPriceDays(AS_OF, 21)).thenReturn(days);
+        when(history.findDailyPrices(days.get(0), AS_OF)).thenReturn(prices);
+        when(dataVersions.etag("price", "corporate_action")).thenReturn(Optional.of("\"v1\""));
+        when(positions.findPositions(AS_OF, "P-ALPHA", null, 1, 20001)).thenReturn(List.of(
+                row("EQ-IBM", "1000"), row("EQ-NEW", "500")));
+        when(fx.findFxRatesAtOrBefore(any(), any(), any())).thenReturn(List.of());
+        when(fx.currencyExists("USD")).thenReturn(true);
+
+        var response = service.getVar("P-ALPHA", AS_OF, 20, List.of(0.95, 0.9), null);
+
+        assertThat(response.observations()).isEqualTo(20);
+        assertThat(response.positionValue()).isCloseTo(1500, within(1e-9));
+        assertThat(response.unmodelledInstruments()).isEqualTo(1);
+        assertThat(response.truncated()).isNull();
+        var var95 = response.measures().get(0);
+        assertThat(var95.var()).isCloseTo(90, within(1e-6));                     // 2nd worst of 20
+        assertThat(var95.expectedShortfall()).isCloseTo(95, within(1e-6));       // mean of worst 2
+        var var90 = response.measures().get(1);
+        assertThat(var90.var()).isCloseTo(80, within(1e-6));
+        assertThat(var90.expectedShortfall()).isCloseTo(90, within(1e-6));
+        assertThat(response.minPnl()).isCloseTo(-100, within(1e-6));
+        assertThat(response.worstScenarios().get(0).day()).isEqualTo(days.get(1));
+
+        service.getVar("P-ALPHA", AS_OF, 20, null, null);
+        verify(history, times(1)).findDailyPrices(any(), any());
+        assertThat(service.cachedMatrices()).isEqualTo(1);
+    }
+
+    @Test
+    void flags_books_larger_than_max_lines_as_truncated() {
+        HistoricalVarService small = new HistoricalVarService(history, adjustments, positions, fx, new CodeDictionaries(),
+                dataVersions, new RequestCoalescer(new SimpleMeterRegistry()), 1, 16, 1);
+        try {
+            List<LocalDate> days = List.of(AS_OF.minusDays(1), AS_OF);
+            when(history.findPriceDays(AS_OF, 3)).thenReturn(days);
+            when(history.findDailyPrices(days.get(0), AS_OF)).thenReturn(List.of(
+                    new DailyPrice("EQ-A", days.get(0), 100), new DailyPrice("EQ-A", AS_OF, 90),
+                    new DailyPrice("EQ-B", days.get(0), 100), new DailyPrice("EQ-B", AS_OF, 50)));
+            when(positions.findPositions(AS_OF, "P-ALPHA", null, 1, 2)).thenReturn(List.of(
+                    row("EQ-A", "1000"), row("EQ-B", "1000")));
+            when(fx.currencyExists("USD")).thenReturn(true);
+
+            var response = small.getVar("P-ALPHA", AS_OF, 2, null, null);
+
+            assertThat(response.truncated()).isTrue();
+            assertThat(response.lines()).isEqualTo(1);
+            assertThat(response.minPnl()).isCloseTo(-100, within(1e-9));
+        } finally {
+            small.destroy();
+        }
+    }
+
+    @Test
+    void parallel_revaluation_matches_the_naive_sum() {
+        Random rnd = new Random(7);
+        int scenarios = 1000, width = 3000, n = 2000;
+        double[] returns = new double[scenarios * width];
+        for (int i = 0; i < returns.length; i++) returns[i] = rnd.nextGaussian() * 0.02;
+        int[] columns = new int[n];
+        double[] values = new double[n];
+        for (int k = 0; k < n; k++) {
+            columns[k] = rnd.nextInt(width);
+            values[k] = rnd.nextDouble() * 1e6 - 5e5;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            double[] pnl = HistoricalVarEngine.pnl(returns, width, scenarios, columns, values, pool);
+            for (int t = 0; t < scenarios; t += 97) {
+                double expected = 0;
+                for (int k = 0; k < n; k++) expected += values[k] * returns[t * width + columns[k]];
+                assertThat(pnl[t]).isCloseTo(expected, within(1e-6));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
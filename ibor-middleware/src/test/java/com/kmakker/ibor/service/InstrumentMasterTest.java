@@ -0,0 +1,75 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.jodi.JodiInstrumentRepository;
+import com.kmakker.ibor.model.instrument.Equity;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class InstrumentMasterTest {
+
+    private static Equity ibm(String name, String from, String to) {
+        return new Equity("EQ-IBM", "EQUITY", Optional.of(name), Optional.of("XNYS"), Optional.of("USD"),
+                LocalDate.parse(from), LocalDate.parse(to));
+    }
+
+    @Test
+    void findAsOf_picks_the_version_valid_on_the_date() {
+        var repo = Mockito.mock(JodiInstrumentRepository.class);
+        when(repo.fetchVersionWatermark()).thenReturn("2|w1");
+        when(repo.findAllVersions()).thenReturn(List.of(
+                ibm("IBM v1", "2024-01-01", "2024-12-31"),
+                ibm("IBM v2", "2025-01-01", "9999-12-31")));
+
+        var master = new InstrumentMaster(repo, true);
+        master.load();
+
+        assertThat(master.isLoaded()).isTrue();
+        assertThat(master.findAsOf("EQ-IBM", LocalDate.parse("2023-12-31"))).isEmpty();
+        assertThat(master.findAsOf("EQ-IBM", LocalDate.parse("2024-12-31")).orElseThrow().instrumentName())
+                .contains("IBM v1");
+        assertThat(master.findAsOf("EQ-IBM", LocalDate.parse("2025-01-01")).orElseThrow().instrumentName())
+                .contains("IBM v2");
+        assertThat(master.findAsOf("EQ-MSFT", LocalDate.parse("2025-01-01"))).isEmpty();
+    }
+
+    @Test
+    void refresh_reloads_only_when_watermark_moves() {
+        var repo = Mockito.mock(JodiInstrumentRepository.class);
+        when(repo.fetchVersionWatermark()).thenReturn("1|w1");
+        when(repo.findAllVersions()).thenReturn(List.of(ibm("IBM v1", "2024-01-01", "9999-12-31")));
+
+        var master = new InstrumentMaster(repo, true);
+        master.load();
+        master.refreshIfChanged();
+        verify(repo, times(1)).findAllVersions();
+
+        when(repo.fetchVersionWatermark()).thenReturn("2|w2");
+        master.refreshIfChanged();
+        verify(repo, times(2)).findAllVersions();
+    }
+
+    @Test
+    void service_falls_back_to_repository_when_master_not_loaded() {
+        var repo = Mockito.mock(JodiInstrumentRepository.class);
+        when(repo.fetchVersionWatermark()).thenThrow(new IllegalStateException("db down"));
+        var asOf = LocalDate.parse("2025-01-02");
+        when(repo.findByCodeAsOf("EQ-IBM", asOf)).thenReturn(Optional.of(ibm("IBM", "2024-01-01", "9999-12-31")));
+
+        var master = new InstrumentMaster(repo, true);
+        master.load();
+        var service = new InstrumentService(repo, master);
+
+        assertThat(master.isLoaded()).isFalse();
+        assertThat(service.getInstrumentAsOf("EQ-IBM", asOf)).isPresent();
+        verify(repo).findByCodeAsOf("EQ-IBM", asOf);
+    }
+}
@@ -0,0 +1,44 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.dto.InstrumentSearchHitDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InstrumentSearchIndexTest {
+
+    private final InstrumentSearchIndex index = new InstrumentSearchIndex(List.of(
+            new InstrumentSearchHitDTO("EQ-AAPL", "Apple Inc.", "AAPL", "EQUITY"),
+            new InstrumentSearchHitDTO("BOND-AAPL28", "Apple Inc. 3.85% 2028", null, "BOND"),
+            new InstrumentSearchHitDTO("OPT-AAPL-20250321-200C", "AAPL Mar25 200 Call", null, "OPT"),
+            new InstrumentSearchHitDTO("EQ-IBM", "IBM Corp.", "IBM", "EQUITY"),
+            new InstrumentSearchHitDTO("EQ-MSFT", "Microsoft Corp.", "MSFT", "EQUITY")
+    ));
+
+    private static List<String> codes(List<InstrumentSearchHitDTO> hits) {
+        return hits.stream().map(InstrumentSearchHitDTO::instrumentCode).toList();
+    }
+
+    @Test
+    void exact_ticker_match_ranks_first() {
+        assertThat(codes(index.search("aapl", 10)).getFirst()).isEqualTo("EQ-AAPL");
+        assertThat(codes(index.search("aapl", 10)))
+                .containsExactlyInAnyOrder("EQ-AAPL", "BOND-AAPL28", "OPT-AAPL-20250321-200C");
+    }
+
+    @Test
+    void prefix_matches_code_and_name_words() {
+        assertThat(codes(index.search("Micro", 10))).containsExactly("EQ-MSFT");
+        assertThat(codes(index.search("eq-", 10))).containsExactly("EQ-AAPL", "EQ-IBM", "EQ-MSFT");
+    }
+
+    @Test
+    void substring_matches_inside_words_and_respects_limit() {
+        assertThat(codes(index.search("rosof", 10))).containsExactly("EQ-MSFT");
+        assertThat(codes(index.search("corp", 1))).hasSize(1);
+        assertThat(index.search("zzz", 10)).isEmpty();
+        assertThat(index.search("  ", 10)).isEmpty();
+    }
+}
@@ -0,0 +1,117 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.dto.analytics.MoversResponse.Mover;
+import com.kmakker.ibor.jodi.JodiMoversRepository;
+import com.kmakker.ibor.jodi.JodiMoversRepository.MoverRow;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+public class MoversServiceTest {
+
+    private static final LocalDate AS_OF = LocalDate.parse("2025-06-30");
+    private static final LocalDate PRIOR = LocalDate.parse("2025-06-27");
+
+    private final JodiMoversRepository repo = Mockito.mock(JodiMoversRepository.class);
+    private final MoversService service = new MoversService(repo, new RequestCoalescer(new SimpleMeterRegistry()));
+
+    private static MoverRow row(String code, double qty, double priorPrice, double price) {
+        return new MoverRow(code, "EQUITY", "USD", qty, price, priorPrice, qty * price, qty * priorPrice,
+                qty * priorPrice * (price / priorPrice - 1));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stream(List<MoverRow> rows) {
+        when(repo.findPriorPriceDay(AS_OF)).thenReturn(PRIOR);
+        doAnswer(inv -> {
+            rows.forEach(((Consumer<MoverRow>) inv.getArgument(4))::accept);
+            return null;
+        }).when(repo).streamMovers(eq(AS_OF), eq(PRIOR), isNull(), eq("USD"), any());
+    }
+
+    @Test
+    void keeps_the_top_and_bottom_n_of_a_stream_and_matches_a_full_sort() {
+        Random rnd = new Random(5);
+        List<MoverRow> rows = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            double prior = 10 + rnd.nextDouble() * 90;
+            rows.add(row("EQ-" + i, rnd.nextInt(2000) - 500, prior, prior * (1 + rnd.nextGaussian() * 0.03)));
+        }
+        rows.add(new MoverRow("EQ-NOPX", "EQUITY", "USD", 10, Double.NaN, 5, Double.NaN, 50, Double.NaN));
+        stream(rows);
+
+        var response = service.getMovers(null, AS_OF, "pnl", 5, null);
+
+        List<String> sorted = rows.stream()
+                .filter(r -> !Double.isNaN(r.marketValue()))
+                .sorted((a, b) -> Double.compare(b.marketValue() - b.priorMarketValue(), a.marketValue() - a.priorMarketValue()))
+                .map(MoverRow::instrumentCode)
+                .toList();
+        assertThat(response.top()).extracting(Mover::instrumentCode).containsExactlyElementsOf(sorted.subList(0, 5));
+        assertThat(response.bottom()).extracting(Mover::instrumentCode)
+                .containsExactlyElementsOf(sorted.reversed().subList(0, 5));
+        assertThat(response.instruments()).isEqualTo(5001);
+        assertThat(response.unpricedInstruments()).isEqualTo(1);
+        assertThat(response.priorDay()).isEqualTo(PRIOR);
+
+        double prior = rows.stream().filter(r -> !Double.isNaN(r.marketValue())).mapToDouble(MoverRow::priorMarketValue).sum();
+        Mover first = response.top().get(0);
+        assertThat(first.contribution()).isCloseTo(first.pnl() / prior, within(1e-12));
+        assertThat(response.pnl()).isCloseTo(response.marketValue() - response.priorMarketValue(), within(1e-6));
+    }
+
+    @Test
+    void ranks_on_the_signed_contribution_when_the_scope_is_net_short() {
+        stream(List.of(
+                row("EQ-LONG", 10, 100, 110),          // prior 1000, +100
+                row("EQ-SHORT", -50, 100, 90),         // prior -5000, +500
+                row("EQ-LOSS", -20, 100, 105)));       // prior -2000, -100; total prior -6000
+
+        var response = service.getMovers(null, AS_OF, "contribution", 1, null);
+
+        assertThat(response.priorMarketValue()).isEqualTo(-6000);
+        // +500 / -6000 is the most negative contribution, -100 / -6000 the most positive
+        assertThat(response.top()).extracting(Mover::instrumentCode).containsExactly("EQ-LOSS");
+        assertThat(response.top().get(0).contribution()).isCloseTo(100.0 / 6000, within(1e-12));
+        assertThat(response.bottom()).extracting(Mover::instrumentCode).containsExactly("EQ-SHORT");
+        assertThat(response.bottom().get(0).contribution()).isCloseTo(-500.0 / 6000, within(1e-12));
+
+        var all = service.getMovers(null, AS_OF, "contribution", 3, null);
+        assertThat(all.top()).extracting(Mover::instrumentCode).containsExactly("EQ-LOSS", "EQ-LONG", "EQ-SHORT");
+        assertThat(all.bottom()).extracting(Mover::instrumentCode).containsExactly("EQ-SHORT", "EQ-LONG", "EQ-LOSS");
+    }
+
+    @Test
+    void ranks_by_price_return_and_validates_arguments() {
+        stream(List.of(
+                row("EQ-BIG", 1_000_000, 100, 101),    // +1%, largest P&L
+                row("EQ-JUMP", 1, 10, 15),             // +50%
+                row("EQ-DROP", 1, 10, 7)));            // -30%
+
+        var response = service.getMovers(null, AS_OF, "RETURN", 1, "usd");
+        assertThat(response.rankBy()).isEqualTo("return");
+        assertThat(response.top()).extracting(Mover::instrumentCode).containsExactly("EQ-JUMP");
+        assertThat(response.top().get(0).priceReturn()).isCloseTo(0.5, within(1e-12));
+        assertThat(response.bottom()).extracting(Mover::instrumentCode).containsExactly("EQ-DROP");
+
+        assertThatThrownBy(() -> service.getMovers(null, AS_OF, "volume", 10, null))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("rankBy");
+        assertThatThrownBy(() -> service.getMovers(null, AS_OF, null, 0, null))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("n must be");
+    }
+}
@@ -0,0 +1,87 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.dto.PositionPointDTO;
+import com.kmakker.ibor.jodi.JodiPositionHistoryRepository;
+import com.kmakker.ibor.jodi.JodiPositionHistoryRepository.Event;
+import com.kmakker.ibor.jodi.JodiPositionHistoryRepository.InstrumentVersion;
+import com.kmakker.ibor.jodi.JodiPositionHistoryRepository.PortfolioVersion;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static com.kmakker.ibor.jodi.JodiPositionHistoryRepository.ADJUSTMENT;
+import static com.kmakker.ibor.jodi.JodiPositionHistoryRepository.PRICE;
+import static com.kmakker.ibor.jodi.JodiPositionHistoryRepository.SNAP_DATE;
+import static com.kmakker.ibor.jodi.JodiPositionHistoryRepository.SNAP_ROW;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+public class PositionHistoryServiceTest {
+
+    private static LocalDate d(String s) {
+        return LocalDate.parse(s);
+    }
+
+    private static Event snapDate(String day) {
+        return new Event(SNAP_DATE, d(day), 0, null, null, null, null, false);
+    }
+
+    private static Event snapRow(String day, long vid, int qty) {
+        return new Event(SNAP_ROW, d(day), vid, BigDecimal.valueOf(qty), null, null, null, false);
+    }
+
+    private static Event adjustment(String day, long vid, int qty) {
+        return new Event(ADJUSTMENT, d(day), vid, BigDecimal.valueOf(qty), null, null, null, false);
+    }
+
+    private static Event price(String day, long vid, String px, String source) {
+        return new Event(PRICE, d(day), vid, null, new BigDecimal(px), "USD", source, "BBG".equals(source));
+    }
+
+    @Test
+    void replays_snapshots_adjustments_and_prices_day_by_day() {
+        var repo = Mockito.mock(JodiPositionHistoryRepository.class);
+        var from = d("2025-01-01");
+        var to = d("2025-01-05");
+        when(repo.findPortfolioVersions("P-ALPHA", from, to))
+                .thenReturn(List.of(new PortfolioVersion(7, d("2024-01-01"), d("9999-12-31"))));
+        when(repo.fetchEvents(7, null, from, to)).thenReturn(List.of(
+                snapDate("2025-01-01"), snapRow("2025-01-01", 1, 100),
+                price("2025-01-01", 1, "10", "RFT"),
+                price("2025-01-02", 1, "11", "BBG"),
+                price("2025-01-03", 1, "12", "RFT"),              // preferred BBG price still wins
+                adjustment("2025-01-03", 1, -20),
+                snapDate("2025-01-04"), snapRow("2025-01-04", 2, 5)));  // instrument 1 leaves the snapshot
+        when(repo.findInstrumentVersions(Set.of(1L, 2L))).thenReturn(List.of(
+                new InstrumentVersion(1, "EQ-IBM", "IBM", "EQUITY", "USD", d("2020-01-01"), d("9999-12-31"), BigDecimal.ONE),
+                new InstrumentVersion(2, "FUT-ESH5", "ES Mar25", "FUT", "USD", d("2020-01-01"), d("9999-12-31"), BigDecimal.valueOf(50))));
+
+        var service = new PositionHistoryService(repo, new RequestCoalescer(new SimpleMeterRegistry()));
+        var series = service.getTimeSeries("P-ALPHA", null, from, to).series();
+
+        assertThat(series).extracting("instrumentId").containsExactly("EQ-IBM", "FUT-ESH5");
+        List<PositionPointDTO> ibm = series.get(0).points();
+        assertThat(ibm).extracting(PositionPointDTO::asOf)
+                .containsExactly(d("2025-01-01"), d("2025-01-02"), d("2025-01-03"), d("2025-01-04"), d("2025-01-05"));
+        assertThat(ibm).extracting(p -> p.mktValue().intValue()).containsExactly(1000, 1100, 880, -220, -220);
+        assertThat(ibm.get(4).snapDate()).isEqualTo(d("2025-01-04"));
+        assertThat(series.get(1).points()).extracting(p -> p.netQty().intValue()).containsExactly(5, 5);
+        assertThat(series.get(1).points().get(0).price()).isNull();
+    }
+
+    @Test
+    void rejects_reversed_or_oversized_ranges() {
+        var service = new PositionHistoryService(Mockito.mock(JodiPositionHistoryRepository.class),
+                new RequestCoalescer(new SimpleMeterRegistry()));
+        assertThatThrownBy(() -> service.getTimeSeries("P-ALPHA", null, d("2025-02-01"), d("2025-01-01")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.getTimeSeries("P-ALPHA", null, d("2015-01-01"), d("2025-01-01")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,51 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.jodi.JodiPositionRollupRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class PositionRollupServiceTest {
+
+    private static final LocalDate AS_OF = LocalDate.parse("2025-06-30");
+
+    private final JodiPositionRollupRepository repo = Mockito.mock(JodiPositionRollupRepository.class);
+    private final PositionRollupService service =
+            new PositionRollupService(repo, new RequestCoalescer(new SimpleMeterRegistry()));
+
+    @Test
+    void normalizes_portfolios_dimensions_and_base_currency() {
+        var response = service.getRollup(AS_OF, List.of("P-BETA", " P-ALPHA", "P-BETA"), List.of("Strategy", "TYPE"), "usd");
+
+        assertThat(response.portfolioCodes()).containsExactly("P-ALPHA", "P-BETA");
+        assertThat(response.groupBy()).containsExactly("strategy", "type");
+        assertThat(response.baseCurrency()).isEqualTo("USD");
+        verify(repo).findRollup(AS_OF, List.of("P-ALPHA", "P-BETA"), List.of("strategy", "type"), "USD");
+    }
+
+    @Test
+    void defaults_to_type_currency_instrument_without_conversion() {
+        service.getRollup(AS_OF, List.of("P-ALPHA"), null, " ");
+        verify(repo).findRollup(AS_OF, List.of("P-ALPHA"), List.of("type", "currency", "instrument"), null);
+    }
+
+    @Test
+    void rejects_unknown_or_repeated_dimensions_before_querying() {
+        assertThatThrownBy(() -> service.getRollup(AS_OF, List.of("P-ALPHA"), List.of("type;drop"), null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.getRollup(AS_OF, List.of("P-ALPHA"), List.of("type", "type"), null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.getRollup(AS_OF, List.of(" "), null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        verify(repo, never()).findRollup(any(), any(), any(), any());
+    }
+}
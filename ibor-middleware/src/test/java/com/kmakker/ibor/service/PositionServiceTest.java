@@ -0,0 +1,90 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.dto.FxRateDTO;
+import com.kmakker.ibor.dto.PositionDTO;
+import com.kmakker.ibor.intern.CodeDictionaries;
+import com.kmakker.ibor.intern.CodeDictionary;
+import com.kmakker.ibor.jodi.JodiFxRateRepository;
+import com.kmakker.ibor.jodi.JodiPositionsRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PositionServiceTest {
+
+    private static final LocalDate AS_OF = LocalDate.parse("2025-06-30");
+
+    private final JodiPositionsRepository positions = Mockito.mock(JodiPositionsRepository.class);
+    private final JodiFxRateRepository fx = Mockito.mock(JodiFxRateRepository.class);
+    private final CodeDictionaries dictionaries = new CodeDictionaries();
+    private final PositionService service = new PositionService(positions, fx, dictionaries,
+            new RequestCoalescer(new SimpleMeterRegistry()));
+
+    private static PositionDTO row(String code, String mktValue, String currency) {
+        return new PositionDTO(AS_OF, AS_OF, "P-ALPHA", code, code, code, "EQUITY", BigDecimal.TEN,
+                null, "BBG", new BigDecimal(mktValue), null, null, currency, BigDecimal.ONE);
+    }
+
+    @Test
+    void converts_every_row_with_one_fx_lookup_for_all_currencies() {
+        when(positions.findPositions(AS_OF, "P-ALPHA", null, 1, 50)).thenReturn(List.of(
+                row("EQ-VOD", "100", "GBP"),
+                row("EQ-BP", "200", "GBP"),
+                row("EQ-IBM", "300", "USD"),
+                row("EQ-SONY", "1000", "JPY")));
+        when(fx.findFxRatesAtOrBefore(any(), any(), any())).thenReturn(List.of(
+                new FxRateDTO(AS_OF, "GBP", "USD", new BigDecimal("1.25"))));
+
+        var rows = service.getPositions(AS_OF, "P-ALPHA", null, 1, 50, "usd");
+
+        assertThat(rows.get(0).mktValueBase()).isEqualByComparingTo("125");
+        assertThat(rows.get(1).mktValueBase()).isEqualByComparingTo("250");
+        assertThat(rows.get(2).mktValueBase()).isEqualByComparingTo("300");
+        assertThat(rows.get(3).mktValueBase()).isNull();   // no JPY rate in the snapshot
+        assertThat(rows).extracting(PositionDTO::baseCurrency).containsExactly("USD", "USD", "USD", null);
+        assertThat(rows.get(3).mktValue()).isEqualByComparingTo("1000");
+        verify(fx, times(1)).findFxRatesAtOrBefore(Set.of("GBP", "JPY"), "USD", AS_OF);
+    }
+
+    @Test
+    void leaves_rows_unconverted_without_a_base_currency() {
+        when(positions.findPositions(AS_OF, "P-ALPHA", null, 1, 50)).thenReturn(List.of(row("EQ-VOD", "100", "GBP")));
+
+        var rows = service.getPositions(AS_OF, "P-ALPHA", null, 1, 50, " ");
+
+        assertThat(rows.get(0).mktValueBase()).isNull();
+        verify(fx, never()).findFxRatesAtOrBefore(any(), any(), any());
+        assertThatThrownBy(() -> service.getPositions(AS_OF, "P-ALPHA", null, 1, 50, "EURO"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejects_an_unknown_base_currency_without_interning_it() {
+        when(positions.findPositions(AS_OF, "P-ALPHA", null, 1, 50)).thenReturn(List.of(row("EQ-VOD", "100", "GBP")));
+        when(fx.findFxRatesAtOrBefore(any(), any(), any())).thenReturn(List.of());
+        when(fx.currencyExists("USD")).thenReturn(true);
+
+        assertThatThrownBy(() -> service.getPositions(AS_OF, "P-ALPHA", null, 1, 50, "ZZZ"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("ZZZ");
+        assertThat(dictionaries.currencies().find("ZZZ")).isEqualTo(CodeDictionary.NO_ID);
+
+        // a known base without rates is accepted, checked against dim_currency once
+        service.getPositions(AS_OF, "P-ALPHA", null, 1, 50, "USD");
+        service.getPositions(AS_OF, "P-ALPHA", null, 1, 50, "USD");
+        verify(fx, times(1)).currencyExists("USD");
+    }
+}
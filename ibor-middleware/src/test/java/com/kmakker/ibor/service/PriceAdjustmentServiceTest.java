@@ -0,0 +1,98 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.dto.PriceRowDTO;
+import com.kmakker.ibor.jodi.JodiCorporateActionRepository;
+import com.kmakker.ibor.jodi.JodiCorporateActionRepository.PriceAdjustment;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PriceAdjustmentServiceTest {
+
+    private final JodiCorporateActionRepository repository = Mockito.mock(JodiCorporateActionRepository.class);
+    private final DataVersionService dataVersions = Mockito.mock(DataVersionService.class);
+    private final PriceAdjustmentService service = new PriceAdjustmentService(repository, dataVersions, 100);
+
+    private static PriceRowDTO row(String day, String price) {
+        return new PriceRowDTO(Instant.parse(day + "T21:00:00Z"), new BigDecimal(price), "USD", "BBG");
+    }
+
+    @Test
+    void prices_before_each_ex_date_carry_the_later_factors() {
+        when(dataVersions.etag("corporate_action:EQ-A", "price:EQ-A")).thenReturn(Optional.of("v1"));
+        when(repository.findPriceAdjustments("EQ-A")).thenReturn(List.of(
+                new PriceAdjustment(LocalDate.parse("2025-03-10"), "DIV", null, new BigDecimal("2"), new BigDecimal("100")),
+                new PriceAdjustment(LocalDate.parse("2025-06-02"), "SPLIT", new BigDecimal("4"), null, null),
+                new PriceAdjustment(LocalDate.parse("2025-06-02"), "DIV", null, new BigDecimal("1"), null)));   // no close: skipped
+
+        List<PriceRowDTO> raw = List.of(
+                row("2025-03-07", "100"),    // before both: 0.98 x 0.25
+                row("2025-03-10", "98"),     // ex dividend: split only
+                row("2025-05-30", "120"),
+                row("2025-06-02", "30"));    // ex split: unchanged
+        List<PriceRowDTO> adjusted = service.adjust("EQ-A", raw);
+
+        assertThat(adjusted).extracting(PriceRowDTO::price).usingComparatorForType(BigDecimal::compareTo, BigDecimal.class)
+                .containsExactly(new BigDecimal("24.5"), new BigDecimal("24.5"), new BigDecimal("30"), new BigDecimal("30"));
+        assertThat(adjusted.get(3)).isSameAs(raw.get(3));
+
+        PriceAdjustmentService.Factors f = service.factors("EQ-A");
+        assertThat(f.actions()).isEqualTo(2);
+        assertThat(f.at((int) LocalDate.parse("2020-01-01").toEpochDay())).isCloseTo(0.245, within(1e-15));
+        assertThat(f.at((int) LocalDate.parse("2030-01-01").toEpochDay())).isEqualTo(1.0);
+    }
+
+    @Test
+    void factor_arrays_are_cached_until_the_instrument_versions_move() {
+        when(dataVersions.etag("corporate_action:EQ-B", "price:EQ-B")).thenReturn(Optional.of("v1"));
+        when(repository.findPriceAdjustments("EQ-B")).thenReturn(List.of());
+        service.factors("EQ-B");
+        service.factors("EQ-B");
+        verify(repository, times(1)).findPriceAdjustments("EQ-B");
+
+        // a corporate action is loaded
+        when(dataVersions.etag("corporate_action:EQ-B", "price:EQ-B")).thenReturn(Optional.of("v2"));
+        when(repository.findPriceAdjustments("EQ-B")).thenReturn(List.of(
+                new PriceAdjustment(LocalDate.parse("2025-06-02"), "SPLIT", new BigDecimal("2"), null, null)));
+        assertThat(service.factors("EQ-B").actions()).isEqualTo(1);
+        verify(repository, times(2)).findPriceAdjustments("EQ-B");
+    }
+
+    @Test
+    void window_factors_load_only_uncached_instruments_in_one_query() {
+        LocalDate from = LocalDate.parse("2025-01-01"), to = LocalDate.parse("2025-12-31");
+        when(dataVersions.etag(any(), any())).thenReturn(Optional.of("v1"));
+        when(repository.findPriceAdjustments("EQ-C")).thenReturn(List.of(
+                new PriceAdjustment(LocalDate.parse("2025-06-02"), "SPLIT", new BigDecimal("2"), null, null)));
+        service.factors("EQ-C");
+        when(repository.findInstrumentCodesWithActions(from, to)).thenReturn(List.of("EQ-C", "EQ-D", "EQ-E"));
+        when(repository.findPriceAdjustmentsByCode(argThat(codes -> List.copyOf(codes).equals(List.of("EQ-D", "EQ-E"))))).thenReturn(Map.of("EQ-D", List.of(
+                new PriceAdjustment(LocalDate.parse("2025-03-03"), "SPLIT", new BigDecimal("4"), null, null))));
+
+        Map<String, PriceAdjustmentService.Factors> factors = service.factorsBetween(from, to);
+
+        assertThat(factors).containsOnlyKeys("EQ-C", "EQ-D", "EQ-E");
+        assertThat(factors.get("EQ-D").at((int) from.toEpochDay())).isEqualTo(0.25);
+        assertThat(factors.get("EQ-E").actions()).isZero();
+        verify(repository, times(1)).findPriceAdjustmentsByCode(any());
+
+        service.factorsBetween(from, to);   // all cached now
+        verify(repository, times(1)).findPriceAdjustmentsByCode(any());
+        verify(repository, never()).findPriceAdjustments("EQ-D");
+    }
+}
@@ -0,0 +1,95 @@
+package com.kmakker.ibor.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RequestCoalescerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final RequestCoalescer coalescer = new RequestCoalescer(registry);
+    private final LocalDate asOf = LocalDate.parse("2025-01-03");
+
+    private double counter(String name) {
+        var counter = registry.find(name).tag("operation", "positions").counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    @Test
+    void concurrent_identical_calls_share_one_execution() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<List<String>>> callers = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                callers.add(pool.submit(() -> coalescer.execute("positions", () -> {
+                    executions.incrementAndGet();
+                    await(release);
+                    return List.of("EQ-IBM");
+                }, asOf, "P-ALPHA", null, 1, 50)));
+            }
+            while (counter("ibor.coalesce.saved") < 9) Thread.sleep(5);
+            release.countDown();
+
+            for (Future<List<String>> f : callers) {
+                assertThat(f.get(5, TimeUnit.SECONDS)).containsExactly("EQ-IBM");
+            }
+        }
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(counter("ibor.coalesce.executed")).isEqualTo(1);
+        assertThat(counter("ibor.coalesce.saved")).isEqualTo(9);
+    }
+
+    @Test
+    void different_arguments_and_later_calls_run_again() {
+        AtomicInteger executions = new AtomicInteger();
+        coalescer.execute("positions", executions::incrementAndGet, asOf, "P-ALPHA");
+        coalescer.execute("positions", executions::incrementAndGet, asOf, "P-BETA");
+        coalescer.execute("positions", executions::incrementAndGet, asOf, "P-ALPHA");
+
+        assertThat(executions.get()).isEqualTo(3);
+        assertThat(counter("ibor.coalesce.saved")).isZero();
+    }
+
+    @Test
+    void failures_reach_every_waiter_and_are_not_remembered() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Object>> callers = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                callers.add(pool.submit(() -> coalescer.execute("positions", () -> {
+                    await(release);
+                    throw new IllegalArgumentException("portfolioCode must be provided");
+                }, asOf, "")));
+            }
+            while (counter("ibor.coalesce.saved") < 2) Thread.sleep(5);
+            release.countDown();
+            for (Future<Object> f : callers) {
+                assertThatThrownBy(() -> f.get(5, TimeUnit.SECONDS))
+                        .hasCauseInstanceOf(IllegalArgumentException.class);
+            }
+        }
+        assertThat(coalescer.execute("positions", () -> "ok", asOf, "")).isEqualTo("ok");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.kmakker.ibor.service;
+
+import com.kmakker.ibor.dto.FxRateDTO;
+import com.kmakker.ibor.dto.PositionDTO;
+import com.kmakker.ibor.dto.analytics.ScenarioRequest;
+import com.kmakker.ibor.dto.analytics.ScenarioRequest.Scenario;
+import com.kmakker.ibor.intern.CodeDictionaries;
+import com.kmakker.ibor.jodi.JodiFxRateRepository;
+import com.kmakker.ibor.jodi.JodiPositionsRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+public class ScenarioServiceTest {
+
+    private static final LocalDate AS_OF = LocalDate.parse("2025-06-30");
+
+    private final JodiPositionsRepository positions = Mockito.mock(JodiPositionsRepository.class);
+    private final JodiFxRateRepository fx = Mockito.mock(JodiFxRateRepository.class);
+    private final ScenarioService service = new ScenarioService(positions, fx, new CodeDictionaries(),
+            new RequestCoalescer(new SimpleMeterRegistry()), 20000, 4);
+
+    @AfterEach
+    void shutdown() {
+        service.destroy();
+    }
+
+    private static PositionDTO row(String code, String type, String mktValue, String currency) {
+        return new PositionDTO(AS_OF, AS_OF, "P-ALPHA", code, code, code, type, BigDecimal.ONE,
+                null, "BBG", new BigDecimal(mktValue), null, null, currency, BigDecimal.ONE);
+    }
+
+    @Test
+    void applies_type_currency_and_instrument_shocks_in_the_base_currency() {
+        when(positions.findPositions(AS_OF, "P-ALPHA", null, 1, 20001)).thenReturn(List.of(
+                row("EQ-IBM", "EQUITY", "1000", "USD"),
+                row("EQ-SAP", "EQUITY", "500", "EUR"),
+                row("FUT-ES", "FUT", "2000", "USD"),
+                row("EQ-SONY", "EQUITY", "9999", "JPY")));
+        when(fx.findFxRatesAtOrBefore(any(), any(), any())).thenReturn(List.of(
+                new FxRateDTO(AS_OF, "EUR", "USD", new BigDecimal("1.1"))));
+
+        var response = service.run(new ScenarioRequest("P-ALPHA", AS_OF, null, List.of(
+                new Scenario("equities -10%, EUR +5%", Map.of("equity", -0.10), Map.of("EUR", 0.05, "USD", 0.5), null),
+                new Scenario(null, Map.of("EQUITY", -0.10), null, Map.of("EQ-IBM", 0.20, "EQ-UNKNOWN", 0.5)))));
+
+        assertThat(response.lines()).isEqualTo(3);
+        assertThat(response.unconvertedLines()).isEqualTo(1);
+        assertThat(response.truncated()).isNull();
+        assertThat(response.baseValue()).isCloseTo(3550, within(1e-9));
+
+        var first = response.results().get(0);
+        assertThat(first.pnl()).isCloseTo(-100 + 550 * (0.9 * 1.05 - 1), within(1e-9));
+        assertThat(first.pnlByInstrumentType()).containsEntry("FUT", 0.0);
+        assertThat(first.pnlPct()).isCloseTo(first.pnl() / 3550, within(1e-12));
+
+        var second = response.results().get(1);
+        assertThat(second.name()).isEqualTo("scenario-2");
+        assertThat(second.pnl()).isCloseTo(200 - 55, within(1e-9));
+    }
+
+    @Test
+    void a_thousand_scenarios_on_a_ten_thousand_line_book_match_a_naive_revaluation() {
+        Random rnd = new Random(7);
+        String[] types = {"EQUITY", "BOND", "FUT", "OPT"};
+        String[] ccys = {"USD", "EUR", "GBP", "JPY"};
+        int n = 10_000;
+        List<PositionDTO> rows = new ArrayList<>(n);
+        double[] value = new double[n];
+        for (int i = 0; i < n; i++) {
+            value[i] = rnd.nextGaussian() * 1e6;
+            rows.add(row("I-" + (i % 7000), types[i % types.length], "0", ccys[(i / 3) % ccys.length]));
+        }
+        List<Scenario> scenarios = new ArrayList<>();
+        for (int s = 0; s < 1000; s++) {
+            scenarios.add(new Scenario("s" + s,
+                    Map.of("EQUITY", rnd.nextGaussian() * 0.1, "FUT", rnd.nextGaussian() * 0.1),
+                    Map.of("EUR", rnd.nextGaussian() * 0.05, "JPY", rnd.nextGaussian() * 0.05),
+                    Map.of("I-" + rnd.nextInt(7000), 0.5)));
+        }
+
+        var response = service.revalue("P-ALPHA", AS_OF, "USD",
+                new ScenarioService.Lines(rows, value, 0, false), scenarios);
+
+        for (int s = 0; s < scenarios.size(); s += 97) {
+            Scenario sc = scenarios.get(s);
+            double expected = 0;
+            for (int i = 0; i < n; i++) {
+                PositionDTO p = rows.get(i);
+                Double price = sc.instruments().getOrDefault(p.instrumentId(),
+                        sc.instrumentTypes().getOrDefault(p.instrumentType(), 0.0));
+                double ccy = sc.currencies().getOrDefault(p.currency(), 0.0);
+                expected += value[i] * ((1 + price) * (1 + ccy) - 1);
+            }
+            assertThat(response.results().get(s).pnl()).isCloseTo(expected, within(1e-6 * Math.abs(expected) + 1e-3));
+        }
+    }
+
+    @Test
+    void flags_books_larger_than_max_lines_as_truncated() {
+        ScenarioService small = new ScenarioService(positions, fx, new CodeDictionaries(),
+                new RequestCoalescer(new SimpleMeterRegistry()), 2, 1);
+        try {
+            when(positions.findPositions(AS_OF, "P-ALPHA", null, 1, 3)).thenReturn(List.of(
+                    row("EQ-A", "EQUITY", "100", "USD"),
+                    row("EQ-B", "EQUITY", "200", "USD"),
+                    row("EQ-C", "EQUITY", "400", "USD")));
+            when(fx.currencyExists("USD")).thenReturn(true);
+
+            var response = small.run(new ScenarioRequest("P-ALPHA", AS_OF, null,
+                    List.of(new Scenario("equities -10%", Map.of("EQUITY", -0.10), null, null))));
+
+            assertThat(response.truncated()).isTrue();
+            assertThat(response.lines()).isEqualTo(2);
+            assertThat(response.baseValue()).isCloseTo(300, within(1e-9));
+        } finally {
+            small.destroy();
+        }
+    }
+
+    @Test
+    void rejects_shocks_at_or_below_minus_one_hundred_percent() {
+        assertThatThrownBy(() -> service.run(new ScenarioRequest("P-ALPHA", AS_OF, null,
+                List.of(new Scenario("wipeout", Map.of("EQUITY", -1.0), null, null)))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.run(new ScenarioRequest("P-ALPHA", AS_OF, null, List.of())))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}